@@ -72,6 +72,7 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 	public static final String BACKUP_SCHEME_DIFFERENTIAL = "Differential backup";
 	public static final String CONFIG_FILE_EXT_DEPRECATED= ".xml";
 	public static final String CONFIG_FILE_EXT = ".bcfg";
+	public static final int BACKUP_WORKERS_DEFAULT = -1;
 
 	protected ArchiveMedium medium;
 	protected FilterGroup filterGroup = new FilterGroup();
@@ -83,6 +84,9 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 	protected ProcessorList preProcessors = new ProcessorList();
 	protected boolean running;
 	protected boolean createSecurityCopyOnBackup = true;
+	protected int backupWorkers = BACKUP_WORKERS_DEFAULT; // Number of threads used to store the files (BACKUP_WORKERS_DEFAULT = value defined in the configuration)
+	protected String readBandwidth; // Maximum throughput of the source files read by the target (see BandwidthSchedule - null = no limit)
+	protected String writeBandwidth; // Maximum throughput of the archives written by the target (see BandwidthSchedule - null = no limit)
 
 	protected void copyAttributes(Object clone) {
 		AbstractTarget other = (AbstractTarget)clone;
@@ -95,6 +99,9 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 		other.preProcessors = (ProcessorList)preProcessors.duplicate();
 		other.setMedium((ArchiveMedium)medium.duplicate(), true);
 		other.createSecurityCopyOnBackup = this.createSecurityCopyOnBackup;
+		other.backupWorkers = this.backupWorkers;
+		other.readBandwidth = this.readBandwidth;
+		other.writeBandwidth = this.writeBandwidth;
 	}
 
 	public SupportedBackupTypes getSupportedBackupSchemes() {
@@ -133,6 +140,41 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 		this.createSecurityCopyOnBackup = createSecurityCopyOnBackup;
 	}
 
+	public int getBackupWorkers() {
+		return backupWorkers;
+	}
+
+	public void setBackupWorkers(int backupWorkers) {
+		this.backupWorkers = backupWorkers;
+	}
+
+	public String getReadBandwidth() {
+		return readBandwidth;
+	}
+
+	public void setReadBandwidth(String readBandwidth) {
+		this.readBandwidth = readBandwidth;
+	}
+
+	public String getWriteBandwidth() {
+		return writeBandwidth;
+	}
+
+	public void setWriteBandwidth(String writeBandwidth) {
+		this.writeBandwidth = writeBandwidth;
+	}
+
+	/**
+	 * Return the number of threads used to store the files during a backup (0 = no backup pipeline)
+	 */
+	public int getEffectiveBackupWorkers() {
+		int workers = backupWorkers == BACKUP_WORKERS_DEFAULT ? ArecaConfiguration.get().getBackupWorkers() : backupWorkers;
+		if (workers < 0) {
+			workers = Runtime.getRuntime().availableProcessors();
+		}
+		return workers;
+	}
+
 	public void setRunning(boolean running) {
 		this.running = running;
 	}
@@ -306,6 +348,7 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 			ProcessContext context
 	) throws ApplicationException {
 		boolean backupRequired = true;
+		boolean singlePass = false;
 		try {
 			this.validateTargetState(ACTION_BACKUP, context);
 
@@ -315,13 +358,18 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 					&& (!disablePreCheck) 
 					&& backupScheme.equals(BACKUP_SCHEME_INCREMENTAL)
 			) {
-				context.getTaskMonitor().getCurrentActiveSubTask().addNewSubTask(0.2, "pre-check");
-				context.getInfoChannel().print("Pre-check in progress ...");
-				this.processSimulateImpl(context, false);
-				context.getInfoChannel().print("Pre-check completed.");
-				backupRequired = (context.getReport().getSavedFiles() > 0 || context.getReport().getDeletedFiles() > 0);
-				context.getTaskMonitor().getCurrentActiveSubTask().addNewSubTask(0.8, "backup");
-				context.reset(false);
+				if (ArecaConfiguration.get().isBackupSinglePass() && this.medium.isSinglePassBackupSupported()) {
+					// No pre-check : the changes are detected during the backup, and the archive is discarded if there is none
+					singlePass = true;
+				} else {
+					context.getTaskMonitor().getCurrentActiveSubTask().addNewSubTask(0.2, "pre-check");
+					context.getInfoChannel().print("Pre-check in progress ...");
+					this.processSimulateImpl(context, false);
+					context.getInfoChannel().print("Pre-check completed.");
+					backupRequired = (context.getReport().getSavedFiles() > 0 || context.getReport().getDeletedFiles() > 0);
+					context.getTaskMonitor().getCurrentActiveSubTask().addNewSubTask(0.8, "backup");
+					context.reset(false);
+				}
 			}
 
 			if (backupRequired) {
@@ -361,9 +409,12 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 							manifest = new Manifest(Manifest.TYPE_BACKUP);
 						}
 						
+						context.setSinglePassBackup(singlePass);
 						this.open(manifest, context, backupScheme);
 						
-						this.medium.getHistoryHandler().addEntryAndFlush(new HistoryEntry(HISTO_BACKUP, "Backup."));
+						if (! singlePass) {
+							this.medium.getHistoryHandler().addEntryAndFlush(new HistoryEntry(HISTO_BACKUP, "Backup."));
+						}
 					} else {
 						this.open(transactionPoint, context);
 						
@@ -373,29 +424,43 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 						this.medium.getHistoryHandler().addEntryAndFlush(new HistoryEntry(HISTO_RESUME, "Resume backup."));
 					}
 
-					RecoveryEntry entry = this.nextElement(context);
-					while (entry != null) {
-						context.getInfoChannel().getTaskMonitor().checkTaskState();
-						if (this.filterEntryBeforeStore(entry)) {
-							try {
-								medium.handleTransactionPoint(context);
-								
-								context.incrementEntryIndex();
-								context.getInfoChannel().updateCurrentTask(context.getEntryIndex(), 0, entry.toString());
-								this.medium.store(entry, context);
-							} catch (StoreException e) {
-								throw new ApplicationException(e);
+					int workers = this.getEffectiveBackupWorkers();
+					if (workers > 0) {
+						new BackupPipeline(this, workers, context).run();
+					} else {
+						RecoveryEntry entry = this.nextElement(context);
+						while (entry != null) {
+							context.getInfoChannel().getTaskMonitor().checkTaskState();
+							if (this.filterEntryBeforeStore(entry)) {
+								try {
+									medium.handleTransactionPoint(context);
+									
+									context.incrementEntryIndex();
+									context.getInfoChannel().updateCurrentTask(context.getEntryIndex(), 0, entry.toString());
+									this.medium.store(entry, context);
+								} catch (StoreException e) {
+									throw new ApplicationException(e);
+								}
 							}
+							entry = this.nextElement(context); 
 						}
-						entry = this.nextElement(context); 
 					}
-					this.commitBackup(context);
-					context.getReport().setWrittenKBytes(context.getOutputBytesInKB());
-					context.getReport().stopDataFlowTimer();
-					Logger.defaultLogger().info(Utils.formatLong(context.getInputBytesInKB()) + " kb read in " + Utils.formatLong(context.getReport().getDataFlowTimeInSecond()) + " seconds.");                
-					Logger.defaultLogger().info("Average data input : " + Utils.formatLong(context.getInputBytesInKBPerSecond()) + " kb/second.");
-					Logger.defaultLogger().info(Utils.formatLong(context.getReport().getWrittenKBytes()) + " kb written in " + Utils.formatLong(context.getReport().getDataFlowTimeInSecond()) + " seconds.");                
-					Logger.defaultLogger().info("Average data output : " + Utils.formatLong(context.getOutputBytesInKBPerSecond()) + " kb/second.");
+					if (singlePass && ! this.medium.hasBackupChanges(context)) {
+						// No file has been created, modified or deleted : the archive is discarded
+						backupRequired = false;
+						this.discardBackup(context);
+					} else {
+						if (singlePass) {
+							this.medium.getHistoryHandler().addEntryAndFlush(new HistoryEntry(HISTO_BACKUP, "Backup."));
+						}
+						this.commitBackup(context);
+						context.getReport().setWrittenKBytes(context.getOutputBytesInKB());
+						context.getReport().stopDataFlowTimer();
+						Logger.defaultLogger().info(Utils.formatLong(context.getInputBytesInKB()) + " kb read in " + Utils.formatLong(context.getReport().getDataFlowTimeInSecond()) + " seconds.");                
+						Logger.defaultLogger().info("Average data input : " + Utils.formatLong(context.getInputBytesInKBPerSecond()) + " kb/second.");
+						Logger.defaultLogger().info(Utils.formatLong(context.getReport().getWrittenKBytes()) + " kb written in " + Utils.formatLong(context.getReport().getDataFlowTimeInSecond()) + " seconds.");                
+						Logger.defaultLogger().info("Average data output : " + Utils.formatLong(context.getOutputBytesInKBPerSecond()) + " kb/second.");
+					}
 
 				} catch (Throwable e) {
 					if (! TaskCancelledException.isTaskCancellation(e)) {
@@ -407,7 +472,7 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 			}
 		} finally {
 			Exception checkException = null;
-			if ((! context.getReport().hasError()) && checkParams.isCheck() && context.getCurrentArchiveFile() != null) {
+			if (backupRequired && (! context.getReport().hasError()) && checkParams.isCheck() && context.getCurrentArchiveFile() != null) {
 				context.getTaskMonitor().getCurrentActiveSubTask().addNewSubTask(0.3, "archive check");
 				TaskMonitor checkMon = context.getTaskMonitor().getCurrentActiveSubTask();
 
@@ -573,6 +638,15 @@ implements HistoryEntryTypes, Duplicable, TargetActions {
 		}
 	}
 
+	/**
+	 * Discard the backup (which doesn't contain any change) and release the lock on the target
+	 */
+	protected void discardBackup(ProcessContext context) throws ApplicationException {
+		context.getTaskMonitor().setCancellable(false);
+		context.getInfoChannel().print("No change detected - the archive is discarded.");
+		medium.discardBackup(context);
+	}
+
 	/**
 	 * Rollback the backup and release the lock on the target
 	 */
@@ -61,6 +61,31 @@ public interface ArchiveMedium extends Duplicable {
     public void store(RecoveryEntry entry, ProcessContext context) 
     throws StoreException, ApplicationException, TaskCancelledException;
     
+    /**
+     * First step of "store", called in the order of the entries.
+     * <BR>Returns an object describing the pending entry, which is passed to "storeData" and "commitStore" (or null if there is nothing to store).
+     */
+    public Object prepareStore(RecoveryEntry entry, ProcessContext context) 
+    throws StoreException, ApplicationException, TaskCancelledException;
+    
+    /**
+     * Second step of "store" : stores the data of the entry and returns the number of bytes which have been read.
+     * <BR>If "isConcurrentStoreSupported" returns true, this method can be called concurrently for distinct entries.
+     */
+    public long storeData(Object pendingEntry, ProcessContext context) 
+    throws StoreException, ApplicationException, TaskCancelledException;
+    
+    /**
+     * Last step of "store", called in the order of the entries
+     */
+    public void commitStore(Object pendingEntry, ProcessContext context) 
+    throws StoreException, ApplicationException, TaskCancelledException;
+    
+    /**
+     * Tells whether "storeData" can be called concurrently
+     */
+    public boolean isConcurrentStoreSupported();
+    
     /**
      * Merge the archives that have been created between fromDate and toDate.
      */
@@ -139,6 +164,11 @@ public interface ArchiveMedium extends Duplicable {
     public void handleTransactionPoint(ProcessContext context)
     throws ApplicationException;
     
+    /**
+     * Tells whether a transaction point would be saved by "handleTransactionPoint"
+     */
+    public boolean isTransactionPointRequired(ProcessContext context);
+    
     /**
      * Cancel the backup
      */
@@ -219,6 +249,24 @@ public interface ArchiveMedium extends Duplicable {
      */
     public boolean isPreBackupCheckUseful();
     
+    /**
+     * Tells whether the pre-check can be replaced by a detection of the changes during the backup itself.
+     * <BR>In this case, "hasBackupChanges" is invoked at the end of the backup, and the backup is discarded if it doesn't contain any change.
+     */
+    public boolean isSinglePassBackupSupported();
+    
+    /**
+     * Tells whether the current backup contains changes
+     */
+    public boolean hasBackupChanges(ProcessContext context) 
+    throws ApplicationException;
+    
+    /**
+     * Cancel the backup and destroy the archive
+     */
+    public void discardBackup(ProcessContext context) 
+    throws ApplicationException;
+    
     /**
      * Computes indicators on the archives stored by the medium.
      */
@@ -127,6 +127,12 @@ extends FrameworkConfiguration {
      * Target buckets number for delta storage
      */
     public static String KEY_DELTA_TARGET_BUCKER_NUMBER = "delta.target.bucket.number";
+    
+    /**
+     * Use a local signature store (indexed by path) to locate the previous HashSequence of the files during delta backups,
+     * instead of reading the sequence files of the previous archives
+     */
+    public static String KEY_DELTA_SIGNATURE_STORE = "delta.signature.store";
 
     /**
      * Log location (set this property if you want to force this location)
@@ -178,6 +184,63 @@ extends FrameworkConfiguration {
      */
     public static String KEY_LOG_TARGET_PROPERTIES = "log.target.properties";
     
+    /**
+     * Number of archives from which the metadata files are decoded ahead by background threads when they are merged (0 = never)
+     */
+    public static String KEY_MDT_DECODE_AHEAD_THRESHOLD = "metadata.decode.ahead.threshold";
+    
+    /**
+     * Tells whether the metadata files are written in the indexed binary format (version 7) or as text lines (version 6)
+     */
+    public static String KEY_MDT_INDEXED_FORMAT = "metadata.indexed.format";
+    
+    /**
+     * Maximum size (approximation, in kBytes) of the data stored in the manifest cache
+     */
+    public static String KEY_MANIFEST_CACHE_BUDGET_KB = "cache.manifest.budget";
+    
+    /**
+     * Eviction policy of the archive data caches ("lru" or "lfu")
+     */
+    public static String KEY_CACHE_EVICTION_POLICY = "cache.eviction.policy";
+    
+    /**
+     * Delay (in milliseconds) during which an entry of the archive data caches is considered valid without checking its file
+     */
+    public static String KEY_CACHE_VALIDATION_DELAY = "cache.validation.delay";
+    
+    /**
+     * Default number of threads which read, hash and compress the files during a backup (-1 = number of processors, 0 = no backup pipeline).
+     * <BR>Can be overridden for each target. The pipeline is not used for remote targets, nor when the repository access cache is enabled.
+     */
+    public static String KEY_BACKUP_WORKERS = "backup.pipeline.workers";
+    
+    /**
+     * Maximum number of entries which have been scanned but not yet committed during a backup
+     */
+    public static String KEY_BACKUP_QUEUE_SIZE = "backup.pipeline.queue.size";
+    
+    /**
+     * Number of threads which rebuild the recovered files (-1 = number of processors, 0 = the files are recovered by the calling thread)
+     */
+    public static String KEY_RECOVERY_WORKERS = "recovery.workers";
+    
+    /**
+     * Maximum number of archive streams opened at the same time by the recovery threads
+     */
+    public static String KEY_RECOVERY_MAX_OPEN_STREAMS = "recovery.max.open.streams";
+    
+    /**
+     * Read the files directly from the archives during recovery (if supported by the medium), instead of making a local copy of the archives first
+     */
+    public static String KEY_RECOVERY_DIRECT_READ = "recovery.direct.read";
+    
+    /**
+     * Skip the pre-check of incremental backups : the backup is performed directly, and the archive is discarded at the end
+     * of the backup if no file has been created, modified or deleted (the source files are thus only scanned once)
+     */
+    public static String KEY_BACKUP_SINGLE_PASS = "backup.single.pass";
+    
     public static boolean DEF_SMTP_DEBUG = false;
     public static long DEF_MEMORY_BASE_KB = 4 * 1024;
     public static double DEF_MEMORY_BY_ENTRY_KB = 1.3;
@@ -195,6 +258,7 @@ extends FrameworkConfiguration {
     public static int DEF_DELTA_MIN_BUCKETSIZE = 1 * 1024;
     public static int DEF_DELTA_MAX_BUCKETSIZE = 1 * 1024 * 1024;
     public static int DEF_DELTA_TARGET_BUCKER_NUMBER = 100;
+    public static boolean DEF_DELTA_SIGNATURE_STORE = true;
     public static String DEF_FORCED_LOG_LOCATION = null;
     public static String DEF_FORCED_BIN_LOCATION = null;
     public static String DEF_FORCED_PLUGIN_LOCATION = null;
@@ -207,6 +271,17 @@ extends FrameworkConfiguration {
     public static long DEF_TRANSACTION_SIZE_KB = 50*1024;
     public static boolean DEF_NEW_VERSION_CHECK_DISPLAYED = true;
     public static boolean DEF_LOG_TARGET_PROPERTIES = true;
+    public static int DEF_MDT_DECODE_AHEAD_THRESHOLD = 32;
+    public static boolean DEF_MDT_INDEXED_FORMAT = true;
+    public static long DEF_MANIFEST_CACHE_BUDGET_KB = 8 * 1024;
+    public static String DEF_CACHE_EVICTION_POLICY = "lru";
+    public static long DEF_CACHE_VALIDATION_DELAY = 5000;
+    public static int DEF_BACKUP_WORKERS = 0;
+    public static int DEF_BACKUP_QUEUE_SIZE = 256;
+    public static int DEF_RECOVERY_WORKERS = -1;
+    public static int DEF_RECOVERY_MAX_OPEN_STREAMS = 64;
+    public static boolean DEF_RECOVERY_DIRECT_READ = true;
+    public static boolean DEF_BACKUP_SINGLE_PASS = false;
     
     public ArecaConfiguration() {
         super();
@@ -297,6 +372,10 @@ extends FrameworkConfiguration {
         return getProperty(KEY_DELTA_TARGET_BUCKER_NUMBER, DEF_DELTA_TARGET_BUCKER_NUMBER);
     }
     
+    public boolean isDeltaSignatureStore() {
+        return getProperty(KEY_DELTA_SIGNATURE_STORE, DEF_DELTA_SIGNATURE_STORE);
+    }
+    
     public int getRepositoryHDCacheDepth() {
         return getProperty(KEY_REPOSITORYACCESS_HD_CACHE_DEPTH, DEF_REPOSITORYACCESS_HD_CACHE_DEPTH);
     }
@@ -340,4 +419,48 @@ extends FrameworkConfiguration {
     public long getTransactionSize() {
         return getProperty(KEY_TRANSACTION_SIZE_KB, DEF_TRANSACTION_SIZE_KB);
     }
+    
+    public int getMetaDataDecodeAheadThreshold() {
+        return getProperty(KEY_MDT_DECODE_AHEAD_THRESHOLD, DEF_MDT_DECODE_AHEAD_THRESHOLD);
+    }
+    
+    public boolean isMetaDataIndexedFormat() {
+        return getProperty(KEY_MDT_INDEXED_FORMAT, DEF_MDT_INDEXED_FORMAT);
+    }
+    
+    public long getManifestCacheBudgetKB() {
+        return getProperty(KEY_MANIFEST_CACHE_BUDGET_KB, DEF_MANIFEST_CACHE_BUDGET_KB);
+    }
+    
+    public String getCacheEvictionPolicy() {
+        return getProperty(KEY_CACHE_EVICTION_POLICY, DEF_CACHE_EVICTION_POLICY);
+    }
+    
+    public long getCacheValidationDelay() {
+        return getProperty(KEY_CACHE_VALIDATION_DELAY, DEF_CACHE_VALIDATION_DELAY);
+    }
+    
+    public int getBackupWorkers() {
+        return getProperty(KEY_BACKUP_WORKERS, DEF_BACKUP_WORKERS);
+    }
+    
+    public int getBackupQueueSize() {
+        return getProperty(KEY_BACKUP_QUEUE_SIZE, DEF_BACKUP_QUEUE_SIZE);
+    }
+    
+    public int getRecoveryWorkers() {
+        return getProperty(KEY_RECOVERY_WORKERS, DEF_RECOVERY_WORKERS);
+    }
+    
+    public int getRecoveryMaxOpenStreams() {
+        return getProperty(KEY_RECOVERY_MAX_OPEN_STREAMS, DEF_RECOVERY_MAX_OPEN_STREAMS);
+    }
+    
+    public boolean isRecoveryDirectRead() {
+        return getProperty(KEY_RECOVERY_DIRECT_READ, DEF_RECOVERY_DIRECT_READ);
+    }
+    
+    public boolean isBackupSinglePass() {
+        return getProperty(KEY_BACKUP_SINGLE_PASS, DEF_BACKUP_SINGLE_PASS);
+    }
 }
@@ -78,6 +78,11 @@ public interface ArecaFileConstants {
 	 * Sequence files (for delta storage)
 	 */
 	public static final String SEQUENCE_FILE = "sequence";
+
+	/**
+	 * Index of the zip archive's central directory
+	 */
+	public static final String ZIP_INDEX_FILE = "zipindex";
 	
 	/**
 	 * Transaction points
@@ -0,0 +1,384 @@
+package com.application.areca;
+
+import java.util.LinkedList;
+
+import com.application.areca.context.ProcessContext;
+import com.myJava.util.log.Logger;
+import com.myJava.util.taskmonitor.TaskCancelledException;
+
+/**
+ * Staged backup process.
+ * <BR>- A scan thread reads the entries of the target and prepares their storage ("prepareStore").
+ * <BR>- N worker threads read, hash, delta-encode and compress the modified files ("storeData").
+ * <BR>- The calling thread commits the entries ("commitStore" : trace, content and hash entries) in the order of the scan.
+ * <BR>
+ * <BR>The scan returns the entries in the order defined by the FilePathComparator, and the prepare and commit steps
+ * are processed sequentially in this order, so the archive and its metadata are the same as with a sequential backup.
+ * <BR>The number of entries which have been scanned but not yet committed is bounded.
+ * <BR>If the medium doesn't support concurrent storage (single zip archive), the data are stored by the commit thread
+ * and no worker is started.
+ * <BR>Transaction points are saved by the scan thread once all scanned entries have been committed, so that the state of the context is consistent.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class BackupPipeline {
+	private static final int QUEUE_SIZE = Math.max(1, ArecaConfiguration.get().getBackupQueueSize());
+
+	private AbstractTarget target;
+	private ArchiveMedium medium;
+	private ProcessContext context;
+	private int nbWorkers;
+
+	private Object lock = new Object();
+	private LinkedList pending = new LinkedList(); // Entries which have been scanned but not committed yet (in the order of the scan)
+	private LinkedList toStore = new LinkedList(); // Entries whose data haven't been stored yet
+	private long scanned = 0;
+	private long committed = 0;
+	private boolean scanCompleted = false;
+	private boolean scannerWaiting = false;
+	private boolean committerWaiting = false;
+	private int idleWorkers = 0;
+	private Throwable error;
+
+	// Statistics
+	private Stage scanStage = new Stage("Scan");
+	private Stage storeStage = new Stage("Store");
+	private Stage commitStage = new Stage("Commit");
+
+	public BackupPipeline(AbstractTarget target, int nbWorkers, ProcessContext context) {
+		this.target = target;
+		this.medium = target.getMedium();
+		this.context = context;
+		this.nbWorkers = medium.isConcurrentStoreSupported() ? Math.max(1, nbWorkers) : 0;
+	}
+
+	/**
+	 * Process the backup. This method returns once all entries have been committed and all threads have been stopped.
+	 */
+	public void run() throws ApplicationException, TaskCancelledException {
+		long start = System.currentTimeMillis();
+		Thread[] threads = new Thread[nbWorkers + 1];
+		threads[0] = new Thread(new Scanner());
+		threads[0].setName("Backup scan : " + target.getName());
+		for (int i=1; i<threads.length; i++) {
+			threads[i] = new Thread(new Worker());
+			threads[i].setName("Backup worker #" + i + " : " + target.getName());
+		}
+		for (int i=0; i<threads.length; i++) {
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+
+		try {
+			commit();
+		} catch (Throwable e) {
+			fail(e);
+		}
+
+		// Wait for the other threads : no data shall be written once this method has returned (the archive may be rolled back)
+		for (int i=0; i<threads.length; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException ignored) {
+				}
+			}
+		}
+
+		if (error != null) {
+			throwError();
+		}
+		logStatistics(System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Commit the entries in the order of the scan
+	 */
+	private void commit() throws StoreException, ApplicationException, TaskCancelledException {
+		while (true) {
+			Task task;
+			long waitStart = System.currentTimeMillis();
+			synchronized (lock) {
+				while (error == null && (pending.isEmpty() ? ! scanCompleted : (nbWorkers != 0 && ! ((Task)pending.getFirst()).stored))) {
+					committerWaiting = true;
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						throw new ApplicationException("Interrupted while waiting for the backup workers.", e);
+					} finally {
+						committerWaiting = false;
+					}
+				}
+				if (error != null || pending.isEmpty()) {
+					return;
+				}
+				task = (Task)pending.getFirst();
+			}
+			commitStage.addWait(System.currentTimeMillis() - waitStart);
+
+			context.getInfoChannel().getTaskMonitor().checkTaskState();
+			if (nbWorkers == 0) {
+				storeData(task);
+			}
+
+			long start = System.currentTimeMillis();
+			context.incrementEntryIndex();
+			context.getInfoChannel().updateCurrentTask(context.getEntryIndex(), 0, task.entry.toString());
+			medium.commitStore(task.pendingEntry, context);
+			commitStage.add(0, System.currentTimeMillis() - start);
+
+			synchronized (lock) {
+				pending.removeFirst();
+				committed++;
+				if (scannerWaiting && (pending.size() <= QUEUE_SIZE / 2 || committed == scanned)) {
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	private void storeData(Task task) throws StoreException, ApplicationException, TaskCancelledException {
+		long start = System.currentTimeMillis();
+		long bytes = medium.storeData(task.pendingEntry, context);
+		storeStage.add(bytes, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Register the first error and stop all threads
+	 */
+	private void fail(Throwable e) {
+		synchronized (lock) {
+			if (error == null) {
+				error = e;
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void throwError() throws ApplicationException, TaskCancelledException {
+		if (error instanceof ApplicationException) {
+			throw (ApplicationException)error;
+		} else if (error instanceof TaskCancelledException) {
+			throw (TaskCancelledException)error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException)error;
+		} else if (error instanceof Error) {
+			throw (Error)error;
+		} else {
+			throw new ApplicationException(error);
+		}
+	}
+
+	/**
+	 * Add a scanned entry ; blocks while the queue is full.
+	 * <BR>Returns false if the backup has been stopped.
+	 */
+	private boolean enqueue(Task task) throws InterruptedException {
+		synchronized (lock) {
+			while (pending.size() >= QUEUE_SIZE && error == null) {
+				scannerWaiting = true;
+				try {
+					lock.wait();
+				} finally {
+					scannerWaiting = false;
+				}
+			}
+			if (error != null) {
+				return false;
+			}
+			pending.addLast(task);
+			scanned++;
+			if (nbWorkers != 0) {
+				toStore.addLast(task);
+			}
+			if (committerWaiting || idleWorkers != 0) {
+				lock.notifyAll();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Wait until all scanned entries have been committed.
+	 * <BR>Returns false if the backup has been stopped.
+	 */
+	private boolean waitForCommit() throws InterruptedException {
+		synchronized (lock) {
+			while (committed < scanned && error == null) {
+				scannerWaiting = true;
+				try {
+					lock.wait();
+				} finally {
+					scannerWaiting = false;
+				}
+			}
+			return error == null;
+		}
+	}
+
+	private void logStatistics(long duration) {
+		Logger.defaultLogger().info("Backup pipeline : " + nbWorkers + " worker(s) - " + committed + " entries processed in " + Utils.formatLong(duration) + " ms.");
+		scanStage.log(1);
+		storeStage.log(Math.max(1, nbWorkers));
+		commitStage.log(1);
+	}
+
+	/**
+	 * Directory-scan stage
+	 */
+	private class Scanner implements Runnable {
+		public void run() {
+			try {
+				while (true) {
+					// Transaction points are saved when the context is consistent : all scanned entries must have been committed
+					if (medium.isTransactionPointRequired(context)) {
+						long waitStart = System.currentTimeMillis();
+						if (! waitForCommit()) {
+							return;
+						}
+						scanStage.addWait(System.currentTimeMillis() - waitStart);
+						medium.handleTransactionPoint(context);
+					}
+
+					context.getInfoChannel().getTaskMonitor().checkTaskState();
+					long start = System.currentTimeMillis();
+					RecoveryEntry entry = target.nextElement(context);
+					if (entry == null) {
+						return;
+					}
+					if (target.filterEntryBeforeStore(entry)) {
+						Object pendingEntry = medium.prepareStore(entry, context);
+						scanStage.add(0, System.currentTimeMillis() - start);
+						if (pendingEntry != null) {
+							long waitStart = System.currentTimeMillis();
+							if (! enqueue(new Task(entry, pendingEntry))) {
+								return;
+							}
+							scanStage.addWait(System.currentTimeMillis() - waitStart);
+						}
+					}
+				}
+			} catch (Throwable e) {
+				fail(e);
+			} finally {
+				synchronized (lock) {
+					scanCompleted = true;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read / hash / delta / compress stage
+	 */
+	private class Worker implements Runnable {
+		public void run() {
+			try {
+				while (true) {
+					Task task;
+					long waitStart = System.currentTimeMillis();
+					synchronized (lock) {
+						while (toStore.isEmpty() && ! scanCompleted && error == null) {
+							idleWorkers++;
+							try {
+								lock.wait();
+							} finally {
+								idleWorkers--;
+							}
+						}
+						if (error != null || toStore.isEmpty()) {
+							return;
+						}
+						task = (Task)toStore.removeFirst();
+					}
+					storeStage.addWait(System.currentTimeMillis() - waitStart);
+
+					context.getInfoChannel().getTaskMonitor().checkTaskState();
+					storeData(task);
+
+					synchronized (lock) {
+						task.stored = true;
+						if (committerWaiting) {
+							lock.notifyAll();
+						}
+					}
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
+
+	private static class Task {
+		private RecoveryEntry entry;
+		private Object pendingEntry;
+		private boolean stored = false;
+
+		public Task(RecoveryEntry entry, Object pendingEntry) {
+			this.entry = entry;
+			this.pendingEntry = pendingEntry;
+		}
+	}
+
+	/**
+	 * Throughput statistics of a stage
+	 */
+	private static class Stage {
+		private String name;
+		private long entries;
+		private long bytes;
+		private long busy;
+		private long wait;
+
+		public Stage(String name) {
+			this.name = name;
+		}
+
+		public synchronized void add(long bytes, long duration) {
+			this.entries++;
+			this.bytes += bytes;
+			this.busy += duration;
+		}
+
+		public synchronized void addWait(long duration) {
+			this.wait += duration;
+		}
+
+		/**
+		 * "busy" and "wait" are cumulated over the threads of the stage
+		 */
+		public synchronized void log(int threads) {
+			long b = Math.max(1, busy / threads);
+			Logger.defaultLogger().info(
+					name + " : " 
+					+ entries + " entries (" + Utils.formatLong((long)(1000.0 * entries / b)) + " entries/second"
+					+ (bytes == 0 ? "" : ", " + Utils.formatLong((long)(1000.0 / 1024.0 * bytes / b)) + " kb/second")
+					+ ") - busy : " + Utils.formatLong(busy / threads) + " ms - waiting : " + Utils.formatLong(wait / threads) + " ms."
+			);
+		}
+	}
+}
@@ -50,6 +50,9 @@ public interface XMLTags {
     public static final String XML_TARGET_DESCRIPTION = "description";   
     public static final String XML_TARGET_FWD_PREPROC_ERRORS = "forward_preproc_errors";  
     public static final String XML_TARGET_CREATE_XML_SECURITY_COPY = "xml_security_copy";   
+    public static final String XML_TARGET_BACKUP_WORKERS = "backup_workers";
+    public static final String XML_TARGET_READ_BANDWIDTH = "read_bandwidth";
+    public static final String XML_TARGET_WRITE_BANDWIDTH = "write_bandwidth";
     
     public static final String XML_SOURCE = "source";
     public static final String XML_SOURCE_PATH = "path";
@@ -209,6 +209,21 @@ public class TargetXMLReader implements XMLTags {
 				target.setCreateSecurityCopyOnBackup(true);
 			}
 
+			Node backupWorkersNode = targetNode.getAttributes().getNamedItem(XML_TARGET_BACKUP_WORKERS);  
+			if (backupWorkersNode != null) {
+				target.setBackupWorkers(Integer.parseInt(backupWorkersNode.getNodeValue()));
+			}
+
+			Node readBandwidthNode = targetNode.getAttributes().getNamedItem(XML_TARGET_READ_BANDWIDTH);  
+			if (readBandwidthNode != null) {
+				target.setReadBandwidth(readBandwidthNode.getNodeValue());
+			}
+
+			Node writeBandwidthNode = targetNode.getAttributes().getNamedItem(XML_TARGET_WRITE_BANDWIDTH);  
+			if (writeBandwidthNode != null) {
+				target.setWriteBandwidth(writeBandwidthNode.getNodeValue());
+			}
+
 			Node fwdErrorsNode = targetNode.getAttributes().getNamedItem(XML_TARGET_FWD_PREPROC_ERRORS);  
 			if (fwdErrorsNode != null) {
 				target.getPreProcessors().setForwardErrors(Boolean.valueOf(fwdErrorsNode.getNodeValue()).booleanValue());
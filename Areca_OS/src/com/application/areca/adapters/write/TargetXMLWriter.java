@@ -107,6 +107,15 @@ public class TargetXMLWriter extends AbstractXMLWriter {
         sb.append(XMLTool.encodeProperty(XML_TARGET_TRACK_EMPTY_DIRS, tg.isTrackEmptyDirectories()));
         sb.append(XMLTool.encodeProperty(XML_TARGET_FOLLOW_SUBDIRECTORIES, tg.isFollowSubdirectories()));  
         sb.append(XMLTool.encodeProperty(XML_TARGET_CREATE_XML_SECURITY_COPY, tg.isCreateSecurityCopyOnBackup()));  
+        if (tg.getBackupWorkers() != FileSystemTarget.BACKUP_WORKERS_DEFAULT) {
+        	sb.append(XMLTool.encodeProperty(XML_TARGET_BACKUP_WORKERS, tg.getBackupWorkers()));
+        }
+        if (tg.getReadBandwidth() != null) {
+        	sb.append(XMLTool.encodeProperty(XML_TARGET_READ_BANDWIDTH, tg.getReadBandwidth()));
+        }
+        if (tg.getWriteBandwidth() != null) {
+        	sb.append(XMLTool.encodeProperty(XML_TARGET_WRITE_BANDWIDTH, tg.getWriteBandwidth()));
+        }
         sb.append(XMLTool.encodeProperty(XML_TARGET_NAME, tg.getName()));  
         sb.append(XMLTool.encodeProperty(XML_TARGET_FWD_PREPROC_ERRORS, tg.getPreProcessors().isForwardErrors())); 
         sb.append(XMLTool.encodeProperty(XML_TARGET_DESCRIPTION, tg.getComments()));
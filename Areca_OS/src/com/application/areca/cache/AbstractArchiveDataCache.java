@@ -1,11 +1,11 @@
 package com.application.areca.cache;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 
+import com.application.areca.ArecaConfiguration;
 import com.application.areca.impl.AbstractFileSystemMedium;
+import com.myJava.file.FileSystemManager;
+import com.myJava.util.log.Logger;
 
 /**
  * Abstract cache implementation.
@@ -13,6 +13,11 @@ import com.application.areca.impl.AbstractFileSystemMedium;
  * <BR>- FileSystemArchiveMedium
  * <BR>- File
  * <BR>
+ * <BR>The entries are distributed among several stripes (ArchiveDataMap) that have their own lock, so concurrent
+ * accesses to different entries don't block each other. Each stripe receives an equal share of the cache's budget.
+ * <BR>The validation stamps of the entries (file length and last modification date) are checked outside of the locks,
+ * at most once per validation delay.
+ * <BR>
  * @author Olivier PETRUCCI
  * <BR>
  *
@@ -39,57 +44,87 @@ This file is part of Areca.
 
  */
 public abstract class AbstractArchiveDataCache {
-    private Map dataByArchiveMedium = new HashMap();
+    private static final int STRIPES = 16;
+    private static final long VALIDATION_DELAY = ArecaConfiguration.get().getCacheValidationDelay();
+    private static final boolean LFU = "lfu".equalsIgnoreCase(ArecaConfiguration.get().getCacheEvictionPolicy());
+    
+    private ArchiveDataMap[] stripes = new ArchiveDataMap[STRIPES];
+    
+    /**
+     * Locks held while an entry is checked, loaded and put in the cache (one per stripe)
+     * <BR>They are distinct from the stripes' locks, so that the cache can be read while the data are loaded.
+     */
+    private Object[] loadLocks = new Object[STRIPES];
     
     private EvictionManager evictor;
     
-    public AbstractArchiveDataCache(EvictionManager evictor) {
+    /**
+     * Maximum size of the data (approximation, in bytes)
+     */
+    private long budget;
+    
+    public AbstractArchiveDataCache(EvictionManager evictor, long budget) {
+        this.budget = budget;
+        for (int i=0; i<STRIPES; i++) {
+            stripes[i] = new ArchiveDataMap(budget / STRIPES, LFU);
+            loadLocks[i] = new Object();
+        }
         evictor.registerCache(this);
         this.evictor = evictor;
     }
     
-    public ArchiveDataMap findOrCreateArchiveDataMap(AbstractFileSystemMedium medium) {
-        ArchiveDataMap dataMap = this.findArchiveDataMap(medium);
-        if (dataMap == null) {
-            dataMap = new ArchiveDataMap();
-            dataByArchiveMedium.put(medium, dataMap);
-            dataMap.registerUsage();
-        }
-        return dataMap;
+    private static int getStripeIndex(ArchiveDataMap.Key key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7FFFFFFF) % STRIPES;
     }
     
-    protected ArchiveDataMap findArchiveDataMap(AbstractFileSystemMedium medium) {
-        ArchiveDataMap dataMap = (ArchiveDataMap)this.dataByArchiveMedium.get(medium);
-        if (dataMap != null) {
-            dataMap.registerUsage();
-        }
-        return dataMap;
+    private ArchiveDataMap getStripe(ArchiveDataMap.Key key) {
+        return stripes[getStripeIndex(key)];
     }
     
-    public synchronized Object get(AbstractFileSystemMedium medium, File key) {
-        ArchiveDataMap map = this.findArchiveDataMap(medium);
-        Object returned = null;
-        if (map != null) {
-            returned = map.get(key);
+    /**
+     * Return the lock that must be held by the callers which check, load and put an entry,
+     * so that concurrent threads don't load the same data twice.
+     */
+    protected Object getLoadLock(AbstractFileSystemMedium medium, File key) {
+        return loadLocks[getStripeIndex(new ArchiveDataMap.Key(medium, key))];
+    }
+    
+    public Object get(AbstractFileSystemMedium medium, File key) {
+        ArchiveDataMap.Key k = new ArchiveDataMap.Key(medium, key);
+        ArchiveDataMap map = getStripe(k);
+        CachedData data = map.get(k);
+        if (data == null) {
+            return null;
         }
         
-        // Once the object has been retrieved in the cache, check that the memory is OK
-        evictor.gcIfNeeded();
-        
-        return returned;
+        // Lazy validation
+        long now = System.currentTimeMillis();
+        if (map.isValidationRequired(data, now, VALIDATION_DELAY)) {
+            if (data.isUpToDate(FileSystemManager.length(key), FileSystemManager.lastModified(key))) {
+                map.validated(data, now);
+            } else {
+                map.invalidate(k, data);
+                return null;
+            }
+        }
+        return data.getData();
     }
     
     /**
      * This method registers the object passed as argument in the cache associated to
      * the medium.
-     * <BR>Once the object has been referenced, it checks that the cache still can grow.
-     * <BR>If it still can grow, the method simply returns true (which means : "GC has not been called")
-     * <BR>If it cannot grow anymore, the method returns false (which means : "GC has been called")
+     * <BR>Once the object has been referenced, it checks that the memory usage is still acceptable.
+     * <BR>If it is, the method simply returns true (which means : "no eviction has been triggered")
+     * <BR>If it is not, the method returns false (which means : "entries have been evicted")
      * <BR>
-     * <BR>Note that, in both cases, the reference is added to the cache before GC is called.
+     * <BR>Note that, in both cases, the reference is added to the cache before the eviction.
      */
-    public synchronized boolean put(AbstractFileSystemMedium medium, File key, Object data, long approximateDataSize) {
-        this.findOrCreateArchiveDataMap(medium).put(key, data, approximateDataSize);
+    public boolean put(AbstractFileSystemMedium medium, File key, Object data, long approximateDataSize) {
+        ArchiveDataMap.Key k = new ArchiveDataMap.Key(medium, key);
+        CachedData cached = new CachedData(data, approximateDataSize, FileSystemManager.length(key), FileSystemManager.lastModified(key), System.currentTimeMillis());
+        getStripe(k).put(k, cached);
         
         // Once the object has been referenced in the cache, check that the memory is OK
         return evictor.gcIfNeeded();
@@ -99,49 +134,96 @@ public abstract class AbstractArchiveDataCache {
      * Remove an entry.
      * <BR>Return the removed entry
      */    
-    public synchronized Object remove(AbstractFileSystemMedium medium, File key) {
-        ArchiveDataMap map = this.findArchiveDataMap(medium);
-        if (map == null) {
-            return null;
-        } else {
-            return map.remove(key);
-        }
+    public Object remove(AbstractFileSystemMedium medium, File key) {
+        ArchiveDataMap.Key k = new ArchiveDataMap.Key(medium, key);
+        return getStripe(k).remove(k);
     }    
     
     /**
      * Clear the cache
      */
-    public synchronized void removeAllArchiveData() {
-        this.dataByArchiveMedium.clear();
+    public void removeAllArchiveData() {
+        for (int i=0; i<STRIPES; i++) {
+            stripes[i].clear();
+        }
     }
     
     /**
      * Clear all data for the medium passed as argument
      */
-    public synchronized void removeAllArchiveData(AbstractFileSystemMedium medium) {
-        this.dataByArchiveMedium.remove(medium);
+    public void removeAllArchiveData(AbstractFileSystemMedium medium) {
+        for (int i=0; i<STRIPES; i++) {
+            stripes[i].removeAll(medium);
+        }
     }
     
     /**
-     * Return the medium that has been the least accessed ...
+     * Evict entries until the size of the cache is lower or equal to the target size
      */
-    protected synchronized AbstractFileSystemMedium getLeastAccessedNonEmptyMapMedium() {
-        double minimum = Double.MAX_VALUE;
-        AbstractFileSystemMedium returnMedium = null;
-        
-        Iterator iter = this.dataByArchiveMedium.entrySet().iterator();
-        while (iter.hasNext() && minimum > 0) {
-            Map.Entry entry = (Map.Entry)iter.next();
-            ArchiveDataMap dataMap = (ArchiveDataMap)entry.getValue();
-            AbstractFileSystemMedium medium = (AbstractFileSystemMedium)entry.getKey();
-            double score = dataMap.computeScore();
-            
-            if (score < minimum && (! dataMap.isEmpty())) {
-                minimum = score;
-                returnMedium = medium;
-            }
+    public void shrink(long targetSize) {
+        for (int i=0; i<STRIPES; i++) {
+            stripes[i].shrink(targetSize / STRIPES);
         }
-        
-        return returnMedium;
     }
-}
\ No newline at end of file
+    
+    public long getBudget() {
+        return budget;
+    }
+    
+    public long getSizeApproximation() {
+        long ret = 0;
+        for (int i=0; i<STRIPES; i++) {
+            ret += stripes[i].getSizeApproximation();
+        }
+        return ret;
+    }
+    
+    public int getEntries() {
+        int ret = 0;
+        for (int i=0; i<STRIPES; i++) {
+            ret += stripes[i].getEntries();
+        }
+        return ret;
+    }
+    
+    public long getHits() {
+        long ret = 0;
+        for (int i=0; i<STRIPES; i++) {
+            ret += stripes[i].getHits();
+        }
+        return ret;
+    }
+    
+    public long getMisses() {
+        long ret = 0;
+        for (int i=0; i<STRIPES; i++) {
+            ret += stripes[i].getMisses();
+        }
+        return ret;
+    }
+    
+    public long getEvictions() {
+        long ret = 0;
+        for (int i=0; i<STRIPES; i++) {
+            ret += stripes[i].getEvictions();
+        }
+        return ret;
+    }
+    
+    public long getInvalidations() {
+        long ret = 0;
+        for (int i=0; i<STRIPES; i++) {
+            ret += stripes[i].getInvalidations();
+        }
+        return ret;
+    }
+    
+    public String getStatistics() {
+        return "entries=" + getEntries() + ", size=" + getSizeApproximation() + "/" + budget 
+        + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", invalidations=" + getInvalidations();
+    }
+    
+    public void logStatistics() {
+        Logger.defaultLogger().info(getClass().getName() + " : " + getStatistics());
+    }
+}
@@ -1,19 +1,20 @@
 package com.application.areca.cache;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import com.myJava.file.FileSystemManager;
+import com.application.areca.impl.AbstractFileSystemMedium;
 
 /**
- * Sorted cache of data for a given FileSystemArchiveMedium.
- * <BR>These data are indexed by File.
- * <BR>It counts the usage of each file and build an eviction strategy upon these statistics.
- * <BR>It checks that the underlying file key hasn't been modified since the caching of the data and refreshes its content if needed.
+ * One stripe of an AbstractArchiveDataCache.
+ * <BR>Contains instances of CachedData indexed by {medium, file}, in access order.
+ * <BR>The approximate size of the data is limited by a budget : once it is exceeded, entries are evicted one by one,
+ * starting with the least recently used ones (LRU) or with the least used ones among the oldest entries (LFU).
+ * <BR>It also counts the hits, misses and evictions of the stripe.
  * <BR>
- * <BR>This class is not synchronized. The caller must manage concurrent accesses.
+ * <BR>This class is synchronized : each stripe has its own lock.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -43,55 +44,91 @@ This file is part of Areca.
 public class ArchiveDataMap {
     
     /**
-     * <BR>Contains instances of CachedData indexed by File
+     * Number of entries (starting from the least recently used one) among which the LFU policy chooses the entry to evict
      */
-    private Map content;
+    private static final int LFU_SAMPLE = 8;
     
     /**
-     * Keeps a trace of the nr of accesses to this cache
+     * <BR>Contains instances of CachedData indexed by Key, in access order
      */
-    private long usageCount = 0;
+    private LinkedHashMap content = new LinkedHashMap(16, 0.75f, true);
     
     /**
      * Approximation of the global size of the data map
      */
     private long sizeApproximation = 0;
+    
+    /**
+     * Maximum size of the data map
+     */
+    private long budget;
+    
+    private boolean lfu;
+    
+    // Statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
 
-    public ArchiveDataMap() {
-        this.content = new HashMap();
+    public ArchiveDataMap(long budget, boolean lfu) {
+        this.budget = budget;
+        this.lfu = lfu;
     }
     
-    public Object get(File key) {
+    /**
+     * Return the cached entry (null if not found).
+     * <BR>The validation stamp is not checked.
+     */
+    public synchronized CachedData get(Key key) {
         CachedData data = (CachedData)this.content.get(key);
         if (data == null) {
-            return null;
+            misses++;
         } else {
-	        String currentHash = computeHash(key);
-	        if (currentHash.equals(data.getHash())) {
-	            return data.getData();
-	        } else {
-	            return null;
-	        }
+            hits++;
+            data.registerHit();
         }
+        return data;
     }
     
     /**
-     * Computes a score used by the eviction strategy 
+     * Tells whether the validation stamp of the entry must be checked (its last validation is older than "delay")
      */
-    public double computeScore() {
-        if (sizeApproximation == 0) {
-            return Double.MAX_VALUE; //             x / 0.0 = infinity !
-        } else {
-            return (1000000.0 * (double)usageCount) / ((double)sizeApproximation);
+    public synchronized boolean isValidationRequired(CachedData data, long date, long delay) {
+        return date - data.getLastValidation() >= delay;
+    }
+    
+    /**
+     * Register the date of the last successful validation of the entry
+     */
+    public synchronized void validated(CachedData data, long date) {
+        data.setLastValidation(date);
+    }
+    
+    /**
+     * Remove the entry if it is still the one passed as argument (its validation stamp is obsolete).
+     * <BR>The access is counted as a miss.
+     */
+    public synchronized void invalidate(Key key, CachedData data) {
+        if (this.content.get(key) == data) {
+            this.content.remove(key);
+            this.sizeApproximation -= data.getApproximateSize();
         }
+        invalidations++;
+        hits--;
+        misses++;
     }
     
-    public void put(File key, Object data, long approximateSize) {
-        this.content.put(key, new CachedData(computeHash(key), data, approximateSize));
-        this.sizeApproximation += approximateSize;
+    public synchronized void put(Key key, CachedData data) {
+        CachedData old = (CachedData)this.content.put(key, data);
+        if (old != null) {
+            this.sizeApproximation -= old.getApproximateSize();
+        }
+        this.sizeApproximation += data.getApproximateSize();
+        shrink(budget, key);
     }
     
-    public Object remove(File key) {
+    public synchronized Object remove(Key key) {
         CachedData data = (CachedData)this.content.remove(key);
         if (data == null) {
             return null;
@@ -101,30 +138,112 @@ public class ArchiveDataMap {
         }
     }
     
-    public Iterator keyIterator() {
-        return this.content.keySet().iterator();
-    } 
+    /**
+     * Remove all entries of the medium
+     */
+    public synchronized void removeAll(AbstractFileSystemMedium medium) {
+        Iterator iter = this.content.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry entry = (Map.Entry)iter.next();
+            if (((Key)entry.getKey()).medium == medium) {
+                this.sizeApproximation -= ((CachedData)entry.getValue()).getApproximateSize();
+                iter.remove();
+            }
+        }
+    }
     
     /**
-     * Clears the map's content but keeps the usage count.
+     * Evict entries until the size of the map is lower or equal to the target size
      */
-    public void clear() {
+    public synchronized void shrink(long targetSize) {
+        shrink(targetSize, null);
+    }
+    
+    private void shrink(long targetSize, Key protectedKey) {
+        while (sizeApproximation > targetSize && content.size() > (protectedKey == null ? 0 : 1)) {
+            Iterator iter = this.content.entrySet().iterator();
+            Map.Entry victim = null;
+            int scanned = 0;
+            while (iter.hasNext() && scanned < (lfu ? LFU_SAMPLE : 1)) {
+                Map.Entry entry = (Map.Entry)iter.next();
+                if (entry.getKey().equals(protectedKey)) {
+                    continue;
+                }
+                if (victim == null || ((CachedData)entry.getValue()).getHits() < ((CachedData)victim.getValue()).getHits()) {
+                    victim = entry;
+                }
+                scanned++;
+            }
+            this.content.remove(victim.getKey());
+            this.sizeApproximation -= ((CachedData)victim.getValue()).getApproximateSize();
+            evictions++;
+        }
+    }
+    
+    /**
+     * Clears the map's content but keeps the statistics.
+     */
+    public synchronized void clear() {
         this.content.clear();
         this.sizeApproximation = 0;
     }
     
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return content.isEmpty();
     }
     
-    /**
-     * Registers that the cache has been used
-     */
-    protected void registerUsage() {
-        this.usageCount++;
+    public synchronized int getEntries() {
+        return content.size();
+    }
+    
+    public synchronized long getSizeApproximation() {
+        return sizeApproximation;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
     }
     
-    private static String computeHash(File file) {
-        return "" + FileSystemManager.length(file) + "#" + FileSystemManager.lastModified(file);
+    /**
+     * Key of the cached data : {medium, file}
+     */
+    public static class Key {
+        private AbstractFileSystemMedium medium;
+        private File file;
+        private int hash;
+        
+        public Key(AbstractFileSystemMedium medium, File file) {
+            this.medium = medium;
+            this.file = file;
+            this.hash = 31 * medium.hashCode() + file.hashCode();
+        }
+        
+        public File getFile() {
+            return file;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)o;
+            return other.medium == medium && other.file.equals(file);
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package com.application.areca.cache;
 import java.io.File;
 
 import com.application.areca.ApplicationException;
+import com.application.areca.ArecaConfiguration;
 import com.application.areca.impl.AbstractFileSystemMedium;
 import com.application.areca.impl.AbstractIncrementalFileSystemMedium;
 import com.application.areca.metadata.manifest.Manifest;
@@ -45,26 +46,28 @@ public class ArchiveManifestCache extends AbstractArchiveDataCache {
     }
     
     private ArchiveManifestCache() {
-        super(EvictionManager.getInstance());
+        super(EvictionManager.getInstance(), ArecaConfiguration.get().getManifestCacheBudgetKB() * 1024);
     }
     
     /**
      * Returns the requested manifest
      */    
-    public synchronized Manifest getManifest(AbstractFileSystemMedium medium, File key) throws ApplicationException {
+    public Manifest getManifest(AbstractFileSystemMedium medium, File key) throws ApplicationException {
         if (medium == null || key == null) {
             return null;
         }
         
-        Manifest mf = (Manifest)this.get(medium, key);
-        if (mf == null) {
-            mf = ManifestManager.readManifestForArchive(medium, key);
-            if (mf != null) {
-                this.put(medium, key, mf, computeApproximateManifestSize(mf));
+        synchronized (getLoadLock(medium, key)) {
+            Manifest mf = (Manifest)this.get(medium, key);
+            if (mf == null) {
+                mf = ManifestManager.readManifestForArchive(medium, key);
+                if (mf != null) {
+                    this.put(medium, key, mf, computeApproximateManifestSize(mf));
+                }
             }
+            
+            return mf;
         }
-        
-        return mf;
     }
     
     private long computeApproximateManifestSize(Manifest mf) {
@@ -73,23 +76,25 @@ public class ArchiveManifestCache extends AbstractArchiveDataCache {
     
     /**
      * Init the data in cache.
-     * <BR>Returns true if the cache still can grow (ie if no gc has been required after having added the data)
+     * <BR>Returns true if no eviction has been required after having added the data
      */
-    public synchronized boolean init(AbstractFileSystemMedium medium, File key) throws ApplicationException {
+    public boolean init(AbstractFileSystemMedium medium, File key) throws ApplicationException {
         if (medium == null || key == null) {
             return true;
         }
         
-        Manifest mf = (Manifest)this.get(medium, key);
-        if (mf == null) {
-            mf = ManifestManager.readManifestForArchive((AbstractIncrementalFileSystemMedium)medium, key);
-            return this.put(medium, key, mf, computeApproximateManifestSize(mf));
-        } else {
-            return true;
+        synchronized (getLoadLock(medium, key)) {
+            Manifest mf = (Manifest)this.get(medium, key);
+            if (mf == null) {
+                mf = ManifestManager.readManifestForArchive((AbstractIncrementalFileSystemMedium)medium, key);
+                return this.put(medium, key, mf, computeApproximateManifestSize(mf));
+            } else {
+                return true;
+            }
         }
     }
     
-    public synchronized Manifest removeManifest(AbstractFileSystemMedium medium, File key) {
+    public Manifest removeManifest(AbstractFileSystemMedium medium, File key) {
         return (Manifest)this.remove(medium, key);
     } 
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.application.areca.cache;
 
 /**
  * Cache entry implementation for ArchiveDataMap class
+ * <BR>The length and last modification date of the file are kept as validation stamp : the entry is discarded if they change.
+ * <BR>The stamp is not checked on each access but once per validation delay.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -30,28 +32,58 @@ This file is part of Areca.
  */
 public class CachedData {
 
-    private String hash;
     private Object data;
     private long approximateSize = 0;
+    
+    /**
+     * Validation stamp
+     */
+    private long length;
+    private long lastModified;
+    
+    /**
+     * Date of the last validation of the stamp
+     */
+    private long lastValidation;
+    
+    /**
+     * Number of accesses (used by the LFU eviction policy)
+     */
+    private long hits = 0;
 
-    public CachedData(String hash, Object data, long approximateSize) {
-        this.hash = hash;
+    public CachedData(Object data, long approximateSize, long length, long lastModified, long validationDate) {
         this.data = data;
+        this.approximateSize = approximateSize;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.lastValidation = validationDate;
     }
     
     public Object getData() {
         return data;
     }
     
-    public String getHash() {
-        return hash;
-    }
-    
-    public boolean isUpToDate(String currentHash) {
-        return this.hash != null && this.hash.equals(currentHash);
+    public boolean isUpToDate(long currentLength, long currentLastModified) {
+        return this.length == currentLength && this.lastModified == currentLastModified;
     }
 
     public long getApproximateSize() {
         return approximateSize;
     }
+
+    public long getLastValidation() {
+        return lastValidation;
+    }
+
+    public void setLastValidation(long lastValidation) {
+        this.lastValidation = lastValidation;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+    
+    public void registerHit() {
+        this.hits++;
+    }
 }
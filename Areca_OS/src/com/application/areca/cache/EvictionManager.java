@@ -4,14 +4,15 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import com.application.areca.LogHelper;
 import com.application.areca.MemoryHelper;
-import com.application.areca.impl.AbstractFileSystemMedium;
 import com.myJava.system.OSTool;
 import com.myJava.util.log.Logger;
 
 /**
  * Eviction manager for ArchiveDataCache class
+ * <BR>Each cache limits its own size (budget). This class only handles memory shortages : the caches are
+ * shrunk (entry by entry, according to their eviction policy) instead of forcing VM garbage collections and
+ * clearing whole maps.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -39,7 +40,10 @@ This file is part of Areca.
 
  */
 public class EvictionManager {
-    private static final double TARGET_CACHE_MEMORY_USAGE_RATIO = 0.5;
+    /**
+     * Ratio applied to the size of the caches each time the memory usage exceeds the safety margin
+     */
+    private static final double SHRINK_RATIO = 0.5;
     
     private static EvictionManager instance = new EvictionManager();
     
@@ -56,90 +60,41 @@ public class EvictionManager {
         this.caches.add(cache);
     }
     
-    public synchronized boolean gcIfNeeded() {    	
+    /**
+     * Shrinks the caches if the memory usage is too high.
+     * <BR>Returns false if entries have been evicted.
+     */
+    public boolean gcIfNeeded() {    	
         if (! canGrow(1 - MemoryHelper.getMemorySafetyMargin())) {
-            this.gc();
+            this.evict();
             return false;
         } else {
             return true;
         }
     }
     
-    private static final boolean TH_DUMP = false;
-    
     /**
-     * Clears data caches until the memory usage is below the target memory ratio.
+     * Evicts the least valuable entries of each cache.
      */
-    private synchronized void gc() {
-        Logger.defaultLogger().info("GC started : Memory usage = " + OSTool.getMemoryUsage(), this.getClass().getName());
-        
-        while (! canGrow(TARGET_CACHE_MEMORY_USAGE_RATIO)) {
-            //Logger.defaultLogger().info("Performing a VM garbage collect.", this.getClass().getName());
-            Runtime.getRuntime().gc(); // First try : standard VM gc ...
-            
-            if (! canGrow(TARGET_CACHE_MEMORY_USAGE_RATIO)) {
-                Logger.defaultLogger().info("Performing a cache eviction.", this.getClass().getName());
-                
-                if (TH_DUMP) {
-                	LogHelper.logThreadInformations();
-                }
-                
-                if (! freeSomeMemory()) {
-                    break;
-                }
-            }
+    private synchronized void evict() {
+        if (canGrow(1 - MemoryHelper.getMemorySafetyMargin())) {
+            // Another thread has already freed some memory
+            return;
         }
+        Logger.defaultLogger().info("Cache eviction started : Memory usage = " + OSTool.getMemoryUsage(), this.getClass().getName());
         
-        Logger.defaultLogger().info("GC terminated : Memory usage = " + OSTool.getMemoryUsage(), this.getClass().getName());
-    }
-    
-    /**
-     * Frees memory by destroying some cached data
-     * <BR>Returns :
-     * <BR>- True if data has been successfully destroyed
-     * <BR>- False if no destroyable data has been found
-     */
-    private boolean freeSomeMemory() {
         Iterator iter = this.caches.iterator();
-        double candidateScore = Double.MAX_VALUE;
-        AbstractArchiveDataCache candidateCache = null;
-        AbstractFileSystemMedium candidateMedium = null;
-        
-        // Finds the {cache, medium} pair with the least score
-        while (iter.hasNext() && candidateScore > 0) {
+        while (iter.hasNext()) {
             AbstractArchiveDataCache cache = (AbstractArchiveDataCache)iter.next();
-            AbstractFileSystemMedium medium = cache.getLeastAccessedNonEmptyMapMedium();
-            
-            if (medium != null) {
-	            double score = cache.findArchiveDataMap(medium).computeScore();
-	            //Logger.defaultLogger().info("      > candidate cache : " + cache.getClass().getName() + " - medium : " + medium.getDescription() + " - Score = " + score);
-	            if (score < candidateScore) {
-	                candidateScore = score;
-	                candidateCache = cache;
-	                candidateMedium = medium;
-	            }
-            } else {
-                Logger.defaultLogger().info("      (No candidate data in cache : " + cache.getClass().getName() + ")");
-            }
-        }
-
-        // Clear this {cache, medium} pair
-        if (candidateMedium != null) {
-            Logger.defaultLogger().info("Cleaning the cache : " + candidateCache.getClass().getName() + " - for medium : " + candidateMedium.getDescription() + " - Score = " + candidateScore);
-            ArchiveDataMap mapToClear = candidateCache.findArchiveDataMap(candidateMedium);
-            mapToClear.clear();
-            return true;
-        } else {
-            Logger.defaultLogger().info("No more data to clean in caches.");
-            return false; // No more maps to clear : exit gc
+            cache.shrink((long)(cache.getSizeApproximation() * SHRINK_RATIO));
+            cache.logStatistics();
         }
     }
     
     /**
      * Tells wether there is enough physical memory to let the cache grow.
-     * <BR>This decision is based on the cache's memoryRatio attribute.
      */
-    private synchronized boolean canGrow(double memoryRatio) {
+    private boolean canGrow(double memoryRatio) {
         return OSTool.getMemoryUsage() < memoryRatio * OSTool.getMaxMemory();
     }
 }
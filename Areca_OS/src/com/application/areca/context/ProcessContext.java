@@ -10,11 +10,13 @@ import java.util.List;
 
 import com.application.areca.AbstractTarget;
 import com.application.areca.UserInformationChannel;
+import com.application.areca.impl.handler.SignatureStore;
 import com.application.areca.impl.tools.RecoveryFilterMap;
 import com.application.areca.metadata.content.ArchiveContentAdapter;
 import com.application.areca.metadata.content.ContentFileIterator;
 import com.application.areca.metadata.manifest.Manifest;
 import com.application.areca.metadata.trace.ArchiveTraceAdapter;
+import com.application.areca.metadata.trace.TraceChangeDetector;
 import com.application.areca.metadata.trace.TraceFileIterator;
 import com.application.areca.metadata.transaction.TransactionPoint;
 import com.myJava.file.FileSystemManager;
@@ -83,6 +85,12 @@ public class ProcessContext implements Externalizable {
      */
     protected TraceFileIterator referenceTrace;
     
+    /**
+     * Single pass backups : the pre-check is replaced by a comparison of the committed entries with the reference trace
+     */
+    protected boolean singlePassBackup;
+    protected TraceChangeDetector changeDetector;
+    
     /**
      * Archive writer
      */
@@ -168,6 +176,11 @@ public class ProcessContext implements Externalizable {
      * Iterator used by delta handlers to locate the HashSequence
      */
     protected ArrayList contentIterators = new ArrayList();
+    
+    /**
+     * Signature store used by delta handlers to locate the HashSequence (null if the sequence files are read instead)
+     */
+    protected SignatureStore signatureStore;
 
     protected MeteredOutputStreamListener outputStreamListener = new MeteredOutputStreamListener();
 
@@ -214,10 +227,12 @@ public class ProcessContext implements Externalizable {
 		//List uncheckedRecoveredFiles = new ArrayList(); -> Not used during backup
 		//List unrecoveredFiles = new ArrayList(); -> Not used during backup
 		//out.writeObject(contentIterators);  -> Ignored because these iterators are already closed by the "rollback" method
+		//signatureStore -> Reopened (and its uncommitted entries rebuilt from the transaction point) by the delta handler
 		//out.writeObject(recoveryDestination); -> Not used during backup
 		//filesByArchive
 		//detailedRecoveryErrors
 		//traceFile
+		//singlePassBackup / changeDetector -> Resumed backups are always committed
 		
 		// Initialized afterwards
 	    //ArchiveTraceAdapter traceAdapter;
@@ -255,8 +270,11 @@ public class ProcessContext implements Externalizable {
         this.sequenceAdapter = null;
         this.isInitialized = false;
         this.referenceTrace = null;
+        this.singlePassBackup = false;
+        this.changeDetector = null;
         this.traceAdapter = null;
         this.contentIterators.clear();
+        this.signatureStore = null;
         this.invalidRecoveredFiles.clear();
         this.uncheckedRecoveredFiles.clear();
         this.unrecoveredFiles.clear();
@@ -373,6 +391,14 @@ public class ProcessContext implements Externalizable {
 		this.sequenceAdapter = sequenceAdapter;
 	}
 
+	public SignatureStore getSignatureStore() {
+		return signatureStore;
+	}
+
+	public void setSignatureStore(SignatureStore signatureStore) {
+		this.signatureStore = signatureStore;
+	}
+
 	public File getCurrentArchiveFile() {
         return currentArchiveFile;
     }
@@ -408,6 +434,22 @@ public class ProcessContext implements Externalizable {
 		this.referenceTrace = referenceTrace;
 	}
 
+	public boolean isSinglePassBackup() {
+		return singlePassBackup;
+	}
+
+	public void setSinglePassBackup(boolean singlePassBackup) {
+		this.singlePassBackup = singlePassBackup;
+	}
+
+	public TraceChangeDetector getChangeDetector() {
+		return changeDetector;
+	}
+
+	public void setChangeDetector(TraceChangeDetector changeDetector) {
+		this.changeDetector = changeDetector;
+	}
+
 	public ArchiveContentAdapter getHashAdapter() {
 		return hashAdapter;
 	}
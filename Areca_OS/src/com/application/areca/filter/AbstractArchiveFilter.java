@@ -1,5 +1,6 @@
 package com.application.areca.filter;
 
+import com.myJava.file.FileSnapshot;
 
 /**
  * Filter base class
@@ -49,4 +50,18 @@ public abstract class AbstractArchiveFilter implements ArchiveFilter {
     public boolean checkParameters() {
     	return true;
 	}
+    
+    /**
+     * Default implementation : the snapshot's file is checked
+     */
+    public boolean acceptIteration(FileSnapshot snapshot) {
+    	return acceptIteration(snapshot.getFile());
+    }
+    
+    /**
+     * Default implementation : the snapshot's file is checked
+     */
+    public boolean acceptStorage(FileSnapshot snapshot) {
+    	return acceptStorage(snapshot.getFile());
+    }
 }
@@ -3,6 +3,7 @@ package com.application.areca.filter;
 import java.io.File;
 import java.io.Serializable;
 
+import com.myJava.file.FileSnapshot;
 import com.myJava.object.Duplicable;
 
 /**
@@ -40,6 +41,16 @@ extends Duplicable, Serializable {
     
     public boolean acceptStorage(File f);
     
+    /**
+     * Same as acceptIteration(File), based on the snapshot of the file
+     */
+    public boolean acceptIteration(FileSnapshot snapshot);
+    
+    /**
+     * Same as acceptStorage(File), based on the snapshot of the file
+     */
+    public boolean acceptStorage(FileSnapshot snapshot);
+    
     public boolean isLogicalNot();
     
     public void setLogicalNot(boolean logicalNot);
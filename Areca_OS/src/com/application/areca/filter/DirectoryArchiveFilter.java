@@ -3,6 +3,7 @@ package com.application.areca.filter;
 import java.io.File;
 
 import com.application.areca.Utils;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.object.Duplicable;
 import com.myJava.object.EqualsHelper;
@@ -59,12 +60,22 @@ public class DirectoryArchiveFilter extends AbstractArchiveFilter {
         return acceptStorage(entry);
     }
     
+	public boolean acceptIteration(FileSnapshot entry) {
+        return acceptStorage(entry);
+    }
+    
     /**
      */
     public boolean acceptStorage(File entry) {  
-        if (entry == null) {
-            return false;
-        } else if (FileSystemManager.isFile(entry)) {
+        return entry != null && accept(entry, FileSystemManager.isFile(entry));
+    }
+    
+    public boolean acceptStorage(FileSnapshot entry) {  
+        return accept(entry.getFile(), entry.isFile());
+    }
+    
+    private boolean accept(File entry, boolean isFile) {  
+        if (isFile) {
             return contains(directory, entry) ? ! logicalNot : logicalNot;
         } else {
             if (contains(directory, entry)) {
@@ -5,6 +5,7 @@ import java.util.GregorianCalendar;
 import java.util.StringTokenizer;
 
 import com.application.areca.Utils;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.object.Duplicable;
 import com.myJava.object.EqualsHelper;
@@ -91,21 +92,25 @@ public class FileDateArchiveFilter extends AbstractArchiveFilter {
     }
     
     public boolean acceptStorage(File entry) {   
-        if (entry == null) {
-            return false;
-        } else {         
-            boolean value;
-            if (FileSystemManager.lastModified(entry) > minDate) {
-                value = greaterThan;
-            } else {
-                value = ! greaterThan;
-            }
-            
-            if (logicalNot) {
-                return ! value;
-            } else {
-                return value;
-            }
+        return entry != null && accept(FileSystemManager.lastModified(entry));
+    }
+    
+    public boolean acceptStorage(FileSnapshot entry) {   
+        return accept(entry.getLastModified());
+    }
+    
+    private boolean accept(long lastModified) {   
+        boolean value;
+        if (lastModified > minDate) {
+            value = greaterThan;
+        } else {
+            value = ! greaterThan;
+        }
+
+        if (logicalNot) {
+            return ! value;
+        } else {
+            return value;
         }
     }
     
@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.StringTokenizer;
 
 import com.application.areca.Utils;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.object.Duplicable;
 import com.myJava.object.EqualsHelper;
@@ -108,20 +109,24 @@ public class FileExtensionArchiveFilter extends AbstractArchiveFilter {
     }
     
     public boolean acceptStorage(File entry) {
-        if (entry == null) {
-            return false;
+        return entry != null && accept(entry, FileSystemManager.isDirectory(entry));
+    }
+    
+    public boolean acceptStorage(FileSnapshot entry) {
+        return accept(entry.getFile(), entry.isDirectory());
+    }
+    
+    private boolean accept(File entry, boolean isDirectory) {
+        if (isDirectory) {
+            return true;
         } else {
-            if (FileSystemManager.isDirectory(entry)) {
-                return true;
-            } else {
-		        Iterator iter = this.extensions.iterator();
-		        while (iter.hasNext()) {
-		            if (checkExtension(FileSystemManager.getName(entry), (String)iter.next())) {
-		                return ! logicalNot;
-		            }
-		        }
-		        return logicalNot;
-            }
+	        Iterator iter = this.extensions.iterator();
+	        while (iter.hasNext()) {
+	            if (checkExtension(FileSystemManager.getName(entry), (String)iter.next())) {
+	                return ! logicalNot;
+	            }
+	        }
+	        return logicalNot;
         }
     }
     
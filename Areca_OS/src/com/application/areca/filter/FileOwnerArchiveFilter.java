@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 
 import com.application.areca.Utils;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.metadata.FileMetaData;
 import com.myJava.file.metadata.posix.PosixMetaData;
@@ -70,6 +71,10 @@ public class FileOwnerArchiveFilter extends AbstractArchiveFilter {
 		return acceptStorage(entry);
 	}
 
+	public boolean acceptIteration(FileSnapshot entry) {
+		return acceptStorage(entry);
+	}
+
 	public void setOwner(String owner) {
 		this.owner = owner;
 	}
@@ -92,15 +97,12 @@ public class FileOwnerArchiveFilter extends AbstractArchiveFilter {
 		} else {
 			try {
 				FileMetaData atts = FileSystemManager.getMetaData(entry, true);
-				boolean match;
 				if (atts instanceof PosixMetaData) {
 					PosixMetaData pmtd = (PosixMetaData)atts;
-					match = (owner == null || owner.equals(pmtd.getOwner()));
-					match = match && (group == null || group.equals(pmtd.getGroup()));
+					return accept(pmtd.getOwner(), pmtd.getGroup());
 				} else {
-					match = true;
+					return ! logicalNot;
 				}
-				return match ? !logicalNot : logicalNot;
 			} catch (IOException e) {
 				String msg = "Error reading file permissions for "+ FileSystemManager.getAbsolutePath(entry);
 				Logger.defaultLogger().info(msg);
@@ -109,6 +111,23 @@ public class FileOwnerArchiveFilter extends AbstractArchiveFilter {
 		}
 	}
 
+	/**
+	 * The owner and group are read from the snapshot if it holds them
+	 */
+	public boolean acceptStorage(FileSnapshot entry) {
+		if (entry.hasPermissions()) {
+			return accept(entry.getOwner(), entry.getGroup());
+		} else {
+			return acceptStorage(entry.getFile());
+		}
+	}
+
+	private boolean accept(String fileOwner, String fileGroup) {
+		boolean match = (owner == null || owner.equals(fileOwner));
+		match = match && (group == null || group.equals(fileGroup));
+		return match ? !logicalNot : logicalNot;
+	}
+
 	public Duplicable duplicate() {
 		FileOwnerArchiveFilter filter = new FileOwnerArchiveFilter();
 		filter.logicalNot = this.logicalNot;
@@ -3,6 +3,7 @@ package com.application.areca.filter;
 import java.io.File;
 
 import com.application.areca.Utils;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.object.Duplicable;
 import com.myJava.object.EqualsHelper;
@@ -68,23 +69,31 @@ public class FileSizeArchiveFilter extends AbstractArchiveFilter {
         if (entry == null) {
             return false;
         } else if (FileSystemManager.isFile(entry)) {
-            boolean value;
-            if (FileSystemManager.length(entry) > maxSize) {
-                value = greaterThan;
-            } else {
-                value = ! greaterThan;
-            }
-            
-            if (logicalNot) {
-                return ! value;
-            } else {
-                return value;
-            }
+            return accept(FileSystemManager.length(entry));
         } else {
             return true;
         }
     }
     
+    public boolean acceptStorage(FileSnapshot entry) {   
+        return entry.isFile() ? accept(entry.getLength()) : true;
+    }
+    
+    private boolean accept(long length) {   
+        boolean value;
+        if (length > maxSize) {
+            value = greaterThan;
+        } else {
+            value = ! greaterThan;
+        }
+
+        if (logicalNot) {
+            return ! value;
+        } else {
+            return value;
+        }
+    }
+    
     public Duplicable duplicate() {
         FileSizeArchiveFilter filter = new FileSizeArchiveFilter();
         filter.logicalNot = this.logicalNot;
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.iterator.FileSystemIteratorFilter;
 import com.myJava.object.Duplicable;
 import com.myJava.object.EqualsHelper;
@@ -74,37 +75,43 @@ implements ArchiveFilter, FileSystemIteratorFilter, Serializable {
      * Accepts (or refuses) an entry
      */         
     public boolean acceptIteration(File entry) {
-        boolean matchFilter;
-        
-        Iterator iter = this.getFilterIterator();
-        if (this.isAnd()) {
-            // AND
-            matchFilter = true;
-            while (iter.hasNext()) {
-                ArchiveFilter filter = (ArchiveFilter)iter.next();
-                if (! filter.acceptIteration(entry)) {
-                    matchFilter = false;
-                    break;
-                }
-            }
-        } else {
-            // OR
-            matchFilter = false;            
-            while (iter.hasNext()) {
-                ArchiveFilter filter = (ArchiveFilter)iter.next();
-                if (filter.acceptIteration(entry)) {
-                    matchFilter = true;
-                    break;
-                }
-            }
-        }
-        return isExclude ? ! matchFilter : matchFilter;
+        return accept(entry, null, true);
+    }
+    
+    /**
+     * Accepts (or refuses) an entry
+     */         
+    public boolean acceptIteration(FileSnapshot entry) {
+        return accept(entry.getFile(), entry, true);
     }
     
     /**
      * Accepts (or refuses) an entry
      */         
     public boolean acceptStorage(File entry) {
+        return accept(entry, null, false);
+    }
+    
+    /**
+     * Accepts (or refuses) an entry
+     */         
+    public boolean acceptStorage(FileSnapshot entry) {
+        return accept(entry.getFile(), entry, false);
+    }
+    
+    public boolean acceptElement(File element) {
+    	return this.acceptStorage(element);
+	}
+    
+    public boolean acceptElement(FileSnapshot element) {
+    	return this.acceptStorage(element);
+	}
+    
+    /**
+     * Applies the filters to the entry.
+     * <BR>The snapshot is used by the filters if it is not null.
+     */
+    private boolean accept(File entry, FileSnapshot snapshot, boolean iteration) {
         boolean matchFilter;
         
         Iterator iter = this.getFilterIterator();
@@ -113,7 +120,7 @@ implements ArchiveFilter, FileSystemIteratorFilter, Serializable {
             matchFilter = true;
             while (iter.hasNext()) {
                 ArchiveFilter filter = (ArchiveFilter)iter.next();
-                if (! filter.acceptStorage(entry)) {
+                if (! accept(filter, entry, snapshot, iteration)) {
                     matchFilter = false;
                     break;
                 }
@@ -123,7 +130,7 @@ implements ArchiveFilter, FileSystemIteratorFilter, Serializable {
             matchFilter = false;            
             while (iter.hasNext()) {
                 ArchiveFilter filter = (ArchiveFilter)iter.next();
-                if (filter.acceptStorage(entry)) {
+                if (accept(filter, entry, snapshot, iteration)) {
                     matchFilter = true;
                     break;
                 }
@@ -132,9 +139,13 @@ implements ArchiveFilter, FileSystemIteratorFilter, Serializable {
         return isExclude ? ! matchFilter : matchFilter;
     }
     
-    public boolean acceptElement(File element) {
-    	return this.acceptStorage(element);
-	}
+    private static boolean accept(ArchiveFilter filter, File entry, FileSnapshot snapshot, boolean iteration) {
+        if (iteration) {
+            return snapshot == null ? filter.acceptIteration(entry) : filter.acceptIteration(snapshot);
+        } else {
+            return snapshot == null ? filter.acceptStorage(entry) : filter.acceptStorage(snapshot);
+        }
+    }
     
     public void remove(ArchiveFilter filter) {
         this.filters.remove(filter);
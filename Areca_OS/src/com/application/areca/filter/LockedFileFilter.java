@@ -3,6 +3,7 @@ package com.application.areca.filter;
 import java.io.File;
 import java.io.IOException;
 
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.ReadableCheckResult;
 import com.myJava.file.metadata.FileMetaDataAccessor;
@@ -58,37 +59,49 @@ public class LockedFileFilter extends AbstractArchiveFilter {
             return false;
         } else if (FileSystemManager.isDirectory(entry)) {
             return true;
+        } else if (! FileSystemManager.exists(entry)) {
+        	return accept(entry, false, FileMetaDataAccessor.TYPE_FILE);
         } else {
-        	if (! FileSystemManager.exists(entry)) { // dangling links are accepted 
-    		    Logger.defaultLogger().warn("The following file is a dangling link : " + FileSystemManager.getAbsolutePath(entry));
-        		return logicalNot;
-        	} else {
-        		short type;
-				try {
-					type = FileSystemManager.getType(entry);
-				} catch (IOException e) {
-					Logger.defaultLogger().error("Error reading attributes for " + entry.getAbsolutePath(), e);
-					throw new IllegalArgumentException("Error reading attributes for " + entry.getAbsolutePath(), e);
-				}
-        		if (type == FileMetaDataAccessor.TYPE_PIPE) {
-        			return logicalNot;  
-        		} else {
-	        		ReadableCheckResult res = FileSystemManager.isReadable(entry);
-	
-	        		if (res.isReadable()) {       		    
-	        			return logicalNot;                
-	        		} else {
-	        		    Logger.defaultLogger().warn("The following file is locked by the system : " + FileSystemManager.getAbsolutePath(entry));
-	        		    if (res.getCause() != null) {
-	        		        Logger.defaultLogger().info("Cause : " + res.getCause());
-	        		    }
-	        			
-	        			return ! logicalNot;
-	        		}
-        		}
-        	}
+    		short type;
+			try {
+				type = FileSystemManager.getType(entry);
+			} catch (IOException e) {
+				Logger.defaultLogger().error("Error reading attributes for " + entry.getAbsolutePath(), e);
+				throw new IllegalArgumentException("Error reading attributes for " + entry.getAbsolutePath(), e);
+			}
+			return accept(entry, true, type);
         }
     }
+    
+    public boolean acceptStorage(FileSnapshot entry) {
+        if (entry.isDirectory()) {
+            return true;
+        } else {
+        	return accept(entry.getFile(), entry.exists(), entry.getType());
+        }
+    }
+    
+    private boolean accept(File entry, boolean exists, short type) {
+    	if (! exists) { // dangling links are accepted 
+		    Logger.defaultLogger().warn("The following file is a dangling link : " + FileSystemManager.getAbsolutePath(entry));
+    		return logicalNot;
+    	} else if (type == FileMetaDataAccessor.TYPE_PIPE) {
+    		return logicalNot;  
+    	} else {
+    		ReadableCheckResult res = FileSystemManager.isReadable(entry);
+
+    		if (res.isReadable()) {       		    
+    			return logicalNot;                
+    		} else {
+    		    Logger.defaultLogger().warn("The following file is locked by the system : " + FileSystemManager.getAbsolutePath(entry));
+    		    if (res.getCause() != null) {
+    		        Logger.defaultLogger().info("Cause : " + res.getCause());
+    		    }
+
+    			return ! logicalNot;
+    		}
+    	}
+    }
 
     public Duplicable duplicate() {
         LockedFileFilter filter = new LockedFileFilter();
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 
 import com.application.areca.ResourceManager;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.metadata.FileMetaDataAccessor;
 import com.myJava.object.Duplicable;
@@ -89,7 +90,10 @@ public class SpecialFileFilter extends AbstractArchiveFilter {
 	}
 
 	private boolean matchParameters(File entry) throws IOException {
-		short type = FileSystemManager.getType(entry);
+		return matchParameters(FileSystemManager.getType(entry));
+	}
+
+	private boolean matchParameters(short type) {
 		return 
 		(link && type == FileMetaDataAccessor.TYPE_LINK)
 		|| (pipe && type == FileMetaDataAccessor.TYPE_PIPE)				
@@ -106,6 +110,10 @@ public class SpecialFileFilter extends AbstractArchiveFilter {
 		return acceptStorage(entry);
 	}
 
+	public boolean acceptIteration(FileSnapshot entry) {
+		return acceptStorage(entry);
+	}
+
 	public boolean acceptStorage(File entry) {   
 		if (entry == null) {
 			return false;
@@ -123,6 +131,14 @@ public class SpecialFileFilter extends AbstractArchiveFilter {
 		}
 	}
 
+	public boolean acceptStorage(FileSnapshot entry) {   
+		if (matchParameters(entry.getType())) {
+			return ! logicalNot;
+		} else {
+			return logicalNot;
+		}
+	}
+
 	public Duplicable duplicate() {
 		SpecialFileFilter filter = new SpecialFileFilter();
 		filter.logicalNot = this.logicalNot;
@@ -183,14 +183,17 @@ implements TargetActions, IndicatorTypes {
 		}
 	}
 
+	public boolean isTransactionPointRequired(ProcessContext context) {
+		return 
+				this.checkResumeSupported() == null
+				&& (context.getOutputBytesInKB() - context.getTransactionBound()) >= getTransactionSize();
+	}
+
 	/**
 	 * Save a temporary transaction point
 	 */
 	public void handleTransactionPoint(ProcessContext context) throws ApplicationException {
-		if (
-				this.checkResumeSupported() == null
-				&& (context.getOutputBytesInKB() - context.getTransactionBound()) >= getTransactionSize()
-		) {
+		if (isTransactionPointRequired(context)) {
 			context.setTransactionBound(context.getOutputBytesInKB());
 			initTransactionPoint(context);
 		}
@@ -579,6 +582,10 @@ implements TargetActions, IndicatorTypes {
 		return true;
 	}
 
+	public boolean isSinglePassBackupSupported() {
+		return false;
+	}
+
 	public abstract File[] listArchives(GregorianCalendar fromDate, GregorianCalendar toDate, boolean committedOnly) throws ApplicationException;
 
 	public void setCompressionArguments(CompressionArguments compressionArguments) {
@@ -841,9 +848,10 @@ implements TargetActions, IndicatorTypes {
 
 	/**
 	 * Store the file in the archive referenced by the context
+	 * <BR>"handlerData" is the object returned by the handler's "prepareStore" method.
 	 */
 	protected abstract void storeFileInArchive(FileSystemRecoveryEntry entry,
-			InputStream in, ProcessContext context) throws IOException,
+			InputStream in, Object handlerData, ProcessContext context) throws IOException,
 			ApplicationException, TaskCancelledException;
 
 	/**
@@ -34,6 +34,7 @@ import com.application.areca.impl.copypolicy.AbstractCopyPolicy;
 import com.application.areca.impl.handler.ArchiveHandler;
 import com.application.areca.impl.handler.DeltaArchiveHandler;
 import com.application.areca.impl.handler.EntriesDispatcher;
+import com.application.areca.impl.policy.AbstractRemoteFileSystemPolicy;
 import com.application.areca.impl.policy.AccessInformations;
 import com.application.areca.impl.tools.ArchiveComparator;
 import com.application.areca.impl.tools.ArchiveNameFilter;
@@ -41,6 +42,7 @@ import com.application.areca.impl.tools.RecoveryFilterMap;
 import com.application.areca.metadata.AbstractMetaDataEntry;
 import com.application.areca.metadata.AbstractMetaDataFileIterator;
 import com.application.areca.metadata.FileList;
+import com.application.areca.metadata.MetaDataFileIteratorMerger;
 import com.application.areca.metadata.MetadataConstants;
 import com.application.areca.metadata.content.ArchiveContentAdapter;
 import com.application.areca.metadata.content.ArchiveContentManager;
@@ -55,6 +57,7 @@ import com.application.areca.metadata.trace.ArchiveTraceManager;
 import com.application.areca.metadata.trace.ArchiveTraceParser;
 import com.application.areca.metadata.trace.EntrySetTraceHandler;
 import com.application.areca.metadata.trace.RebuildOtherFilesTraceHandler;
+import com.application.areca.metadata.trace.TraceChangeDetector;
 import com.application.areca.metadata.trace.TraceEntry;
 import com.application.areca.metadata.trace.TraceFileIterator;
 import com.application.areca.metadata.trace.TraceMerger;
@@ -71,6 +74,9 @@ import com.myJava.file.FileList.FileListIterator;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.FileTool;
 import com.myJava.file.HashInputStreamListener;
+import com.myJava.file.ThrottledInputStream;
+import com.myJava.file.bandwidth.BandwidthGovernor;
+import com.myJava.file.bandwidth.BandwidthLimiter;
 import com.myJava.file.driver.FileSystemDriver;
 import com.myJava.file.driver.contenthash.ContentHashFileSystemDriver;
 import com.myJava.file.iterator.FilePathComparator;
@@ -121,6 +127,22 @@ implements TargetActions {
 		public TraceEntry entry;
 	}
 
+	/**
+	 * State of an entry between "prepareStore" and "commitStore"
+	 */
+	private static class PendingEntry {
+		public FileSystemRecoveryEntry entry;
+		public boolean file;
+		public boolean link;
+		public boolean modified;
+		public Object handlerData;
+		public byte[] hash;
+
+		public PendingEntry(FileSystemRecoveryEntry entry) {
+			this.entry = entry;
+		}
+	}
+
 	protected static final boolean DEBUG_MODE = ArecaConfiguration.get().isBackupDebug();
 	protected static final boolean CHECK_DEBUG_MODE = ArecaConfiguration.get().isCheckDebug();
 	protected static final boolean TH_MON_ENABLED = ArecaConfiguration.get().isThreadMonitorEnabled();
@@ -393,6 +415,7 @@ implements TargetActions {
 
 			// Convert the archive : commit
 			this.convertArchiveToFinal(context);
+			this.handler.archiveCommitted(context.getCurrentArchiveFile(), context);
 
 			// Once the archive is committed, we can do all the cleaning.
 
@@ -539,6 +562,37 @@ implements TargetActions {
 			ProcessContext context
 	) throws IOException, ApplicationException, TaskCancelledException;
 
+	/**
+	 * Bandwidth limit applied to the archives written by the target (global limit + target limit)
+	 * <BR>Returns null if there is no limit.
+	 */
+	protected BandwidthLimiter getArchiveOutputLimiter() {
+		return BandwidthGovernor.getInstance().getArchiveOutputLimiter(target.getUid(), target.getWriteBandwidth());
+	}
+
+	/**
+	 * Bandwidth limit applied to the source files read by the target (global limit + target limit)
+	 * <BR>Returns null if there is no limit.
+	 */
+	protected BandwidthLimiter getSourceInputLimiter() {
+		return BandwidthGovernor.getInstance().getSourceInputLimiter(target.getUid(), target.getReadBandwidth());
+	}
+
+	/**
+	 * Returns an ArchiveEntryReader which reads the entries of the archive passed as argument directly from the storage,
+	 * without local copy. The reader must be able to open several entries concurrently.
+	 * <BR>"entries" is the list of entries that will be recovered from this archive (null if none). The reader must also give access
+	 * to the posterior layers of the files which are recovered from previous archives.
+	 * <BR>Returns null if the medium can't read the entries directly : the handler must then call "ensureLocalCopy".
+	 */
+	public ArchiveEntryReader buildEntryReader(
+			File archive, 
+			FileList entries, 
+			ProcessContext context
+	) throws IOException, ApplicationException {
+		return null;
+	}
+
 	/**
 	 * Returns the length of the archive passed as argument if it can be computed.
 	 * <BR>Returns -1 otherwise (for instance if the file system driver is too slow to compute the size recursively)
@@ -904,6 +958,13 @@ implements TargetActions {
 					} 
 				}
 
+				// Single pass backup : the committed entries are compared with a distinct iterator on the reference trace
+				if (context.isSinglePassBackup()) {
+					context.setChangeDetector(new TraceChangeDetector(
+							context.getReferenceTrace() == null ? null : ArchiveTraceAdapter.buildIterator(context.getReferenceTrace().getSource())
+					));
+				}
+
 				// Set the manifest
 				if (manifest != null) {
 					context.setManifest(manifest);
@@ -1099,10 +1160,13 @@ implements TargetActions {
 								}
 							} finally {
 								try {
-									// Close the trace iterator
+									// Close the trace iterators
 									if (context.getReferenceTrace() != null) {
 										context.getReferenceTrace().close();
 									}
+									if (context.getChangeDetector() != null) {
+										context.getChangeDetector().close();
+									}
 								} finally {
 									try {
 										// Flush all remaining data
@@ -1207,11 +1271,11 @@ implements TargetActions {
 
 				if (result == 0) {
 					// Found among source files and in trace -> ok : check hash codes
-					if (FileSystemManager.isDirectory(fEntry.getFile())) {
+					if (fEntry.isDirectory()) {
 						// Directory
 						fEntry.setStatus(EntryStatus.STATUS_NOT_STORED);   
 					} else {
-						short type = FileSystemManager.getType(fEntry.getFile());
+						short type = fEntry.getFileType();
 						if (FileMetaDataAccessor.TYPE_PIPE == type) {
 							fEntry.setStatus(EntryStatus.STATUS_NOT_STORED);  
 						} else {
@@ -1239,7 +1303,7 @@ implements TargetActions {
 					// File found in source files but not found in trace -> new File
 					fEntry.setStatus(EntryStatus.STATUS_CREATED);
 
-					if (((FileSystemTarget)this.target).isTrackSymlinks() && FileMetaDataAccessor.TYPE_LINK == FileSystemManager.getType(fEntry.getFile())) {
+					if (((FileSystemTarget)this.target).isTrackSymlinks() && FileMetaDataAccessor.TYPE_LINK == fEntry.getFileType()) {
 						fEntry.setSize(0);
 					}
 
@@ -1265,71 +1329,190 @@ implements TargetActions {
 	 */
 	public void store(RecoveryEntry entry, final ProcessContext context) 
 	throws StoreException, ApplicationException, TaskCancelledException {	
+		Object pendingEntry = prepareStore(entry, context);
+		if (pendingEntry != null) {
+			storeData(pendingEntry, context);
+			commitStore(pendingEntry, context);
+		}
+	}
+
+	/**
+	 * The pre-check can be replaced by a comparison of the committed entries with the reference trace, 
+	 * unless the archive is an image (which is updated in place and thus can't be discarded)
+	 */
+	public boolean isSinglePassBackupSupported() {
+		return ! image;
+	}
+
+	/**
+	 * Tells whether the current backup contains changes (single pass backups only ; the other backups are always considered as modified)
+	 */
+	public boolean hasBackupChanges(ProcessContext context) throws ApplicationException {
+		TraceChangeDetector detector = context.getChangeDetector();
+		if (detector == null) {
+			return true;
+		}
+		try {
+			boolean changed = detector.hasChanges();
+			if (changed) {
+				Logger.defaultLogger().fine("First change detected : " + detector.getFirstChange());
+			}
+			return changed;
+		} catch (IOException e) {
+			Logger.defaultLogger().error(e);
+			throw new ApplicationException(e);
+		}
+	}
+
+	/**
+	 * Cancels the backup and destroys the archive, even if the backup could have been resumed.
+	 * <BR>Used when a single pass backup doesn't contain any change.
+	 */
+	public void discardBackup(ProcessContext context) throws ApplicationException {
+		try {
+			this.rollbackBackup(context);
+		} finally {
+			try {
+				if (context.getCurrentArchiveFile() != null) {
+					this.deleteArchive(context.getCurrentArchiveFile());
+					context.setCurrentArchiveFile(null);
+				}
+			} catch (IOException e) {
+				Logger.defaultLogger().error(e);
+				throw new ApplicationException(e);
+			}
+		}
+	}
+
+	/**
+	 * Only the content of the files is stored by "storeData" : the archive files are distinct and the handler 
+	 * only relies on the order of the entries in its "prepareStore" and "commitStore" methods.
+	 * <BR>Mediums which write all entries in a single stream must override this method.
+	 * <BR>The remote drivers (limited number of connections) and the repository access cache (CachedFileSystemDriver) can't be
+	 * used by concurrent threads : the entries are stored sequentially in this case.
+	 */
+	public boolean isConcurrentStoreSupported() {
+		if (this.fileSystemPolicy instanceof AbstractRemoteFileSystemPolicy) {
+			return false;
+		}
+		return ! ArecaConfiguration.get().isRepositoryHDCache();
+	}
+
+	/**
+	 * Checks whether the entry has been modified and prepares its storage
+	 */
+	public Object prepareStore(RecoveryEntry entry, ProcessContext context) 
+	throws StoreException, ApplicationException, TaskCancelledException {
 		if (TH_MON_ENABLED) {
 			ThreadMonitor.getInstance().notify(this.getTarget().getUid());
 		}
 
 		if (entry == null) {
-			return;
+			return null;
 		} else {
-			final FileSystemRecoveryEntry fEntry = (FileSystemRecoveryEntry)entry;
+			FileSystemRecoveryEntry fEntry = (FileSystemRecoveryEntry)entry;
+			PendingEntry pending = new PendingEntry(fEntry);
 			try {
-				short type = FileSystemManager.getType(fEntry.getFile());
-				if (
-						FileSystemManager.isFile(fEntry.getFile()) && (
-								(FileMetaDataAccessor.TYPE_LINK != type)
-								|| (! ((FileSystemTarget)this.target).isTrackSymlinks())
-						) && (FileMetaDataAccessor.TYPE_PIPE != type)
-				) {
-					// The entry is stored if it has been modified
-					if (this.checkModified(fEntry, context)) {
-						if (DEBUG_MODE) {
-							Logger.defaultLogger().fine("[" + FileSystemManager.getAbsolutePath(fEntry.getFile()) + "] : Backup in progress ...");
-						}
-
-						// Add a listener to the inputStream
-						final HashInputStreamListener listener = new HashInputStreamListener();
+				short type = fEntry.getFileType();
+				pending.link = (FileMetaDataAccessor.TYPE_LINK == type) && ((FileSystemTarget)this.target).isTrackSymlinks();
+				pending.file = 
+						fEntry.isFile() 
+						&& (! pending.link) 
+						&& (FileMetaDataAccessor.TYPE_PIPE != type);
+
+				// The entry is stored if it has been modified
+				if (pending.file && this.checkModified(fEntry, context)) {
+					pending.modified = true;
+					pending.handlerData = this.handler.prepareStore(fEntry, context);
+				}
+				return pending;
+			} catch (IOException e) {
+				Logger.defaultLogger().error(e);
+				throw new StoreException("Error during storage of " + entry.getKey() + " : " + e.getMessage(), e);
+			}
+		}
+	}
 
-						this.doAndRetry(new IOTask() {
-							public void run() throws IOException, TaskCancelledException, ApplicationException {
-								InputStream in = FileSystemManager.getFileInputStream(fEntry.getFile());
-								in = new EventInputStream(in, listener);
-								try {
-									listener.reset();
-								} catch (NoSuchAlgorithmException e) {
-									throw new ApplicationException(e);
-								}
-								storeFileInArchive(fEntry, in, context);
-							}
-						}, "An error occurred while storing " + fEntry.getKey());
+	/**
+	 * Stores the content of the entry (if it has been modified)
+	 */
+	public long storeData(Object pendingEntry, final ProcessContext context) 
+	throws StoreException, ApplicationException, TaskCancelledException {
+		final PendingEntry pending = (PendingEntry)pendingEntry;
+		final FileSystemRecoveryEntry fEntry = pending.entry;
+		if (! pending.modified) {
+			return 0;
+		}
+		
+		try {
+			if (DEBUG_MODE) {
+				Logger.defaultLogger().fine("[" + FileSystemManager.getAbsolutePath(fEntry.getFile()) + "] : Backup in progress ...");
+			}
 
-						context.addInputBytes(FileSystemManager.length(fEntry.getFile()));
-						context.getContentAdapter().writeContentEntry(fEntry);
-						context.getHashAdapter().writeHashEntry(fEntry, listener.getHash());
+			// Add a listener to the inputStream
+			final HashInputStreamListener listener = new HashInputStreamListener();
 
-						context.getReport().addSavedFile();
-					} else {
-						if (DEBUG_MODE) {
-							Logger.defaultLogger().fine("[" + FileSystemManager.getAbsolutePath(fEntry.getFile()) + "] : Unchanged.");
-						}
-						this.registerUnstoredFile(fEntry, context);
-						context.getReport().addIgnoredFile();
+			this.doAndRetry(new IOTask() {
+				public void run() throws IOException, TaskCancelledException, ApplicationException {
+					InputStream in = FileSystemManager.getFileInputStream(fEntry.getFile());
+					in = ThrottledInputStream.wrap(in, getSourceInputLimiter());
+					in = new EventInputStream(in, listener);
+					try {
+						listener.reset();
+					} catch (NoSuchAlgorithmException e) {
+						throw new ApplicationException(e);
 					}
+					storeFileInArchive(fEntry, in, pending.handlerData, context);
 				}
+			}, "An error occurred while storing " + fEntry.getKey());
+			
+			pending.hash = listener.getHash();
+			return fEntry.getSize();
+		} catch (IOException e) {
+			Logger.defaultLogger().error(e);
+			throw new StoreException("Error during storage of " + fEntry.getKey() + " : " + e.getMessage(), e);
+		} catch (NoSuchAlgorithmException e) {
+			Logger.defaultLogger().error(e);
+			throw new StoreException("Error during storage of " + fEntry.getKey() + " : " + e.getMessage(), e);
+		}
+	}
 
-				// Register the entry
-				context.getTraceAdapter().writeEntry(fEntry);
+	/**
+	 * Writes the metadata of the entry
+	 */
+	public void commitStore(Object pendingEntry, ProcessContext context) 
+	throws StoreException, ApplicationException, TaskCancelledException {
+		PendingEntry pending = (PendingEntry)pendingEntry;
+		FileSystemRecoveryEntry fEntry = pending.entry;
+		try {
+			if (pending.modified) {
+				this.handler.commitStore(fEntry, pending.handlerData, context);
+				
+				context.addInputBytes(FileSystemManager.length(fEntry.getFile()));
+				context.getContentAdapter().writeContentEntry(fEntry);
+				context.getHashAdapter().writeHashEntry(fEntry, pending.hash);
+
+				context.getReport().addSavedFile();
+			} else if (pending.file) {
+				if (DEBUG_MODE) {
+					Logger.defaultLogger().fine("[" + FileSystemManager.getAbsolutePath(fEntry.getFile()) + "] : Unchanged.");
+				}
+				this.registerUnstoredFile(fEntry, context);
+				context.getReport().addIgnoredFile();
+			}
 
-			} catch (IOException e) {
-				Logger.defaultLogger().error(e);
-				throw new StoreException("Error during storage of " + entry.getKey() + " : " + e.getMessage(), e);
-			} catch (NoSuchAlgorithmException e) {
-				Logger.defaultLogger().error(e);
-				throw new StoreException("Error during storage of " + entry.getKey() + " : " + e.getMessage(), e);
-			} catch (FileMetaDataSerializationException e) {
-				Logger.defaultLogger().error(e);
-				throw new StoreException("Error during storage of " + entry.getKey() + " : " + e.getMessage(), e);
+			// Register the entry
+			context.getTraceAdapter().writeEntry(fEntry);
+			if (context.getChangeDetector() != null) {
+				context.getChangeDetector().registerEntry(fEntry, pending.modified, pending.link);
 			}
+
+		} catch (IOException e) {
+			Logger.defaultLogger().error(e);
+			throw new StoreException("Error during storage of " + fEntry.getKey() + " : " + e.getMessage(), e);
+		} catch (FileMetaDataSerializationException e) {
+			Logger.defaultLogger().error(e);
+			throw new StoreException("Error during storage of " + fEntry.getKey() + " : " + e.getMessage(), e);
 		}
 	}
 
@@ -2395,20 +2578,13 @@ implements TargetActions {
 				}
 			}
 
+			MetaDataFileIteratorMerger iterator = new MetaDataFileIteratorMerger(contentIters);
 			String previousKey = null;
 			boolean shallStop = false;
 			while (! shallStop) {
 
 				// Look for minimum key
-				int minIndex = -1;
-				for (int i=recoveredFiles.length-1; i>=0; i--) {
-					if (contentIters[i].current() != null) {
-						int result = minIndex == -1 ? -1 : FilePathComparator.instance().compare(contentIters[i].current().getKey(), contentIters[minIndex].current().getKey());
-						if (result < 0) {
-							minIndex = i;
-						}
-					}
-				}
+				int minIndex = iterator.currentIndex();
 
 				// Nothing more to read
 				if (minIndex == -1) {
@@ -2454,7 +2630,7 @@ implements TargetActions {
 				}
 
 				// Fetch next entry
-				contentIters[minIndex].next();
+				iterator.next();
 				hashIters[minIndex].next();
 				if (handlerTarget != null) {
 					handlerIters[minIndex].next();					
@@ -0,0 +1,49 @@
+package com.application.areca.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read access to the files stored in an archive, or in a local copy of an archive.
+ * <BR>The entries are designated by their path relative to the archive's root.
+ * <BR>Streams on different entries can be opened and read by several threads at the same time.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public interface ArchiveEntryReader {
+	
+	/**
+	 * Tells whether a file is stored for this entry
+	 */
+	public boolean contains(String entry) throws IOException;
+	
+	/**
+	 * Opens a stream on the data of the entry
+	 */
+	public InputStream getInputStream(String entry) throws IOException;
+	
+	public void close() throws IOException;
+}
@@ -0,0 +1,63 @@
+package com.application.areca.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.myJava.file.FileSystemManager;
+
+/**
+ * ArchiveEntryReader on a directory : uncompressed archive or local copy of an archive.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DirectoryEntryReader implements ArchiveEntryReader {
+	private File directory;
+
+	public DirectoryEntryReader(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public File getFile(String entry) {
+		return new File(directory, entry);
+	}
+
+	public boolean contains(String entry) throws IOException {
+		File f = getFile(entry);
+		return FileSystemManager.exists(f) && FileSystemManager.isFile(f);
+	}
+
+	public InputStream getInputStream(String entry) throws IOException {
+		return FileSystemManager.getCachedFileInputStream(getFile(entry));
+	}
+
+	public void close() throws IOException {
+	}
+}
@@ -1,10 +1,13 @@
 package com.application.areca.impl;
 
 import java.io.File;
+import java.io.IOException;
 
 import com.application.areca.EntryStatus;
 import com.application.areca.RecoveryEntry;
 import com.application.areca.Utils;
+import com.myJava.file.FileSnapshot;
+import com.myJava.file.FileSystemManager;
 import com.myJava.object.EqualsHelper;
 import com.myJava.object.HashHelper;
 
@@ -42,6 +45,7 @@ public class FileSystemRecoveryEntry implements RecoveryEntry {
     private long size = 0;
     private boolean isLink = false;
     private String key;
+    private FileSnapshot snapshot;
     
     public FileSystemRecoveryEntry(String rootDirectory, File file) {
         this.rootDirectory = rootDirectory;            
@@ -76,6 +80,42 @@ public class FileSystemRecoveryEntry implements RecoveryEntry {
 	public File getFile() {
         return this.file;
     }
+
+	/**
+	 * Snapshot of the file, read when the file was listed by the iterator.
+	 * <BR>May be null : the file's attributes must then be read from the file system.
+	 */
+	public FileSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public void setSnapshot(FileSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/*
+	 * The following attributes are read from the snapshot if it is available, from the file system otherwise.
+	 */
+	
+	/**
+	 * Return the type of the file (symbolic links are not followed)
+	 * <BR>See types listed in FileMetaDataAccessor 
+	 */
+	public short getFileType() throws IOException {
+		return snapshot == null ? FileSystemManager.getType(file) : snapshot.getType();
+	}
+	
+	public boolean isFile() {
+		return snapshot == null ? FileSystemManager.isFile(file) : snapshot.isFile();
+	}
+	
+	public boolean isDirectory() {
+		return snapshot == null ? FileSystemManager.isDirectory(file) : snapshot.isDirectory();
+	}
+	
+	public long getLastModified() {
+		return snapshot == null ? FileSystemManager.lastModified(file) : snapshot.getLastModified();
+	}
     
     public String toString() {
         return getKey();
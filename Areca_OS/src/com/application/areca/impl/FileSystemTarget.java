@@ -24,6 +24,7 @@ import com.application.areca.metadata.manifest.Manifest;
 import com.application.areca.metadata.manifest.ManifestKeys;
 import com.application.areca.metadata.transaction.TransactionPoint;
 import com.myJava.file.FileNameUtil;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.FileTool;
 import com.myJava.file.iterator.FileSystemIterator;
@@ -242,13 +243,20 @@ implements TargetActions {
     			return null;
     		} else {
     			FileSystemRecoveryEntry entry = new FileSystemRecoveryEntry(this.getSourceDirectory(), f);
-                entry.setSize(FileSystemManager.length(f));
-                try {
-					entry.setLink(this.isTrackSymlinks() && FileMetaDataAccessor.TYPE_LINK == FileSystemManager.getType(f));
-				} catch (IOException e) {
-					Logger.defaultLogger().error(e);
-					throw new ApplicationException(e);
-				}
+    			FileSnapshot snapshot = context.getFileSystemIterator().getCurrentSnapshot();
+    			if (snapshot != null) {
+    				entry.setSnapshot(snapshot);
+    				entry.setSize(snapshot.getLength());
+    				entry.setLink(this.isTrackSymlinks() && snapshot.isLink());
+    			} else {
+	                entry.setSize(FileSystemManager.length(f));
+	                try {
+						entry.setLink(this.isTrackSymlinks() && FileMetaDataAccessor.TYPE_LINK == FileSystemManager.getType(f));
+					} catch (IOException e) {
+						Logger.defaultLogger().error(e);
+						throw new ApplicationException(e);
+					}
+    			}
 
                 if (entry.getKey().length() == 0) {
                 	return nextElement(context);
@@ -290,6 +298,7 @@ implements TargetActions {
         if (this.sources.size() != 0) {
         	FileSystemIterator fsIter = new FileSystemIterator(fRoot, sourceArray, ! this.trackSymlinks, this.followSubdirectories, trackEmptyDirectories, true);
         	fsIter.setLogProgress(true);
+        	fsIter.setCaptureSnapshots(true);
         	fsIter.setFilter(this.filterGroup);
         	fsIter.setMonitor(context.getTaskMonitor().getCurrentActiveSubTask());
         	context.setFileSystemIterator(fsIter);
@@ -17,6 +17,7 @@ import com.myJava.file.FileList.FileListIterator;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.FileTool;
 import com.myJava.file.InvalidPathException;
+import com.myJava.file.ThrottledOutputStream;
 import com.myJava.file.driver.CompressedFileSystemDriver;
 import com.myJava.file.driver.FileSystemDriver;
 import com.myJava.file.iterator.FileNameComparator;
@@ -109,7 +110,7 @@ public class IncrementalDirectoryMedium extends AbstractIncrementalFileSystemMed
 		return this.fileSystemPolicy.retrySupported();
 	}
 
-	protected void storeFileInArchive(FileSystemRecoveryEntry entry, InputStream in, ProcessContext context) 
+	protected void storeFileInArchive(FileSystemRecoveryEntry entry, InputStream in, Object handlerData, ProcessContext context) 
 	throws IOException, ApplicationException, TaskCancelledException {
 		// Store the file
 		File targetFile = new File(context.getCurrentArchiveFile(), entry.getKey());
@@ -121,7 +122,8 @@ public class IncrementalDirectoryMedium extends AbstractIncrementalFileSystemMed
 			}
 
 			out = FileSystemManager.getFileOutputStream(targetFile, false, context.getOutputStreamListener());
-			this.handler.store(entry, in, out, context);
+			out = ThrottledOutputStream.wrap(out, getArchiveOutputLimiter());
+			this.handler.store(entry, in, out, handlerData, context);
 		} catch (InvalidPathException e) {
 			throw new ApplicationException("Error storing file " + FileSystemManager.getAbsolutePath(entry.getFile()) + " : " + e.getMessage(), e);
 		} catch (IOException e) {
@@ -146,6 +148,11 @@ public class IncrementalDirectoryMedium extends AbstractIncrementalFileSystemMed
 	public void cleanLocalCopies(List copies, ProcessContext context) throws IOException, ApplicationException {
 	}
 
+	public ArchiveEntryReader buildEntryReader(File archive, com.application.areca.metadata.FileList entries, ProcessContext context) 
+	throws IOException, ApplicationException {
+		return new DirectoryEntryReader(archive);
+	}
+
 	public File[] ensureLocalCopy(
 			File[] archivesToProcess, 
 			boolean mergeRecoveredFiles, 
@@ -155,6 +162,7 @@ public class IncrementalDirectoryMedium extends AbstractIncrementalFileSystemMed
 			ProcessContext context
 	) throws IOException, ApplicationException, TaskCancelledException {
 		if (mergeRecoveredFiles) {
+			RecoveryScheduler scheduler = new RecoveryScheduler(this, context);
 			try {
 				context.getInfoChannel().print("Data recovery ...");
 
@@ -175,12 +183,15 @@ public class IncrementalDirectoryMedium extends AbstractIncrementalFileSystemMed
 								File sourceFile = new File(archivesToProcess[i], entry);
 								if (FileSystemManager.exists(sourceFile)) {
 									File targetDirectory = FileSystemManager.getParentFile(new File(destination, entry));
-									doAndRetry(new EnsureLocalCopyTask(sourceFile, targetDirectory, policy, context), "An error was detected during recovery of " + archivesToProcess[i].getAbsolutePath());
+									scheduler.submit(new EnsureLocalCopyTask(sourceFile, targetDirectory, policy, context), 1, "An error was detected during recovery of " + archivesToProcess[i].getAbsolutePath());
 								}
 							}
 						} finally {
 							entries.close();
 						}
+						
+						// The files of the next archive override those of the current archive
+						scheduler.waitForCompletion();
 					}
 
 					context.getTaskMonitor().getCurrentActiveSubTask().setCurrentCompletion(i+1, archivesToProcess.length);
@@ -195,6 +206,8 @@ public class IncrementalDirectoryMedium extends AbstractIncrementalFileSystemMed
 			} catch (Throwable e) {
 				Logger.defaultLogger().error(e);
 				throw new ApplicationException(e);
+			} finally {
+				scheduler.close();
 			}
 		} else {
 			Logger.defaultLogger().info("No archive pre-processing needed.");
@@ -10,6 +10,8 @@ import java.util.List;
 
 import com.application.areca.AbstractTarget;
 import com.application.areca.ApplicationException;
+import com.application.areca.ArecaConfiguration;
+import com.application.areca.ArecaFileConstants;
 import com.application.areca.context.ProcessContext;
 import com.application.areca.impl.copypolicy.AbstractCopyPolicy;
 import com.application.areca.impl.tools.ArchiveReader;
@@ -17,17 +19,19 @@ import com.application.areca.impl.tools.RecoveryFilterMap;
 import com.application.areca.metadata.manifest.Manifest;
 import com.application.areca.metadata.transaction.TransactionPoint;
 import com.myJava.file.CompressionArguments;
-import com.myJava.file.FileList;
+import com.myJava.file.FileList.FileListIterator;
 import com.myJava.file.FileNameUtil;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.FileTool;
+import com.myJava.file.ThrottledOutputStream;
 import com.myJava.file.archive.ArchiveAdapter;
 import com.myJava.file.archive.ArchiveWriter;
 import com.myJava.file.archive.zip64.ZipArchiveAdapter;
 import com.myJava.file.archive.zip64.ZipConstants;
+import com.myJava.file.archive.zip64.ZipRandomAccessAdapter;
+import com.myJava.file.archive.zip64.ZipRandomAccessReader;
 import com.myJava.file.archive.zip64.ZipVolumeStrategy;
 import com.myJava.file.iterator.FileNameComparator;
-import com.myJava.file.multivolumes.VolumeStrategy;
 import com.myJava.object.Duplicable;
 import com.myJava.util.log.Logger;
 import com.myJava.util.taskmonitor.TaskCancelledException;
@@ -84,11 +88,19 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 		return false;
 	}
 
+	/**
+	 * All entries are written in the same zip stream
+	 * <BR>(the zip stream compresses the data in its own threads - see ZipOutputStream.setCompressionWorkers)
+	 */
+	public boolean isConcurrentStoreSupported() {
+		return false;
+	}
+
 	public String checkResumeSupported() {
 		return "Backup as single zip archive";
 	}
 
-	protected void storeFileInArchive(FileSystemRecoveryEntry entry, InputStream in, ProcessContext context) 
+	protected void storeFileInArchive(FileSystemRecoveryEntry entry, InputStream in, Object handlerData, ProcessContext context) 
 	throws IOException, ApplicationException, TaskCancelledException {
 		try {
 			File file = entry.getFile();
@@ -106,7 +118,7 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 			context.getArchiveWriter().getAdapter().addEntry(path, length);            
 
 			OutputStream out = context.getArchiveWriter().getAdapter().getArchiveOutputStream();
-			this.handler.store(entry, in, out, context);
+			this.handler.store(entry, in, out, handlerData, context);
 			context.getArchiveWriter().getAdapter().closeEntry();
 		} catch (IOException e) {
 			Logger.defaultLogger().error(e);
@@ -154,7 +166,7 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 			} else {
 				AbstractFileSystemMedium.tool.createDir(FileSystemManager.getParentFile(f));
 				adapter =  new ZipArchiveAdapter(
-						FileSystemManager.getFileOutputStream(f, false, context.getOutputStreamListener()), 
+						ThrottledOutputStream.wrap(FileSystemManager.getFileOutputStream(f, false, context.getOutputStreamListener()), getArchiveOutputLimiter()), 
 						compressionArguments.isUseZip64(),
 						compressionArguments.getLevel()
 				);   
@@ -163,15 +175,19 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 				adapter.setArchiveComment(compressionArguments.getComment());
 			}
 		} else {
-			if (compressionArguments.isMultiVolumes()) {
-				adapter = new ZipArchiveAdapter(buildVolumeStrategy(f, write, context), 1);   
-			} else {
-				long length = 0;
-				if (FileSystemManager.exists(f)) {
-					length = FileSystemManager.length(f);
-				}
-				adapter = new ZipArchiveAdapter(FileSystemManager.getFileInputStream(f), length);    
-			}        
+			adapter = buildRandomAccessAdapter(f, context);
+			if (adapter == null) {
+				// Sequential read
+				if (compressionArguments.isMultiVolumes()) {
+					adapter = new ZipArchiveAdapter(buildVolumeStrategy(f, write, context), 1);   
+				} else {
+					long length = 0;
+					if (FileSystemManager.exists(f)) {
+						length = FileSystemManager.length(f);
+					}
+					adapter = new ZipArchiveAdapter(FileSystemManager.getFileInputStream(f), length);    
+				}        
+			}
 		}
 
 		if (compressionArguments.getCharset() != null) {
@@ -183,12 +199,71 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 		return adapter;
 	}
 
-	private VolumeStrategy buildVolumeStrategy(File f, boolean write, ProcessContext context) throws IOException {       
+	/**
+	 * Builds a read-only ArchiveAdapter which reads the entries from the archive's central directory
+	 * and only reads the data of the recovered entries.
+	 * <BR>The central directory is cached in the archive's data directory.
+	 * <BR>Returns null if the central directory can't be read (empty or unfinished archive, zip32 archive larger than 4GB ...) :
+	 * the archive must then be read sequentially.
+	 */
+	private ArchiveAdapter buildRandomAccessAdapter(File f, ProcessContext context) {
+		ZipRandomAccessReader reader = buildRandomAccessReader(f, context);
+		return reader == null ? null : new ZipRandomAccessAdapter(reader);
+	}
+
+	private ZipRandomAccessReader buildRandomAccessReader(File f, ProcessContext context) {
+		File index = new File(getDataDirectory(f), ArecaFileConstants.ZIP_INDEX_FILE);
+		try {
+			if (compressionArguments.isMultiVolumes()) {
+				return new ZipRandomAccessReader(buildVolumeStrategy(f, false, context), index);
+			} else if (FileSystemManager.exists(f)) {
+				return new ZipRandomAccessReader(f, index);
+			} else {
+				return null;
+			}
+		} catch (IOException e) {
+			Logger.defaultLogger().warn("Unable to read the central directory of " + FileSystemManager.getAbsolutePath(f) + " (" + e.getMessage() + "). The archive will be read sequentially.");
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the entries from the archive's central directory (see "buildRandomAccessAdapter")
+	 * <BR>The posterior layers of a file are always listed in the entries of the posterior archives : no entry is read
+	 * from an archive whose list is empty.
+	 */
+	public ArchiveEntryReader buildEntryReader(File archive, com.application.areca.metadata.FileList entries, ProcessContext context) 
+	throws IOException, ApplicationException {
+		if (entries == null || entries.size() == 0) {
+			return new ZipEntryReader(null, null);
+		}
+		ZipRandomAccessReader reader = buildRandomAccessReader(archive, context);
+		if (reader == null) {
+			return null;
+		}
+		if (compressionArguments.getCharset() != null) {
+			reader.setCharset(compressionArguments.getCharset());
+		} else {
+			reader.setCharset(Charset.forName(ZipConstants.DEFAULT_CHARSET));
+		}
+		try {
+			return new ZipEntryReader(reader, entries);
+		} catch (IOException e) {
+			reader.close();
+			Logger.defaultLogger().warn("Unable to read the central directory of " + FileSystemManager.getAbsolutePath(archive) + " (" + e.getMessage() + "). A local copy of the archive will be made.");
+			return null;
+		}
+	}
+
+	private ZipVolumeStrategy buildVolumeStrategy(File f, boolean write, ProcessContext context) throws IOException {       
 		if (write) {
 			AbstractFileSystemMedium.tool.createDir(f);
 		}
 		ZipVolumeStrategy strat = new ZipVolumeStrategy(new File(f, MV_ARCHIVE_NAME), compressionArguments.getNbDigits());
 		strat.setListener(context.getOutputStreamListener());
+		if (write) {
+			strat.setLimiter(getArchiveOutputLimiter());
+		}
 		return strat;
 	}
 
@@ -212,6 +287,7 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 			AbstractCopyPolicy policy,
 			final ProcessContext context
 	) throws IOException, ApplicationException, TaskCancelledException {
+		RecoveryScheduler scheduler = new RecoveryScheduler(this, context);
 		try {
 			context.getInfoChannel().print("Data recovery ...");   
 			final List ret = new ArrayList();
@@ -230,7 +306,7 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 				logRecoveryStep(filesByArchive, files, archivesToProcess[i], context);
 
 				if (filesByArchive == null || (files != null && files.size() != 0)) {
-					ensureLocalCopy(archivesToProcess[i], mergeRecoveredFiles, destination, files, policy, ret, context);
+					ensureLocalCopy(archivesToProcess[i], mergeRecoveredFiles, destination, files, policy, ret, scheduler, context);
 				} else {
 					ret.add(null);
 				}
@@ -244,6 +320,8 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 			throw e;        	
 		} catch (Exception e) {
 			throw new ApplicationException(e);
+		} finally {
+			scheduler.close();
 		}
 	}
 
@@ -251,13 +329,12 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 			File archiveToProcess, 
 			boolean mergeRecoveredFiles, 
 			File destination, 
-			FileList files,
+			com.application.areca.metadata.FileList files,
 			AbstractCopyPolicy policy,
 			List ret, 
+			RecoveryScheduler scheduler,
 			ProcessContext context
 	) throws IOException, ApplicationException, TaskCancelledException {
-		ArchiveReader zrElement = new ArchiveReader(buildArchiveAdapter(archiveToProcess, false, context));
-
 		File realDestination;
 		if (mergeRecoveredFiles) {
 			realDestination = destination;
@@ -268,8 +345,60 @@ public class IncrementalZipMedium extends AbstractIncrementalFileSystemMedium {
 			}
 		}
 
-		zrElement.injectIntoDirectory(realDestination, files, policy, context.getTaskMonitor(), context.getOutputStreamListener());
-		zrElement.close();
+		ArchiveEntryReader reader = null;
+		if (files != null && scheduler.getWorkers() != 0 && ArecaConfiguration.get().isRecoveryDirectRead()) {
+			reader = buildEntryReader(archiveToProcess, files, context);
+		}
+
+		if (reader == null) {
+			// Sequential extraction
+			ArchiveReader zrElement = new ArchiveReader(buildArchiveAdapter(archiveToProcess, false, context));
+			zrElement.injectIntoDirectory(realDestination, files, policy, context.getTaskMonitor(), context.getOutputStreamListener());
+			zrElement.close();
+		} else {
+			// The entries are extracted concurrently
+			try {
+				FileListIterator iter = files.iterator();
+				try {
+					while (iter.hasNext()) {
+						String entry = iter.next();
+						File target = new File(realDestination, entry);
+						if (reader.contains(entry) && (policy == null || policy.accept(target))) {
+							scheduler.submit(new ExtractEntryTask(reader, entry, target, context), 1, "Error while recovering " + FileSystemManager.getAbsolutePath(target));
+						}
+					}
+				} finally {
+					iter.close();
+				}
+
+				// The files of the next archive override those of the current archive
+				scheduler.waitForCompletion();
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private static class ExtractEntryTask implements IOTask {
+		private ArchiveEntryReader reader;
+		private String entry;
+		private File target;
+		private ProcessContext context;
+
+		public ExtractEntryTask(ArchiveEntryReader reader, String entry, File target, ProcessContext context) {
+			this.reader = reader;
+			this.entry = entry;
+			this.target = target;
+			this.context = context;
+		}
+
+		public void run() throws IOException, TaskCancelledException, ApplicationException {
+			if (FileSystemManager.exists(target)) {
+				FileSystemManager.delete(target);
+			}
+			FileTool.getInstance().createDir(FileSystemManager.getParentFile(target));
+			FileTool.getInstance().copy(reader.getInputStream(entry), FileSystemManager.getFileOutputStream(target, false, context.getOutputStreamListener()), true, true, context.getTaskMonitor());
+		}
 	}
 
 	public void completeLocalCopyCleaning(File copy, ProcessContext context) throws IOException, ApplicationException {
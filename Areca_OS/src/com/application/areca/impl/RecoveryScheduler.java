@@ -0,0 +1,335 @@
+package com.application.areca.impl;
+
+import java.io.IOException;
+import java.util.LinkedList;
+
+import com.application.areca.ApplicationException;
+import com.application.areca.ArecaConfiguration;
+import com.application.areca.context.ProcessContext;
+import com.myJava.util.log.Logger;
+import com.myJava.util.taskmonitor.TaskCancelledException;
+import com.myJava.util.taskmonitor.TaskMonitor;
+
+/**
+ * Runs the recovery of independent files on a pool of worker threads.
+ * <BR>- Each task is run through the medium's "doAndRetry" method by a worker thread.
+ * <BR>- Each task declares the number of archive streams it will open. The number of streams opened at the same time by the workers is bounded.
+ * <BR>- The progress is reported to the TaskMonitor by the calling thread, in the order of submission : the completion only takes into account
+ * the tasks whose predecessors have all been completed.
+ * <BR>- The number of tasks which have been submitted but not reported yet is bounded : "submit" blocks when this limit is reached.
+ * <BR>
+ * <BR>If no worker is requested, the tasks are run by the calling thread.
+ * <BR>The first error stops the workers and is thrown by "submit" or "waitForCompletion". The scheduler must always be closed.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class RecoveryScheduler {
+	private static final int QUEUE_SIZE_BY_WORKER = 16;
+	private static final int PROGRESS_STEPS = 1000;
+
+	private AbstractIncrementalFileSystemMedium medium;
+	private ProcessContext context;
+	private int nbWorkers;
+	private int maxOpenStreams;
+	private int queueSize;
+	private Thread[] threads;
+
+	private Object lock = new Object();
+	private LinkedList pending = new LinkedList(); // Tasks which have been submitted and not reported yet (in the order of submission)
+	private LinkedList toRun = new LinkedList(); // Tasks which haven't been started yet
+	private int openStreams = 0;
+	private int running = 0;
+	private boolean stopped = false;
+	private Throwable error;
+
+	// Progress
+	private TaskMonitor monitor;
+	private long total;
+	private long reported = 0;
+	private long lastStep = -1;
+
+	/**
+	 * Uses the number of workers and the maximum number of open streams defined in the configuration
+	 */
+	public RecoveryScheduler(AbstractIncrementalFileSystemMedium medium, ProcessContext context) {
+		this(medium, getConfiguredWorkers(), ArecaConfiguration.get().getRecoveryMaxOpenStreams(), context);
+	}
+
+	public RecoveryScheduler(AbstractIncrementalFileSystemMedium medium, int nbWorkers, int maxOpenStreams, ProcessContext context) {
+		this.medium = medium;
+		this.context = context;
+		this.nbWorkers = Math.max(0, nbWorkers);
+		this.maxOpenStreams = Math.max(1, maxOpenStreams);
+		this.queueSize = Math.max(1, this.nbWorkers) * QUEUE_SIZE_BY_WORKER;
+	}
+
+	/**
+	 * Return the number of threads used to rebuild the files during a recovery (0 = no thread)
+	 */
+	public static int getConfiguredWorkers() {
+		int workers = ArecaConfiguration.get().getRecoveryWorkers();
+		if (workers < 0) {
+			workers = Runtime.getRuntime().availableProcessors();
+		}
+		return workers;
+	}
+
+	public int getWorkers() {
+		return nbWorkers;
+	}
+
+	/**
+	 * Report the progress to the TaskMonitor passed as argument. "total" is the number of tasks (or skipped entries) which will be submitted.
+	 */
+	public void setProgress(TaskMonitor monitor, long total) {
+		this.monitor = monitor;
+		this.total = total;
+		this.reported = 0;
+		this.lastStep = -1;
+	}
+
+	/**
+	 * Submit a task which will open "streams" archive streams.
+	 * <BR>Blocks while too many tasks are pending.
+	 */
+	public void submit(IOTask task, int streams, String message)
+	throws IOException, ApplicationException, TaskCancelledException {
+		if (nbWorkers == 0) {
+			context.getTaskMonitor().checkTaskState();
+			medium.doAndRetry(task, message);
+			progress(1);
+			return;
+		}
+
+		startWorkers();
+		Task t = new Task(task, Math.min(Math.max(0, streams), maxOpenStreams), message);
+		long done;
+		synchronized (lock) {
+			done = removeCompleted();
+			while (error == null && pending.size() >= queueSize) {
+				waitOnLock();
+				done += removeCompleted();
+			}
+			checkError();
+			pending.addLast(t);
+			toRun.addLast(t);
+			lock.notifyAll();
+		}
+		progress(done);
+	}
+
+	/**
+	 * Register an entry which doesn't require any task (for progress reporting)
+	 */
+	public void skip() {
+		if (nbWorkers == 0) {
+			progress(1);
+		} else {
+			long done;
+			synchronized (lock) {
+				Task t = new Task(null, 0, null);
+				t.done = true;
+				pending.addLast(t);
+				done = removeCompleted();
+			}
+			progress(done);
+		}
+	}
+
+	/**
+	 * Wait until all submitted tasks have been completed
+	 */
+	public void waitForCompletion()
+	throws IOException, ApplicationException, TaskCancelledException {
+		if (nbWorkers == 0) {
+			return;
+		}
+		long done = 0;
+		synchronized (lock) {
+			while (error == null && ! pending.isEmpty()) {
+				done += removeCompleted();
+				if (! pending.isEmpty()) {
+					waitOnLock();
+				}
+			}
+			checkError();
+		}
+		progress(done);
+	}
+
+	/**
+	 * Stop the workers. The tasks which haven't been started yet are not run.
+	 */
+	public void close() {
+		if (threads == null) {
+			return;
+		}
+		synchronized (lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+		for (int i=0; i<threads.length; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException ignored) {
+				}
+			}
+		}
+		threads = null;
+	}
+
+	private void startWorkers() {
+		if (threads == null) {
+			stopped = false;
+			threads = new Thread[nbWorkers];
+			for (int i=0; i<threads.length; i++) {
+				threads[i] = new Thread(new Worker());
+				threads[i].setName("Recovery worker #" + (i + 1));
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			Logger.defaultLogger().info("Files will be recovered by " + nbWorkers + " thread(s) - " + maxOpenStreams + " archive streams max.");
+		}
+	}
+
+	private void waitOnLock() throws ApplicationException {
+		try {
+			lock.wait();
+		} catch (InterruptedException e) {
+			throw new ApplicationException("Interrupted while waiting for the recovery workers.", e);
+		}
+	}
+
+	/**
+	 * Remove the completed tasks at the head of the pending list and return their number
+	 */
+	private long removeCompleted() {
+		long done = 0;
+		while (! pending.isEmpty() && ((Task)pending.getFirst()).done) {
+			pending.removeFirst();
+			done++;
+		}
+		return done;
+	}
+
+	/**
+	 * Update the TaskMonitor ; must be called by the calling thread.
+	 */
+	private void progress(long done) {
+		if (done == 0 || monitor == null || total <= 0) {
+			return;
+		}
+		reported += done;
+		long step = Math.min(reported, total) * PROGRESS_STEPS / total;
+		if (step != lastStep) {
+			lastStep = step;
+			monitor.setCurrentCompletion(Math.min(reported, total), total);
+		}
+	}
+
+	private void fail(Throwable e) {
+		synchronized (lock) {
+			if (error == null) {
+				error = e;
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void checkError() throws IOException, ApplicationException, TaskCancelledException {
+		if (error == null) {
+			return;
+		} else if (error instanceof IOException) {
+			throw (IOException)error;
+		} else if (error instanceof ApplicationException) {
+			throw (ApplicationException)error;
+		} else if (error instanceof TaskCancelledException) {
+			throw (TaskCancelledException)error;
+		} else if (error instanceof RuntimeException) {
+			throw (RuntimeException)error;
+		} else if (error instanceof Error) {
+			throw (Error)error;
+		} else {
+			throw new ApplicationException(error);
+		}
+	}
+
+	private class Worker implements Runnable {
+		public void run() {
+			try {
+				while (true) {
+					Task task;
+					synchronized (lock) {
+						while (error == null && ! stopped && (toRun.isEmpty() || ! canOpen(((Task)toRun.getFirst()).streams))) {
+							lock.wait();
+						}
+						if (error != null || stopped) {
+							return;
+						}
+						task = (Task)toRun.removeFirst();
+						openStreams += task.streams;
+						running++;
+					}
+
+					try {
+						context.getTaskMonitor().checkTaskState();
+						medium.doAndRetry(task.task, task.message);
+					} finally {
+						synchronized (lock) {
+							openStreams -= task.streams;
+							running--;
+							task.done = true;
+							lock.notifyAll();
+						}
+					}
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * A task which requires more streams than allowed is run alone
+		 */
+		private boolean canOpen(int streams) {
+			return running == 0 || openStreams + streams <= maxOpenStreams;
+		}
+	}
+
+	private static class Task {
+		private IOTask task;
+		private int streams;
+		private String message;
+		private boolean done = false;
+
+		public Task(IOTask task, int streams, String message) {
+			this.task = task;
+			this.streams = streams;
+			this.message = message;
+		}
+	}
+}
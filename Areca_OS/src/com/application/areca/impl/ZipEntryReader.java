@@ -0,0 +1,95 @@
+package com.application.areca.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.myJava.file.FileList;
+import com.myJava.file.FileList.FileListIterator;
+import com.myJava.file.archive.zip64.ZipEntry;
+import com.myJava.file.archive.zip64.ZipRandomAccessReader;
+import com.myJava.util.Util;
+
+/**
+ * ArchiveEntryReader on a zip archive.
+ * <BR>The central directory of the archive is read once (from the cached index if it exists) and the entries to recover are kept in memory.
+ * <BR>Each InputStream opens its own volume stream : the entries can be read concurrently.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ZipEntryReader implements ArchiveEntryReader {
+	private ZipRandomAccessReader reader;
+	private Map entries = new HashMap();
+
+	/**
+	 * Read the central directory and keep the entries which are listed in "filter".
+	 * <BR>The entries of the archive are stored in the same order as the list.
+	 * <BR>If the filter is null, the reader contains no entry.
+	 */
+	public ZipEntryReader(ZipRandomAccessReader reader, FileList filter) throws IOException {
+		this.reader = reader;
+		if (filter == null) {
+			return;
+		}
+
+		FileListIterator iter = filter.iterator();
+		try {
+			ZipEntry entry;
+			long remaining = filter.size();
+			while (remaining != 0 && (entry = reader.getNextEntry()) != null) {
+				if (! entry.isDirectory()) {
+					String name = Util.trimSlashes(entry.getName());
+					if (Util.passFilter(name, iter)) {
+						entries.put(name, entry);
+						remaining--;
+					}
+				}
+			}
+		} finally {
+			iter.close();
+		}
+	}
+
+	public boolean contains(String entry) throws IOException {
+		return entries.containsKey(Util.trimSlashes(entry));
+	}
+
+	public InputStream getInputStream(String entry) throws IOException {
+		ZipEntry e = (ZipEntry)entries.get(Util.trimSlashes(entry));
+		if (e == null) {
+			throw new IOException("Entry not found : " + entry);
+		}
+		return reader.openInputStream(e);
+	}
+
+	public void close() throws IOException {
+		entries.clear();
+		if (reader != null) {
+			reader.close();
+		}
+	}
+}
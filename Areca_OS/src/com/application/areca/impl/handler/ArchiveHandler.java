@@ -60,12 +60,26 @@ public interface ArchiveHandler extends Duplicable {
      */
     public void setMedium(AbstractIncrementalFileSystemMedium medium);
     
+    /**
+     * Called before "store", in the order of the entries.
+     * <BR>Returns handler-specific data (or null), which will be passed to "store" and "commitStore".
+     */
+    public Object prepareStore(FileSystemRecoveryEntry entry, ProcessContext context) 
+    throws ApplicationException, IOException, TaskCancelledException;
+    
     /**
      * The outputStream is provided by the Medium itself. The inputStream is provided by the target.
      * <BR>Reads the inputStream and writes the data in the outputStream, according to the handler's strategy.
      * (standard storage mode, delta storage, ...)
+     * <BR>This method can be called concurrently for distinct entries : it must not rely on the order of the entries.
      */
-    public void store(FileSystemRecoveryEntry entry, InputStream in, OutputStream out, ProcessContext context) 
+    public void store(FileSystemRecoveryEntry entry, InputStream in, OutputStream out, Object data, ProcessContext context) 
+    throws ApplicationException, IOException, TaskCancelledException;
+    
+    /**
+     * Called after "store", in the order of the entries
+     */
+    public void commitStore(FileSystemRecoveryEntry entry, Object data, ProcessContext context) 
     throws ApplicationException, IOException, TaskCancelledException;
     
     /**
@@ -95,6 +109,11 @@ public interface ArchiveHandler extends Duplicable {
 	 */
 	public void archiveDeleted(File archive) throws IOException;
 	
+	/**
+	 * Callback after archive commit
+	 */
+	public void archiveCommitted(File archive, ProcessContext context) throws IOException;
+	
 	/**
 	 * Tells whether the handler supports image backups or not
 	 * <BR>(some handlers are inherently incompatible with image backups)
@@ -48,11 +48,20 @@ This file is part of Areca.
 public class DefaultArchiveHandler
 extends AbstractArchiveHandler {
 
-	public void store(FileSystemRecoveryEntry entry, InputStream in, OutputStream out, ProcessContext context)
+	public Object prepareStore(FileSystemRecoveryEntry entry, ProcessContext context) 
+	throws ApplicationException, IOException, TaskCancelledException {
+		return null;
+	}
+
+	public void store(FileSystemRecoveryEntry entry, InputStream in, OutputStream out, Object data, ProcessContext context)
 	throws ApplicationException, IOException, TaskCancelledException {    
 		FileTool.getInstance().copy(in, out, true, false, context.getTaskMonitor());
 	}
 
+	public void commitStore(FileSystemRecoveryEntry entry, Object data, ProcessContext context) 
+	throws ApplicationException, IOException, TaskCancelledException {
+	}
+
 	public void recoverRawData(
 			File[] archivesToRecover, 
 			RecoveryFilterMap filtersByArchive,
@@ -76,6 +85,10 @@ extends AbstractArchiveHandler {
 	throws IOException {
 	}
 
+	public void archiveCommitted(File archive, ProcessContext context) 
+	throws IOException {
+	}
+
 	public void close(ProcessContext context) 
 	throws IOException {
 	}
@@ -17,11 +17,16 @@ import com.application.areca.ArecaConfiguration;
 import com.application.areca.ArecaFileConstants;
 import com.application.areca.cache.ArchiveManifestCache;
 import com.application.areca.context.ProcessContext;
+import com.application.areca.impl.ArchiveEntryReader;
+import com.application.areca.impl.DirectoryEntryReader;
 import com.application.areca.impl.FileSystemRecoveryEntry;
 import com.application.areca.impl.FileSystemTarget;
 import com.application.areca.impl.IOTask;
+import com.application.areca.impl.RecoveryScheduler;
 import com.application.areca.impl.copypolicy.AbstractCopyPolicy;
 import com.application.areca.impl.tools.RecoveryFilterMap;
+import com.application.areca.metadata.AbstractMetaDataEntry;
+import com.application.areca.metadata.MetaDataFileIteratorMerger;
 import com.application.areca.metadata.content.ArchiveContentAdapter;
 import com.application.areca.metadata.content.ArchiveContentManager;
 import com.application.areca.metadata.content.ContentEntry;
@@ -34,6 +39,7 @@ import com.myJava.file.FileList;
 import com.myJava.file.FileList.FileListIterator;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.FileTool;
+import com.myJava.file.delta.BlockDeltaReader;
 import com.myJava.file.delta.DeltaInputStream;
 import com.myJava.file.delta.DeltaMerger;
 import com.myJava.file.delta.DeltaProcessor;
@@ -52,6 +58,7 @@ import com.myJava.system.OSTool;
 import com.myJava.util.Util;
 import com.myJava.util.log.Logger;
 import com.myJava.util.taskmonitor.TaskCancelledException;
+import com.myJava.util.taskmonitor.TaskMonitor;
 
 /**
  * Handler that processes delta archives.
@@ -84,12 +91,15 @@ This file is part of Areca.
 public class DeltaArchiveHandler
 extends AbstractArchiveHandler {
 	private static final boolean DEBUG = FrameworkConfiguration.getInstance().isDeltaDebugMode();
+	private static final boolean USE_BLOCK_READER = FrameworkConfiguration.getInstance().isDeltaBlockReaderMode();
 	private static final int MIN_BLOCK_SIZE_BYTE = ArecaConfiguration.get().getDeltaMinBucketSize();
 	private static final int MAX_BLOCK_SIZE_BYTE = ArecaConfiguration.get().getDeltaMaxBucketSize();
 	private static final int TARGET_BUCKET_NUMBER = ArecaConfiguration.get().getDeltaTargetBucketNumber();
 
 	private static final String LOCAL_COPY_SUFFIX = "lcpy0";
 	private static final String SEQUENCE_FOLDER = "seq";
+	private static final String SIGNATURE_FOLDER = "signatures";
+	private static final boolean USE_SIGNATURE_STORE = ArecaConfiguration.get().isDeltaSignatureStore();
 
 	/**
 	 * Temporary directory where all sequence files are stored
@@ -116,6 +126,11 @@ extends AbstractArchiveHandler {
 				ctnIter.close();
 			}
 			context.getContentIterators().clear();
+			
+			// The uncommitted signatures are kept until "archiveCommitted" is called (or discarded when the store is reopened)
+			if (context.getSignatureStore() != null) {
+				context.getSignatureStore().close();
+			}
 		}
 	}
 
@@ -128,6 +143,164 @@ extends AbstractArchiveHandler {
 		if (transactionPoint != null) {
 			context.getSequenceAdapter().bulkInit(transactionPoint.getSequenceFile());
 		}
+		
+		context.setSignatureStore(null);
+		if (USE_SIGNATURE_STORE && ! context.getBackupScheme().equals(AbstractTarget.BACKUP_SCHEME_DIFFERENTIAL)) {
+			openSignatureStore(context, transactionPoint);
+		}
+	}
+	
+	/**
+	 * Return the local folder where the signature store of the target is located.
+	 */
+	private File getSignatureDirectory() {
+		return new File(new File(LOCAL_DATA_DIRECTORY, medium.getTarget().getUid()), SIGNATURE_FOLDER);
+	}
+	
+	/**
+	 * Open the signature store and check that it covers the archives which would be explored by the sequence lookup
+	 * (from the last full backup to the last archive). It is rebuilt from their sequence files otherwise.
+	 * <BR>The store is not used if a differential archive would have to be explored : the sequence files are read instead.
+	 */
+	private void openSignatureStore(ProcessContext context, TransactionPoint transactionPoint) {
+		SignatureStore store = new SignatureStore(getSignatureDirectory());
+		try {
+			if (context.getBackupScheme().equals(AbstractTarget.BACKUP_SCHEME_FULL)) {
+				store.reset();
+			} else {
+				File[] chain = listSignatureChain();
+				if (chain == null) {
+					store.invalidate();
+					return;
+				}
+				store.open();
+				if (! store.covers(getNames(chain))) {
+					rebuildSignatureStore(store, chain);
+				}
+			}
+			
+			// Resumed backup : the entries that have been stored before the transaction point are added again
+			if (transactionPoint != null) {
+				ContentFileIterator iter = ArchiveContentAdapter.buildIterator(transactionPoint.getSequenceFile());
+				try {
+					while (iter.hasNext()) {
+						ContentEntry entry = iter.next();
+						store.append(entry.getKey(), Util.base64Decode(entry.getData()));
+					}
+				} finally {
+					iter.close();
+				}
+			}
+			
+			context.setSignatureStore(store);
+		} catch (Exception e) {
+			Logger.defaultLogger().warn("Unable to open the signature store (" + e.getMessage() + "). The sequence files will be used instead.");
+			Logger.defaultLogger().error(e);
+			invalidateSignatureStore(store);
+		}
+	}
+	
+	/**
+	 * Return the archives that would be explored by the sequence lookup of an incremental backup (oldest first),
+	 * or null if a differential archive is among them.
+	 */
+	private File[] listSignatureChain() throws ApplicationException {
+		File[] archives = medium.listArchives(null, null, true);
+		int first = 0;
+		for (int i=archives.length - 1; i>=0; i--) {
+			String archiveBackupScheme = AbstractTarget.BACKUP_SCHEME_FULL;
+			Manifest mf = ArchiveManifestCache.getInstance().getManifest(medium, archives[i]);
+			if (mf != null) {
+				archiveBackupScheme = mf.getStringProperty(ManifestKeys.OPTION_BACKUP_SCHEME);
+			}
+			
+			if (AbstractTarget.BACKUP_SCHEME_DIFFERENTIAL.equals(archiveBackupScheme)) {
+				return null;
+			} else if (AbstractTarget.BACKUP_SCHEME_FULL.equals(archiveBackupScheme)) {
+				first = i;
+				break;
+			}
+		}
+		
+		File[] chain = new File[archives.length - first];
+		for (int i=0; i<chain.length; i++) {
+			chain[i] = archives[first + i];
+		}
+		return chain;
+	}
+	
+	private static String[] getNames(File[] archives) {
+		String[] names = new String[archives.length];
+		for (int i=0; i<archives.length; i++) {
+			names[i] = FileSystemManager.getName(archives[i]);
+		}
+		return names;
+	}
+	
+	/**
+	 * Rebuild the store from the sequence files of the archives passed as argument.
+	 * <BR>When an entry is found in several sequence files, the most recent one is kept.
+	 */
+	private void rebuildSignatureStore(SignatureStore store, File[] chain) throws IOException {
+		Logger.defaultLogger().info("Building signature store : " + store);
+		store.reset();
+		ContentFileIterator[] iters = new ContentFileIterator[chain.length];
+		try {
+			for (int i=0; i<chain.length; i++) {
+				iters[i] = ArchiveContentAdapter.buildIterator(ArchiveContentManager.resolveSequenceFileForArchive(medium, chain[i]));
+			}
+			MetaDataFileIteratorMerger merger = new MetaDataFileIteratorMerger(iters);
+			String previousKey = null;
+			AbstractMetaDataEntry entry;
+			while ((entry = merger.current()) != null) {
+				// When the keys are equal, the entry of the most recent archive comes first
+				if (previousKey == null || ! previousKey.equals(entry.getKey())) {
+					store.append(entry.getKey(), Util.base64Decode(entry.getData()));
+					previousKey = entry.getKey();
+				}
+				merger.next();
+			}
+		} finally {
+			for (int i=0; i<iters.length; i++) {
+				if (iters[i] != null) {
+					iters[i].close();
+				}
+			}
+		}
+		store.commit(getNames(chain));
+		Logger.defaultLogger().info("Signature store built : " + store);
+	}
+	
+	private static void invalidateSignatureStore(SignatureStore store) {
+		try {
+			store.invalidate();
+		} catch (IOException e) {
+			Logger.defaultLogger().error("Error while deleting the signature store : " + store, e);
+		}
+	}
+	
+	/**
+	 * Commit the signatures of the archive : the store now covers it.
+	 */
+	public void archiveCommitted(File archive, ProcessContext context) 
+	throws IOException {
+		SignatureStore store = context.getSignatureStore();
+		if (store == null) {
+			return;
+		}
+		
+		context.setSignatureStore(null);
+		try {
+			String[] previous = context.getBackupScheme().equals(AbstractTarget.BACKUP_SCHEME_FULL) ? new String[0] : store.getArchives();
+			String[] names = new String[previous.length + 1];
+			System.arraycopy(previous, 0, names, 0, previous.length);
+			names[previous.length] = FileSystemManager.getName(archive);
+			store.commit(names);
+			store.close();
+		} catch (Exception e) {
+			Logger.defaultLogger().warn("Unable to update the signature store (" + e.getMessage() + "). It will be rebuilt during the next backup.");
+			invalidateSignatureStore(store);
+		}
 	}
 
 	/**
@@ -152,6 +325,15 @@ extends AbstractArchiveHandler {
 		if (context.getBackupScheme().equals(AbstractTarget.BACKUP_SCHEME_FULL)) {
 			return null;
 		}
+		
+		// Look in the signature store if it is available
+		if (context.getSignatureStore() != null) {
+			byte[] data = context.getSignatureStore().lookup(entry.getKey());
+			if (DEBUG) {
+				Logger.defaultLogger().fine("Entry " + entry.getKey() + " : " + (data == null ? "not found" : "found") + " in the signature store");
+			}
+			return data == null ? null : SequenceAdapter.getInstance().deserialize(data);
+		}
 
 		Iterator contents = context.getContentIterators().iterator();
 		ContentFileIterator ctnIter = null;
@@ -279,9 +461,20 @@ extends AbstractArchiveHandler {
 		return (int)Math.min(MAX_BLOCK_SIZE_BYTE, Math.max(MIN_BLOCK_SIZE_BYTE, bs / TARGET_BUCKET_NUMBER));
 	}
 
-	public void store(FileSystemRecoveryEntry entry, InputStream in, OutputStream out, ProcessContext context)
+	/**
+	 * The reference sequence is looked up in the order of the entries (the content iterators can only move forward)
+	 */
+	public Object prepareStore(FileSystemRecoveryEntry entry, ProcessContext context) 
+	throws ApplicationException, IOException, TaskCancelledException {
+		StoreData data = new StoreData();
+		data.referenceSequence = lookupSequenceForEntry(entry, context);
+		return data;
+	}
+
+	public void store(FileSystemRecoveryEntry entry, InputStream in, OutputStream out, Object data, ProcessContext context)
 	throws ApplicationException, IOException, TaskCancelledException {
-		HashSequence seq = lookupSequenceForEntry(entry, context);
+		StoreData storeData = (StoreData)data;
+		HashSequence seq = storeData.referenceSequence;
 
 		try {
 			DeltaProcessor[] proc = new DeltaProcessor[] {new LayerWriterDeltaProcessor(out)};
@@ -290,29 +483,37 @@ extends AbstractArchiveHandler {
 				Logger.defaultLogger().fine("Entry : " + entry.getFile() + " - BlockSize = " + blockSize + (seq == null ? "C" : "R"));
 			}
 			FileSequencerByteProcessor sequencer = new FileSequencerByteProcessor(blockSize);
-			DeltaReader reader;
-
-			if (seq == null) {
-				reader = new DeltaReader(
-						computeBlockSize(entry.getFile()),
-						in,
-						proc,
-						sequencer
-				);
+			
+			if (USE_BLOCK_READER) {
+				BlockDeltaReader reader;
+				if (seq == null) {
+					reader = new BlockDeltaReader(blockSize, in, proc, sequencer);
+				} else {
+					reader = new BlockDeltaReader(seq, in, proc, sequencer);
+				}
+				reader.read(context.getTaskMonitor());
 			} else {
-				reader = new DeltaReader(
-						seq,
-						in,
-						proc,
-						sequencer
-				);
+				DeltaReader reader;
+				if (seq == null) {
+					reader = new DeltaReader(
+							computeBlockSize(entry.getFile()),
+							in,
+							proc,
+							sequencer
+					);
+				} else {
+					reader = new DeltaReader(
+							seq,
+							in,
+							proc,
+							sequencer
+					);
+				}
+				reader.read(context.getTaskMonitor());
 			}
 
-			reader.read(context.getTaskMonitor());
-
-			// Add sequence data
-			HashSequence returnedSequence = sequencer.getSequence();
-			context.getSequenceAdapter().writeSequenceEntry(entry, returnedSequence);
+			// The sequence data will be written by "commitStore"
+			storeData.sequence = sequencer.getSequence();
 		} catch (DeltaProcessorException e) {
 			Logger.defaultLogger().error(e);
 			throw new ApplicationException("Error storing " + entry.getKey() + ".", e);
@@ -324,6 +525,16 @@ extends AbstractArchiveHandler {
 		}
 	}
 
+	public void commitStore(FileSystemRecoveryEntry entry, Object data, ProcessContext context) 
+	throws ApplicationException, IOException, TaskCancelledException {
+		// Add sequence data
+		HashSequence sequence = ((StoreData)data).sequence;
+		context.getSequenceAdapter().writeSequenceEntry(entry, sequence);
+		if (context.getSignatureStore() != null) {
+			context.getSignatureStore().append(entry.getKey(), SequenceAdapter.getInstance().serialize(sequence));
+		}
+	}
+
 	/**
 	 * Delete the local sequence files associated to the deleted archive
 	 */
@@ -331,6 +542,12 @@ extends AbstractArchiveHandler {
 	throws IOException {
 		File f = getLocalSequenceDirectory(archive);
 		FileTool.getInstance().delete(f);
+		
+		// The signature store can't be used anymore if it covers the deleted archive
+		SignatureStore store = new SignatureStore(getSignatureDirectory());
+		if (store.contains(FileSystemManager.getName(archive))) {
+			store.invalidate();
+		}
 	}
 
 	private File buildRecoveryFile(File destination) {
@@ -367,84 +584,212 @@ extends AbstractArchiveHandler {
 			final short mode,
 			final ProcessContext context
 	) throws IOException, ApplicationException, TaskCancelledException {
-		// 1 : Ensure that there is a local copy of the files to recover
-		final File[] localFiles = medium.ensureLocalCopy(archivesToRecover, false, buildRecoveryFile(context.getRecoveryDestination()), filtersByArchive, policy, context);
-
-		// 2 : Process the files to recover
-		for (int i=0; i<localFiles.length; i++) {
-			File localArchive = localFiles[i];
-
-			String msg = "Processing archive " + i;
-			if (localArchive != null) {
-				msg += " (" + localArchive.getAbsolutePath() + ")";
+		final ArchiveEntryReader[] readers = new ArchiveEntryReader[archivesToRecover.length];
+		File[] localFiles = null;
+		RecoveryScheduler scheduler = new RecoveryScheduler(medium, context);
+		TaskMonitor monitor = context.getTaskMonitor().getCurrentActiveSubTask();
+		try {
+			// 1 : Read the archives directly if the medium allows it - ensure that there is a local copy of the files to recover otherwise
+			if (! buildDirectReaders(archivesToRecover, filtersByArchive, readers, context)) {
+				monitor.addNewSubTask(0.5, "local copy");
+				TaskMonitor copyMonitor = monitor.getCurrentActiveSubTask();
+				localFiles = medium.ensureLocalCopy(archivesToRecover, false, buildRecoveryFile(context.getRecoveryDestination()), filtersByArchive, policy, context);
+				copyMonitor.setCurrentCompletion(1);
+				for (int i=0; i<localFiles.length; i++) {
+					if (localFiles[i] != null) {
+						readers[i] = new DirectoryEntryReader(localFiles[i]);
+					}
+				}
+				monitor.addNewSubTask(0.5, "rebuild");
+				monitor = monitor.getCurrentActiveSubTask();
 			}
-			FileList list = filtersByArchive.get(archivesToRecover[i]);
-			if (list != null) {
-				msg += " - " + list.size() + " entr" + (list.size() <= 1 ? "y" : "ies");
-			} else {
-				msg += " - No filter";
+			final boolean cleanLocalCopies = (localFiles != null);
+
+			long total = 0;
+			for (int i=0; i<readers.length; i++) {
+				FileList list = filtersByArchive.get(archivesToRecover[i]);
+				if (readers[i] != null && list != null) {
+					total += list.size();
+				}
 			}
-			msg += " ...";
-			Logger.defaultLogger().info(msg);
-			if (localArchive != null && list != null) {
-				FileListIterator iter = list.iterator();
+			scheduler.setProgress(monitor, total);
 
-				try {
-					while (iter.hasNext()) {
-						context.getTaskMonitor().checkTaskState();
-						final String localPath = iter.next();
-						final File f = new File(localArchive, localPath);
-						if (DEBUG) {
-							Logger.defaultLogger().fine("Processing entry : " + f.getAbsolutePath());
-						}
-						if (FileSystemManager.exists(f)) {
-							if (FileSystemManager.isFile(f)) {
+			// 2 : Process the files to recover
+			for (int i=0; i<readers.length; i++) {
+				String msg = "Processing archive " + i;
+				if (localFiles != null && localFiles[i] != null) {
+					msg += " (" + localFiles[i].getAbsolutePath() + ")";
+				} else {
+					msg += " (" + archivesToRecover[i].getAbsolutePath() + ")";
+				}
+				FileList list = filtersByArchive.get(archivesToRecover[i]);
+				if (list != null) {
+					msg += " - " + list.size() + " entr" + (list.size() <= 1 ? "y" : "ies");
+				} else {
+					msg += " - No filter";
+				}
+				msg += " ...";
+				Logger.defaultLogger().info(msg);
+				if (readers[i] != null && list != null) {
+					FileListIterator iter = list.iterator();
+					FileListIterator[] previous = openPreviousLists(archivesToRecover, filtersByArchive, readers, i);
+
+					try {
+						while (iter.hasNext()) {
+							final String localPath = iter.next();
+							if (DEBUG) {
+								Logger.defaultLogger().fine("Processing entry : " + localPath + " in archive " + i);
+							}
+							if (! readers[i].contains(localPath)) {
+								if (DEBUG) {
+									Logger.defaultLogger().fine(localPath + " : Nothing to do (not a file or already processed)");
+								}
+								scheduler.skip();
+							} else if (isProcessed(localPath, previous, readers)) {
+								if (DEBUG) {
+									Logger.defaultLogger().fine(localPath + " : Nothing to do (already processed)");
+								}
+								scheduler.skip();
+							} else {
 								final File target = new File(context.getRecoveryDestination(), localPath);
 
 								if (policy == null || policy.accept(target)) {
 									final int index = i;
-									this.medium.doAndRetry(new IOTask() {
+									int streams = 1;
+									for (int j=i+1; j<readers.length; j++) {
+										if (readers[j] != null && readers[j].contains(localPath)) {
+											streams++;
+										}
+									}
+									scheduler.submit(new IOTask() {
 										public void run() throws IOException,TaskCancelledException,ApplicationException {
-											recoverRawFile(f, target, localFiles, index, localPath, mode, context);
+											recoverRawFile(target, readers, index, localPath, mode, cleanLocalCopies, context);
 										}
-									}, "Error while recovering " + target.getAbsolutePath());
+									}, streams, "Error while recovering " + target.getAbsolutePath());
 								} else {
 									if (DEBUG) {
-										Logger.defaultLogger().fine(f.getAbsolutePath() + " : File refused by policy object.");
+										Logger.defaultLogger().fine(localPath + " : File refused by policy object.");
 									}
+									scheduler.skip();
 								}
-							} else {
-								if (DEBUG) {
-									Logger.defaultLogger().fine(f.getAbsolutePath() + " : Nothing to do (not a file)");
-								}
-							}
-						} else {
-							if (DEBUG) {
-								Logger.defaultLogger().fine(f.getAbsolutePath() + " : Nothing to do (already processed)");
 							}
 						}
+					} finally {
+						try {
+							iter.close();
+						} finally {
+							closeLists(previous);
+						}
 					}
-				} finally {
-					iter.close();
+
+					// All the files of the archive must have been processed before the local archive is destroyed
+					scheduler.waitForCompletion();
+					if (localFiles != null) {
+						medium.completeLocalCopyCleaning(localFiles[i], context);
+					}
+				}
+			}
+		} finally {
+			try {
+				scheduler.close();
+			} finally {
+				for (int i=0; i<readers.length; i++) {
+					if (readers[i] != null) {
+						readers[i].close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Build the readers which will be used to read the archives directly (without local copy).
+	 * <BR>Return false if direct reading is disabled or not supported by one of the archives (the readers which may have been built are closed).
+	 */
+	private boolean buildDirectReaders(
+			File[] archivesToRecover, 
+			RecoveryFilterMap filtersByArchive, 
+			ArchiveEntryReader[] readers,
+			ProcessContext context
+	) throws IOException, ApplicationException {
+		if (! ArecaConfiguration.get().isRecoveryDirectRead()) {
+			return false;
+		}
+
+		for (int i=0; i<archivesToRecover.length; i++) {
+			readers[i] = medium.buildEntryReader(archivesToRecover[i], filtersByArchive.get(archivesToRecover[i]), context);
+			if (readers[i] == null) {
+				for (int j=0; j<i; j++) {
+					readers[j].close();
+					readers[j] = null;
+				}
+				return false;
+			}
+		}
+		Logger.defaultLogger().info("The archives will be read directly.");
+		return true;
+	}
+
+	/**
+	 * Open the lists of the archives which precede the current archive
+	 */
+	private FileListIterator[] openPreviousLists(
+			File[] archivesToRecover, 
+			RecoveryFilterMap filtersByArchive, 
+			ArchiveEntryReader[] readers,
+			int current
+	) throws IOException {
+		FileListIterator[] ret = new FileListIterator[current];
+		try {
+			for (int k=0; k<current; k++) {
+				FileList list = filtersByArchive.get(archivesToRecover[k]);
+				if (readers[k] != null && list != null) {
+					ret[k] = list.iterator();
 				}
+			}
+		} catch (IOException e) {
+			closeLists(ret);
+			throw e;
+		}
+		return ret;
+	}
 
-				// Destroy the local archive
-				medium.completeLocalCopyCleaning(localArchive, context);
+	private static void closeLists(FileListIterator[] lists) throws IOException {
+		for (int k=0; k<lists.length; k++) {
+			if (lists[k] != null) {
+				lists[k].close();
+			}
+		}
+	}
+
+	/**
+	 * Return true if the entry has already been recovered from a previous archive.
+	 * <BR>The entry is searched in the lists of the previous archives (which are sorted as the current list and read forward)
+	 */
+	private static boolean isProcessed(String localPath, FileListIterator[] previous, ArchiveEntryReader[] readers) 
+	throws IOException {
+		for (int k=0; k<previous.length; k++) {
+			if (previous[k] != null && previous[k].fetch(localPath) && readers[k].contains(localPath)) {
+				return true;
 			}
 		}
+		return false;
 	}
 
+	/**
+	 * Rebuild the file from its layers : the layer stored in the archive passed as argument and the layers of the posterior archives.
+	 * <BR>This method can be called concurrently for distinct files.
+	 */
 	protected void recoverRawFile(
-			File f,
 			File target,
-			File[] localFiles,
+			ArchiveEntryReader[] readers,
 			int i,
 			String localPath,
 			int mode,
+			boolean cleanLocalCopies,
 			ProcessContext context
 	) throws IOException, TaskCancelledException, ApplicationException {
 		ArrayList localCopies = new ArrayList();
-		localCopies.add(f);
 
 		// Local input stream
 		LayerHandler in = null;
@@ -456,21 +801,17 @@ extends AbstractArchiveHandler {
 
 		try {
 			if (DEBUG) {
-				Logger.defaultLogger().fine("   Looking for diff files for : " + f.getAbsolutePath());
+				Logger.defaultLogger().fine("   Looking for diff files for : " + localPath);
 			}
-			in.addInputStream(FileSystemManager.getCachedFileInputStream(f), localPath);
+			in.addInputStream(readers[i].getInputStream(localPath), localPath);
+			registerLocalCopy(readers[i], localPath, localCopies);
 
-			for (int j=i + 1; j<localFiles.length; j++) {
-				File posteriorArchive = localFiles[j];
-				if (posteriorArchive != null) {
-					File f2 = new File(posteriorArchive, localPath);
-					if (FileSystemManager.exists(f2)) {
-						localCopies.add(f2);
-						in.addInputStream(FileSystemManager.getCachedFileInputStream(f2), localPath);
-						if (DEBUG) {
-							Logger.defaultLogger().fine("   Adding diff file : " + f2.getAbsolutePath());
-
-						}
+			for (int j=i + 1; j<readers.length; j++) {
+				if (readers[j] != null && readers[j].contains(localPath)) {
+					in.addInputStream(readers[j].getInputStream(localPath), localPath);
+					registerLocalCopy(readers[j], localPath, localCopies);
+					if (DEBUG) {
+						Logger.defaultLogger().fine("   Adding diff file from archive " + j);
 					}
 				}
 			}
@@ -516,12 +857,20 @@ extends AbstractArchiveHandler {
 		}
 
 		// Delete local copies
-		if (DEBUG) {
-			Logger.defaultLogger().fine("   Cleaning local copies (" + localCopies.toString() + ") ...");
+		if (cleanLocalCopies) {
+			if (DEBUG) {
+				Logger.defaultLogger().fine("   Cleaning local copies (" + localCopies.toString() + ") ...");
+			}
+			medium.cleanLocalCopies(localCopies, context);
+			if (DEBUG) {
+				Logger.defaultLogger().fine("   Local copies cleaned.");
+			}
 		}
-		medium.cleanLocalCopies(localCopies, context);
-		if (DEBUG) {
-			Logger.defaultLogger().fine("   Local copies cleaned.");
+	}
+
+	private static void registerLocalCopy(ArchiveEntryReader reader, String localPath, ArrayList localCopies) {
+		if (reader instanceof DirectoryEntryReader) {
+			localCopies.add(((DirectoryEntryReader)reader).getFile(localPath));
 		}
 	}
 
@@ -544,4 +893,12 @@ extends AbstractArchiveHandler {
 	public boolean autonomousArchives() {
 		return false;
 	}
+
+	/**
+	 * Data of an entry between "prepareStore" and "commitStore"
+	 */
+	private static class StoreData {
+		private HashSequence referenceSequence;
+		private HashSequence sequence;
+	}
 }
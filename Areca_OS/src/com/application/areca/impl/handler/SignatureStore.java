@@ -0,0 +1,631 @@
+package com.application.areca.impl.handler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import com.myJava.file.FileSystemManager;
+import com.myJava.file.FileTool;
+import com.myJava.file.iterator.FilePathComparator;
+import com.myJava.util.log.Logger;
+
+/**
+ * Local store of the HashSequences written by the delta handler, indexed by path.
+ * <BR>It contains, for each file, the most recent sequence stored in the archives it covers (from the last full backup
+ * to the most recent archive), so that the delta handler can locate the previous sequence of a file without reading the
+ * sequence files of the archives.
+ * <BR>
+ * <BR>Two files are used :
+ * <BR>- the data file, which is append-only : [MAGIC : 4 bytes][GENERATION : 8 bytes][RECORDS]
+ * with RECORD = [KEY LENGTH : 4 bytes][KEY (UTF-8)][DATA LENGTH : 4 bytes][DATA (serialized HashSequence)]
+ * <BR>- the index, which is rewritten at each commit : [MAGIC : 4 bytes][VERSION : 4 bytes][GENERATION : 8 bytes][ARCHIVES][KEYS][POINTERS][TRAILER]
+ * <BR>with ARCHIVES = [NUMBER OF ARCHIVES : 4 bytes][ARCHIVE NAME (writeUTF)]*, KEY = [KEY LENGTH : 4 bytes][KEY (UTF-8)][DATA OFFSET : 8 bytes][DATA LENGTH : 4 bytes],
+ * POINTERS = [OFFSET OF THE KEY : 8 bytes]* and TRAILER = [DATA FILE LENGTH : 8 bytes][LIVE DATA : 8 bytes][POINTERS OFFSET : 8 bytes][NUMBER OF KEYS : 8 bytes]
+ * <BR>The keys are sorted (as defined by the FilePathComparator) : they are located by dichotomy on the pointers.
+ * <BR>
+ * <BR>The entries appended during a backup are only visible once the store has been committed ("commit") : the index is then
+ * merged with the new entries. Uncommitted entries (cancelled or interrupted backups) are discarded when the store is opened.
+ * <BR>The data file is compacted during the commit when it mostly contains obsolete entries.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class SignatureStore {
+	private static final int MAGIC = 0x41534947; // "ASIG"
+	private static final int VERSION = 1;
+	private static final String DATA_FILE = "signatures.dat";
+	private static final String INDEX_FILE = "signatures.idx";
+	private static final String POINTERS_FILE = "signatures.ptr";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final String ENCODING = "UTF-8";
+	private static final int DATA_HEADER_LENGTH = 4 + 8;
+	private static final int TRAILER_LENGTH = 8 + 8 + 8 + 8;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+	private File directory;
+	private File dataFile;
+	private File indexFile;
+
+	// Committed state, as read from the index
+	private String[] archives = null; // Archives covered by the store (null if there is no valid index)
+	private long generation;
+	private long committedLength;
+	private long liveBytes; // Size of the records referenced by the index
+	private long pointersOffset;
+	private long nbEntries;
+
+	private RandomAccessFile indexReader;
+	private RandomAccessFile dataReader;
+	private DataOutputStream appender;
+
+	/**
+	 * Length of the data file, including the uncommitted entries
+	 */
+	private long length;
+
+	public SignatureStore(File directory) {
+		this.directory = directory;
+		this.dataFile = new File(directory, DATA_FILE);
+		this.indexFile = new File(directory, INDEX_FILE);
+	}
+
+	/**
+	 * Open the store. The uncommitted entries are discarded.
+	 * <BR>If the index is missing or invalid, the store is reset.
+	 */
+	public synchronized void open() throws IOException {
+		closeHandles();
+		if (readIndex()) {
+			truncate(committedLength);
+			openHandles();
+		} else {
+			reset();
+		}
+	}
+
+	/**
+	 * Archives covered by the store (null if the store has never been committed)
+	 */
+	public synchronized String[] getArchives() {
+		return archives;
+	}
+
+	/**
+	 * Tells whether the store covers exactly the archives passed as argument
+	 */
+	public synchronized boolean covers(String[] archives) {
+		return this.archives != null && Arrays.equals(this.archives, archives);
+	}
+
+	/**
+	 * Tells whether the archive passed as argument is covered by the store (the store doesn't need to be open)
+	 */
+	public synchronized boolean contains(String archive) throws IOException {
+		if (archives == null && ! readIndex()) {
+			return false;
+		}
+		for (int i=0; i<archives.length; i++) {
+			if (archives[i].equals(archive)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remove all entries. The store won't cover any archive until it is committed.
+	 */
+	public synchronized void reset() throws IOException {
+		closeHandles();
+		FileTool.getInstance().createDir(directory);
+		if (FileSystemManager.exists(indexFile)) {
+			FileSystemManager.delete(indexFile);
+		}
+
+		generation = newGeneration();
+		DataOutputStream out = new DataOutputStream(FileSystemManager.getFileOutputStream(dataFile));
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(generation);
+		} finally {
+			out.close();
+		}
+
+		archives = null;
+		committedLength = DATA_HEADER_LENGTH;
+		liveBytes = 0;
+		pointersOffset = 0;
+		nbEntries = 0;
+		openHandles();
+	}
+
+	/**
+	 * Discard the uncommitted entries
+	 */
+	public synchronized void rollback() throws IOException {
+		closeHandles();
+		truncate(committedLength);
+		openHandles();
+	}
+
+	/**
+	 * Delete the store
+	 */
+	public synchronized void invalidate() throws IOException {
+		closeHandles();
+		archives = null;
+		if (FileSystemManager.exists(indexFile)) {
+			FileSystemManager.delete(indexFile);
+		}
+		if (FileSystemManager.exists(dataFile)) {
+			FileSystemManager.delete(dataFile);
+		}
+	}
+
+	/**
+	 * Return the data stored for the key passed as argument, or null if the key can't be found among the committed entries
+	 */
+	public synchronized byte[] lookup(String key) throws IOException {
+		if (indexReader == null) {
+			return null;
+		}
+
+		long low = 0;
+		long high = nbEntries - 1;
+		while (low <= high) {
+			long mid = (low + high) >>> 1;
+			indexReader.seek(pointersOffset + 8 * mid);
+			indexReader.seek(indexReader.readLong());
+			int result = FilePathComparator.instance().compare(readString(indexReader), key);
+			if (result < 0) {
+				low = mid + 1;
+			} else if (result > 0) {
+				high = mid - 1;
+			} else {
+				long offset = indexReader.readLong();
+				byte[] data = new byte[indexReader.readInt()];
+				dataReader.seek(offset);
+				dataReader.readFully(data);
+				return data;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Append an entry. The entries must be appended in ascending order of their keys, and will only be visible
+	 * once the store has been committed.
+	 */
+	public synchronized void append(String key, byte[] data) throws IOException {
+		byte[] k = key.getBytes(ENCODING);
+		appender.writeInt(k.length);
+		appender.write(k);
+		appender.writeInt(data.length);
+		appender.write(data);
+		length += 4 + k.length + 4 + data.length;
+	}
+
+	/**
+	 * Merge the uncommitted entries with the index. The store then covers the archives passed as argument.
+	 */
+	public synchronized void commit(String[] archives) throws IOException {
+		closeHandles();
+		length = FileSystemManager.length(dataFile);
+
+		// Compact the data file if the obsolete entries exceed the live entries
+		long committedData = committedLength - DATA_HEADER_LENGTH;
+		long pendingData = length - committedLength;
+		boolean compact = committedData > MIN_COMPACTION_SIZE && committedData - liveBytes > liveBytes + pendingData;
+		long newGeneration = compact ? newGeneration() : generation;
+
+		File tmpIndex = new File(directory, INDEX_FILE + TMP_SUFFIX);
+		File tmpPointers = new File(directory, POINTERS_FILE + TMP_SUFFIX);
+		File tmpData = new File(directory, DATA_FILE + TMP_SUFFIX);
+
+		IndexCursor committed = null;
+		TailCursor pending = null;
+		RandomAccessFile source = null;
+		DataOutputStream idx = null;
+		DataOutputStream ptr = null;
+		DataOutputStream dat = null;
+		try {
+			committed = new IndexCursor();
+			pending = new TailCursor();
+			idx = new DataOutputStream(new BufferedOutputStream(FileSystemManager.getFileOutputStream(tmpIndex), BUFFER_SIZE));
+			ptr = new DataOutputStream(new BufferedOutputStream(FileSystemManager.getFileOutputStream(tmpPointers), BUFFER_SIZE));
+			if (compact) {
+				Logger.defaultLogger().info("Compacting signature store : " + FileSystemManager.getAbsolutePath(dataFile) + " ...");
+				source = new RandomAccessFile(dataFile, "r");
+				dat = new DataOutputStream(new BufferedOutputStream(FileSystemManager.getFileOutputStream(tmpData), BUFFER_SIZE));
+				dat.writeInt(MAGIC);
+				dat.writeLong(newGeneration);
+			}
+
+			// Header
+			idx.writeInt(MAGIC);
+			idx.writeInt(VERSION);
+			idx.writeLong(newGeneration);
+			idx.writeInt(archives.length);
+			for (int i=0; i<archives.length; i++) {
+				idx.writeUTF(archives[i]);
+			}
+			long position = idx.size();
+
+			// Merge the keys (the uncommitted entries override the committed ones)
+			long count = 0;
+			long live = 0;
+			long dataPosition = DATA_HEADER_LENGTH;
+			boolean hasCommitted = committed.next();
+			boolean hasPending = pending.next();
+			while (hasCommitted || hasPending) {
+				int result;
+				if (! hasCommitted) {
+					result = 1;
+				} else if (! hasPending) {
+					result = -1;
+				} else {
+					result = FilePathComparator.instance().compare(committed.key, pending.key);
+				}
+
+				String key;
+				long offset;
+				int len;
+				if (result < 0) {
+					key = committed.key;
+					offset = committed.offset;
+					len = committed.length;
+					hasCommitted = committed.next();
+				} else {
+					key = pending.key;
+					offset = pending.offset;
+					len = pending.length;
+					if (result == 0) {
+						hasCommitted = committed.next();
+					}
+					hasPending = pending.next();
+				}
+
+				byte[] k = key.getBytes(ENCODING);
+				if (compact) {
+					byte[] data = new byte[len];
+					source.seek(offset);
+					source.readFully(data);
+					dat.writeInt(k.length);
+					dat.write(k);
+					dat.writeInt(len);
+					dat.write(data);
+					offset = dataPosition + 4 + k.length + 4;
+					dataPosition = offset + len;
+				}
+
+				ptr.writeLong(position);
+				idx.writeInt(k.length);
+				idx.write(k);
+				idx.writeLong(offset);
+				idx.writeInt(len);
+				position += 4 + k.length + 8 + 4;
+				count++;
+				live += 4 + k.length + 4 + len;
+			}
+			ptr.close();
+			ptr = null;
+
+			// Pointers
+			InputStream in = FileSystemManager.getFileInputStream(tmpPointers);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					idx.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+
+			// Trailer
+			idx.writeLong(compact ? dataPosition : length);
+			idx.writeLong(live);
+			idx.writeLong(position);
+			idx.writeLong(count);
+			idx.close();
+			idx = null;
+			if (compact) {
+				dat.close();
+				dat = null;
+			}
+		} finally {
+			if (committed != null) {
+				committed.close();
+			}
+			if (pending != null) {
+				pending.close();
+			}
+			if (source != null) {
+				source.close();
+			}
+			if (ptr != null) {
+				ptr.close();
+			}
+			if (idx != null) {
+				idx.close();
+			}
+			if (dat != null) {
+				dat.close();
+			}
+			FileSystemManager.delete(tmpPointers);
+		}
+
+		// Replace the files ; the previous index is deleted first, so that an interrupted commit leaves an invalid store
+		if (FileSystemManager.exists(indexFile)) {
+			FileSystemManager.delete(indexFile);
+		}
+		if (compact) {
+			replace(tmpData, dataFile);
+		}
+		replace(tmpIndex, indexFile);
+
+		if (! readIndex()) {
+			throw new IOException("Unable to read signature index : " + FileSystemManager.getAbsolutePath(indexFile));
+		}
+		openHandles();
+	}
+
+	/**
+	 * Close the store. The uncommitted entries are kept until the store is committed, rollbacked or reopened.
+	 */
+	public synchronized void close() throws IOException {
+		closeHandles();
+	}
+
+	public String toString() {
+		return FileSystemManager.getAbsolutePath(directory) + " (" + nbEntries + " entries)";
+	}
+
+	/**
+	 * Read the header and trailer of the index. Return false if the index is missing or doesn't match the data file.
+	 */
+	private boolean readIndex() throws IOException {
+		archives = null;
+		if (! (FileSystemManager.exists(indexFile) && FileSystemManager.exists(dataFile))) {
+			return false;
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+		try {
+			if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+				Logger.defaultLogger().warn("Invalid signature index : " + FileSystemManager.getAbsolutePath(indexFile) + ". It will be rebuilt.");
+				return false;
+			}
+			long indexGeneration = raf.readLong();
+			String[] indexArchives = new String[raf.readInt()];
+			for (int i=0; i<indexArchives.length; i++) {
+				indexArchives[i] = raf.readUTF();
+			}
+			raf.seek(raf.length() - TRAILER_LENGTH);
+			long indexDataLength = raf.readLong();
+			long indexLiveBytes = raf.readLong();
+			long indexPointersOffset = raf.readLong();
+			long indexEntries = raf.readLong();
+
+			if (readDataGeneration() != indexGeneration || FileSystemManager.length(dataFile) < indexDataLength) {
+				Logger.defaultLogger().info("Outdated signature index : " + FileSystemManager.getAbsolutePath(indexFile) + ". It will be rebuilt.");
+				return false;
+			}
+
+			this.generation = indexGeneration;
+			this.committedLength = indexDataLength;
+			this.liveBytes = indexLiveBytes;
+			this.pointersOffset = indexPointersOffset;
+			this.nbEntries = indexEntries;
+			this.archives = indexArchives;
+			return true;
+		} catch (EOFException e) {
+			Logger.defaultLogger().warn("Truncated signature index : " + FileSystemManager.getAbsolutePath(indexFile) + ". It will be rebuilt.");
+			return false;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private long readDataGeneration() throws IOException {
+		DataInputStream in = new DataInputStream(FileSystemManager.getFileInputStream(dataFile));
+		try {
+			return in.readInt() == MAGIC ? in.readLong() : -1;
+		} catch (EOFException e) {
+			return -1;
+		} finally {
+			in.close();
+		}
+	}
+
+	private long newGeneration() {
+		long ret = System.currentTimeMillis();
+		return ret == generation ? ret + 1 : ret;
+	}
+
+	private void openHandles() throws IOException {
+		length = FileSystemManager.length(dataFile);
+		dataReader = new RandomAccessFile(dataFile, "r");
+		if (archives != null && nbEntries != 0) {
+			indexReader = new RandomAccessFile(indexFile, "r");
+		}
+		appender = new DataOutputStream(new BufferedOutputStream(FileSystemManager.getFileOutputStream(dataFile, true), BUFFER_SIZE));
+	}
+
+	private void closeHandles() throws IOException {
+		try {
+			if (appender != null) {
+				appender.close();
+			}
+		} finally {
+			appender = null;
+			try {
+				if (dataReader != null) {
+					dataReader.close();
+				}
+			} finally {
+				dataReader = null;
+				if (indexReader != null) {
+					indexReader.close();
+				}
+				indexReader = null;
+			}
+		}
+	}
+
+	private void truncate(long size) throws IOException {
+		if (FileSystemManager.length(dataFile) > size) {
+			RandomAccessFile raf = new RandomAccessFile(dataFile, "rw");
+			try {
+				raf.setLength(size);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+
+	private static void replace(File source, File destination) throws IOException {
+		if (FileSystemManager.exists(destination)) {
+			FileSystemManager.delete(destination);
+		}
+		if (! FileSystemManager.renameTo(source, destination)) {
+			throw new IOException("Unable to rename " + FileSystemManager.getAbsolutePath(source) + " to " + FileSystemManager.getAbsolutePath(destination));
+		}
+	}
+
+	private static void skip(InputStream in, long len) throws IOException {
+		while (len > 0) {
+			long skipped = in.skip(len);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new EOFException();
+				}
+				skipped = 1;
+			}
+			len -= skipped;
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] b = new byte[in.readInt()];
+		in.readFully(b);
+		return new String(b, ENCODING);
+	}
+
+	/**
+	 * Sequential reader of the committed keys
+	 */
+	private class IndexCursor {
+		private DataInputStream in;
+		private long remaining;
+		public String key;
+		public long offset;
+		public int length;
+
+		public IndexCursor() throws IOException {
+			if (archives != null && nbEntries != 0) {
+				remaining = nbEntries;
+				in = new DataInputStream(new BufferedInputStream(FileSystemManager.getFileInputStream(indexFile), BUFFER_SIZE));
+				in.readInt();
+				in.readInt();
+				in.readLong();
+				int nbArchives = in.readInt();
+				for (int i=0; i<nbArchives; i++) {
+					in.readUTF();
+				}
+			}
+		}
+
+		public boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			key = readString(in);
+			offset = in.readLong();
+			length = in.readInt();
+			return true;
+		}
+
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Sequential reader of the uncommitted entries
+	 */
+	private class TailCursor {
+		private DataInputStream in;
+		private long position;
+		public String key;
+		public long offset;
+		public int length;
+
+		public TailCursor() throws IOException {
+			position = committedLength;
+			if (position < SignatureStore.this.length) {
+				in = new DataInputStream(new BufferedInputStream(FileSystemManager.getFileInputStream(dataFile), BUFFER_SIZE));
+				skip(in, position);
+			}
+		}
+
+		public boolean next() throws IOException {
+			if (position >= SignatureStore.this.length) {
+				return false;
+			}
+			String previous = key;
+			byte[] k = new byte[in.readInt()];
+			in.readFully(k);
+			key = new String(k, ENCODING);
+			length = in.readInt();
+			offset = position + 4 + k.length + 4;
+			skip(in, length);
+			position = offset + length;
+
+			if (previous != null && FilePathComparator.instance().compare(previous, key) >= 0) {
+				throw new IOException("Unsorted signature entries : " + key + " <= " + previous);
+			}
+			return true;
+		}
+
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+}
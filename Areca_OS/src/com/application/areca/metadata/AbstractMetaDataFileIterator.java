@@ -41,6 +41,11 @@ public abstract class AbstractMetaDataFileIterator {
 	 */
 	private BufferedReader in;
 	
+	/**
+	 * The reader used for indexed files (null for text files)
+	 */
+	private IndexedMetadataReader indexedReader;
+	
 	/**
 	 * The current entry
 	 */
@@ -52,6 +57,11 @@ public abstract class AbstractMetaDataFileIterator {
 	private AbstractMetadataAdapter adapter;
 	
 	protected boolean closed = false;
+	
+	/**
+	 * Background decoder (null if the entries are decoded on demand)
+	 */
+	private DecodeAhead decoder;
 
 	protected AbstractMetaDataFileIterator(BufferedReader reader, AbstractMetadataAdapter adapter) throws IOException {
 		this.in = reader;
@@ -59,6 +69,13 @@ public abstract class AbstractMetaDataFileIterator {
 		
 		this.fetchNext();
 	}
+
+	protected AbstractMetaDataFileIterator(IndexedMetadataReader reader, AbstractMetadataAdapter adapter) throws IOException {
+		this.indexedReader = reader;
+		this.adapter = adapter;
+		
+		this.fetchNext();
+	}
 	
 	/**
 	 * Close the iterator
@@ -69,7 +86,29 @@ public abstract class AbstractMetaDataFileIterator {
     	}
     	closed = true;
     	
-		in.close();
+    	if (decoder != null) {
+    		decoder.stop();
+    	}
+    	if (indexedReader != null) {
+    		indexedReader.close();
+    	} else {
+    		in.close();
+    	}
+	}
+	
+	/**
+	 * Read and decode the next entries in a background thread.
+	 * <BR>Up to "queueSize" entries are decoded in advance.
+	 */
+	public void startDecodeAhead(int queueSize) {
+		if (decoder == null && ! closed) {
+			decoder = new DecodeAhead(queueSize);
+			Thread th = new Thread(decoder);
+			th.setDaemon(true);
+			th.setName("Metadata decoder : " + getSource());
+			decoder.setThread(th);
+			th.start();
+		}
 	}
 	
 	public MetadataHeader getHeader() throws IOException {
@@ -85,15 +124,29 @@ public abstract class AbstractMetaDataFileIterator {
 	}
 	
 	private void fetchNext() throws IOException {
-		String line = in.readLine();
-		if (line == null) {
-			pointer = null;
+		if (decoder == null) {
+			pointer = readEntry();
 		} else {
-	        line = line.trim();
-			if (line.length() == 0) {
-				fetchNext();
+			pointer = decoder.take();
+		}
+	}
+	
+	/**
+	 * Read and decode the next entry (null if the end of the file has been reached)
+	 */
+	private AbstractMetaDataEntry readEntry() throws IOException {
+		if (indexedReader != null) {
+			return indexedReader.next();
+		}
+		while (true) {
+			String line = in.readLine();
+			if (line == null) {
+				return null;
 			} else {
-				pointer = adapter.decodeEntry(line);
+		        line = line.trim();
+				if (line.length() != 0) {
+					return adapter.decodeEntry(line);
+				}
 			}
 		}
 	}
@@ -115,6 +168,10 @@ public abstract class AbstractMetaDataFileIterator {
 					return true;
 				} else if (result < 0) {
 					// key > pointer --> not reached yet
+					if (indexedReader != null && decoder == null) {
+						// Indexed file : jump to the first entry >= key
+						indexedReader.seek(key);
+					}
 					this.nextEntry();
 				} else {
 					// key < pointer --> not found in context
@@ -133,4 +190,107 @@ public abstract class AbstractMetaDataFileIterator {
 	public AbstractMetaDataEntry currentEntry() {
 		return this.pointer;
 	}
+	
+	/**
+	 * Reads and decodes the entries in a background thread, and stores them in a bounded queue
+	 */
+	private class DecodeAhead implements Runnable {
+		private AbstractMetaDataEntry[] queue;
+		private int head = 0;
+		private int count = 0;
+		private boolean eof = false;
+		private boolean stopped = false;
+		private boolean producerWaiting = false;
+		private boolean consumerWaiting = false;
+		private IOException error;
+		private Thread thread;
+
+		public DecodeAhead(int queueSize) {
+			this.queue = new AbstractMetaDataEntry[Math.max(queueSize, 1)];
+		}
+
+		public void setThread(Thread thread) {
+			this.thread = thread;
+		}
+
+		/**
+		 * Return the next decoded entry (null if the end of the file has been reached)
+		 */
+		public synchronized AbstractMetaDataEntry take() throws IOException {
+			while (count == 0 && ! eof && error == null) {
+				consumerWaiting = true;
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted while reading " + getSource());
+				} finally {
+					consumerWaiting = false;
+				}
+			}
+			if (count == 0) {
+				if (error != null) {
+					throw error;
+				}
+				return null;
+			}
+
+			AbstractMetaDataEntry entry = queue[head];
+			queue[head] = null;
+			head = (head + 1) % queue.length;
+			count--;
+
+			// Only wake up the decoder once half of the queue is free
+			if (producerWaiting && count <= queue.length / 2) {
+				notifyAll();
+			}
+			return entry;
+		}
+
+		public void stop() throws IOException {
+			synchronized (this) {
+				stopped = true;
+				notifyAll();
+			}
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while closing " + getSource());
+			}
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					AbstractMetaDataEntry entry = readEntry();
+					synchronized (this) {
+						while (count == queue.length && ! stopped) {
+							producerWaiting = true;
+							try {
+								wait();
+							} finally {
+								producerWaiting = false;
+							}
+						}
+						if (stopped) {
+							return;
+						} else if (entry == null) {
+							eof = true;
+							notifyAll();
+							return;
+						}
+						queue[(head + count) % queue.length] = entry;
+						count++;
+						if (consumerWaiting) {
+							notifyAll();
+						}
+					}
+				}
+			} catch (Exception e) {
+				synchronized (this) {
+					error = (e instanceof IOException) ? (IOException)e : new IOException(e);
+					notifyAll();
+				}
+			}
+		}
+	}
 }
@@ -1,5 +1,6 @@
 package com.application.areca.metadata;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -57,6 +58,7 @@ public abstract class AbstractMetadataAdapter {
 	//protected static final String VERSION = VERSION_HEADER + "4"; // new posix attributes format
 	//protected static final String VERSION = VERSION_HEADER + "5"; // traces and contents are now ordered
 	protected static final String VERSION = VERSION_HEADER + "6"; // The global file prefix is written in the file's header
+	protected static final String INDEXED_VERSION = VERSION_HEADER + "7"; // Binary format : prefix-compressed keys, typed fields and block index (see IndexedMetadataWriter)
 
 	private static FileTool TOOL = FileTool.getInstance();
 
@@ -65,6 +67,11 @@ public abstract class AbstractMetadataAdapter {
 	 */
 	private Writer writer;
 
+	/**
+	 * Writer used for the indexed binary format
+	 */
+	private IndexedMetadataWriter indexedWriter;
+
 	/**
 	 * OS
 	 */
@@ -75,6 +82,11 @@ public abstract class AbstractMetadataAdapter {
 	 */
 	private boolean isCompressed = true;
 
+	/**
+	 * Tells wether the content is written in the indexed binary format (version 7) or as text lines (version 6)
+	 */
+	private boolean isIndexed = ArecaConfiguration.get().isMetaDataIndexedFormat();
+
 	/**
 	 * Global prefix of the metadata file. All names are considered relative to this prefix
 	 */
@@ -102,14 +114,14 @@ public abstract class AbstractMetadataAdapter {
 		this.globalPrefix = globalPrefix;
 	}
 
-	private void initOutputStream() throws IOException {
+	private void initOutputStream(boolean gzip) throws IOException {
 		if (outputStream == null) {
 			File parent = FileSystemManager.getParentFile(file);
 			if (! FileSystemManager.exists(parent)) {
 				TOOL.createDir(parent);
 			}
 
-			if (isCompressed) {
+			if (gzip) {
 				// Metadata are compressed
 				this.outputStream = new GZIPOutputStream(
 						FileSystemManager.getCachedFileOutputStream(file) // METADATA are written in "cached" mode
@@ -125,8 +137,16 @@ public abstract class AbstractMetadataAdapter {
 	}
 	
 	private void initWriter() throws IOException {
-		if (writer == null) {
-			initOutputStream();
+		if (isIndexed) {
+			if (indexedWriter == null) {
+				// The blocks are compressed individually
+				initOutputStream(false);
+				String header = INDEXED_VERSION + "\n" + GLOBAL_PREFIX_HEADER + MetadataEncoder.getInstance().encode(this.globalPrefix) + "\n";
+				this.outputStream.write(header.getBytes(DATA_CHARSET));
+				this.indexedWriter = new IndexedMetadataWriter(this.outputStream, isCompressed);
+			}
+		} else if (writer == null) {
+			initOutputStream(isCompressed);
 			this.writer = new OutputStreamWriter(this.outputStream, DATA_CHARSET);
 			this.writer.write(VERSION + "\n" + GLOBAL_PREFIX_HEADER + MetadataEncoder.getInstance().encode(this.globalPrefix) + "\n");
 		}
@@ -134,7 +154,14 @@ public abstract class AbstractMetadataAdapter {
 
 	protected void write(String content) throws IOException {
 		this.initWriter();
-		this.writer.write("\r\n" + content);
+		if (isIndexed) {
+			content = content.trim();
+			if (content.length() != 0) {
+				this.indexedWriter.add(decodeEntry(content));
+			}
+		} else {
+			this.writer.write("\r\n" + content);
+		}
 
 		// Write in secondary Adapter
 		if (this.secondaryAdapter != null) {
@@ -142,6 +169,23 @@ public abstract class AbstractMetadataAdapter {
 		}
 	}  
 
+	/**
+	 * Write an entry read from another metadata file
+	 */
+	protected void writeEntry(AbstractMetaDataEntry entry) throws IOException {
+		if (isIndexed) {
+			this.initWriter();
+			this.indexedWriter.add(entry);
+
+			// Write in secondary Adapter
+			if (this.secondaryAdapter != null) {
+				this.secondaryAdapter.writeEntry(entry);
+			}
+		} else {
+			write(encodeEntry(entry));
+		}
+	}
+
 	public String getGlobalPrefix() {
 		return globalPrefix;
 	}
@@ -164,6 +208,9 @@ public abstract class AbstractMetadataAdapter {
 				}
 			} else if (outputStream != null) {
 				try {
+					if (indexedWriter != null) {
+						this.indexedWriter.finish();
+					}
 					this.outputStream.flush();
 				} finally {
 					this.outputStream.close();
@@ -184,12 +231,30 @@ public abstract class AbstractMetadataAdapter {
 		}
 	}
 
+	/**
+	 * Open the file. Text files (version 6 or older) are decompressed if needed. Indexed files
+	 * are returned as is (their header is not compressed).
+	 */
 	protected InputStream buildInputStream() throws IOException {
+		InputStream in = new BufferedInputStream(FileSystemManager.getCachedFileInputStream(file));
 		if (isCompressed && FileSystemManager.length(file) != 0) {
-			return new GZIPInputStream(FileSystemManager.getCachedFileInputStream(file));
-		} else {
-			return FileSystemManager.getCachedFileInputStream(file);
+			// Check the GZip signature
+			in.mark(2);
+			int b1 = in.read();
+			int b2 = in.read();
+			in.reset();
+			if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) && b2 == ((GZIPInputStream.GZIP_MAGIC >> 8) & 0xFF)) {
+				return new GZIPInputStream(in);
+			}
 		}
+		return in;
+	}
+
+	/**
+	 * Build a reader for files written in the indexed format
+	 */
+	protected IndexedMetadataReader buildIndexedReader() throws IOException {
+		return new IndexedMetadataReader(file, this);
 	}
 
 	protected MetadataHeader getMetaData() throws IOException {
@@ -224,6 +289,16 @@ public abstract class AbstractMetadataAdapter {
 
 	public abstract AbstractMetaDataEntry decodeEntry(String line);
 
+	/**
+	 * Build an entry read from an indexed file
+	 */
+	public abstract AbstractMetaDataEntry buildEntry(char type, String key, String data);
+
+	/**
+	 * Serialize the entry as a text line (inverse of decodeEntry)
+	 */
+	protected abstract String encodeEntry(AbstractMetaDataEntry entry);
+
 	public boolean isCompressed() {
 		return isCompressed;
 	}
@@ -232,6 +307,14 @@ public abstract class AbstractMetadataAdapter {
 		this.isCompressed = isCompressed;
 	}
 
+	public boolean isIndexed() {
+		return isIndexed;
+	}
+
+	public void setIndexed(boolean isIndexed) {
+		this.isIndexed = isIndexed;
+	}
+
 	public AbstractMetadataAdapter getSecondaryAdapter() {
 		return secondaryAdapter;
 	}
@@ -259,6 +342,19 @@ public abstract class AbstractMetadataAdapter {
 		AbstractMetadataAdapter source = buildReader(sourceFile);
 		
 		MetadataHeader hdr = source.getMetaData();
+		if (hdr.isIndexed()) {
+			IndexedMetadataReader reader = source.buildIndexedReader();
+			try {
+				AbstractMetaDataEntry entry;
+				while ((entry = reader.next()) != null) {
+					writeEntry(entry);
+				}
+			} finally {
+				reader.close();
+			}
+			return;
+		}
+
 		String encoding = hdr.getEncoding();
 		InputStream in = source.buildInputStream();
 		BufferedReader reader = null;
@@ -309,6 +405,10 @@ public abstract class AbstractMetadataAdapter {
 			}
 		}
 
+		public boolean isIndexed() {
+			return version >= 7;
+		}
+
 		public int getHeaderSize() {
 			if (getVersion() < 6) {
 				return 1;
@@ -0,0 +1,488 @@
+package com.application.areca.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.myJava.file.FileSystemManager;
+import com.myJava.file.delta.tools.IOHelper;
+import com.myJava.file.iterator.FilePathComparator;
+
+/**
+ * Reads metadata files written in the indexed binary format (metadata format version 7).
+ * <BR>The entries are read sequentially, block by block. The keys and data are rebuilt directly from the
+ * binary records, without reading and splitting text lines.
+ * <BR>The "seek" method moves forward to the first entry whose key is greater or equal to a given key : the block is located
+ * in the index of the file by dichotomy (the blocks that are skipped are neither read nor decompressed), then the entry is
+ * located using the restart points of the block.
+ * <BR>
+ * @see IndexedMetadataWriter
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class IndexedMetadataReader {
+	private static final int HEADER_LINES = 2;
+
+	private File file;
+	private AbstractMetadataAdapter adapter;
+	private InputStream in;
+	private long headerLength = 0;
+	private long position = 0; // Position in the stream, relative to the end of the header
+	private boolean eof = false;
+
+	// Current block
+	private int currentBlock = -1;
+	private byte[] stored = new byte[IndexedMetadataWriter.BLOCK_SIZE];
+	private byte[] data = new byte[IndexedMetadataWriter.BLOCK_SIZE + 1024];
+	private int dataLength = 0;
+	private int cursor = 0;
+	private int ptr = 0; // Read pointer in "data"
+	private int[] restarts = new int[IndexedMetadataWriter.BLOCK_SIZE / IndexedMetadataWriter.RESTART_INTERVAL];
+	private int nbRestarts = 0;
+	private Inflater inflater;
+
+	// Current key (UTF-8)
+	private byte[] key = new byte[256];
+	private int keyLength = 0;
+	private StringBuffer sb = new StringBuffer();
+
+	// Entry read by "seek" and not returned yet
+	private AbstractMetaDataEntry pending;
+
+	// Index (loaded on demand)
+	private String[] firstKeys;
+	private long[] offsets;
+
+	public IndexedMetadataReader(File file, AbstractMetadataAdapter adapter) throws IOException {
+		this.file = file;
+		this.adapter = adapter;
+		this.in = new BufferedInputStream(FileSystemManager.getCachedFileInputStream(file));
+
+		// Skip the text header
+		int lines = 0;
+		while (lines < HEADER_LINES) {
+			int b = in.read();
+			if (b == -1) {
+				throw new EOFException("Unexpected end of file while reading the header of " + file);
+			}
+			headerLength++;
+			if (b == '\n') {
+				lines++;
+			}
+		}
+	}
+
+	/**
+	 * Return the next entry (null if the end of the file has been reached)
+	 */
+	public AbstractMetaDataEntry next() throws IOException {
+		if (pending != null) {
+			AbstractMetaDataEntry ret = pending;
+			pending = null;
+			return ret;
+		}
+		return readRecord();
+	}
+
+	/**
+	 * Move forward to the first entry whose key is greater or equal to the key passed as argument.
+	 * <BR>The entries located before the current position are ignored.
+	 */
+	public void seek(String target) throws IOException {
+		FilePathComparator comparator = FilePathComparator.instance();
+		if (pending != null) {
+			if (comparator.compare(pending.getKey(), target) >= 0) {
+				return;
+			}
+			pending = null;
+		}
+		if (eof) {
+			return;
+		}
+
+		// Locate the block
+		loadIndex();
+		int low = currentBlock + 1;
+		int high = firstKeys.length - 1;
+		int block = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(firstKeys[mid], target) <= 0) {
+				block = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (block != -1) {
+			skip(offsets[block] - position);
+			currentBlock = block - 1;
+			dataLength = 0;
+			cursor = 0;
+			if (! loadNextBlock()) {
+				return;
+			}
+		}
+
+		// Locate the last restart point (after the cursor) whose key is lower or equal to the target
+		int restart = -1;
+		low = 0;
+		high = nbRestarts - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (restarts[mid] < cursor) {
+				low = mid + 1;
+			} else if (comparator.compare(readRestartKey(restarts[mid]), target) <= 0) {
+				restart = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (restart != -1) {
+			cursor = restarts[restart];
+			keyLength = 0;
+		}
+
+		// Linear search
+		AbstractMetaDataEntry entry;
+		while ((entry = readRecord()) != null) {
+			if (comparator.compare(entry.getKey(), target) >= 0) {
+				pending = entry;
+				return;
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		in.close();
+	}
+
+	private String readRestartKey(int offset) throws IOException {
+		ptr = offset;
+		readVarLong(); // type
+		readVarLong(); // shared (always 0 for restart points)
+		int len = (int)readVarLong();
+		return new String(data, ptr, len, AbstractMetadataAdapter.DATA_CHARSET);
+	}
+
+	private AbstractMetaDataEntry readRecord() throws IOException {
+		while (cursor >= dataLength) {
+			if (! loadNextBlock()) {
+				return null;
+			}
+		}
+
+		ptr = cursor;
+		char type = (char)readVarLong();
+		int shared = (int)readVarLong();
+		int suffix = (int)readVarLong();
+		if (shared > keyLength) {
+			throw new IOException("Invalid metadata record in " + file + " : shared prefix = " + shared + ", previous key length = " + keyLength);
+		}
+		if (key.length < shared + suffix) {
+			byte[] tmp = new byte[Math.max(shared + suffix, key.length * 2)];
+			System.arraycopy(key, 0, tmp, 0, shared);
+			key = tmp;
+		}
+		System.arraycopy(data, ptr, key, shared, suffix);
+		keyLength = shared + suffix;
+		ptr += suffix;
+		String k = new String(key, 0, keyLength, AbstractMetadataAdapter.DATA_CHARSET);
+
+		String d = null;
+		int nbFields = (int)readVarLong() - 1;
+		if (nbFields >= 0) {
+			sb.setLength(0);
+			for (int f=0; f<nbFields; f++) {
+				if (f != 0) {
+					sb.append(MetadataConstants.SEPARATOR);
+				}
+				int tag = data[ptr++];
+				if (tag == IndexedMetadataWriter.FIELD_LONG) {
+					long v = readVarLong();
+					sb.append((v >>> 1) ^ -(v & 1));
+				} else {
+					int len = (int)readVarLong();
+					appendString(data, ptr, len);
+					ptr += len;
+				}
+			}
+			d = sb.toString();
+		}
+		cursor = ptr;
+
+		return adapter.buildEntry(type, k, d);
+	}
+
+	/**
+	 * Append the UTF-8 encoded string to the buffer (without intermediate String if it only contains ASCII characters)
+	 */
+	private void appendString(byte[] b, int off, int len) throws IOException {
+		for (int i=off; i<off + len; i++) {
+			if (b[i] < 0) {
+				sb.append(new String(b, i, off + len - i, AbstractMetadataAdapter.DATA_CHARSET));
+				return;
+			}
+			sb.append((char)b[i]);
+		}
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0;
+		int shift = 0;
+		while (shift < 64) {
+			if (ptr >= data.length) {
+				throw new IOException("Invalid metadata record in " + file);
+			}
+			int b = data[ptr++];
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+		throw new IOException("Invalid variable length value in " + file);
+	}
+
+	private boolean loadNextBlock() throws IOException {
+		if (eof) {
+			return false;
+		}
+		int type = readStreamByte();
+		if (type == IndexedMetadataWriter.BLOCK_END) {
+			eof = true;
+			return false;
+		}
+		int rawLength = (int)readStreamVarLong();
+		int storedLength = (int)readStreamVarLong();
+		if (data.length < rawLength) {
+			data = new byte[rawLength];
+		}
+
+		if (type == IndexedMetadataWriter.BLOCK_DEFLATED) {
+			if (stored.length < storedLength) {
+				stored = new byte[storedLength];
+			}
+			readStream(stored, storedLength);
+			if (inflater == null) {
+				inflater = new Inflater();
+			} else {
+				inflater.reset();
+			}
+			inflater.setInput(stored, 0, storedLength);
+			try {
+				int len = 0;
+				while (len < rawLength && ! inflater.finished()) {
+					int r = inflater.inflate(data, len, rawLength - len);
+					if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					len += r;
+				}
+				if (len != rawLength) {
+					throw new IOException("Invalid metadata block in " + file + " : " + len + " bytes decompressed instead of " + rawLength);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Invalid metadata block in " + file + " : " + e.getMessage());
+			}
+		} else if (type == IndexedMetadataWriter.BLOCK_RAW) {
+			readStream(data, rawLength);
+		} else {
+			throw new IOException("Invalid metadata block type in " + file + " : " + type);
+		}
+
+		// Restart points
+		nbRestarts = readInt(data, rawLength - 4);
+		if (restarts.length < nbRestarts) {
+			restarts = new int[nbRestarts];
+		}
+		dataLength = rawLength - 4 - 4 * nbRestarts;
+		for (int i=0; i<nbRestarts; i++) {
+			restarts[i] = readInt(data, dataLength + 4 * i);
+		}
+		cursor = 0;
+		keyLength = 0;
+		currentBlock++;
+		return true;
+	}
+
+	/**
+	 * Load the index of the file.
+	 * <BR>The index is located without using the length of the file, which is not always known without reading the
+	 * whole file (encrypted or compressed targets) : the headers of the blocks are read in a single pass (their stored data are skipped)
+	 * until the end marker, then the remaining bytes (the index followed by the footer) are read until the end of the file.
+	 */
+	private void loadIndex() throws IOException {
+		if (firstKeys != null) {
+			return;
+		}
+
+		long indexOffset = 0;
+		ByteArrayOutputStream tail = new ByteArrayOutputStream();
+		InputStream fin = new BufferedInputStream(FileSystemManager.getCachedFileInputStream(file));
+		try {
+			skipFully(fin, headerLength);
+
+			// Blocks
+			while (true) {
+				int type = readByte(fin);
+				indexOffset++;
+				if (type == IndexedMetadataWriter.BLOCK_END) {
+					break;
+				}
+				long storedLength = 0;
+				for (int i=0; i<2; i++) { // raw length, then stored length
+					storedLength = 0;
+					int shift = 0;
+					int b;
+					do {
+						if (shift >= 64) {
+							throw new IOException("Invalid variable length value in " + file);
+						}
+						b = readByte(fin);
+						indexOffset++;
+						storedLength |= (long)(b & 0x7F) << shift;
+						shift += 7;
+					} while ((b & 0x80) != 0);
+				}
+				skipFully(fin, storedLength);
+				indexOffset += storedLength;
+			}
+
+			// Index and footer
+			byte[] buf = new byte[8192];
+			int len;
+			while ((len = fin.read(buf)) != -1) {
+				tail.write(buf, 0, len);
+			}
+		} finally {
+			fin.close();
+		}
+
+		byte[] index = tail.toByteArray();
+		int footer = index.length - IndexedMetadataWriter.FOOTER_SIZE;
+		if (footer < 0 || readInt(index, footer + 20) != IndexedMetadataWriter.MAGIC) {
+			throw new IOException("Invalid metadata index in " + file);
+		}
+		long storedOffset = ((long)readInt(index, footer) << 32) | (readInt(index, footer + 4) & 0xFFFFFFFFL);
+		if (storedOffset != indexOffset) {
+			throw new IOException("Invalid metadata index in " + file + " : index located at " + indexOffset + " instead of " + storedOffset);
+		}
+		int nbBlocks = readInt(index, footer + 8);
+
+		String[] keys = new String[nbBlocks];
+		long[] offs = new long[nbBlocks];
+		byte[] tmp = data;
+		data = index;
+		try {
+			ptr = 0;
+			for (int i=0; i<nbBlocks; i++) {
+				int len = (int)readVarLong();
+				keys[i] = new String(index, ptr, len, AbstractMetadataAdapter.DATA_CHARSET);
+				ptr += len;
+				offs[i] = readVarLong();
+				readVarLong(); // number of entries
+			}
+		} finally {
+			data = tmp;
+		}
+		this.offsets = offs;
+		this.firstKeys = keys;
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+	}
+
+	private int readByte(InputStream stream) throws IOException {
+		int b = stream.read();
+		if (b == -1) {
+			throw new EOFException("Unexpected end of file : " + file);
+		}
+		return b;
+	}
+
+	private int readStreamByte() throws IOException {
+		int b = in.read();
+		if (b == -1) {
+			throw new EOFException("Unexpected end of file : " + file);
+		}
+		position++;
+		return b;
+	}
+
+	private long readStreamVarLong() throws IOException {
+		long value = 0;
+		int shift = 0;
+		while (shift < 64) {
+			int b = readStreamByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+		throw new IOException("Invalid variable length value in " + file);
+	}
+
+	private void readStream(byte[] b, int len) throws IOException {
+		if (IOHelper.readFully(in, b, 0, len) != len) {
+			throw new EOFException("Unexpected end of file : " + file);
+		}
+		position += len;
+	}
+
+	private void skip(long len) throws IOException {
+		skipFully(in, len);
+		position += len;
+	}
+
+	/**
+	 * Uses InputStream.skip when possible (the skipped bytes are not read), and reads the data otherwise.
+	 */
+	private void skipFully(InputStream stream, long len) throws IOException {
+		while (len > 0) {
+			long s = stream.skip(len);
+			if (s <= 0) {
+				if (IOHelper.skipFully(stream, len) != len) {
+					throw new EOFException("Unexpected end of file : " + file);
+				}
+				return;
+			}
+			len -= s;
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package com.application.areca.metadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Writes metadata entries in the indexed binary format (metadata format version 7).
+ * <BR>The entries are grouped in blocks of about BLOCK_SIZE bytes, which are compressed independently.
+ * <BR>Within a block, each key only stores the suffix that differs from the previous key. The full key is stored
+ * every RESTART_INTERVAL entries ("restart points"), and the offsets of these restart points are written at the end of the block.
+ * <BR>The fields of the data (separated by ";") are stored as variable length integers when they are numbers (size, date ...) and
+ * as UTF-8 strings otherwise (attributes, hashes ...).
+ * <BR>The first key, offset and number of entries of each block are written in an index located after the last block.
+ * A fixed size footer gives the location of this index, which allows to locate a key in O(log(n)) without reading the whole file.
+ * <BR>
+ * <BR>Layout (after the text header) :
+ * <BR>- blocks : [block type (1 byte)][raw length][stored length][stored data]
+ * <BR>- end marker : [0 (1 byte)]
+ * <BR>- index : for each block, [first key length][first key][offset][number of entries]
+ * <BR>- footer : [index offset (8 bytes)][number of blocks (4 bytes)][number of entries (8 bytes)][magic number (4 bytes)]
+ * <BR>All offsets are relative to the end of the text header.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class IndexedMetadataWriter {
+	static final int BLOCK_SIZE = 32 * 1024;
+	static final int RESTART_INTERVAL = 16;
+
+	static final int BLOCK_END = 0;
+	static final int BLOCK_RAW = 1;
+	static final int BLOCK_DEFLATED = 2;
+
+	static final int FIELD_STRING = 0;
+	static final int FIELD_LONG = 1;
+
+	static final int FOOTER_SIZE = 24;
+	static final int MAGIC = 0x4D445837; // "MDX7"
+
+	private OutputStream out;
+	private boolean compressed;
+	private long position = 0;
+
+	// Current block
+	private ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+	private int[] restarts = new int[BLOCK_SIZE / RESTART_INTERVAL];
+	private int nbRestarts = 0;
+	private int blockEntries = 0;
+	private byte[] firstKey;
+	private int firstKeyLength;
+
+	// Previous key (UTF-8)
+	private byte[] previousKey = new byte[256];
+	private int previousKeyLength = 0;
+
+	// Index
+	private ByteArrayOutputStream index = new ByteArrayOutputStream();
+	private int nbBlocks = 0;
+	private long nbEntries = 0;
+
+	private Deflater deflater;
+	private byte[] buffer = new byte[BLOCK_SIZE + 1024];
+	private boolean finished = false;
+
+	/**
+	 * The header is supposed to have already been written in the stream.
+	 */
+	public IndexedMetadataWriter(OutputStream out, boolean compressed) {
+		this.out = out;
+		this.compressed = compressed;
+		if (compressed) {
+			this.deflater = new Deflater();
+		}
+	}
+
+	public void add(AbstractMetaDataEntry entry) throws IOException {
+		add(entry.getType(), entry.getKey(), entry.getData());
+	}
+
+	public void add(char type, String key, String data) throws IOException {
+		byte[] k = key.getBytes(AbstractMetadataAdapter.DATA_CHARSET);
+
+		int shared = 0;
+		if (blockEntries % RESTART_INTERVAL == 0) {
+			// Restart point : the full key is stored
+			if (nbRestarts == restarts.length) {
+				int[] tmp = new int[restarts.length * 2];
+				System.arraycopy(restarts, 0, tmp, 0, nbRestarts);
+				restarts = tmp;
+			}
+			restarts[nbRestarts++] = block.size();
+		} else {
+			int max = Math.min(k.length, previousKeyLength);
+			while (shared < max && k[shared] == previousKey[shared]) {
+				shared++;
+			}
+		}
+
+		if (blockEntries == 0) {
+			firstKey = k;
+			firstKeyLength = k.length;
+		}
+
+		writeVarLong(block, type);
+		writeVarLong(block, shared);
+		writeVarLong(block, k.length - shared);
+		block.write(k, shared, k.length - shared);
+		writeData(data);
+
+		if (previousKey.length < k.length) {
+			previousKey = new byte[Math.max(k.length, previousKey.length * 2)];
+		}
+		System.arraycopy(k, 0, previousKey, 0, k.length);
+		previousKeyLength = k.length;
+		blockEntries++;
+		nbEntries++;
+
+		if (block.size() >= BLOCK_SIZE) {
+			flushBlock();
+		}
+	}
+
+	/**
+	 * Data are split into fields; each field is stored as a number (if it can be converted back to the exact
+	 * same string) or as a string.
+	 */
+	private void writeData(String data) throws IOException {
+		if (data == null) {
+			writeVarLong(block, 0);
+			return;
+		}
+
+		int nbFields = 1;
+		for (int i=0; i<data.length(); i++) {
+			if (data.charAt(i) == MetadataConstants.SEPARATOR.charAt(0)) {
+				nbFields++;
+			}
+		}
+		writeVarLong(block, nbFields + 1);
+
+		int from = 0;
+		for (int f=0; f<nbFields; f++) {
+			int to = data.indexOf(MetadataConstants.SEPARATOR.charAt(0), from);
+			if (to == -1) {
+				to = data.length();
+			}
+			if (isNumber(data, from, to)) {
+				block.write(FIELD_LONG);
+				long value = Long.parseLong(data.substring(from, to));
+				writeVarLong(block, (value << 1) ^ (value >> 63));
+			} else {
+				block.write(FIELD_STRING);
+				byte[] str = data.substring(from, to).getBytes(AbstractMetadataAdapter.DATA_CHARSET);
+				writeVarLong(block, str.length);
+				block.write(str, 0, str.length);
+			}
+			from = to + 1;
+		}
+	}
+
+	/**
+	 * Tells whether the substring is the canonical representation of a long (no sign, no leading zero)
+	 */
+	private static boolean isNumber(String data, int from, int to) {
+		int len = to - from;
+		if (len == 0 || len > 18 || (len > 1 && data.charAt(from) == '0')) {
+			return false;
+		}
+		for (int i=from; i<to; i++) {
+			char c = data.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void flushBlock() throws IOException {
+		if (blockEntries == 0) {
+			return;
+		}
+
+		// Restart points
+		for (int i=0; i<nbRestarts; i++) {
+			writeInt(block, restarts[i]);
+		}
+		writeInt(block, nbRestarts);
+
+		// Index entry
+		writeVarLong(index, firstKeyLength);
+		index.write(firstKey, 0, firstKeyLength);
+		writeVarLong(index, position);
+		writeVarLong(index, blockEntries);
+		nbBlocks++;
+
+		byte[] raw = block.toByteArray();
+		ByteArrayOutputStream header = new ByteArrayOutputStream(16);
+		if (compressed) {
+			deflater.reset();
+			deflater.setInput(raw);
+			deflater.finish();
+			ByteArrayOutputStream stored = new ByteArrayOutputStream(raw.length / 2);
+			while (! deflater.finished()) {
+				int len = deflater.deflate(buffer);
+				stored.write(buffer, 0, len);
+			}
+			header.write(BLOCK_DEFLATED);
+			writeVarLong(header, raw.length);
+			writeVarLong(header, stored.size());
+			header.writeTo(out);
+			stored.writeTo(out);
+			position += header.size() + stored.size();
+		} else {
+			header.write(BLOCK_RAW);
+			writeVarLong(header, raw.length);
+			writeVarLong(header, raw.length);
+			header.writeTo(out);
+			out.write(raw);
+			position += header.size() + raw.length;
+		}
+
+		block.reset();
+		nbRestarts = 0;
+		blockEntries = 0;
+		previousKeyLength = 0;
+	}
+
+	/**
+	 * Write the last block, the index and the footer.
+	 * <BR>The underlying stream is not closed.
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+
+		flushBlock();
+		out.write(BLOCK_END);
+		position++;
+
+		long indexOffset = position;
+		index.writeTo(out);
+
+		ByteArrayOutputStream footer = new ByteArrayOutputStream(FOOTER_SIZE);
+		writeLong(footer, indexOffset);
+		writeInt(footer, nbBlocks);
+		writeLong(footer, nbEntries);
+		writeInt(footer, MAGIC);
+		footer.writeTo(out);
+		out.flush();
+
+		if (deflater != null) {
+			deflater.end();
+		}
+	}
+
+	public long getEntries() {
+		return nbEntries;
+	}
+
+	static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int)value);
+	}
+
+	static void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	static void writeLong(ByteArrayOutputStream out, long value) {
+		writeInt(out, (int)(value >>> 32));
+		writeInt(out, (int)value);
+	}
+}
@@ -0,0 +1,135 @@
+package com.application.areca.metadata;
+
+import java.io.IOException;
+
+import com.application.areca.ArecaConfiguration;
+import com.myJava.file.iterator.FilePathComparator;
+
+/**
+ * Merges the entries of several metadata iterators (traces or contents) sorted by key.
+ * <BR>The iterators are stored in a binary heap ordered by their current key (as defined by the FilePathComparator),
+ * so each step costs O(log(n)) comparisons instead of O(n).
+ * <BR>If several iterators share the same key, the one with the highest index (most recent archive) comes first.
+ * <BR>If the number of iterators exceeds the configured threshold, each iterator decodes its entries in a background thread.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class MetaDataFileIteratorMerger {
+	private static final int DECODE_AHEAD_THRESHOLD = ArecaConfiguration.get().getMetaDataDecodeAheadThreshold();
+	private static final int DECODE_AHEAD_QUEUE_SIZE = 512;
+
+	private AbstractMetaDataFileIterator[] iterators;
+	private int[] heap; // Indexes of the non exhausted iterators
+	private String[] keys; // Current key of each iterator
+	private int size = 0;
+
+	public MetaDataFileIteratorMerger(AbstractMetaDataFileIterator[] iterators) {
+		this(iterators, DECODE_AHEAD_THRESHOLD > 0 && iterators.length >= DECODE_AHEAD_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1);
+	}
+
+	public MetaDataFileIteratorMerger(AbstractMetaDataFileIterator[] iterators, boolean decodeAhead) {
+		this.iterators = iterators;
+		this.heap = new int[iterators.length];
+		this.keys = new String[iterators.length];
+
+		for (int i=iterators.length - 1; i>=0; i--) {
+			if (decodeAhead) {
+				iterators[i].startDecodeAhead(DECODE_AHEAD_QUEUE_SIZE);
+			}
+			if (iterators[i].currentEntry() != null) {
+				keys[i] = iterators[i].currentEntry().getKey();
+				heap[size++] = i;
+			}
+		}
+		for (int i=size/2 - 1; i>=0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Return the index of the iterator whose current entry has the lowest key, or -1 if all iterators are exhausted
+	 */
+	public int currentIndex() {
+		return size == 0 ? -1 : heap[0];
+	}
+
+	/**
+	 * Return the entry which has the lowest key, or null if all iterators are exhausted
+	 */
+	public AbstractMetaDataEntry current() {
+		return size == 0 ? null : iterators[heap[0]].currentEntry();
+	}
+
+	/**
+	 * Move the iterator designated by "currentIndex()" to its next entry
+	 */
+	public void next() throws IOException {
+		if (size == 0) {
+			return;
+		}
+		int index = heap[0];
+		iterators[index].nextEntry();
+		AbstractMetaDataEntry entry = iterators[index].currentEntry();
+		if (entry == null) {
+			// Exhausted iterator
+			keys[index] = null;
+			size--;
+			heap[0] = heap[size];
+		} else {
+			keys[index] = entry.getKey();
+		}
+		if (size != 0) {
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Return true if the iterator #i1 must be read before the iterator #i2
+	 */
+	private boolean before(int i1, int i2) {
+		int result = FilePathComparator.instance().compare(keys[i1], keys[i2]);
+		return result < 0 || (result == 0 && i1 > i2);
+	}
+
+	private void siftDown(int position) {
+		int index = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (! before(heap[child], index)) {
+				break;
+			}
+			heap[position] = heap[child];
+			position = child;
+		}
+		heap[position] = index;
+	}
+}
@@ -123,41 +123,43 @@ public class ArchiveContentAdapter extends AbstractMetadataAdapter {
 		return entry;
 	}
 
+	public AbstractMetaDataEntry buildEntry(char type, String key, String data) {
+		ContentEntry entry = new ContentEntry();
+		entry.setKey(key);
+		entry.setData(data);
+		return entry;
+	}
+
+	protected String encodeEntry(AbstractMetaDataEntry entry) {
+		String serialized = MetadataEncoder.getInstance().encode(entry.getKey());
+		if (entry.getData() == null) {
+			return serialized;
+		} else {
+			return serialized + MetadataConstants.SEPARATOR + entry.getData();
+		}
+	}
+
 	/**
 	 * Read the archive content file line by line and call the ContentHandler provided as argument
 	 * for each line.
 	 */
 	public void traverseContentFile(ContentHandler handler, ProcessContext context) throws IOException, TaskCancelledException {
 		MetadataHeader hdr = getMetaData();
-		String encoding = hdr.getEncoding();
 		handler.setVersion(hdr.getVersion());
-		InputStream in = this.buildInputStream();
-		BufferedReader reader = null;
+		ContentFileIterator iter = getIterator();
 		try {
-			reader = new BufferedReader(encoding == null ? new InputStreamReader(in) : new InputStreamReader(in, encoding));            
-			String line = null;
-			
-			// Skip the header
-			skipHeader(reader);
-			
-			while ((line = reader.readLine()) != null) {
-				line = line.trim();
-				if (line.length() != 0) {
-					ContentEntry entry = (ContentEntry)decodeEntry(line);
-
-					// It is VERY important that the key / data are compliant with the current serialization
-					// format. Each line can indeed be written as part of a new content (case of archive merge)
-					// and will be assumed to match the current serialization format.
-					handler.newRow(entry.getKey(), entry.getData(), context);
-				}
+			while (iter.hasNext()) {
+				ContentEntry entry = iter.next();
+
+				// It is VERY important that the key / data are compliant with the current serialization
+				// format. Each line can indeed be written as part of a new content (case of archive merge)
+				// and will be assumed to match the current serialization format.
+				handler.newRow(entry.getKey(), entry.getData(), context);
 			}
 			handler.close();
 		} finally {
 			try {
-				if (reader != null) {
-					reader.close();
-				}
-				in.close();
+				iter.close();
 			} catch (Exception ignored) {
 			}
 		}
@@ -167,6 +169,9 @@ public class ArchiveContentAdapter extends AbstractMetadataAdapter {
 	 * Build a ContentFileIterator
 	 */
 	private ContentFileIterator getIterator() throws IOException {
+		if (getMetaData().isIndexed()) {
+			return new ContentFileIterator(buildIndexedReader(), this);
+		}
 		String encoding = getMetaData().getEncoding();
 
 		InputStream in = this.buildInputStream();
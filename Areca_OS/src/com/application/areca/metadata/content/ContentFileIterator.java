@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 
 import com.application.areca.metadata.AbstractMetaDataFileIterator;
+import com.application.areca.metadata.IndexedMetadataReader;
 
 /**
  * 
@@ -42,6 +43,11 @@ public class ContentFileIterator extends AbstractMetaDataFileIterator {
 		super(reader, adapter);
 	}
 	
+	protected ContentFileIterator(IndexedMetadataReader reader, ArchiveContentAdapter adapter) 
+	throws IOException {
+		super(reader, adapter);
+	}
+	
 	public ContentEntry next() throws IOException {
 		return (ContentEntry)this.nextEntry();
 	}
@@ -84,36 +84,22 @@ public class ArchiveTraceAdapter extends AbstractMetadataAdapter {
 	private void traverse(TraceHandler handler, ProcessContext context) 
 	throws IOException, FileMetaDataSerializationException, TaskCancelledException {
 		MetadataHeader hdr = getMetaData();
-		String encoding = hdr.getEncoding();
 		handler.setVersion(hdr.getVersion());
 
-		InputStream in = this.buildInputStream();
-		BufferedReader reader = null;
+		TraceFileIterator iter = buildIterator();
 		try {
-			reader = new BufferedReader(encoding == null ? new InputStreamReader(in) : new InputStreamReader(in, encoding));            
-			String line = null;
-
-			// Skip the header
-			skipHeader(reader);
-			
-			while ((line = reader.readLine()) != null) {
-				line = line.trim();
-				if (line.length() != 0) {
-					TraceEntry entry = (TraceEntry)decodeEntry(line);
-
-					// It is VERY important that the key / hash are compliant with the current serialization
-					// format. Each line can indeed be written as part of a new trace (case of archive merge)
-					// and will be assumed to match the current serialization format.
-					handler.newRow(entry.getType(), entry.getKey(), entry.getData(), context);
-				}
+			while (iter.hasNext()) {
+				TraceEntry entry = iter.next();
+
+				// It is VERY important that the key / hash are compliant with the current serialization
+				// format. Each line can indeed be written as part of a new trace (case of archive merge)
+				// and will be assumed to match the current serialization format.
+				handler.newRow(entry.getType(), entry.getKey(), entry.getData(), context);
 			}
 			handler.close();
 		} finally {
 			try {
-				if (reader != null) {
-					reader.close();
-				}
-				in.close();
+				iter.close();
 			} catch (Exception ignored) {
 			}
 		}
@@ -151,10 +137,30 @@ public class ArchiveTraceAdapter extends AbstractMetadataAdapter {
 		return entry;
 	}
 
+	public AbstractMetaDataEntry buildEntry(char type, String key, String data) {
+		TraceEntry entry = new TraceEntry();
+		entry.setType(type);
+		entry.setKey(key);
+		entry.setData(data);
+		return entry;
+	}
+
+	protected String encodeEntry(AbstractMetaDataEntry entry) {
+		String serialized = entry.getType() + MetadataEncoder.getInstance().encode(entry.getKey());
+		if (entry.getData() == null) {
+			return serialized;
+		} else {
+			return serialized + MetadataConstants.SEPARATOR + entry.getData();
+		}
+	}
+
 	/**
 	 * Build a TraceFileIterator
 	 */
 	private TraceFileIterator buildIterator() throws IOException {
+		if (getMetaData().isIndexed()) {
+			return new TraceFileIterator(buildIndexedReader(), this);
+		}
 		String encoding = getMetaData().getEncoding();
 		
 		InputStream in = this.buildInputStream();
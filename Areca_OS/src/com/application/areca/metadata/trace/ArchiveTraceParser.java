@@ -6,6 +6,7 @@ import java.io.IOException;
 import com.application.areca.impl.FileSystemRecoveryEntry;
 import com.application.areca.metadata.MetadataConstants;
 import com.application.areca.metadata.MetadataEncoder;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.metadata.FileMetaData;
 import com.myJava.file.metadata.FileMetaDataAccessor;
@@ -238,7 +239,7 @@ public class ArchiveTraceParser {
 		}
 		
 		StringBuffer sb = new StringBuffer();
-		short type = FileSystemManager.getType(entry.getFile());
+		short type = entry.getFileType();
 		if (trackSymlinks && FileMetaDataAccessor.TYPE_LINK == type) {      
 			sb
 			.append(MetadataConstants.T_SYMLINK)                
@@ -246,14 +247,14 @@ public class ArchiveTraceParser {
 			.append(MetadataConstants.SEPARATOR)
 			.append(hash(entry, true))
 			.append(MetadataConstants.SEPARATOR)
-			.append(FileSystemManager.lastModified(entry.getFile())); 
+			.append(entry.getLastModified()); 
 		} else if (trackSymlinks && FileMetaDataAccessor.TYPE_PIPE == type) {      
 			sb
 			.append(MetadataConstants.T_PIPE)                
 			.append(MetadataEncoder.getInstance().encode(entry.getKey()))
 			.append(MetadataConstants.SEPARATOR)
-			.append(FileSystemManager.lastModified(entry.getFile())); 
-		} else if (FileSystemManager.isFile(entry.getFile())) {
+			.append(entry.getLastModified()); 
+		} else if (entry.isFile()) {
 			sb
 			.append(MetadataConstants.T_FILE)
 			.append(MetadataEncoder.getInstance().encode(entry.getKey()))
@@ -264,7 +265,7 @@ public class ArchiveTraceParser {
 			.append(MetadataConstants.T_DIR)
 			.append(MetadataEncoder.getInstance().encode(entry.getKey()))
 			.append(MetadataConstants.SEPARATOR)
-			.append(FileSystemManager.lastModified(entry.getFile()));
+			.append(entry.getLastModified());
 		}
 		
 		// Serialize Meta Data
@@ -272,8 +273,14 @@ public class ArchiveTraceParser {
 			FileMetaDataSerializer serializer = FileMetaDataAccessorHelper.getFileSystemAccessor().getMetaDataSerializer();
 			
 			sb.append(MetadataConstants.SEPARATOR);
-			File target = trackSymlinks ? entry.getFile() : FileSystemManager.getCanonicalFile(entry.getFile());
-			serializer.serialize(FileSystemManager.getMetaData(target, false), sb);
+			FileSnapshot snapshot = entry.getSnapshot();
+			if (snapshot != null && ! snapshot.isLink()) {
+				// The file is not a link : its canonical file has the same attributes
+				serializer.serialize(FileSystemManager.getMetaData(snapshot, false), sb);
+			} else {
+				File target = trackSymlinks ? entry.getFile() : FileSystemManager.getCanonicalFile(entry.getFile());
+				serializer.serialize(FileSystemManager.getMetaData(target, false), sb);
+			}
 		}
 		return sb.toString();
 	}  
@@ -290,17 +297,17 @@ public class ArchiveTraceParser {
 			return null;
 		} else if (asLink) {
 			char prefix;
-			if (FileSystemManager.isDirectory(fEntry.getFile())) {
+			if (fEntry.isDirectory()) {
 				prefix = MetadataConstants.T_DIR;
 			} else {
 				prefix = MetadataConstants.T_FILE;
 			}
 			return prefix + MetadataEncoder.getInstance().encode(FileSystemManager.getCanonicalPath(fEntry.getFile()));
-		} else if (FileSystemManager.isFile(fEntry.getFile())) {
+		} else if (fEntry.isFile()) {
 			return new StringBuffer()
 			.append(fEntry.getSize())
 			.append(MetadataConstants.SEPARATOR)
-			.append(FileSystemManager.lastModified(fEntry.getFile()))
+			.append(fEntry.getLastModified())
 			.toString();
 		} else {
 			throw new IllegalArgumentException("Only files are accepted. " + fEntry.getKey() + " is not a file.");
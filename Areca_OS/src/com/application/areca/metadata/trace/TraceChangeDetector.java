@@ -0,0 +1,128 @@
+package com.application.areca.metadata.trace;
+
+import java.io.IOException;
+
+import com.application.areca.impl.FileSystemRecoveryEntry;
+import com.myJava.file.iterator.FilePathComparator;
+
+/**
+ * Compares the entries processed during a backup with the reference trace, in order to tell at the end of the backup
+ * whether the new archive contains any change (created, modified or deleted entry).
+ * <BR>It is used instead of the pre-check when the backup is performed in a single pass : the entries are compared as they
+ * are committed, so that the source files are not scanned twice.
+ * <BR>The comparison stops (and the reference trace is closed) as soon as a change has been detected.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class TraceChangeDetector {
+	private TraceFileIterator reference;
+	private String firstChange;
+
+	/**
+	 * @param reference Trace of the previous archive (null if there is no previous archive)
+	 */
+	public TraceChangeDetector(TraceFileIterator reference) {
+		this.reference = reference;
+	}
+
+	/**
+	 * Compares the entry with the reference trace.
+	 * <BR>The entries must be registered in the order of the trace.
+	 * @param entry The entry
+	 * @param stored Tells whether the content of the entry has been stored in the archive
+	 * @param link Tells whether the entry is a symbolic link which is tracked as such
+	 */
+	public void registerEntry(FileSystemRecoveryEntry entry, boolean stored, boolean link) throws IOException {
+		if (firstChange != null) {
+			return;
+		} else if (stored) {
+			setChanged("stored : " + entry.getKey());
+			return;
+		} else if (reference == null) {
+			setChanged("created : " + entry.getKey());
+			return;
+		}
+
+		String shortPath = entry.getKey();
+		while (firstChange == null) {
+			TraceEntry current = reference.current();
+			int result = current == null ? -1 : FilePathComparator.instance().compare(shortPath, current.getKey());
+
+			if (result == 0) {
+				// Found in trace -> only the symbolic links must be checked (modified files have been stored)
+				if (link) {
+					String newHash = ArchiveTraceParser.hash(entry, true);
+					String oldHash = ArchiveTraceParser.extractHashFromTrace(current.getData());
+					if (! newHash.equals(oldHash)) {
+						setChanged("modified : " + shortPath);
+						return;
+					}
+				}
+				reference.next();
+				return;
+			} else if (result < 0) {
+				// Not found in trace -> new entry
+				setChanged("created : " + shortPath);
+			} else {
+				// Found in trace but not among source files -> deleted entry
+				setChanged("deleted : " + current.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Tells whether a change has been detected.
+	 * <BR>Must be invoked once all entries have been registered : the remaining entries of the reference trace are deleted entries.
+	 */
+	public boolean hasChanges() throws IOException {
+		if (firstChange == null && reference != null && reference.current() != null) {
+			setChanged("deleted : " + reference.current().getKey());
+		}
+		return firstChange != null;
+	}
+
+	/**
+	 * Description of the first detected change
+	 */
+	public String getFirstChange() {
+		return firstChange;
+	}
+
+	private void setChanged(String change) throws IOException {
+		this.firstChange = change;
+		close();
+	}
+
+	public void close() throws IOException {
+		if (reference != null) {
+			try {
+				reference.close();
+			} finally {
+				reference = null;
+			}
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 
 import com.application.areca.metadata.AbstractMetaDataFileIterator;
+import com.application.areca.metadata.IndexedMetadataReader;
 
 /**
  * 
@@ -38,6 +39,10 @@ public class TraceFileIterator extends AbstractMetaDataFileIterator {
 		super(reader, adapter);
 	}
 	
+	protected TraceFileIterator(IndexedMetadataReader reader, ArchiveTraceAdapter adapter) throws IOException {
+		super(reader, adapter);
+	}
+	
 	public TraceEntry next() throws IOException {
 		return (TraceEntry)this.nextEntry();
 	}
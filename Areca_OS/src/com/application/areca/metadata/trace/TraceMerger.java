@@ -6,6 +6,7 @@ import java.io.IOException;
 import com.application.areca.impl.AbstractIncrementalFileSystemMedium;
 import com.application.areca.impl.FileSystemTarget;
 import com.application.areca.metadata.AbstractMetaDataFileIterator;
+import com.application.areca.metadata.MetaDataFileIteratorMerger;
 import com.application.areca.metadata.MetadataConstants;
 import com.myJava.file.FileTool;
 import com.myJava.file.iterator.FilePathComparator;
@@ -101,26 +102,17 @@ public class TraceMerger {
 				iters[i] = ArchiveTraceAdapter.buildIterator(traceFile);
 			}
 
+			MetaDataFileIteratorMerger iterator = new MetaDataFileIteratorMerger(iters);
 			String previousKey = null;
 			while (true) {
 				// Look for minimum key
-				int minIndex = -1;
-				for (int i=iters.length-1; i>=0; i--) {
-					if (iters[i].current() != null) {
-						int result = minIndex == -1 ? -1 : FilePathComparator.instance().compare(iters[i].current().getKey(), iters[minIndex].current().getKey());
-						if (result < 0) {
-							minIndex = i;
-						}
-					}
-				}
+				TraceEntry current = (TraceEntry)iterator.current();
 
 				// Nothing more to read
-				if (minIndex == -1) {
+				if (current == null) {
 					break;
 				}
 
-				TraceEntry current = iters[minIndex].current();
-
 				// Once the key has been found, compare it to the previous entry
 				int result = previousKey == null ? -1 : FilePathComparator.instance().compare(previousKey, current.getKey());
 				if (result == 0) {
@@ -149,7 +141,7 @@ public class TraceMerger {
 				}
 
 				// Fetch next entry
-				iters[minIndex].next();
+				iterator.next();
 			}
 		} finally {
 			try {
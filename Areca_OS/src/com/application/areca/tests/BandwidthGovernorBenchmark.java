@@ -0,0 +1,221 @@
+package com.application.areca.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.ThrottledInputStream;
+import com.myJava.file.ThrottledOutputStream;
+import com.myJava.file.bandwidth.BandwidthGovernor;
+import com.myJava.file.bandwidth.BandwidthLimiter;
+import com.myJava.file.bandwidth.BandwidthSchedule;
+
+/**
+ * Checks the throughput achieved by throttled streams :
+ * <BR>- single stream, with writes much larger than the pacing chunks,
+ * <BR>- several streams sharing a target bucket,
+ * <BR>- target buckets nested in the global bucket,
+ * <BR>- remote host buckets (with per-host override),
+ * <BR>- input streams,
+ * <BR>- time-of-day schedules.
+ * <BR>Each measure is compared to the expected rate (10% tolerance by default).
+ * <BR>Arguments : [rate in KB/s] [duration in seconds]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class BandwidthGovernorBenchmark {
+	private static final double TOLERANCE = 0.1;
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		long rate = (args.length > 0 ? Long.parseLong(args[0]) : 512) * 1024;
+		long duration = (args.length > 1 ? Long.parseLong(args[1]) : 2) * 1000;
+		long bytes = rate * duration / 1000;
+		BandwidthGovernor governor = BandwidthGovernor.getInstance();
+
+		try {
+			checkSchedules();
+
+			// Single stream, 1MB writes
+			ThrottledOutputStream out = new ThrottledOutputStream(new NullOutputStream(), rate);
+			check("Single stream", rate, write(new OutputStream[] {out}, bytes, 1024 * 1024));
+
+			// 3 streams sharing the bucket of a target
+			BandwidthLimiter target = governor.getArchiveOutputLimiter("bench1", "" + (rate / 1024));
+			check("3 streams / 1 target", rate, write(new OutputStream[] {
+					new ThrottledOutputStream(new NullOutputStream(), target),
+					new ThrottledOutputStream(new NullOutputStream(), target),
+					new ThrottledOutputStream(new NullOutputStream(), target)
+			}, bytes, 100 * 1024));
+
+			// 2 targets limited to 80% of the rate, under a global limit
+			FrameworkConfiguration.getInstance().getProperties().setProperty(FrameworkConfiguration.KEY_BANDWIDTH_GLOBAL_OUTPUT, "" + (rate / 1024));
+			BandwidthLimiter t1 = governor.getArchiveOutputLimiter("bench2", "" + (rate * 8 / 10240));
+			BandwidthLimiter t2 = governor.getArchiveOutputLimiter("bench3", "" + (rate * 8 / 10240));
+			check("2 targets / global limit", rate, write(new OutputStream[] {
+					new ThrottledOutputStream(new NullOutputStream(), t1),
+					new ThrottledOutputStream(new NullOutputStream(), t2)
+			}, bytes, 100 * 1024));
+
+			// 1 target limited to 25% of the rate, under the global limit
+			BandwidthLimiter t3 = governor.getArchiveOutputLimiter("bench4", "" + (rate / 4096));
+			check("1 target (25%) / global limit", rate / 4, write(new OutputStream[] {new ThrottledOutputStream(new NullOutputStream(), t3)}, bytes / 4, 100 * 1024));
+			FrameworkConfiguration.getInstance().getProperties().remove(FrameworkConfiguration.KEY_BANDWIDTH_GLOBAL_OUTPUT);
+
+			// Remote hosts : default limit and per-host override
+			FrameworkConfiguration.getInstance().getProperties().setProperty(FrameworkConfiguration.KEY_BANDWIDTH_REMOTE_OUTPUT, "" + (rate / 1024));
+			FrameworkConfiguration.getInstance().getProperties().setProperty(FrameworkConfiguration.KEY_BANDWIDTH_REMOTE_OUTPUT + ".slowhost", "" + (rate / 2048));
+			check("2 streams / 1 host", rate, write(new OutputStream[] {
+					ThrottledOutputStream.wrap(new NullOutputStream(), governor.getRemoteOutputLimiter("fasthost")),
+					ThrottledOutputStream.wrap(new NullOutputStream(), governor.getRemoteOutputLimiter("fasthost"))
+			}, bytes, 100 * 1024));
+			check("Host override (50%)", rate / 2, write(new OutputStream[] {
+					ThrottledOutputStream.wrap(new NullOutputStream(), governor.getRemoteOutputLimiter("slowhost"))
+			}, bytes / 2, 100 * 1024));
+
+			// Input stream
+			BandwidthLimiter source = governor.getSourceInputLimiter("bench5", "" + (rate / 1024));
+			check("Input stream", rate, read(ThrottledInputStream.wrap(new ByteArrayInputStream(new byte[(int)bytes]), source)));
+
+			// No limit
+			if (governor.getArchiveOutputLimiter("bench6", null) != null) {
+				fail("No limit : a limiter has been built");
+			}
+		} catch (Throwable e) {
+			e.printStackTrace();
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+	}
+
+	private static void checkSchedules() {
+		BandwidthSchedule s = BandwidthSchedule.parse("08:00-12:00=128; 22:00-06:00=2048; 512");
+		checkRate(s, 9, 0, 128 * 1024);
+		checkRate(s, 12, 0, 512 * 1024);
+		checkRate(s, 23, 30, 2048 * 1024);
+		checkRate(s, 5, 59, 2048 * 1024);
+		checkRate(s, 6, 0, 512 * 1024);
+		checkRate(BandwidthSchedule.parse("08:00-18:00=100"), 20, 0, 0);
+
+		String[] invalid = new String[] {"abc", "08:00=100", "25:00-26:00=100", "08:00-09:00=-1"};
+		for (int i=0; i<invalid.length; i++) {
+			try {
+				BandwidthSchedule.parse(invalid[i]);
+				fail("Schedule \"" + invalid[i] + "\" : no error");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		System.out.println("Schedules : checked");
+	}
+
+	private static void checkRate(BandwidthSchedule s, int hour, int minute, long expected) {
+		Calendar cal = new GregorianCalendar();
+		cal.set(Calendar.HOUR_OF_DAY, hour);
+		cal.set(Calendar.MINUTE, minute);
+		long rate = s.getRate(cal.getTimeInMillis());
+		if (rate != expected) {
+			fail("Schedule \"" + s + "\" at " + hour + ":" + minute + " : " + rate + " instead of " + expected);
+		}
+	}
+
+	/**
+	 * Write "bytes" bytes in each group of streams (one thread per stream) and return the global rate
+	 */
+	private static long write(final OutputStream[] streams, final long bytes, final int bufferSize) throws Exception {
+		final long perStream = bytes / streams.length;
+		final Throwable[] errors = new Throwable[1];
+		Thread[] threads = new Thread[streams.length];
+		long start = System.currentTimeMillis();
+		for (int i=0; i<streams.length; i++) {
+			final OutputStream out = streams[i];
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						byte[] data = new byte[bufferSize];
+						long written = 0;
+						while (written < perStream) {
+							int len = (int)Math.min(data.length, perStream - written);
+							out.write(data, 0, len);
+							written += len;
+						}
+						out.close();
+					} catch (Throwable e) {
+						errors[0] = e;
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (int i=0; i<threads.length; i++) {
+			threads[i].join();
+		}
+		if (errors[0] != null) {
+			throw new Exception(errors[0]);
+		}
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		return perStream * streams.length * 1000 / elapsed;
+	}
+
+	private static long read(InputStream in) throws IOException {
+		long start = System.currentTimeMillis();
+		byte[] buffer = new byte[1024 * 1024];
+		long total = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			total += read;
+		}
+		in.close();
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		return total * 1000 / elapsed;
+	}
+
+	private static void check(String title, long expected, long achieved) {
+		double ratio = ((double)achieved) / expected;
+		boolean ok = Math.abs(ratio - 1) <= TOLERANCE;
+		System.out.println(title + " : " + (achieved / 1024) + " KB/s (expected : " + (expected / 1024) + " KB/s) - " + (ok ? "OK" : "FAILED"));
+		if (! ok) {
+			failures++;
+		}
+	}
+
+	private static void fail(String message) {
+		System.out.println(message + " - FAILED");
+		failures++;
+	}
+
+	private static class NullOutputStream extends OutputStream {
+		public void write(int b) {
+		}
+
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
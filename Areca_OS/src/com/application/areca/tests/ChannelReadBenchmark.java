@@ -0,0 +1,162 @@
+package com.application.areca.tests;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.ChannelInputStream;
+import com.myJava.file.FileTool;
+import com.myJava.file.driver.DefaultFileSystemDriver;
+
+/**
+ * Compares the read throughput of local files read through a buffered FileInputStream with the throughput of
+ * the FileChannel based reads (memory-mapped windows and direct buffer) :
+ * <BR>- raw reads (byte arrays),
+ * <BR>- hash computation,
+ * <BR>- file copy (stream to stream versus channel to channel).
+ * <BR>The hashes and copies are checked against each other.
+ * <BR>Syntax : ChannelReadBenchmark [file size in MB] [working directory]
+ * <BR>The file should be larger than the available memory in order to measure the disk throughput rather than the page cache's.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ChannelReadBenchmark {
+	private static final int BUFFER_SIZE = FrameworkConfiguration.getInstance().getFileSystemBufferSize();
+	private static final int WINDOW_SIZE = FrameworkConfiguration.getInstance().getFileSystemChannelWindowSize();
+	private static final String HASH_ALGORITHM = FrameworkConfiguration.getInstance().getFileHashAlgorithm();
+
+	public static void main(String[] args) {
+		long size = (args.length > 0 ? Long.parseLong(args[0]) : 2048) * 1024 * 1024;
+		File directory = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+		File source = new File(directory, "chbench.dat");
+		File copy = new File(directory, "chbench.cpy");
+		DefaultFileSystemDriver driver = new DefaultFileSystemDriver();
+
+		try {
+			create(source, size);
+			System.out.println("File : " + source + " (" + (size / (1024 * 1024)) + " MB)");
+
+			// Raw reads
+			measure("Read - buffered stream", size, read(new BufferedInputStream(new FileInputStream(source), BUFFER_SIZE)));
+			measure("Read - mapped windows", size, read(new ChannelInputStream(new FileInputStream(source), true, WINDOW_SIZE)));
+			measure("Read - direct buffer", size, read(new ChannelInputStream(new FileInputStream(source), false, BUFFER_SIZE)));
+
+			// Hash
+			long start = System.currentTimeMillis();
+			byte[] h1 = hash(new BufferedInputStream(new FileInputStream(source), BUFFER_SIZE));
+			measure("Hash - buffered stream", size, System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			byte[] h2 = hash(new ChannelInputStream(new FileInputStream(source), true, WINDOW_SIZE));
+			measure("Hash - mapped windows", size, System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			byte[] h3 = hash(new ChannelInputStream(new FileInputStream(source), false, BUFFER_SIZE));
+			measure("Hash - direct buffer", size, System.currentTimeMillis() - start);
+			if (! (Arrays.equals(h1, h2) && Arrays.equals(h1, h3))) {
+				throw new IllegalStateException("Hash mismatch");
+			}
+
+			// Copy
+			start = System.currentTimeMillis();
+			FileTool.getInstance().copy(new BufferedInputStream(new FileInputStream(source), BUFFER_SIZE), new BufferedOutputStream(new FileOutputStream(copy), BUFFER_SIZE), true, true);
+			measure("Copy - streams", size, System.currentTimeMillis() - start);
+			check(h1, copy);
+			copy.delete();
+			start = System.currentTimeMillis();
+			driver.copyFile(source, copy, null);
+			measure("Copy - channels", size, System.currentTimeMillis() - start);
+			check(h1, copy);
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			source.delete();
+			copy.delete();
+		}
+	}
+
+	private static void create(File file, long size) throws IOException {
+		Random rnd = new Random(size);
+		byte[] data = new byte[1024 * 1024];
+		OutputStream out = new FileOutputStream(file);
+		try {
+			for (long written = 0; written < size; written += data.length) {
+				rnd.nextBytes(data);
+				out.write(data, 0, (int)Math.min(data.length, size - written));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static long read(InputStream in) throws IOException {
+		long start = System.currentTimeMillis();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try {
+			while (in.read(buffer) != -1) {
+			}
+		} finally {
+			in.close();
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static byte[] hash(InputStream in) throws Exception {
+		MessageDigest dg = MessageDigest.getInstance(HASH_ALGORITHM);
+		try {
+			if (in instanceof ChannelInputStream) {
+				((ChannelInputStream)in).digest(dg, null);
+			} else {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int len;
+				while ((len = in.read(buffer)) != -1) {
+					dg.update(buffer, 0, len);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return dg.digest();
+	}
+
+	private static void check(byte[] expected, File copy) throws Exception {
+		if (! Arrays.equals(expected, hash(new FileInputStream(copy)))) {
+			throw new IllegalStateException("Invalid copy : " + copy);
+		}
+	}
+
+	private static void measure(String title, long size, long elapsed) {
+		elapsed = Math.max(1, elapsed);
+		System.out.println(title + " : " + (size * 1000 / elapsed / (1024 * 1024)) + " MB/s (" + elapsed + " ms)");
+	}
+}
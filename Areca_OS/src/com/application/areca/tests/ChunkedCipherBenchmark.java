@@ -0,0 +1,223 @@
+package com.application.areca.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.encryption.ChunkedCipherFormat;
+import com.myJava.encryption.ChunkedCipherInputStream;
+import com.myJava.encryption.ChunkedCipherOutputStream;
+import com.myJava.encryption.CipherWorkerPool;
+import com.myJava.encryption.EncryptionUtil;
+
+/**
+ * Compares the throughput of the single stream encryption format (CipherInputStream / CipherOutputStream) with the throughput of
+ * the chunked format (see ChunkedCipherFormat) for an increasing number of threads (0 = the chunks are processed by the calling thread) :
+ * <BR>- encryption,
+ * <BR>- decryption,
+ * <BR>- random reads (skip + read of a few bytes, as done to read the central directory of a zip archive).
+ * <BR>The data are encrypted in memory, so that the cipher's throughput is measured rather than the disk's. The decrypted data are
+ * checked against the original ones.
+ * <BR>Syntax : ChunkedCipherBenchmark [data size in MB] [max number of threads] [number of random reads]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ChunkedCipherBenchmark {
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final int RANDOM_READ_SIZE = 4096;
+	private static final int LEGACY_RANDOM_READS = 10;
+
+	public static void main(String[] args) {
+		int size = (args.length > 0 ? Integer.parseInt(args[0]) : 128) * 1024 * 1024;
+		int maxWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int randomReads = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		try {
+			Key key = EncryptionUtil.buildKeyFromPassphrase("benchmark", 16, "AES");
+			byte[] data = new byte[size];
+			new Random(size).nextBytes(data);
+			System.out.println("Data : " + (size / (1024 * 1024)) + " MB - processors : " + Runtime.getRuntime().availableProcessors());
+
+			// Single stream
+			Cipher enc = Cipher.getInstance("AES");
+			enc.init(Cipher.ENCRYPT_MODE, key);
+			Cipher dec = Cipher.getInstance("AES");
+			dec.init(Cipher.DECRYPT_MODE, key);
+			ByteArrayOutputStream bout = new ByteArrayOutputStream(size + 1024);
+			long start = System.currentTimeMillis();
+			write(new CipherOutputStream(bout, enc), data);
+			measure("Encryption - single stream", size, System.currentTimeMillis() - start);
+			byte[] stored = bout.toByteArray();
+			start = System.currentTimeMillis();
+			check(data, read(new CipherInputStream(new ByteArrayInputStream(stored), dec), size));
+			measure("Decryption - single stream", size, System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			randomReads(stored, key, null, null, data, LEGACY_RANDOM_READS);
+			measureReads("Random reads - single stream", LEGACY_RANDOM_READS, System.currentTimeMillis() - start);
+			stored = null;
+
+			// Chunked format
+			ChunkedCipherFormat format = new ChunkedCipherFormat(key, FrameworkConfiguration.getInstance().getEncryptionChunkSize());
+			System.out.println("Chunked format : " + format.getTransformation() + " - " + (format.getChunkSize() / 1024) + " KB chunks");
+			for (int workers=0; workers<=maxWorkers; workers = (workers == 0 ? 1 : 2 * workers)) {
+				CipherWorkerPool pool = new CipherWorkerPool(workers);
+				String title = " - " + workers + " thread(s)";
+				try {
+					bout = new ByteArrayOutputStream(size + size / 1000 + 1024);
+					start = System.currentTimeMillis();
+					write(new ChunkedCipherOutputStream(bout, format, pool), data);
+					measure("Encryption" + title, size, System.currentTimeMillis() - start);
+					stored = bout.toByteArray();
+					if (ChunkedCipherFormat.getPlainLength(stored.length, format.getChunkSize()) != size) {
+						throw new IllegalStateException("Invalid data length : " + ChunkedCipherFormat.getPlainLength(stored.length, format.getChunkSize()));
+					}
+
+					start = System.currentTimeMillis();
+					check(data, read(open(stored, format, pool), size));
+					measure("Decryption" + title, size, System.currentTimeMillis() - start);
+
+					start = System.currentTimeMillis();
+					randomReads(stored, key, format, pool, data, randomReads);
+					measureReads("Random reads" + title, randomReads, System.currentTimeMillis() - start);
+				} finally {
+					pool.shutdown();
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static InputStream open(byte[] stored, ChunkedCipherFormat format, CipherWorkerPool pool) throws IOException {
+		InputStream in = new ByteArrayInputStream(stored);
+		byte[] header = new byte[ChunkedCipherFormat.HEADER_LENGTH];
+		int chunkSize = format.readHeader(header, in.read(header));
+		if (chunkSize == -1) {
+			throw new IllegalStateException("Invalid header");
+		}
+		return new ChunkedCipherInputStream(in, format, chunkSize, pool);
+	}
+
+	private static void write(OutputStream out, byte[] data) throws IOException {
+		try {
+			for (int off=0; off<data.length; off += BLOCK_SIZE) {
+				out.write(data, off, Math.min(BLOCK_SIZE, data.length - off));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] read(InputStream in, int size) throws IOException {
+		byte[] ret = new byte[size];
+		try {
+			int off = 0;
+			int n;
+			while (off < size && (n = in.read(ret, off, Math.min(BLOCK_SIZE, size - off))) != -1) {
+				off += n;
+			}
+			if (off != size || in.read() != -1) {
+				throw new IllegalStateException("Invalid data length");
+			}
+		} finally {
+			in.close();
+		}
+		return ret;
+	}
+
+	/**
+	 * Opens the data, skips to a random location and reads a few bytes (format == null : single stream)
+	 */
+	private static void randomReads(byte[] stored, Key key, ChunkedCipherFormat format, CipherWorkerPool pool, byte[] data, int nb) throws Exception {
+		Random rnd = new Random(nb);
+		byte[] buffer = new byte[RANDOM_READ_SIZE];
+		for (int i=0; i<nb; i++) {
+			int offset = rnd.nextInt(data.length - RANDOM_READ_SIZE);
+			InputStream in;
+			if (format == null) {
+				Cipher dec = Cipher.getInstance("AES");
+				dec.init(Cipher.DECRYPT_MODE, key);
+				in = new CipherInputStream(new ByteArrayInputStream(stored), dec);
+			} else {
+				in = open(stored, format, pool);
+			}
+			try {
+				long toSkip = offset;
+				while (toSkip > 0) {
+					long n = in.skip(toSkip);
+					if (n <= 0) {
+						if (in.read() == -1) {
+							throw new IllegalStateException("Unexpected end of data");
+						}
+						n = 1;
+					}
+					toSkip -= n;
+				}
+				int read = 0;
+				while (read < buffer.length) {
+					int n = in.read(buffer, read, buffer.length - read);
+					if (n == -1) {
+						throw new IllegalStateException("Unexpected end of data");
+					}
+					read += n;
+				}
+				for (int j=0; j<buffer.length; j++) {
+					if (buffer[j] != data[offset + j]) {
+						throw new IllegalStateException("Invalid data at offset " + (offset + j));
+					}
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	private static void check(byte[] expected, byte[] read) {
+		if (! Arrays.equals(expected, read)) {
+			throw new IllegalStateException("The decrypted data don't match the original data");
+		}
+	}
+
+	private static void measure(String title, long size, long elapsed) {
+		elapsed = Math.max(1, elapsed);
+		System.out.println(title + " : " + (size * 1000 / elapsed / (1024 * 1024)) + " MB/s (" + elapsed + " ms)");
+	}
+
+	private static void measureReads(String title, int nb, long elapsed) {
+		elapsed = Math.max(1, elapsed);
+		System.out.println(title + " : " + (elapsed * 1000 / nb) + " us/read (" + nb + " reads in " + elapsed + " ms)");
+	}
+}
@@ -0,0 +1,186 @@
+package com.application.areca.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.myJava.file.delta.BlockDeltaReader;
+import com.myJava.file.delta.DeltaExtent;
+import com.myJava.file.delta.DeltaExtentMap;
+import com.myJava.file.delta.DeltaExtentResolver;
+import com.myJava.file.delta.DeltaInputStream;
+import com.myJava.file.delta.DeltaProcessor;
+import com.myJava.file.delta.LayerWriterDeltaProcessor;
+import com.myJava.file.delta.sequence.FileSequencerByteProcessor;
+import com.myJava.file.delta.sequence.HashSequence;
+import com.myJava.util.taskmonitor.TaskMonitor;
+
+/**
+ * Measures the throughput of the DeltaInputStream when recovering a file from a deep chain of delta layers.
+ * <BR>The recovered data are checked against the expected content for each read mode (single byte, bulk reads, skip + read)
+ * and for the DeltaExtentResolver.
+ * <BR>Syntax : DeltaInputStreamBenchmark [size in MB] [number of layers] [block size in bytes]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DeltaInputStreamBenchmark {
+	private static final int[] BUFFER_SIZES = new int[] {512, 8192, 65536};
+
+	public static void main(String[] args) {
+		int size = (args.length > 0 ? Integer.parseInt(args[0]) : 8) * 1024 * 1024;
+		int nbLayers = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+		int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+		try {
+			// Build the layers
+			Random rnd = new Random(0);
+			byte[] data = DeltaReaderBenchmark.buildData(size, rnd);
+			byte[][] layers = new byte[nbLayers][];
+			HashSequence seq = null;
+			for (int i=0; i<nbLayers; i++) {
+				if (i != 0) {
+					data = DeltaReaderBenchmark.modify(data, rnd);
+				}
+				FileSequencerByteProcessor sequencer = new FileSequencerByteProcessor(blockSize);
+				layers[i] = buildLayer(data, seq, sequencer, blockSize);
+				seq = sequencer.getSequence();
+			}
+			System.out.println("File : " + data.length + " bytes - Layers : " + nbLayers + " - Block size : " + blockSize);
+
+			// Warm-up
+			recover(layers, data, 8192, false);
+
+			recover(layers, data, 1, false);
+			for (int i=0; i<BUFFER_SIZES.length; i++) {
+				recover(layers, data, BUFFER_SIZES[i], false);
+			}
+			recover(layers, data, 8192, true);
+			resolve(layers, data);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Build the delta layer of "data" against the sequence passed as argument (or a full layer if the sequence is null)
+	 */
+	static byte[] buildLayer(byte[] data, HashSequence seq, FileSequencerByteProcessor sequencer, int blockSize) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeltaProcessor[] proc = new DeltaProcessor[] {new LayerWriterDeltaProcessor(out)};
+		InputStream in = new ByteArrayInputStream(data);
+		BlockDeltaReader reader = seq == null ? new BlockDeltaReader(blockSize, in, proc, sequencer) : new BlockDeltaReader(seq, in, proc, sequencer);
+		reader.read(new TaskMonitor("benchmark"));
+		return out.toByteArray();
+	}
+
+	private static DeltaInputStream open(byte[][] layers) {
+		DeltaInputStream in = new DeltaInputStream();
+		for (int i=0; i<layers.length; i++) {
+			in.addInputStream(new ByteArrayInputStream(layers[i]), "layer " + i);
+		}
+		return in;
+	}
+
+	/**
+	 * Recover the file with reads of "bufferSize" bytes (single byte reads if bufferSize == 1).
+	 * <BR>If "skip" is true, one block out of two is skipped and checked as such.
+	 */
+	private static void recover(byte[][] layers, byte[] expected, int bufferSize, boolean skip) throws Exception {
+		DeltaInputStream in = open(layers);
+		byte[] buffer = new byte[bufferSize];
+		boolean ok = true;
+		int position = 0;
+		long processed = 0;
+
+		long start = System.currentTimeMillis();
+		while (true) {
+			if (skip && (position / bufferSize) % 2 == 1) {
+				long skipped = in.skip(bufferSize);
+				if (skipped == 0) {
+					break;
+				}
+				position += skipped;
+			} else if (bufferSize == 1) {
+				int b = in.read();
+				if (b == -1) {
+					break;
+				}
+				ok &= (position < expected.length && (byte)b == expected[position]);
+				position++;
+				processed++;
+			} else {
+				int read = in.read(buffer, 0, bufferSize);
+				if (read == -1) {
+					break;
+				}
+				for (int i=0; i<read; i++) {
+					ok &= (position + i < expected.length && buffer[i] == expected[position + i]);
+				}
+				position += read;
+				processed += read;
+			}
+		}
+		long duration = Math.max(1, System.currentTimeMillis() - start);
+		in.close();
+
+		ok &= (position == expected.length);
+		String title = (skip ? "Read/skip " : "Read ") + bufferSize + " bytes";
+		System.out.println("   " + title + " : " + duration + " ms (" + (int)(processed / 1024.0 / 1024.0 * 1000 / duration) + " MB/s of data read) - Correct : " + ok);
+	}
+
+	/**
+	 * Build the extent maps of the layers, resolve the whole file and rebuild it from the resolved extents
+	 */
+	private static void resolve(byte[][] layers, byte[] expected) throws Exception {
+		long start = System.currentTimeMillis();
+		DeltaExtentMap[] maps = new DeltaExtentMap[layers.length];
+		for (int i=0; i<layers.length; i++) {
+			maps[i] = DeltaExtentMap.build(new ByteArrayInputStream(layers[i]));
+		}
+		long built = System.currentTimeMillis();
+
+		DeltaExtentResolver resolver = new DeltaExtentResolver(maps);
+		List extents = resolver.resolve(0, resolver.getLength() - 1);
+		byte[] result = new byte[(int)resolver.getLength()];
+		Iterator iter = extents.iterator();
+		while (iter.hasNext()) {
+			DeltaExtent extent = (DeltaExtent)iter.next();
+			if (extent.getLayer() != -1) {
+				System.arraycopy(layers[extent.getLayer()], (int)extent.getOffset(), result, (int)extent.getPosition(), (int)extent.getLength());
+			}
+		}
+		long duration = System.currentTimeMillis() - start;
+
+		boolean ok = result.length == expected.length;
+		for (int i=0; ok && i<result.length; i++) {
+			ok = result[i] == expected[i];
+		}
+		System.out.println("   Extent maps : " + (built - start) + " ms - Resolution + copy : " + (duration - built + start) + " ms - " + extents.size() + " extents - Correct : " + ok);
+	}
+}
@@ -0,0 +1,160 @@
+package com.application.areca.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.myJava.file.delta.BlockDeltaReader;
+import com.myJava.file.delta.DeltaProcessor;
+import com.myJava.file.delta.DeltaReader;
+import com.myJava.file.delta.LayerWriterDeltaProcessor;
+import com.myJava.file.delta.sequence.FileSequencer;
+import com.myJava.file.delta.sequence.FileSequencerByteProcessor;
+import com.myJava.file.delta.sequence.HashSequence;
+import com.myJava.file.delta.sequence.SequenceAdapter;
+import com.myJava.util.taskmonitor.TaskMonitor;
+
+/**
+ * Compares the throughput of the DeltaReader and the BlockDeltaReader and checks that they generate the same delta layers.
+ * <BR>Syntax : DeltaReaderBenchmark [size in MB] [block size in bytes]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DeltaReaderBenchmark {
+	private static final int NB_MODIFICATIONS = 50;
+
+	public static void main(String[] args) {
+		int size = (args.length > 0 ? Integer.parseInt(args[0]) : 32) * 1024 * 1024;
+		int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+		try {
+			Random rnd = new Random(0);
+			byte[] original = buildData(size, rnd);
+			byte[] modified = modify(original, rnd);
+			HashSequence seq = new FileSequencer(new ByteArrayInputStream(original), blockSize).getHash();
+			System.out.println("Original : " + original.length + " bytes - Modified : " + modified.length + " bytes - Block size : " + blockSize);
+
+			// Without sequence
+			Result byteNoSeq = run(false, null, blockSize, modified);
+			Result blockNoSeq = run(true, null, blockSize, modified);
+			report("No sequence", byteNoSeq, blockNoSeq, modified.length);
+
+			// With sequence
+			Result byteSeq = run(false, seq, blockSize, modified);
+			Result blockSeq = run(true, seq, blockSize, modified);
+			report("Sequence", byteSeq, blockSeq, modified.length);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	static byte[] buildData(int size, Random rnd) {
+		byte[] data = new byte[size];
+		rnd.nextBytes(data);
+
+		// Add some structured data (zeros and text)
+		byte[] text = "Areca is a file backup software. ".getBytes();
+		for (int i=0; i<size; i+= 1024*1024) {
+			int l = Math.min(64*1024, size - i);
+			for (int j=0; j<l; j++) {
+				data[i + j] = (i/(1024*1024))%2 == 0 ? 0 : text[j%text.length];
+			}
+		}
+		return data;
+	}
+
+	static byte[] modify(byte[] original, Random rnd) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int[] positions = new int[NB_MODIFICATIONS];
+		for (int i=0; i<positions.length; i++) {
+			positions[i] = rnd.nextInt(original.length);
+		}
+		Arrays.sort(positions);
+
+		int current = 0;
+		for (int i=0; i<positions.length; i++) {
+			int p = Math.max(current, positions[i]);
+			out.write(original, current, p - current);
+			int len = 1 + rnd.nextInt(5000);
+			switch (i%3) {
+			case 0: // insertion
+				byte[] ins = new byte[len];
+				rnd.nextBytes(ins);
+				out.write(ins, 0, len);
+				current = p;
+				break;
+			case 1: // deletion
+				current = Math.min(original.length, p + len);
+				break;
+			default: // modification
+				int l = Math.min(len, original.length - p);
+				byte[] mod = new byte[l];
+				rnd.nextBytes(mod);
+				out.write(mod, 0, l);
+				current = p + l;
+			}
+		}
+		out.write(original, current, original.length - current);
+		return out.toByteArray();
+	}
+
+	private static Result run(boolean block, HashSequence seq, int blockSize, byte[] data) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeltaProcessor[] proc = new DeltaProcessor[] {new LayerWriterDeltaProcessor(out)};
+		FileSequencerByteProcessor sequencer = new FileSequencerByteProcessor(blockSize);
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		TaskMonitor monitor = new TaskMonitor("benchmark");
+
+		long start = System.currentTimeMillis();
+		if (block) {
+			BlockDeltaReader reader = seq == null ? new BlockDeltaReader(blockSize, in, proc, sequencer) : new BlockDeltaReader(seq, in, proc, sequencer);
+			reader.read(monitor);
+		} else {
+			DeltaReader reader = seq == null ? new DeltaReader(blockSize, in, proc, sequencer) : new DeltaReader(seq, in, proc, sequencer);
+			reader.read(monitor);
+		}
+		Result res = new Result();
+		res.duration = Math.max(1, System.currentTimeMillis() - start);
+		res.layer = out.toByteArray();
+		res.sequence = SequenceAdapter.getInstance().serialize(sequencer.getSequence());
+		return res;
+	}
+
+	private static void report(String title, Result byteRes, Result blockRes, long size) {
+		double mb = size / (1024.0 * 1024.0);
+		System.out.println(title + " :");
+		System.out.println("   DeltaReader      : " + byteRes.duration + " ms (" + (int)(mb * 1000 / byteRes.duration) + " MB/s) - layer = " + byteRes.layer.length + " bytes");
+		System.out.println("   BlockDeltaReader : " + blockRes.duration + " ms (" + (int)(mb * 1000 / blockRes.duration) + " MB/s) - layer = " + blockRes.layer.length + " bytes");
+		System.out.println("   Identical layers : " + Arrays.equals(byteRes.layer, blockRes.layer) + " - Identical sequences : " + Arrays.equals(byteRes.sequence, blockRes.sequence));
+	}
+
+	private static class Result {
+		long duration;
+		byte[] layer;
+		byte[] sequence;
+	}
+}
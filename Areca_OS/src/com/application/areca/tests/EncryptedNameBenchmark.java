@@ -0,0 +1,231 @@
+package com.application.areca.tests;
+
+import java.io.File;
+import java.security.Key;
+import java.util.Arrays;
+
+import com.myJava.encryption.EncryptionUtil;
+import com.myJava.file.driver.DefaultFileSystemDriver;
+import com.myJava.file.driver.EncryptedFileSystemDriver;
+import com.myJava.file.driver.PathSegmentCache;
+
+/**
+ * Measures the per-call cost of the file name encryption of the EncryptedFileSystemDriver on a directory
+ * which contains a large number of entries, with and without the name cache :
+ * <BR>- name translation only (encryptFileName),
+ * <BR>- full driver calls (exists),
+ * <BR>- directory listing (listFiles - decryption of all names),
+ * <BR>- concurrent name translation (several threads sharing the same driver).
+ * <BR>The results of the cached driver are checked against the results of the uncached one.
+ * <BR>Each measure is repeated and the best time is kept, except for the "cold cache" measure.
+ * <BR>Syntax : EncryptedNameBenchmark [number of entries] [number of threads] [working directory]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class EncryptedNameBenchmark {
+	private static final String TRANSFORMATION = "AES";
+	private static final String[] DIRECTORY_PATH = {"benchmark", "level 1", "level 2", "level 3", "entries"};
+	private static final int PASSES = 5;
+
+	public static void main(String[] args) {
+		int nbEntries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int nbThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		File root = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"), "encbench").getAbsoluteFile();
+
+		try {
+			Key key = EncryptionUtil.buildKeyFromPassphrase("benchmark", 16, "AES");
+			BenchmarkDriver uncached = buildDriver(root, key, 0);
+			File directory = root;
+			for (int i=0; i<DIRECTORY_PATH.length; i++) {
+				directory = new File(directory, DIRECTORY_PATH[i]);
+			}
+			File[] files = new File[nbEntries];
+			for (int i=0; i<nbEntries; i++) {
+				files[i] = new File(directory, "file number " + i + ".txt");
+			}
+
+			// Creation
+			long start = System.currentTimeMillis();
+			uncached.mkdirs(directory);
+			for (int i=0; i<nbEntries; i++) {
+				uncached.createNewFile(files[i]);
+			}
+			System.out.println(nbEntries + " entries created in " + (System.currentTimeMillis() - start) + " ms (" + uncached.encryptFileName(directory) + ")");
+
+			// The cache is larger than the number of entries : the entries are not evenly distributed among the cache's stripes
+			BenchmarkDriver cached = buildDriver(root, key, 2 * (nbEntries + DIRECTORY_PATH.length));
+
+			// Name translation
+			File[] reference = new File[nbEntries];
+			for (int i=0; i<nbEntries; i++) {
+				reference[i] = uncached.encryptFileName(files[i]);
+			}
+			measure("encryptFileName - cold cache", nbEntries, translate(cached, files, reference));
+			long best = Long.MAX_VALUE;
+			long bestCached = Long.MAX_VALUE;
+			for (int pass=0; pass<PASSES; pass++) {
+				best = Math.min(best, translate(uncached, files, reference));
+				bestCached = Math.min(bestCached, translate(cached, files, reference));
+			}
+			measure("encryptFileName - no cache", nbEntries, best);
+			measure("encryptFileName - warm cache", nbEntries, bestCached);
+
+			// Driver calls
+			best = Long.MAX_VALUE;
+			bestCached = Long.MAX_VALUE;
+			for (int pass=0; pass<PASSES; pass++) {
+				best = Math.min(best, exists(uncached, files));
+				bestCached = Math.min(bestCached, exists(cached, files));
+			}
+			measure("exists - no cache", nbEntries, best);
+			measure("exists - warm cache", nbEntries, bestCached);
+
+			// Listing
+			File[] l1 = null;
+			File[] l2 = null;
+			best = Long.MAX_VALUE;
+			bestCached = Long.MAX_VALUE;
+			for (int pass=0; pass<PASSES; pass++) {
+				start = System.currentTimeMillis();
+				l1 = uncached.listFiles(directory);
+				best = Math.min(best, System.currentTimeMillis() - start);
+				start = System.currentTimeMillis();
+				l2 = cached.listFiles(directory);
+				bestCached = Math.min(bestCached, System.currentTimeMillis() - start);
+			}
+			measure("listFiles - no cache", nbEntries, best);
+			measure("listFiles - warm cache", nbEntries, bestCached);
+			Arrays.sort(l1);
+			Arrays.sort(l2);
+			if (l1.length != nbEntries || ! Arrays.equals(l1, l2)) {
+				throw new IllegalStateException("Listing mismatch : " + l1.length + " / " + l2.length + " entries");
+			}
+
+			// Concurrent name translation
+			measure("encryptFileName - no cache - " + nbThreads + " threads", nbThreads * nbEntries, translate(uncached, files, reference, nbThreads));
+			measure("encryptFileName - warm cache - " + nbThreads + " threads", nbThreads * nbEntries, translate(cached, files, reference, nbThreads));
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			delete(root);
+		}
+	}
+
+	private static BenchmarkDriver buildDriver(File root, Key key, int cacheSize) {
+		return new BenchmarkDriver(root, key, cacheSize);
+	}
+
+	private static long translate(BenchmarkDriver driver, File[] files, File[] reference) {
+		long start = System.currentTimeMillis();
+		for (int i=0; i<files.length; i++) {
+			if (! driver.encryptFileName(files[i]).equals(reference[i])) {
+				throw new IllegalStateException("Name mismatch : " + files[i]);
+			}
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static long exists(BenchmarkDriver driver, File[] files) {
+		long start = System.currentTimeMillis();
+		for (int i=0; i<files.length; i++) {
+			if (! driver.exists(files[i])) {
+				throw new IllegalStateException("File not found : " + files[i]);
+			}
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Translate all names in each thread and return the elapsed time
+	 */
+	private static long translate(final BenchmarkDriver driver, final File[] files, final File[] reference, int nbThreads) throws InterruptedException {
+		final Throwable[] errors = new Throwable[nbThreads];
+		Thread[] threads = new Thread[nbThreads];
+		for (int t=0; t<nbThreads; t++) {
+			final int index = t;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int i=0; i<files.length; i++) {
+							if (! driver.encryptFileName(files[i]).equals(reference[i])) {
+								throw new IllegalStateException("Name mismatch : " + files[i]);
+							}
+						}
+					} catch (Throwable e) {
+						errors[index] = e;
+					}
+				}
+			}, "Benchmark thread #" + t);
+		}
+
+		long start = System.currentTimeMillis();
+		for (int t=0; t<nbThreads; t++) {
+			threads[t].start();
+		}
+		for (int t=0; t<nbThreads; t++) {
+			threads[t].join();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+
+		for (int t=0; t<nbThreads; t++) {
+			if (errors[t] != null) {
+				throw new IllegalStateException("Error in thread #" + t + " : " + errors[t].getMessage());
+			}
+		}
+		return elapsed;
+	}
+
+	private static void measure(String title, int nb, long elapsed) {
+		elapsed = Math.max(1, elapsed);
+		System.out.println(title + " : " + (elapsed * 1000000L / nb) + " ns/call (" + nb + " calls in " + elapsed + " ms)");
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (int i=0; i<children.length; i++) {
+				delete(children[i]);
+			}
+		}
+		f.delete();
+	}
+
+	/**
+	 * Gives access to the name translation and sets the size of the name caches
+	 */
+	private static class BenchmarkDriver extends EncryptedFileSystemDriver {
+		public BenchmarkDriver(File root, Key key, int cacheSize) {
+			super(root, TRANSFORMATION, null, key, true, WRAP_DISABLED);
+			setPredecessor(new DefaultFileSystemDriver());
+			encryptedNames = new PathSegmentCache(cacheSize);
+			decryptedNames = new PathSegmentCache(cacheSize);
+		}
+
+		public File encryptFileName(File file) {
+			return super.encryptFileName(file);
+		}
+	}
+}
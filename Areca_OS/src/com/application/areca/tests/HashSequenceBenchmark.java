@@ -0,0 +1,152 @@
+package com.application.areca.tests;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.delta.Constants;
+import com.myJava.file.delta.sequence.HashSequenceEntry;
+import com.myJava.file.delta.sequence.HashSequenceIndex;
+import com.myJava.file.delta.sequence.SimilarEntrySet;
+
+/**
+ * Compares the memory footprint and the lookup rate of the HashSequenceIndex with the former bucket-based structure
+ * <BR>(array of SimilarEntrySets containing HashSequenceEntries).
+ * <BR>Syntax : HashSequenceBenchmark [number of blocks]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class HashSequenceBenchmark implements Constants {
+	private static final int SIZE = FrameworkConfiguration.getInstance().getDeltaHashMapSize();
+	private static final int MODULUS = FrameworkConfiguration.getInstance().getDeltaQuickHashModulus();
+	private static final int NB_LOOKUPS = 10000000;
+
+	public static void main(String[] args) {
+		int nbBlocks = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+		// Build the data : quick hashes are drawn in a reduced range to simulate collisions
+		Random rnd = new Random(0);
+		int[] quickHashes = new int[nbBlocks];
+		byte[][] fullHashes = new byte[nbBlocks][];
+		for (int i=0; i<nbBlocks; i++) {
+			quickHashes[i] = rnd.nextInt(MODULUS);
+			fullHashes[i] = new byte[HASH_ALG_KLENGTH];
+			rnd.nextBytes(fullHashes[i]);
+		}
+		int[] queries = new int[NB_LOOKUPS];
+		for (int i=0; i<queries.length; i++) {
+			queries[i] = i%2 == 0 ? quickHashes[rnd.nextInt(nbBlocks)] : rnd.nextInt(MODULUS);
+		}
+		System.out.println(nbBlocks + " blocks, " + NB_LOOKUPS + " lookups.");
+
+		// Former structure
+		long mem = usedMemory();
+		long start = System.currentTimeMillis();
+		SimilarEntrySet[] sets = new SimilarEntrySet[SIZE];
+		for (int i=0; i<nbBlocks; i++) {
+			int idx = Math.abs(quickHashes[i])%SIZE;
+			if (sets[idx] == null) {
+				sets[idx] = new SimilarEntrySet();
+			}
+			sets[idx].add(new HashSequenceEntry(quickHashes[i], (byte[])fullHashes[i].clone(), i, 1024));
+		}
+		long buildDuration = System.currentTimeMillis() - start;
+		long memory = usedMemory() - mem;
+		start = System.currentTimeMillis();
+		long found = 0;
+		for (int i=0; i<queries.length; i++) {
+			int idx = Math.abs(queries[i])%SIZE;
+			if (legacyContains(sets[idx], queries[i]) && legacyGet(sets[idx], queries[i], fullHashes[i%nbBlocks]) != null) {
+				found++;
+			}
+		}
+		long lookupDuration = Math.max(1, System.currentTimeMillis() - start);
+		System.out.println("SimilarEntrySet[]  : build = " + buildDuration + " ms, memory = " + (memory / 1024 / 1024) + " MB, lookups = " + (NB_LOOKUPS / lookupDuration) + " /ms (" + found + ")");
+		sets = null;
+
+		// Primitive index
+		mem = usedMemory();
+		start = System.currentTimeMillis();
+		HashSequenceIndex index = new HashSequenceIndex();
+		for (int i=0; i<nbBlocks; i++) {
+			index.add(quickHashes[i], fullHashes[i], i, 1024);
+		}
+		buildDuration = System.currentTimeMillis() - start;
+		memory = usedMemory() - mem;
+		start = System.currentTimeMillis();
+		found = 0;
+		for (int i=0; i<queries.length; i++) {
+			int first = index.lookup(queries[i], -1);
+			if (first != -1 && index.find(first, fullHashes[i%nbBlocks], 0) != -1) {
+				found++;
+			}
+		}
+		lookupDuration = Math.max(1, System.currentTimeMillis() - start);
+		System.out.println("HashSequenceIndex  : build = " + buildDuration + " ms, memory = " + (memory / 1024 / 1024) + " MB (" + (index.getMemorySize() / 1024 / 1024) + " MB allocated), lookups = " + (NB_LOOKUPS / lookupDuration) + " /ms (" + found + ")");
+	}
+
+	private static boolean legacyContains(SimilarEntrySet set, int quickHash) {
+		if (set != null) {
+			Iterator iter = set.iterator();
+			while (iter.hasNext()) {
+				if (((HashSequenceEntry)iter.next()).getQuickHash() == quickHash) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static List legacyGet(SimilarEntrySet set, int quickHash, byte[] fullHash) {
+		List ret = new ArrayList();
+		Iterator iter = set.iterator();
+		while (iter.hasNext()) {
+			HashSequenceEntry entry = (HashSequenceEntry)iter.next();
+			if (entry.getQuickHash() == quickHash) {
+				boolean eq = true;
+				for (int i=0; i<fullHash.length; i++) {
+					if (fullHash[i] != entry.getFullHash()[i]) {
+						eq = false;
+						break;
+					}
+				}
+				if (eq) {
+					ret.add(entry);
+				}
+			}
+		}
+		return ret.isEmpty() ? null : ret;
+	}
+
+	private static long usedMemory() {
+		for (int i=0; i<3; i++) {
+			System.gc();
+		}
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+}
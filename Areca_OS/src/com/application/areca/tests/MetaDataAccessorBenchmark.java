@@ -0,0 +1,168 @@
+package com.application.areca.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.myJava.file.metadata.FileMetaDataAccessor;
+import com.myJava.file.metadata.posix.PosixMetaDataImpl;
+import com.myJava.file.metadata.posix.basic.DefaultMetaDataAccessor;
+import com.myJava.file.metadata.posix.jni.JNIMetaDataAccessor;
+import com.myJava.file.metadata.posix.nio.NIOMetaDataAccessor;
+
+/**
+ * Compares the posix metadata accessors on a synthetic tree :
+ * <BR>- DefaultMetaDataAccessor (system commands - one process per file),
+ * <BR>- NIOMetaDataAccessor (in-process),
+ * <BR>- JNIMetaDataAccessor (native code - only if it can be loaded on this system).
+ * <BR>Each accessor reads the metadata of all files (or of a subset of them for the accessors which fork processes), then restores
+ * modified permissions. The values read by the accessors are checked against each other.
+ * <BR>Syntax : MetaDataAccessorBenchmark [number of files] [number of files processed by the forking accessor] [working directory]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class MetaDataAccessorBenchmark {
+	private static final int FILES_PER_DIRECTORY = 100;
+	private static final int PERMISSION_MASK = 0777;
+
+	public static void main(String[] args) {
+		int nbFiles = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int nbForkedFiles = Math.min(nbFiles, args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+		File root = new File(args.length > 2 ? args[2] : System.getProperty("java.io.tmpdir"), "mdbench");
+
+		try {
+			File[] files = createTree(root, nbFiles);
+			System.out.println(nbFiles + " files created in " + root);
+
+			NIOMetaDataAccessor nio = new NIOMetaDataAccessor();
+			DefaultMetaDataAccessor fork = new DefaultMetaDataAccessor();
+			JNIMetaDataAccessor jni = new JNIMetaDataAccessor();
+			if (! nio.test()) {
+				throw new IllegalStateException("The in-process accessor can't be used on this system.");
+			}
+			boolean jniAvailable = jni.test();
+
+			// Read
+			PosixMetaDataImpl[] reference = read("Read - in-process", nio, files, nbFiles);
+			PosixMetaDataImpl[] forked = read("Read - system commands", fork, files, nbForkedFiles);
+			for (int i=0; i<nbForkedFiles; i++) {
+				check(files[i], reference[i], forked[i], PERMISSION_MASK);
+			}
+			if (jniAvailable) {
+				PosixMetaDataImpl[] nat = read("Read - JNI", jni, files, nbFiles);
+				for (int i=0; i<nbFiles; i++) {
+					check(files[i], reference[i], nat[i], -1);
+				}
+			} else {
+				System.out.println("Read - JNI : not available on this system");
+			}
+
+			// Restore
+			write("Restore - in-process", nio, nio, files, reference, nbFiles);
+			write("Restore - system commands", fork, nio, files, reference, nbForkedFiles);
+			if (jniAvailable) {
+				write("Restore - JNI", jni, nio, files, reference, nbFiles);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			delete(root);
+		}
+	}
+
+	private static File[] createTree(File root, int nbFiles) throws IOException {
+		File[] files = new File[nbFiles];
+		File dir = null;
+		for (int i=0; i<nbFiles; i++) {
+			if (i % FILES_PER_DIRECTORY == 0) {
+				dir = new File(root, "d" + (i / FILES_PER_DIRECTORY));
+				dir.mkdirs();
+			}
+			files[i] = new File(dir, "f" + i);
+			FileOutputStream out = new FileOutputStream(files[i]);
+			out.write(i);
+			out.close();
+		}
+		return files;
+	}
+
+	private static PosixMetaDataImpl[] read(String title, FileMetaDataAccessor accessor, File[] files, int nb) throws IOException {
+		PosixMetaDataImpl[] ret = new PosixMetaDataImpl[nb];
+		long start = System.currentTimeMillis();
+		for (int i=0; i<nb; i++) {
+			ret[i] = (PosixMetaDataImpl)accessor.getMetaData(files[i], false);
+		}
+		measure(title, nb, System.currentTimeMillis() - start);
+		return ret;
+	}
+
+	/**
+	 * Set a new mode (user-only permissions) on each file, then restore the original metadata, and check the result
+	 */
+	private static void write(String title, FileMetaDataAccessor accessor, FileMetaDataAccessor checker, File[] files, PosixMetaDataImpl[] reference, int nb) throws IOException {
+		long start = System.currentTimeMillis();
+		for (int i=0; i<nb; i++) {
+			PosixMetaDataImpl modified = new PosixMetaDataImpl();
+			modified.setOwner(reference[i].getOwner());
+			modified.setGroup(reference[i].getGroup());
+			modified.setMode(0600);
+			modified.setLastmodified(reference[i].getLastmodified() - 3600000);
+			accessor.setMetaData(files[i], modified);
+			accessor.setMetaData(files[i], reference[i]);
+		}
+		measure(title, 2 * nb, System.currentTimeMillis() - start);
+
+		for (int i=0; i<nb; i++) {
+			check(files[i], reference[i], (PosixMetaDataImpl)checker.getMetaData(files[i], false), -1);
+		}
+	}
+
+	private static void check(File file, PosixMetaDataImpl expected, PosixMetaDataImpl read, int modeMask) {
+		if (
+				(expected.getMode() & modeMask) != (read.getMode() & modeMask)
+				|| ! expected.getOwner().equals(read.getOwner())
+				|| ! expected.getGroup().equals(read.getGroup())
+				|| expected.getLastmodified() / 1000 != read.getLastmodified() / 1000
+		) {
+			throw new IllegalStateException("Metadata mismatch for " + file + " : " + expected + " / " + read);
+		}
+	}
+
+	private static void measure(String title, int nb, long elapsed) {
+		elapsed = Math.max(1, elapsed);
+		System.out.println(title + " : " + (nb * 1000L / elapsed) + " files/s (" + nb + " files in " + elapsed + " ms)");
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (int i=0; i<children.length; i++) {
+				delete(children[i]);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,167 @@
+package com.application.areca.tests;
+
+import java.io.File;
+
+import com.application.areca.ArecaConfiguration;
+import com.application.areca.metadata.AbstractMetaDataEntry;
+import com.application.areca.metadata.MetaDataFileIteratorMerger;
+import com.application.areca.metadata.MetadataConstants;
+import com.application.areca.metadata.trace.ArchiveTraceAdapter;
+import com.application.areca.metadata.trace.TraceFileIterator;
+import com.myJava.file.FileTool;
+import com.myJava.file.iterator.FilePathComparator;
+
+/**
+ * Compares the linear scan used by the former trace merge with the MetaDataFileIteratorMerger (with and without decode-ahead).
+ * <BR>Synthetic traces are generated for 10, 100 and 500 archives (or the numbers of archives passed as arguments) and merged
+ * with each method. The merged sequences of keys must be identical.
+ * <BR>Syntax : MetaDataMergeBenchmark [entries by archive] [number of archives] [number of archives] ...
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class MetaDataMergeBenchmark {
+	private static final int MODE_LINEAR = 0;
+	private static final int MODE_HEAP = 1;
+	private static final int MODE_HEAP_DECODE_AHEAD = 2;
+	private static final String[] MODES = new String[] {"Linear scan", "Heap", "Heap + decode-ahead"};
+
+	public static void main(String[] args) {
+		ArecaConfiguration.initialize();
+		int entries = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int[] archives = new int[] {10, 100, 500};
+		if (args.length > 1) {
+			archives = new int[args.length - 1];
+			for (int i=1; i<args.length; i++) {
+				archives[i-1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		try {
+			for (int a=0; a<archives.length; a++) {
+				File dir = FileTool.getInstance().generateNewWorkingFile(null, "areca", "mrgbench", true);
+				FileTool.getInstance().createDir(dir);
+				try {
+					File[] traces = buildTraces(dir, archives[a], entries);
+					System.out.println(archives[a] + " archives - " + entries + " entries by archive :");
+
+					long reference = -1;
+					for (int m=0; m<MODES.length; m++) {
+						long start = System.currentTimeMillis();
+						long[] result = merge(traces, m);
+						long duration = System.currentTimeMillis() - start;
+						if (m == 0) {
+							reference = result[1];
+						}
+						System.out.println("   " + MODES[m] + " : " + duration + " ms - " + result[0] + " distinct entries - Identical : " + (result[1] == reference));
+					}
+				} finally {
+					FileTool.getInstance().delete(dir);
+				}
+			}
+		} catch (Throwable e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Each archive contains about a third of the keys ; the keys are shared by several archives
+	 */
+	private static File[] buildTraces(File dir, int nbArchives, int entries) throws Exception {
+		File[] traces = new File[nbArchives];
+		int nbKeys = entries * 3;
+		for (int i=0; i<nbArchives; i++) {
+			traces[i] = new File(dir, "trace" + i);
+			ArchiveTraceAdapter writer = new ArchiveTraceAdapter(traces[i], "/", false);
+			for (int k=0; k<nbKeys; k++) {
+				if ((k * 7 + i) % 3 == 0) {
+					String key = "dir" + (10000 + k / 100) + "/sub" + (k % 7) + "/file" + (100000 + k);
+					writer.writeEntry(MetadataConstants.T_FILE, key, "" + (k + i));
+				}
+			}
+			writer.close();
+		}
+		return traces;
+	}
+
+	/**
+	 * Merge the traces and return the number of distinct keys and a checksum of the merged sequence
+	 */
+	private static long[] merge(File[] traces, int mode) throws Exception {
+		TraceFileIterator[] iters = new TraceFileIterator[traces.length];
+		long count = 0;
+		long checksum = 0;
+		try {
+			for (int i=0; i<traces.length; i++) {
+				iters[i] = ArchiveTraceAdapter.buildIterator(traces[i]);
+			}
+			MetaDataFileIteratorMerger merger = mode == MODE_LINEAR ? null : new MetaDataFileIteratorMerger(iters, mode == MODE_HEAP_DECODE_AHEAD);
+
+			String previousKey = null;
+			while (true) {
+				AbstractMetaDataEntry current;
+				int index;
+				if (merger == null) {
+					// Former implementation : linear scan of the iterators
+					index = -1;
+					for (int i=iters.length-1; i>=0; i--) {
+						if (iters[i].current() != null) {
+							int result = index == -1 ? -1 : FilePathComparator.instance().compare(iters[i].current().getKey(), iters[index].current().getKey());
+							if (result < 0) {
+								index = i;
+							}
+						}
+					}
+					current = index == -1 ? null : iters[index].current();
+				} else {
+					current = merger.current();
+					index = merger.currentIndex();
+				}
+				if (current == null) {
+					break;
+				}
+
+				if (previousKey == null || ! previousKey.equals(current.getKey())) {
+					previousKey = current.getKey();
+					count++;
+					checksum = checksum * 31 + previousKey.hashCode() + index;
+				}
+
+				if (merger == null) {
+					iters[index].next();
+				} else {
+					merger.next();
+				}
+			}
+		} finally {
+			for (int i=0; i<iters.length; i++) {
+				if (iters[i] != null) {
+					iters[i].close();
+				}
+			}
+		}
+		return new long[] {count, checksum};
+	}
+}
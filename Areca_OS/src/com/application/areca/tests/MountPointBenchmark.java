@@ -0,0 +1,188 @@
+package com.application.areca.tests;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.myJava.file.FileSystemManager;
+import com.myJava.file.driver.DefaultFileSystemDriver;
+import com.myJava.file.driver.FileSystemDriver;
+
+/**
+ * Measures the driver resolution throughput of the FileSystemManager when several threads resolve paths
+ * located under several mount points.
+ * <BR>The results are compared with the former implementation (synchronized lookup in a map of cached directories)
+ * which is reproduced here.
+ * <BR>Syntax : MountPointBenchmark [max number of threads] [number of mount points] [duration of each run in ms]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class MountPointBenchmark {
+	private static final int NB_PATHS = 4096;
+	private static final int MAX_CACHED_MOUNTPOINTS = 2000;
+
+	public static void main(String[] args) {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int nbMountPoints = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		long duration = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+
+		try {
+			File base = new File(System.getProperty("java.io.tmpdir"), "mpbench").getAbsoluteFile();
+			FileSystemManager manager = new FileSystemManager();
+			LegacyResolver legacy = new LegacyResolver(manager.getDefaultDriver());
+			FileSystemDriver[] drivers = new FileSystemDriver[nbMountPoints];
+			File[] mountPoints = new File[nbMountPoints];
+			for (int i=0; i<nbMountPoints; i++) {
+				drivers[i] = new DefaultFileSystemDriver();
+				mountPoints[i] = new File(base, "storage" + (i % 4) + "/target" + i);
+				manager.registerDriver(mountPoints[i], drivers[i]);
+				legacy.register(mountPoints[i], drivers[i]);
+			}
+
+			// Paths : most of them are located under a mount point, some of them are not
+			File[] paths = new File[NB_PATHS];
+			FileSystemDriver[] expected = new FileSystemDriver[NB_PATHS];
+			for (int i=0; i<NB_PATHS; i++) {
+				int mp = i % (nbMountPoints + 1);
+				if (mp == nbMountPoints) {
+					paths[i] = new File(base, "other/dir" + (i % 37) + "/file" + i);
+					expected[i] = manager.getDefaultDriver();
+				} else {
+					paths[i] = new File(mountPoints[mp], "dir" + (i % 37) + "/sub" + (i % 11) + "/file" + i);
+					expected[i] = drivers[mp];
+				}
+			}
+
+			// Check
+			for (int i=0; i<NB_PATHS; i++) {
+				if (manager.getDriver(paths[i]) != expected[i] || legacy.getDriver(paths[i]) != expected[i]) {
+					throw new IllegalStateException("Invalid driver resolved for " + paths[i]);
+				}
+			}
+			System.out.println(nbMountPoints + " mount points - " + NB_PATHS + " paths - " + duration + " ms per run");
+
+			for (int t=1; t<=maxThreads; t*=2) {
+				long legacyOps = run(legacy, null, paths, t, duration);
+				long tableOps = run(null, manager, paths, t, duration);
+				System.out.println(t + " thread(s) : former lookup = " + (legacyOps * 1000 / duration) + " lookups/s - mount point table = " + (tableOps * 1000 / duration) + " lookups/s");
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static long run(final LegacyResolver legacy, final FileSystemManager manager, final File[] paths, int nbThreads, long duration) throws InterruptedException {
+		final long[] counts = new long[nbThreads];
+		final boolean[] stop = new boolean[1];
+		Thread[] threads = new Thread[nbThreads];
+		for (int i=0; i<nbThreads; i++) {
+			final int idx = i;
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					long count = 0;
+					int p = idx * 997;
+					while (! isStopped(stop)) {
+						for (int j=0; j<1024; j++) {
+							p = (p + 1) % paths.length;
+							if (legacy != null) {
+								legacy.getDriver(paths[p]);
+							} else {
+								manager.getDriver(paths[p]);
+							}
+						}
+						count += 1024;
+					}
+					counts[idx] = count;
+				}
+			});
+			threads[i].start();
+		}
+		Thread.sleep(duration);
+		synchronized (stop) {
+			stop[0] = true;
+		}
+		long total = 0;
+		for (int i=0; i<nbThreads; i++) {
+			threads[i].join();
+			total += counts[i];
+		}
+		return total;
+	}
+
+	private static boolean isStopped(boolean[] stop) {
+		synchronized (stop) {
+			return stop[0];
+		}
+	}
+
+	/**
+	 * Former implementation : every directory which has been resolved is cached, and the whole cache is
+	 * cleared when it reaches MAX_CACHED_MOUNTPOINTS entries.
+	 */
+	private static class LegacyResolver {
+		private Map drivers = new HashMap();
+		private Map driversReference = new HashMap();
+		private FileSystemDriver defaultDriver;
+
+		public LegacyResolver(FileSystemDriver defaultDriver) {
+			this.defaultDriver = defaultDriver;
+		}
+
+		public synchronized void register(File mountPoint, FileSystemDriver driver) {
+			registerWithoutCheck(mountPoint, driver);
+			driversReference.put(mountPoint, driver);
+		}
+
+		public synchronized FileSystemDriver getDriver(File file) {
+			return lookup(file, true);
+		}
+
+		private void registerWithoutCheck(File mountPoint, FileSystemDriver driver) {
+			if (drivers.size() >= MAX_CACHED_MOUNTPOINTS) {
+				drivers.clear();
+				drivers.putAll(driversReference);
+			}
+			drivers.put(mountPoint, driver);
+		}
+
+		private FileSystemDriver lookup(File file, boolean firstCall) {
+			Object driver = drivers.get(file);
+			if (driver == null) {
+				if (file.getParentFile() == null) {
+					return defaultDriver;
+				} else {
+					FileSystemDriver returned = lookup(file.getParentFile(), false);
+					if (! firstCall) {
+						registerWithoutCheck(file, returned);
+					}
+					return returned;
+				}
+			} else {
+				return (FileSystemDriver)driver;
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.application.areca.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import com.myJava.file.delta.BlockDeltaReader;
+import com.myJava.file.delta.DeltaProcessor;
+import com.myJava.file.delta.DeltaReader;
+import com.myJava.file.delta.LayerWriterDeltaProcessor;
+import com.myJava.file.delta.sequence.FileSequencerByteProcessor;
+import com.myJava.file.delta.sequence.HashSequence;
+import com.myJava.file.delta.tools.HashTool;
+import com.myJava.util.taskmonitor.TaskMonitor;
+
+/**
+ * Reports, for each quick hash algorithm, the number of full hash computations per MB during a delta read,
+ * <BR>as well as the number of "false positives" (quick hash found but no matching full hash).
+ * <BR>Syntax : QuickHashBenchmark [size in MB] [block size in bytes]
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class QuickHashBenchmark {
+	private static final short[] ALGORITHMS = new short[] {HashTool.ALG_SUM, HashTool.ALG_ADLER};
+	private static final String[] ALGORITHM_NAMES = new String[] {"sum", "adler"};
+	private static final String[] WORDS = new String[] {"backup", "archive", "file", "the", "a", "delta", "of", "target", "areca", "data", "and", "in", "to", "is"};
+
+	public static void main(String[] args) {
+		int size = (args.length > 0 ? Integer.parseInt(args[0]) : 8) * 1024 * 1024;
+		int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+		try {
+			Random rnd = new Random(0);
+			report("Warm-up", randomData(size, rnd), blockSize, rnd);
+			report("Random data", randomData(size, rnd), blockSize, rnd);
+			report("Text", textData(size, rnd), blockSize, rnd);
+			report("Sparse data", sparseData(size, rnd), blockSize, rnd);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static byte[] randomData(int size, Random rnd) {
+		byte[] data = new byte[size];
+		rnd.nextBytes(data);
+		return data;
+	}
+
+	private static byte[] textData(int size, Random rnd) {
+		StringBuffer sb = new StringBuffer();
+		while (sb.length() < size) {
+			sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(rnd.nextInt(10) == 0 ? ".\n" : " ");
+		}
+		return sb.toString().substring(0, size).getBytes();
+	}
+
+	private static byte[] sparseData(int size, Random rnd) {
+		byte[] data = new byte[size];
+		for (int i=0; i<size/64; i++) {
+			data[rnd.nextInt(size)] = (byte)rnd.nextInt(4);
+		}
+		return data;
+	}
+
+	/**
+	 * Shift the data by inserting a few bytes at the beginning and modifying a few bytes
+	 */
+	private static byte[] modify(byte[] data, Random rnd) {
+		byte[] ret = new byte[data.length + 7];
+		System.arraycopy(data, 0, ret, 7, data.length);
+		for (int i=0; i<20; i++) {
+			ret[rnd.nextInt(ret.length)] = (byte)rnd.nextInt();
+		}
+		return ret;
+	}
+
+	private static void report(String title, byte[] original, int blockSize, Random rnd) throws Exception {
+		byte[] modified = modify(original, rnd);
+		double mb = modified.length / (1024.0 * 1024.0);
+		System.out.println(title + " (" + original.length + " bytes, block size = " + blockSize + ") :");
+
+		for (int a=0; a<ALGORITHMS.length; a++) {
+			FileSequencerByteProcessor sequencer = new FileSequencerByteProcessor(blockSize, ALGORITHMS[a]);
+			sequencer.open();
+			sequencer.processBytes(original, 0, original.length);
+			sequencer.close();
+			HashSequence seq = sequencer.getSequence();
+
+			long success = DeltaReader.SUCCESS_COUNTER;
+			long failure = DeltaReader.FAILURE_COUNTER;
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			long start = System.currentTimeMillis();
+			BlockDeltaReader reader = new BlockDeltaReader(
+					seq, 
+					new ByteArrayInputStream(modified), 
+					new DeltaProcessor[] {new LayerWriterDeltaProcessor(out)}, 
+					new FileSequencerByteProcessor(blockSize, ALGORITHMS[a]));
+			reader.read(new TaskMonitor("benchmark"));
+			long duration = Math.max(1, System.currentTimeMillis() - start);
+			success = DeltaReader.SUCCESS_COUNTER - success;
+			failure = DeltaReader.FAILURE_COUNTER - failure;
+
+			System.out.println("   " + ALGORITHM_NAMES[a] + " : " 
+					+ (long)((success + failure) / mb) + " full hashes / MB, " 
+					+ (long)(failure / mb) + " false positives / MB, "
+					+ success + " blocks found, layer = " + out.size() + " bytes, "
+					+ (int)(mb * 1000 / duration) + " MB/s");
+		}
+	}
+}
@@ -135,6 +135,17 @@ public class FrameworkConfiguration {
      */
     public static String KEY_ZIP_MV_DIGITS = "zip.mv.digits";
     
+    /**
+     * Number of threads used to compress the zip archives
+     * <BR>-1 = number of processors, 0 = the data are compressed by the thread which writes them.
+     */
+    public static String KEY_ZIP_COMPRESSION_WORKERS = "zip.compression.workers";
+    
+    /**
+     * Size of the chunks compressed independently by the zip compression threads
+     */
+    public static String KEY_ZIP_COMPRESSION_CHUNK_SIZE = "zip.compression.chunk.size";
+    
     /**
      * Log level (1=error; 8=finest)
      */
@@ -150,6 +161,58 @@ public class FrameworkConfiguration {
      */
     public static String KEY_FS_BUFFER_SIZE = "fs.buffer.size";  
     
+    /**
+     * Write the local files in a background thread
+     */
+    public static String KEY_FS_ASYNC_OUTPUT = "fs.async.output";  
+    
+    /**
+     * Number of buffers that can be waiting to be written by the background thread
+     */
+    public static String KEY_FS_ASYNC_BUFFERS = "fs.async.buffers";  
+    
+    /**
+     * Size of the buffers used by the background thread
+     */
+    public static String KEY_FS_ASYNC_BUFFER_SIZE = "fs.async.buffer.size";  
+    
+    /**
+     * Minimum size (bytes) of the local files which are read through their FileChannel instead of a FileInputStream (0 = never)
+     */
+    public static String KEY_FS_CHANNEL_THRESHOLD = "fs.channel.threshold";  
+    
+    /**
+     * Read the local files through memory-mapped windows (direct buffers are used otherwise). Ignored on Windows.
+     */
+    public static String KEY_FS_CHANNEL_MMAP = "fs.channel.mmap";  
+    
+    /**
+     * Size of the memory-mapped windows
+     */
+    public static String KEY_FS_CHANNEL_WINDOW_SIZE = "fs.channel.window.size";  
+    
+    /**
+     * Number of encrypted / decrypted file names kept in memory by each EncryptedFileSystemDriver (0 = no cache)
+     */
+    public static String KEY_FS_ENCRYPTION_NAME_CACHE_SIZE = "fs.encryption.name.cache.size";  
+    
+    /**
+     * Write the encrypted files in the chunked format (see ChunkedCipherFormat) instead of a single cipher stream.
+     * <BR>Both formats are always readable, but the chunked files can't be read by older versions.
+     */
+    public static String KEY_FS_ENCRYPTION_CHUNKED = "fs.encryption.chunked";  
+    
+    /**
+     * Size of the chunks of the encrypted files (chunked format)
+     */
+    public static String KEY_FS_ENCRYPTION_CHUNK_SIZE = "fs.encryption.chunk.size";  
+    
+    /**
+     * Number of threads used to encrypt / decrypt the chunks (chunked format)
+     * <BR>-1 = number of processors, 0 = the chunks are processed by the thread which reads or writes them.
+     */
+    public static String KEY_FS_ENCRYPTION_WORKERS = "fs.encryption.workers";  
+    
     /**
      * Verbose cache access
      */
@@ -178,11 +241,37 @@ public class FrameworkConfiguration {
      */
     public static String KEY_DEFAULT_LOG_HISTORY = "log.default.history";
     
+    /**
+     * Number of messages buffered by the file log processor before they are written by its writer thread
+     * <BR>0 = the messages are written (and flushed) by the thread which logs them.
+     */
+    public static String KEY_LOG_BUFFER_SIZE = "log.buffer.size";
+    
+    /**
+     * Behaviour of the file log processor when its buffer is full : "block" (wait for the writer thread) or "drop" (the message is lost)
+     */
+    public static String KEY_LOG_BUFFER_POLICY = "log.buffer.policy";
+    
+    /**
+     * Maximum delay (in milliseconds) before the buffered log messages are flushed to the log file
+     */
+    public static String KEY_LOG_FLUSH_DELAY = "log.flush.delay";
+    
+    /**
+     * Number of characters written to the log file which triggers a flush
+     */
+    public static String KEY_LOG_FLUSH_SIZE = "log.flush.size";
+    
     /**
      * Size of the buffer used by the "filediff" classes
      */
     public static String KEY_DELTA_LINKEDLIST_BUFFER_SIZE = "delta.linkedlist.buffer.size"; 
     
+    /**
+     * Use (or not) the block-oriented reader (BlockDeltaReader) instead of the byte-oriented one (DeltaReader) during delta backups
+     */
+    public static String KEY_DELTA_USE_BLOCK_READER = "delta.block.reader"; 
+    
     /**
      * Size of the hashmap used by the "filediff" classes
      */
@@ -198,12 +287,58 @@ public class FrameworkConfiguration {
      */
     public static String KEY_DELTA_QUICKHASH_MODULUS = "delta.quickhash.modulus"; 
     
+    /**
+     * Algorithm used by the "filediff" classes to produce the quickHash value of the new hash sequences ("sum" or "adler")
+     * <BR>The existing sequences are always read with the algorithm they were built with.
+     */
+    public static String KEY_DELTA_QUICKHASH_ALGORITHM = "delta.quickhash.algorithm"; 
+    
+    /**
+     * Size of the read-ahead buffer used for each delta layer during merges (0 = no read-ahead)
+     * <BR>The layers are then read and decoded by background threads.
+     */
+    public static String KEY_DELTA_MERGE_READAHEAD_SIZE = "delta.merge.readahead.size"; 
+    
+    /**
+     * Size of the memory buffer used to stream the data written on remote servers (FTP / SFTP) as they are produced
+     * <BR>0 = the data are written in a local temporary file and sent to the server when the file is closed.
+     */
+    public static String KEY_REMOTE_STREAMING_BUFFER_SIZE = "remote.streaming.buffer.size"; 
+    
+    /**
+     * Maximum throughput of the archives written by all targets (see BandwidthSchedule for the syntax - KB/s, with optional time ranges)
+     */
+    public static String KEY_BANDWIDTH_GLOBAL_OUTPUT = "bandwidth.global.output"; 
+    
+    /**
+     * Maximum throughput of the source files read by all targets (see BandwidthSchedule for the syntax)
+     */
+    public static String KEY_BANDWIDTH_GLOBAL_INPUT = "bandwidth.global.input"; 
+    
+    /**
+     * Maximum throughput of the data sent to each remote server (FTP / SFTP).
+     * <BR>Can be overridden for a given server : bandwidth.remote.output.[server]
+     */
+    public static String KEY_BANDWIDTH_REMOTE_OUTPUT = "bandwidth.remote.output"; 
+    
+    /**
+     * Maximum throughput of the data read from each remote server (FTP / SFTP).
+     * <BR>Can be overridden for a given server : bandwidth.remote.input.[server]
+     */
+    public static String KEY_BANDWIDTH_REMOTE_INPUT = "bandwidth.remote.input"; 
+    
+    /**
+     * Maximum burst allowed by the bandwidth limits (ms)
+     */
+    public static String KEY_BANDWIDTH_BURST = "bandwidth.burst"; 
+    
     /**
      * Filesystem accessor used to read/write file attributes (permissions, owner, group, ACL, extended attributes)
      * <BR>The current accessors are :
      * <BR>- com.myJava.file.metadata.windows.WindowsMetaDataAccessor on Windows
      * <BR>- com.myJava.file.metadata.posix.basic.DefaultMetaDataAccessor on Posix systems (only handles basic attributes, permissions, owner and group)
      * <BR>- com.myJava.file.metadata.posix.jni.JNIMetaDataAccessor : This advanced accessor uses JNI and native C code to access permissions, owner, group, ACL and extended attributes. It is only available for the systems the C code has been compiled for. Check Areca's website.
+     * <BR>- com.myJava.file.metadata.posix.nio.NIOMetaDataAccessor : In-process accessor (Java 7 or higher) for permissions, owner, group and extended attributes. It is used on Posix systems if the configured accessor can't be loaded.
      */
     public static String KEY_FILESYSTEM_ACCESSOR = "filesystem.accessor.impl"; 
     
@@ -212,11 +347,6 @@ public class FrameworkConfiguration {
      */
     public static String KEY_FILE_CONTENT_HASH_ALGORITHM = "file.hash.algorithm";
     
-    /**
-     * Maximum number of cached mount points
-     */
-    public static String KEY_FS_MAX_MOUNT_POINTS = "fs.max.cached.mountpoints";
-    
     /**
      * Temporary directory (defaults to the platform's standard temporary directory)
      */
@@ -256,22 +386,46 @@ public class FrameworkConfiguration {
     public static String[] DEF_SSE_PROTOCOLS = {"TLS", "SSL"};  
     public static int DEF_ZIP_BUFFER = 2048;
     public static int DEF_ZIP_MV_DIGITS = 2; 
+    public static int DEF_ZIP_COMPRESSION_WORKERS = -1; 
+    public static int DEF_ZIP_COMPRESSION_CHUNK_SIZE = 128 * 1024; 
     public static int DEF_LOG_LEVEL = 8;
     public static boolean DEF_FS_USE_BUFFER = true;   
     public static int DEF_FS_BUFFER_SIZE = 200000;   
+    public static boolean DEF_FS_ASYNC_OUTPUT = false;   
+    public static int DEF_FS_ASYNC_BUFFERS = 8;   
+    public static int DEF_FS_ASYNC_BUFFER_SIZE = 256 * 1024;   
+    public static long DEF_FS_CHANNEL_THRESHOLD = 8 * 1024 * 1024;   
+    public static boolean DEF_FS_CHANNEL_MMAP = true;   
+    public static int DEF_FS_CHANNEL_WINDOW_SIZE = 16 * 1024 * 1024;   
+    public static int DEF_FS_ENCRYPTION_NAME_CACHE_SIZE = 20000;   
+    public static boolean DEF_FS_ENCRYPTION_CHUNKED = false;   
+    public static int DEF_FS_ENCRYPTION_CHUNK_SIZE = 256 * 1024;   
+    public static int DEF_FS_ENCRYPTION_WORKERS = -1;   
     public static boolean DEF_FS_CACHE_DEBUG = false; 
     public static boolean DEF_ZIP_ENTRY_CHECK_ENABLE = true;  
     public static long DEF_MAX_FILEPATH_LENGTH = 256;   
     public static int DEF_FORCE_FILEPATH_LENGTH_CHECK = -1;   // -1 = UNSET, 0 = FORCE DISABLE, 1 = FORCE ENABLE
     public static int DEF_DEFAULT_LOG_HISTORY = 10;  
+    public static int DEF_LOG_BUFFER_SIZE = 8192;  
+    public static String DEF_LOG_BUFFER_POLICY = "block";  
+    public static long DEF_LOG_FLUSH_DELAY = 1000;  
+    public static int DEF_LOG_FLUSH_SIZE = 64 * 1024;  
     public static int DEF_DELTA_LINKEDLIST_BUFFER_SIZE = 200 * 1024; 
+    public static boolean DEF_DELTA_USE_BLOCK_READER = true;
     public static int DEF_DELTA_HASHMAP_SIZE = 10007;
     public static int DEF_DELTA_QUICKHASH_MULTIPLIER = 691 * 13 * 11; 
     public static int DEF_DELTA_QUICKHASH_MODULUS = 4013423 * 17; 
+    public static String DEF_DELTA_QUICKHASH_ALGORITHM = "adler"; 
+    public static int DEF_DELTA_MERGE_READAHEAD_SIZE = 256 * 1024; 
+    public static int DEF_REMOTE_STREAMING_BUFFER_SIZE = 1024 * 1024; 
+    public static String DEF_BANDWIDTH_GLOBAL_OUTPUT = null; 
+    public static String DEF_BANDWIDTH_GLOBAL_INPUT = null; 
+    public static String DEF_BANDWIDTH_REMOTE_OUTPUT = null; 
+    public static String DEF_BANDWIDTH_REMOTE_INPUT = null; 
+    public static long DEF_BANDWIDTH_BURST = 200; 
     public static String DEF_FILESYSTEM_ACCESSOR = "com.myJava.file.metadata.posix.jni.JNIMetaDataAccessor";
     //public static String DEF_FILESYSTEM_ACCESSOR = "com.myJava.file.metadata.posix.basic.DefaultMetaDataAccessor";
     public static String DEF_FILE_CONTENT_HASH_ALGORITHM = "SHA";
-    public static int DEF_FS_MAX_MOUNT_POINTS = 2000;
     public static String DEF_TMP_DIRECTORY = null;
     //public static String DEF_VIEWER_HANDLER = "com.myJava.system.viewer.DefaultViewerHandler";
     public static String DEF_VIEWER_HANDLER = "com.myJava.system.viewer.DesktopViewerHandler";
@@ -337,10 +491,6 @@ public class FrameworkConfiguration {
     	return getProperty(KEY_MAX_INLINE_LOG_MESSAGES, DEF_MAX_INLINE_LOG_MESSAGES);
     }
     
-    public int getMaxCachedMountPoints() {
-    	return getProperty(KEY_FS_MAX_MOUNT_POINTS, DEF_FS_MAX_MOUNT_POINTS);
-    }
-    
     public int getEncryptionKGIters() {
     	return getProperty(KEY_ENCRYPTION_KG_ITER, DEF_ENCRYPTION_KG_ITER);
     }
@@ -405,6 +555,42 @@ public class FrameworkConfiguration {
         return getProperty(KEY_DELTA_QUICKHASH_MULTIPLIER, DEF_DELTA_QUICKHASH_MULTIPLIER);
     }
     
+    public boolean isDeltaBlockReaderMode() {
+        return getProperty(KEY_DELTA_USE_BLOCK_READER, DEF_DELTA_USE_BLOCK_READER);
+    }
+    
+    public String getDeltaQuickHashAlgorithm() {
+        return getProperty(KEY_DELTA_QUICKHASH_ALGORITHM, DEF_DELTA_QUICKHASH_ALGORITHM);
+    }
+    
+    public int getDeltaMergeReadAheadSize() {
+        return getProperty(KEY_DELTA_MERGE_READAHEAD_SIZE, DEF_DELTA_MERGE_READAHEAD_SIZE);
+    }
+    
+    public int getRemoteStreamingBufferSize() {
+        return getProperty(KEY_REMOTE_STREAMING_BUFFER_SIZE, DEF_REMOTE_STREAMING_BUFFER_SIZE);
+    }
+    
+    public String getGlobalOutputBandwidth() {
+        return getProperty(KEY_BANDWIDTH_GLOBAL_OUTPUT, DEF_BANDWIDTH_GLOBAL_OUTPUT);
+    }
+    
+    public String getGlobalInputBandwidth() {
+        return getProperty(KEY_BANDWIDTH_GLOBAL_INPUT, DEF_BANDWIDTH_GLOBAL_INPUT);
+    }
+    
+    public String getRemoteOutputBandwidth(String server) {
+        return getProperty(KEY_BANDWIDTH_REMOTE_OUTPUT + "." + server, getProperty(KEY_BANDWIDTH_REMOTE_OUTPUT, DEF_BANDWIDTH_REMOTE_OUTPUT));
+    }
+    
+    public String getRemoteInputBandwidth(String server) {
+        return getProperty(KEY_BANDWIDTH_REMOTE_INPUT + "." + server, getProperty(KEY_BANDWIDTH_REMOTE_INPUT, DEF_BANDWIDTH_REMOTE_INPUT));
+    }
+    
+    public long getBandwidthBurst() {
+        return getProperty(KEY_BANDWIDTH_BURST, DEF_BANDWIDTH_BURST);
+    }
+    
     public int getDeltaHashMapSize() {
         return getProperty(KEY_DELTA_HASHMAP_SIZE, DEF_DELTA_HASHMAP_SIZE);
     }
@@ -433,6 +619,22 @@ public class FrameworkConfiguration {
         return getProperty(KEY_DEFAULT_LOG_HISTORY, DEF_DEFAULT_LOG_HISTORY);
     }
     
+    public int getLogBufferSize() {
+        return getProperty(KEY_LOG_BUFFER_SIZE, DEF_LOG_BUFFER_SIZE);
+    }
+    
+    public String getLogBufferPolicy() {
+        return getProperty(KEY_LOG_BUFFER_POLICY, DEF_LOG_BUFFER_POLICY);
+    }
+    
+    public long getLogFlushDelay() {
+        return getProperty(KEY_LOG_FLUSH_DELAY, DEF_LOG_FLUSH_DELAY);
+    }
+    
+    public int getLogFlushSize() {
+        return getProperty(KEY_LOG_FLUSH_SIZE, DEF_LOG_FLUSH_SIZE);
+    }
+    
     public boolean isHashCacheMode() {
         return getProperty(KEY_HASH_USE_CACHE, DEF_HASH_USE_CACHE);
     }
@@ -445,6 +647,14 @@ public class FrameworkConfiguration {
         return getProperty(KEY_ZIP_MV_DIGITS, DEF_ZIP_MV_DIGITS);
     }
     
+    public int getZipCompressionWorkers() {
+        return getProperty(KEY_ZIP_COMPRESSION_WORKERS, DEF_ZIP_COMPRESSION_WORKERS);
+    }
+    
+    public int getZipCompressionChunkSize() {
+        return getProperty(KEY_ZIP_COMPRESSION_CHUNK_SIZE, DEF_ZIP_COMPRESSION_CHUNK_SIZE);
+    }
+    
     public int getHashCacheSize() {
         return getProperty(KEY_HASH_CACHE_SIZE, DEF_HASH_CACHE_SIZE);
     }
@@ -485,6 +695,46 @@ public class FrameworkConfiguration {
         return getProperty(KEY_FS_BUFFER_SIZE, DEF_FS_BUFFER_SIZE);
     }
     
+    public boolean useFileSystemAsyncOutput() {
+        return getProperty(KEY_FS_ASYNC_OUTPUT, DEF_FS_ASYNC_OUTPUT);
+    }
+    
+    public int getFileSystemAsyncBuffers() {
+        return getProperty(KEY_FS_ASYNC_BUFFERS, DEF_FS_ASYNC_BUFFERS);
+    }
+    
+    public int getFileSystemAsyncBufferSize() {
+        return getProperty(KEY_FS_ASYNC_BUFFER_SIZE, DEF_FS_ASYNC_BUFFER_SIZE);
+    }
+    
+    public long getFileSystemChannelThreshold() {
+        return getProperty(KEY_FS_CHANNEL_THRESHOLD, DEF_FS_CHANNEL_THRESHOLD);
+    }
+    
+    public boolean useFileSystemChannelMapping() {
+        return getProperty(KEY_FS_CHANNEL_MMAP, DEF_FS_CHANNEL_MMAP);
+    }
+    
+    public int getFileSystemChannelWindowSize() {
+        return getProperty(KEY_FS_CHANNEL_WINDOW_SIZE, DEF_FS_CHANNEL_WINDOW_SIZE);
+    }
+    
+    public int getEncryptionNameCacheSize() {
+        return getProperty(KEY_FS_ENCRYPTION_NAME_CACHE_SIZE, DEF_FS_ENCRYPTION_NAME_CACHE_SIZE);
+    }
+    
+    public boolean isEncryptionChunked() {
+        return getProperty(KEY_FS_ENCRYPTION_CHUNKED, DEF_FS_ENCRYPTION_CHUNKED);
+    }
+    
+    public int getEncryptionChunkSize() {
+        return getProperty(KEY_FS_ENCRYPTION_CHUNK_SIZE, DEF_FS_ENCRYPTION_CHUNK_SIZE);
+    }
+    
+    public int getEncryptionWorkers() {
+        return getProperty(KEY_FS_ENCRYPTION_WORKERS, DEF_FS_ENCRYPTION_WORKERS);
+    }
+    
     public String[] getSSEProtocols() {
         return getProperty(KEY_SSE_PROTOCOLS, DEF_SSE_PROTOCOLS);
     }
@@ -0,0 +1,344 @@
+package com.myJava.encryption;
+
+import java.io.IOException;
+import java.security.Key;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+
+import com.myJava.util.log.Logger;
+
+/**
+ * Chunked encryption format.
+ * <BR>The data are split into fixed-size chunks which are encrypted independently (counter mode) with their own random IV :
+ * <BR>[header][IV 0][chunk 0][IV 1][chunk 1] ... [IV n][chunk n (may be shorter)]
+ * <BR>The chunks can thus be processed by several threads, and the location of any chunk is known without reading the
+ * previous ones (chunk i starts at HEADER_LENGTH + i * (IV_LENGTH + chunk size)) : the index is positional.
+ * <BR>Header :
+ * <BR>- magic number (8 bytes)
+ * <BR>- format version (4 bytes)
+ * <BR>- chunk size (4 bytes)
+ * <BR>- IV and encrypted magic number (2 x 16 bytes) : used to check that the file has been written in this format with this key.
+ * <BR>Files written in the former format (single cipher stream) never match this header with a significant probability.
+ * <BR>The counter mode is computed from the block cipher in ECB mode (encryption of the counter blocks, then xor), which is
+ * much faster than the JDK's counter mode implementation. The result is the same as the standard counter mode.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ChunkedCipherFormat {
+	public static final int VERSION = 1;
+	public static final int IV_LENGTH = 16;
+	public static final int HEADER_LENGTH = 48;
+
+	private static final byte[] MAGIC = {'A', 'r', 'e', 'c', 'a', 'C', 'h', 'k'};
+	private static final String MODE = "/CTR/NoPadding";
+	private static final String BLOCK_MODE = "/ECB/NoPadding";
+	private static final int KEYSTREAM_SIZE = 16 * 1024;
+	private static final int MIN_CHUNK_SIZE = 1024;
+	private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private Key key;
+	private String transformation;
+	private int chunkSize;
+
+	/**
+	 * Ciphers and buffers confined to the threads that use them
+	 */
+	private ThreadLocal contexts = new ThreadLocal() {
+		protected Object initialValue() {
+			try {
+				return new CounterContext(key);
+			} catch (Exception e) {
+				Logger.defaultLogger().error(e);
+				throw new IllegalArgumentException("Unsupported transformation : " + transformation + " (" + e.getMessage() + ")");
+			}
+		}
+	};
+
+	/**
+	 * @param key Encryption key - the format uses the key's algorithm in counter mode
+	 * @param chunkSize Size of the chunks of the files written in this format (the chunk size of the files which are read is stored in their header)
+	 */
+	public ChunkedCipherFormat(Key key, int chunkSize) {
+		this.key = key;
+		this.transformation = key.getAlgorithm() + MODE;
+		this.chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, chunkSize));
+	}
+
+	/**
+	 * Tells whether the format can be used with this key (the key's algorithm must be a 128 bits block cipher available in counter mode)
+	 */
+	public static boolean isSupported(Key key) {
+		try {
+			return new CounterContext(key).cipher.getBlockSize() == IV_LENGTH;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public String getTransformation() {
+		return transformation;
+	}
+
+	public byte[] buildHeader() throws IOException {
+		byte[] header = new byte[HEADER_LENGTH];
+		System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+		writeInt(VERSION, header, 8);
+		writeInt(chunkSize, header, 12);
+		nextIV(header, 16);
+		cipher(header, 16, buildCheckBlock(), 0, IV_LENGTH, header, 32);
+		return header;
+	}
+
+	/**
+	 * Checks the header and returns the chunk size of the file, or -1 if the header doesn't match this format and key.
+	 */
+	public int readHeader(byte[] header, int length) {
+		if (length < HEADER_LENGTH) {
+			return -1;
+		}
+		for (int i=0; i<MAGIC.length; i++) {
+			if (header[i] != MAGIC[i]) {
+				return -1;
+			}
+		}
+		int version = readInt(header, 8);
+		int size = readInt(header, 12);
+		if (version != VERSION || size < MIN_CHUNK_SIZE || size > MAX_CHUNK_SIZE) {
+			return -1;
+		}
+
+		try {
+			byte[] check = new byte[IV_LENGTH];
+			cipher(header, 16, header, 32, IV_LENGTH, check, 0);
+			byte[] expected = buildCheckBlock();
+			for (int i=0; i<IV_LENGTH; i++) {
+				if (check[i] != expected[i]) {
+					return -1;
+				}
+			}
+			return size;
+		} catch (IOException e) {
+			Logger.defaultLogger().warn("Unable to check encryption header : " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/**
+	 * Size of the data stored in a file of "storedLength" bytes
+	 */
+	public static long getPlainLength(long storedLength, int chunkSize) {
+		long rest = storedLength - HEADER_LENGTH;
+		if (rest <= 0) {
+			return 0;
+		}
+		long stride = chunkSize + IV_LENGTH;
+		long chunks = (rest + stride - 1) / stride;
+		return Math.max(0, rest - chunks * IV_LENGTH);
+	}
+
+	Chunk newChunk(boolean encrypt, int chunkSize) {
+		return new Chunk(this, encrypt, chunkSize);
+	}
+
+	/**
+	 * Encrypts "plain" into "stored" (IV + encrypted data)
+	 */
+	private void encrypt(Chunk chunk) throws IOException {
+		nextIV(chunk.stored, 0);
+		cipher(chunk.stored, 0, chunk.plain, 0, chunk.plainLength, chunk.stored, IV_LENGTH);
+		chunk.storedLength = IV_LENGTH + chunk.plainLength;
+	}
+
+	/**
+	 * Decrypts "stored" (IV + encrypted data) into "plain"
+	 */
+	private void decrypt(Chunk chunk) throws IOException {
+		if (chunk.storedLength <= IV_LENGTH) {
+			throw new IOException("Truncated encrypted chunk (" + chunk.storedLength + " bytes)");
+		}
+		chunk.plainLength = chunk.storedLength - IV_LENGTH;
+		cipher(chunk.stored, 0, chunk.stored, IV_LENGTH, chunk.plainLength, chunk.plain, 0);
+	}
+
+	/**
+	 * Counter mode : the data are xored with the encrypted counter blocks (IV, IV + 1, IV + 2 ...).
+	 * <BR>Encryption and decryption are the same operation.
+	 */
+	private void cipher(byte[] iv, int ivOffset, byte[] in, int inOffset, int length, byte[] out, int outOffset) throws IOException {
+		CounterContext ctx = (CounterContext)contexts.get();
+		System.arraycopy(iv, ivOffset, ctx.counter, 0, IV_LENGTH);
+		try {
+			for (int done=0; done<length; ) {
+				int n = Math.min(length - done, KEYSTREAM_SIZE);
+				int blocksLength = ((n + IV_LENGTH - 1) / IV_LENGTH) * IV_LENGTH;
+				for (int b=0; b<blocksLength; b += IV_LENGTH) {
+					System.arraycopy(ctx.counter, 0, ctx.counters, b, IV_LENGTH);
+					increment(ctx.counter);
+				}
+				ctx.cipher.doFinal(ctx.counters, 0, blocksLength, ctx.keystream, 0);
+				int inPos = inOffset + done;
+				int outPos = outOffset + done;
+				for (int i=0; i<n; i++) {
+					out[outPos + i] = (byte)(in[inPos + i] ^ ctx.keystream[i]);
+				}
+				done += n;
+			}
+		} catch (Exception e) {
+			IOException ex = new IOException("Error during encryption / decryption : " + e.getMessage());
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Increments the counter block (big endian)
+	 */
+	private static void increment(byte[] counter) {
+		for (int i=counter.length - 1; i>=0; i--) {
+			if (++counter[i] != 0) {
+				return;
+			}
+		}
+	}
+
+	private static void nextIV(byte[] b, int offset) {
+		byte[] iv = new byte[IV_LENGTH];
+		RANDOM.nextBytes(iv);
+		System.arraycopy(iv, 0, b, offset, IV_LENGTH);
+	}
+
+	private static byte[] buildCheckBlock() {
+		byte[] check = new byte[IV_LENGTH];
+		System.arraycopy(MAGIC, 0, check, 0, MAGIC.length);
+		System.arraycopy(MAGIC, 0, check, MAGIC.length, MAGIC.length);
+		return check;
+	}
+
+	private static void writeInt(int v, byte[] b, int offset) {
+		b[offset] = (byte)(v >>> 24);
+		b[offset + 1] = (byte)(v >>> 16);
+		b[offset + 2] = (byte)(v >>> 8);
+		b[offset + 3] = (byte)v;
+	}
+
+	private static int readInt(byte[] b, int offset) {
+		return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+	}
+
+	/**
+	 * Block cipher (ECB mode) and buffers used to compute the counter mode
+	 */
+	private static class CounterContext {
+		private Cipher cipher;
+		private byte[] counter = new byte[IV_LENGTH];
+		private byte[] counters = new byte[KEYSTREAM_SIZE];
+		private byte[] keystream = new byte[KEYSTREAM_SIZE];
+
+		private CounterContext(Key key) throws Exception {
+			cipher = Cipher.getInstance(key.getAlgorithm() + BLOCK_MODE);
+			cipher.init(Cipher.ENCRYPT_MODE, key);
+		}
+	}
+
+	/**
+	 * Chunk of data, encrypted or decrypted by a worker thread (or by the thread which reads / writes the data)
+	 */
+	static class Chunk implements Runnable {
+		private ChunkedCipherFormat format;
+		private boolean encrypt;
+		byte[] plain;
+		int plainLength;
+		byte[] stored;
+		int storedLength;
+		private boolean done;
+		private Throwable error;
+
+		private Chunk(ChunkedCipherFormat format, boolean encrypt, int chunkSize) {
+			this.format = format;
+			this.encrypt = encrypt;
+			this.plain = new byte[chunkSize];
+			this.stored = new byte[IV_LENGTH + chunkSize];
+		}
+
+		void reset() {
+			plainLength = 0;
+			storedLength = 0;
+			synchronized (this) {
+				done = false;
+				error = null;
+			}
+		}
+
+		public void run() {
+			Throwable e = null;
+			try {
+				if (encrypt) {
+					format.encrypt(this);
+				} else {
+					format.decrypt(this);
+				}
+			} catch (Throwable ex) {
+				e = ex;
+			}
+			synchronized (this) {
+				error = e;
+				done = true;
+				notifyAll();
+			}
+		}
+
+		/**
+		 * Waits until the chunk has been processed
+		 */
+		void waitFor() throws IOException {
+			Throwable e;
+			synchronized (this) {
+				while (! done) {
+					try {
+						wait();
+					} catch (InterruptedException ex) {
+						throw new IOException("Interrupted while waiting for the encryption threads.");
+					}
+				}
+				e = error;
+			}
+			if (e != null) {
+				if (e instanceof IOException) {
+					throw (IOException)e;
+				}
+				IOException ex = new IOException(e.getMessage());
+				ex.initCause(e);
+				throw ex;
+			}
+		}
+	}
+}
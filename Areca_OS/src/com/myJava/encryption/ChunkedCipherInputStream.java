@@ -0,0 +1,233 @@
+package com.myJava.encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+
+/**
+ * InputStream which reads the data written in the chunked encryption format (see ChunkedCipherFormat).
+ * <BR>The header must have been read (and checked) by the caller.
+ * <BR>The next chunks are read ahead and decrypted by the threads of a CipherWorkerPool. The number of chunks read ahead
+ * grows while the data are read sequentially (up to 2 * (number of threads)), and is reset after each skip, so that random reads
+ * don't decrypt useless data.
+ * <BR>"skip" jumps over the whole chunks without reading nor decrypting them (it relies on the "skip" method of the underlying stream).
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ChunkedCipherInputStream extends InputStream {
+	private InputStream in;
+	private ChunkedCipherFormat format;
+	private CipherWorkerPool pool;
+	private int chunkSize;
+	private int stride;
+	private int maxReadAhead;
+	private int readAhead = 0;
+	private LinkedList pending = new LinkedList();
+	private LinkedList freeChunks = new LinkedList();
+	private ChunkedCipherFormat.Chunk current;
+	private int position;
+	private boolean eof = false;
+
+	/**
+	 * @param in Stream positioned after the header
+	 * @param chunkSize Chunk size read in the header
+	 * @param pool Pool used to decrypt the chunks (null = the chunks are decrypted by the calling thread)
+	 */
+	public ChunkedCipherInputStream(InputStream in, ChunkedCipherFormat format, int chunkSize, CipherWorkerPool pool) {
+		this.in = in;
+		this.format = format;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		this.stride = chunkSize + ChunkedCipherFormat.IV_LENGTH;
+		this.maxReadAhead = pool == null ? 0 : 2 * pool.getWorkers();
+	}
+
+	public int read() throws IOException {
+		if (! ensureData()) {
+			return -1;
+		}
+		return current.plain[position++] & 0xff;
+	}
+
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+		if (! ensureData()) {
+			return -1;
+		}
+		int n = Math.min(len, current.plainLength - position);
+		System.arraycopy(current.plain, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		readAhead = 0;
+
+		// Current chunk
+		long skipped = 0;
+		if (current != null) {
+			skipped = Math.min(n, current.plainLength - position);
+			position += (int)skipped;
+		}
+
+		// Chunks which have already been read : they are dropped (they may still be processed by the pool)
+		while (skipped < n && ! pending.isEmpty()) {
+			ChunkedCipherFormat.Chunk chunk = (ChunkedCipherFormat.Chunk)pending.getFirst();
+			int length = chunk.storedLength - ChunkedCipherFormat.IV_LENGTH;
+			if (n - skipped < length) {
+				break;
+			}
+			pending.removeFirst();
+			skipped += length;
+		}
+
+		// Whole chunks in the underlying stream
+		if (skipped < n && pending.isEmpty() && ! eof) {
+			long chunks = (n - skipped) / chunkSize;
+			if (chunks != 0) {
+				long toSkip = chunks * stride;
+				long s = skipStored(toSkip);
+				if (s < toSkip) {
+					eof = true;
+				}
+				skipped += (s / stride) * chunkSize + Math.max(0, (s % stride) - ChunkedCipherFormat.IV_LENGTH);
+			}
+		}
+
+		// Remaining bytes : in the next chunk
+		if (skipped < n && ensureData()) {
+			int s = (int)Math.min(n - skipped, current.plainLength - position);
+			position += s;
+			skipped += s;
+		}
+		return skipped;
+	}
+
+	public int available() throws IOException {
+		return current == null ? 0 : current.plainLength - position;
+	}
+
+	public void close() throws IOException {
+		pending.clear();
+		current = null;
+		in.close();
+	}
+
+	/**
+	 * Makes sure that the current chunk contains unread data ; returns false at the end of the stream
+	 */
+	private boolean ensureData() throws IOException {
+		while (current == null || position == current.plainLength) {
+			if (current != null) {
+				freeChunks.add(current);
+				current = null;
+				readAhead = Math.min(maxReadAhead, readAhead == 0 ? 1 : 2 * readAhead);
+			}
+			fill(1, true);
+			if (pending.isEmpty()) {
+				return false;
+			}
+			ChunkedCipherFormat.Chunk chunk = (ChunkedCipherFormat.Chunk)pending.removeFirst();
+			chunk.waitFor();
+			current = chunk;
+			position = 0;
+			fill(readAhead, false);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads chunks until "count" chunks are pending.
+	 * @param inline Decrypt the first chunk in the calling thread
+	 */
+	private void fill(int count, boolean inline) throws IOException {
+		while (! eof && pending.size() < count) {
+			ChunkedCipherFormat.Chunk chunk = readChunk();
+			if (chunk == null) {
+				return;
+			}
+			boolean run = (inline && pending.isEmpty()) || maxReadAhead == 0;
+			pending.add(chunk);
+			if (run) {
+				chunk.run();
+			} else {
+				pool.submit(chunk);
+			}
+		}
+	}
+
+	private ChunkedCipherFormat.Chunk readChunk() throws IOException {
+		ChunkedCipherFormat.Chunk chunk;
+		if (freeChunks.isEmpty()) {
+			chunk = format.newChunk(false, chunkSize);
+		} else {
+			chunk = (ChunkedCipherFormat.Chunk)freeChunks.removeFirst();
+			chunk.reset();
+		}
+
+		int read = 0;
+		while (read < stride) {
+			int n = in.read(chunk.stored, read, stride - read);
+			if (n == -1) {
+				eof = true;
+				break;
+			}
+			read += n;
+		}
+		if (read == 0) {
+			freeChunks.add(chunk);
+			return null;
+		}
+		chunk.storedLength = read;
+		return chunk;
+	}
+
+	private long skipStored(long len) throws IOException {
+		long skipped = 0;
+		while (skipped < len) {
+			long n = in.skip(len - skipped);
+			if (n <= 0) {
+				if (in.read() == -1) {
+					break;
+				}
+				n = 1;
+			}
+			skipped += n;
+		}
+		return skipped;
+	}
+}
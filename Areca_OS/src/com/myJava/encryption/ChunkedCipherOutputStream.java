@@ -0,0 +1,161 @@
+package com.myJava.encryption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+
+/**
+ * OutputStream which writes the data in the chunked encryption format (see ChunkedCipherFormat).
+ * <BR>Full chunks are encrypted by the threads of a CipherWorkerPool while the next ones are filled, and are written in order.
+ * At most 2 * (number of threads) chunks are pending at any time.
+ * <BR>A file made of a single chunk is encrypted by the calling thread.
+ * <BR>"flush" writes the pending chunks, but not the current one, which can only be written once full (or when the stream is closed).
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ChunkedCipherOutputStream extends OutputStream {
+	private OutputStream out;
+	private ChunkedCipherFormat format;
+	private CipherWorkerPool pool;
+	private int maxPending;
+	private LinkedList pending = new LinkedList();
+	private LinkedList freeChunks = new LinkedList();
+	private ChunkedCipherFormat.Chunk current;
+	private boolean closed = false;
+
+	/**
+	 * @param pool Pool used to encrypt the chunks (null = the chunks are encrypted by the calling thread)
+	 */
+	public ChunkedCipherOutputStream(OutputStream out, ChunkedCipherFormat format, CipherWorkerPool pool) throws IOException {
+		this.out = out;
+		this.format = format;
+		this.pool = pool;
+		this.maxPending = pool == null ? 0 : 2 * pool.getWorkers();
+		out.write(format.buildHeader());
+	}
+
+	public void write(int b) throws IOException {
+		if (current == null) {
+			current = obtainChunk();
+		}
+		current.plain[current.plainLength++] = (byte)b;
+		if (current.plainLength == current.plain.length) {
+			submitChunk();
+		}
+	}
+
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0) {
+			if (current == null) {
+				current = obtainChunk();
+			}
+			int n = Math.min(len, current.plain.length - current.plainLength);
+			System.arraycopy(b, off, current.plain, current.plainLength, n);
+			current.plainLength += n;
+			off += n;
+			len -= n;
+			if (current.plainLength == current.plain.length) {
+				submitChunk();
+			}
+		}
+	}
+
+	public void flush() throws IOException {
+		while (! pending.isEmpty()) {
+			writeFirstChunk();
+		}
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (current != null && current.plainLength != 0) {
+				if (pending.isEmpty()) {
+					// Last (or single) chunk : no need to wait for another thread
+					current.run();
+					writeChunk(current);
+				} else {
+					submitChunk();
+				}
+			}
+			while (! pending.isEmpty()) {
+				writeFirstChunk();
+			}
+		} finally {
+			current = null;
+			out.close();
+		}
+	}
+
+	private ChunkedCipherFormat.Chunk obtainChunk() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		if (freeChunks.isEmpty()) {
+			return format.newChunk(true, format.getChunkSize());
+		} else {
+			ChunkedCipherFormat.Chunk chunk = (ChunkedCipherFormat.Chunk)freeChunks.removeFirst();
+			chunk.reset();
+			return chunk;
+		}
+	}
+
+	private void submitChunk() throws IOException {
+		ChunkedCipherFormat.Chunk chunk = current;
+		current = null;
+		if (maxPending == 0) {
+			chunk.run();
+			writeChunk(chunk);
+		} else {
+			pending.add(chunk);
+			pool.submit(chunk);
+			while (pending.size() > maxPending) {
+				writeFirstChunk();
+			}
+		}
+	}
+
+	private void writeFirstChunk() throws IOException {
+		writeChunk((ChunkedCipherFormat.Chunk)pending.removeFirst());
+	}
+
+	private void writeChunk(ChunkedCipherFormat.Chunk chunk) throws IOException {
+		chunk.waitFor();
+		out.write(chunk.stored, 0, chunk.storedLength);
+		freeChunks.add(chunk);
+	}
+}
@@ -0,0 +1,135 @@
+package com.myJava.encryption;
+
+import java.util.LinkedList;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.util.log.Logger;
+
+/**
+ * Pool of threads which encrypt / decrypt the chunks of the files written in the chunked format (see ChunkedCipherFormat).
+ * <BR>The pool is shared by all streams : the number of threads doesn't depend on the number of open files.
+ * <BR>The threads are started when the first task is submitted. A pool without threads runs the tasks in the calling thread.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class CipherWorkerPool {
+	private static CipherWorkerPool DEFAULT;
+
+	private int workers;
+	private LinkedList tasks = new LinkedList();
+	private Thread[] threads;
+	private boolean stopped = false;
+
+	public static synchronized CipherWorkerPool getDefault() {
+		if (DEFAULT == null) {
+			int workers = FrameworkConfiguration.getInstance().getEncryptionWorkers();
+			if (workers < 0) {
+				// Default : one thread per processor - no dedicated thread on single processor systems
+				workers = Runtime.getRuntime().availableProcessors();
+				if (workers == 1) {
+					workers = 0;
+				}
+			}
+			DEFAULT = new CipherWorkerPool(workers);
+		}
+		return DEFAULT;
+	}
+
+	public CipherWorkerPool(int workers) {
+		this.workers = Math.max(0, workers);
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Submits a task. It is run in the calling thread if the pool has no thread.
+	 */
+	public void submit(Runnable task) {
+		if (workers == 0) {
+			task.run();
+			return;
+		}
+		synchronized (tasks) {
+			if (stopped) {
+				throw new IllegalStateException("The encryption thread pool has been stopped.");
+			}
+			startThreads();
+			tasks.add(task);
+			tasks.notify();
+		}
+	}
+
+	/**
+	 * Stops the threads once the pending tasks have been processed
+	 */
+	public void shutdown() {
+		synchronized (tasks) {
+			stopped = true;
+			tasks.notifyAll();
+		}
+	}
+
+	private void startThreads() {
+		if (threads == null) {
+			threads = new Thread[workers];
+			for (int i=0; i<workers; i++) {
+				threads[i] = new Thread(new Worker(), "Encryption #" + i);
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+		}
+	}
+
+	private class Worker implements Runnable {
+		public void run() {
+			while (true) {
+				Runnable task;
+				synchronized (tasks) {
+					while (tasks.isEmpty() && ! stopped) {
+						try {
+							tasks.wait();
+						} catch (InterruptedException e) {
+							Logger.defaultLogger().warn("Encryption thread interrupted.");
+							return;
+						}
+					}
+					if (tasks.isEmpty()) {
+						return;
+					}
+					task = (Runnable)tasks.removeFirst();
+				}
+
+				try {
+					task.run();
+				} catch (Throwable e) {
+					Logger.defaultLogger().error("Error in encryption thread.", e);
+				}
+			}
+		}
+	}
+}
@@ -2,11 +2,18 @@ package com.myJava.file;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 
+import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.util.log.Logger;
 
 /**
+ * OutputStream which writes its data to the underlying stream in a background thread.
+ * <BR>The data are copied into a fixed ring of buffers which are recycled : no memory is allocated during the writes.
+ * A buffer is handed to the background thread once it is full (or on flush / close).
+ * <BR>When all buffers are waiting to be written, the writer blocks until the background thread has released one of them :
+ * the amount of memory used by the stream is thus bounded, whatever the speed of the underlying stream.
+ * <BR>An error raised by the underlying stream is thrown by all subsequent calls.
+ * <BR>The stream also gives some metrics (queue depth, time spent waiting for a free buffer) which help to size the ring.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -34,140 +41,271 @@ This file is part of Areca.
 
  */
 public class AsyncOutputStream extends OutputStream {
-	private static int WAIT = 5000;
-	
 	private OutputStream out;
-	private ArrayList tasks = new ArrayList();
-	private Object lock = this;
-	private Exception error;
-	private TaskConsumer consumer;
+	private String name;
+	private byte[][] buffers;
+	private int[] lengths;
+	private int head = 0; // Index of the next buffer to write to the underlying stream
+	private int count = 0; // Number of buffers waiting to be written
+	private byte[] current; // Buffer which is being filled (not yet handed to the background thread)
+	private int position = 0;
+	private boolean writing = false;
+	private boolean closed = false;
+	private boolean producerWaiting = false;
+	private boolean consumerWaiting = false;
+	private Throwable error;
+	private Object lock = new Object();
 	private Thread consumerThread;
 
+	// Metrics
+	private long bytesWritten = 0;
+	private int maxQueueDepth = 0;
+	private long stallCount = 0;
+	private long stallTime = 0;
+
 	public AsyncOutputStream(OutputStream out) {
-		this.out = out;
-		
-		// Create and launch consumer thread
-		consumer = new TaskConsumer(true);
-		consumerThread = new Thread(consumer);
-		consumerThread.setDaemon(false);
-		consumerThread.setName("Write Task Consumer");
-		consumerThread.start();
+		this(out, FrameworkConfiguration.getInstance().getFileSystemAsyncBuffers(), FrameworkConfiguration.getInstance().getFileSystemAsyncBufferSize(), "Write Task Consumer");
 	}
 
-	public void close() throws IOException {
-		try {
-			checkError();
-			this.consumer.setInfiniteLoop(false);
-			try {
-				consumerThread.join();
-			} catch (InterruptedException e) {
-				throw new IOException(e);
-			}
-			this.flush();
-		} finally {
-			this.out.close();
+	public AsyncOutputStream(OutputStream out, int nbBuffers, int bufferSize, String name) {
+		this.out = out;
+		this.name = name;
+		this.buffers = new byte[Math.max(nbBuffers, 1)][];
+		this.lengths = new int[buffers.length];
+		for (int i=0; i<buffers.length; i++) {
+			buffers[i] = new byte[Math.max(bufferSize, 1)];
 		}
+		this.current = buffers[0];
 	}
 
-	public void flush() throws IOException {
-		checkError();
-		this.out.flush();
+	private void start() {
+		if (consumerThread == null) {
+			consumerThread = new Thread(new Consumer());
+			consumerThread.setDaemon(true);
+			consumerThread.setName(name);
+			consumerThread.start();
+		}
 	}
 
-	public void write(byte[] b, int offset, int length) throws IOException {
-		checkError();
-		addTask(new WriteTask(cloneData(b, offset, length)));
+	public void write(int b) throws IOException {
+		if (position == current.length) {
+			publish();
+		}
+		current[position++] = (byte)b;
+		bytesWritten++;
 	}
 
 	public void write(byte[] b) throws IOException {
-		checkError();
 		write(b, 0, b.length);
 	}
 
-	public void write(int b) throws IOException {
+	public void write(byte[] b, int off, int len) throws IOException {
 		checkError();
-		Logger.defaultLogger().warn("Caution : Accessing AsyncOutputStream byte by byte - not optimal.");
-		addTask(new WriteTask(b));
+		while (len > 0) {
+			if (position == current.length) {
+				publish();
+			}
+			int length = Math.min(len, current.length - position);
+			System.arraycopy(b, off, current, position, length);
+			position += length;
+			off += length;
+			len -= length;
+			bytesWritten += length;
+		}
 	}
-	
-	private void addTask(WriteTask task) {
+
+	/**
+	 * Hand the current buffer to the background thread and wait for a free buffer
+	 */
+	private void publish() throws IOException {
 		synchronized (lock) {
-			tasks.add(task);
-			lock.notify();
+			checkError();
+			if (position != 0) {
+				int tail = (head + count) % buffers.length;
+				lengths[tail] = position;
+				count++;
+				maxQueueDepth = Math.max(maxQueueDepth, count);
+				start();
+				if (consumerWaiting) {
+					lock.notifyAll();
+				}
+			}
+
+			if (count == buffers.length) {
+				long start = System.currentTimeMillis();
+				stallCount++;
+				while (count == buffers.length && error == null) {
+					producerWaiting = true;
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						throw new IOException("Interrupted while writing " + name);
+					} finally {
+						producerWaiting = false;
+					}
+				}
+				stallTime += System.currentTimeMillis() - start;
+				checkError();
+			}
+
+			current = buffers[(head + count) % buffers.length];
+			position = 0;
 		}
 	}
-	
-	private byte[] cloneData(byte[] in, int offset, int length) {
-		byte[] out = new byte[length];
-		for (int i=offset; i<offset+length; i++) {
-			out[i-offset] = in[i];
+
+	/**
+	 * Wait until all the data have been written to the underlying stream
+	 */
+	private void drain() throws IOException {
+		publish();
+		synchronized (lock) {
+			while ((count != 0 || writing) && error == null) {
+				producerWaiting = true;
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted while writing " + name);
+				} finally {
+					producerWaiting = false;
+				}
+			}
+			checkError();
 		}
-		return out;
 	}
-	
-	private static class WriteTask {
-		private byte[] data;
 
-		public WriteTask(byte[] data) {
-			this.data = data;
-		}
-		
-		public WriteTask(int data) {
-			this.data = new byte[] {(byte)data};
-		}
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
 
-		public byte[] getData() {
-			return data;
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			drain();
+		} finally {
+			Thread th;
+			synchronized (lock) {
+				closed = true;
+				lock.notifyAll();
+				th = consumerThread;
+			}
+			try {
+				if (th != null) {
+					try {
+						th.join();
+					} catch (InterruptedException e) {
+						throw new IOException("Interrupted while closing " + name);
+					}
+				}
+			} finally {
+				out.close();
+				if (stallCount != 0) {
+					Logger.defaultLogger().fine(name + " : " + bytesWritten + " bytes written - " + stallCount + " stall(s) (" + stallTime + " ms) - max queue depth : " + maxQueueDepth + "/" + buffers.length);
+				}
+			}
 		}
 	}
-	
+
+	/**
+	 * Throw the error raised by the background thread (if any). The error is kept : all subsequent calls will fail.
+	 */
 	private void checkError() throws IOException {
-		synchronized(lock) {
-			if (error != null) {
-				error = null;
-				throw new IOException(error);
+		synchronized (lock) {
+			if (error == null) {
+				return;
+			} else if (error instanceof IOException) {
+				throw (IOException)error;
+			} else {
+				throw new IOException("Error while writing " + name, error);
 			}
 		}
 	}
-	
-	private class TaskConsumer implements Runnable {	
-		private boolean infiniteLoop = true;
 
-		public TaskConsumer(boolean infiniteLoop) {
-			this.infiniteLoop = infiniteLoop;
+	/**
+	 * Number of buffers waiting to be written
+	 */
+	public int getQueueDepth() {
+		synchronized (lock) {
+			return count;
+		}
+	}
+
+	public int getMaxQueueDepth() {
+		synchronized (lock) {
+			return maxQueueDepth;
+		}
+	}
+
+	public int getCapacity() {
+		return buffers.length;
+	}
+
+	/**
+	 * Number of times the writer had to wait for a free buffer
+	 */
+	public long getStallCount() {
+		synchronized (lock) {
+			return stallCount;
 		}
+	}
 
-		public void setInfiniteLoop(boolean infiniteLoop) {
-			this.infiniteLoop = infiniteLoop;
+	/**
+	 * Time (ms) spent by the writer waiting for a free buffer
+	 */
+	public long getStallTime() {
+		synchronized (lock) {
+			return stallTime;
 		}
+	}
 
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	private class Consumer implements Runnable {
 		public void run() {
 			try {
-				while (infiniteLoop || (! tasks.isEmpty())) {
-					WriteTask task = null;
-					synchronized(lock) {
-						if (! tasks.isEmpty()) {
-							task = (WriteTask)tasks.remove(0);
+				while (true) {
+					byte[] buffer;
+					int length;
+					synchronized (lock) {
+						while (count == 0 && ! closed) {
+							consumerWaiting = true;
+							try {
+								lock.wait();
+							} finally {
+								consumerWaiting = false;
+							}
+						}
+						if (count == 0) {
+							return;
 						}
+						// The published buffers are not modified by the writer : no lock is needed during the write
+						buffer = buffers[head];
+						length = lengths[head];
+						writing = true;
 					}
 
-					if (task != null) {
-						out.write(task.getData());
-					}
+					out.write(buffer, 0, length);
 
-					synchronized(lock) {
-						if (infiniteLoop && tasks.isEmpty()) {
-							try {
-								lock.wait(WAIT);
-							} catch (InterruptedException e) {
-								e.printStackTrace();
-							}
+					synchronized (lock) {
+						head = (head + 1) % buffers.length;
+						count--;
+						writing = false;
+						if (producerWaiting) {
+							lock.notifyAll();
 						}
 					}
 				}
-			} catch (Exception e) {
-				Logger.defaultLogger().error(e);
-				error = e;
+			} catch (Throwable e) {
+				synchronized (lock) {
+					Logger.defaultLogger().error("Error while writing " + name, e);
+					error = e;
+					writing = false;
+					lock.notifyAll();
+				}
 			}
 		}
 	}
@@ -0,0 +1,195 @@
+package com.myJava.file;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import com.myJava.util.taskmonitor.TaskCancelledException;
+import com.myJava.util.taskmonitor.TaskMonitor;
+
+/**
+ * InputStream which reads a local file through its FileChannel, either by memory-mapped windows or with a direct buffer.
+ * <BR>The data are copied only once (from the window to the caller's array), instead of twice with a buffered FileInputStream.
+ * <BR>Callers which can process ByteBuffers (hash computation for instance) can use "nextBuffer" to read the windows without any copy.
+ * <BR>If a mapped file is truncated while it is read, the access fault is reported as an IOException.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ChannelInputStream extends InputStream {
+	private FileInputStream source;
+	private FileChannel channel;
+	private boolean map;
+	private int windowSize;
+	private ByteBuffer window;
+	private boolean eof = false;
+
+	/**
+	 * Position (in the file) of the first byte after the current window
+	 */
+	private long position = 0;
+
+	/**
+	 * @param source The file's input stream
+	 * @param map Use memory-mapped windows (a direct buffer is used otherwise)
+	 * @param windowSize Size of the windows or of the direct buffer
+	 */
+	public ChannelInputStream(FileInputStream source, boolean map, int windowSize) {
+		this.source = source;
+		this.channel = source.getChannel();
+		this.map = map;
+		this.windowSize = windowSize;
+	}
+
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	public boolean isMapped() {
+		return map;
+	}
+
+	/**
+	 * Return the buffer which contains the next bytes of the file, or null if the end of the file has been reached.
+	 * <BR>The caller consumes the bytes by moving the buffer's position. The buffer is only valid until the next call.
+	 */
+	public ByteBuffer nextBuffer() throws IOException {
+		if (window != null && window.hasRemaining()) {
+			return window;
+		} else if (eof) {
+			return null;
+		}
+
+		if (map) {
+			long length = Math.min(windowSize, channel.size() - position);
+			if (length <= 0) {
+				eof = true;
+				window = null;
+				return null;
+			}
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			position += length;
+		} else {
+			if (window == null) {
+				window = ByteBuffer.allocateDirect(windowSize);
+			}
+			window.clear();
+			int read = channel.read(window, position);
+			window.flip();
+			if (read <= 0) {
+				eof = true;
+				return null;
+			}
+			position += read;
+		}
+		return window;
+	}
+
+	/**
+	 * Update the digest with the remaining bytes of the file
+	 */
+	public void digest(MessageDigest dg, TaskMonitor monitor) throws IOException, TaskCancelledException {
+		ByteBuffer buffer;
+		while ((buffer = nextBuffer()) != null) {
+			if (monitor != null) {
+				monitor.checkTaskState();
+			}
+			try {
+				dg.update(buffer);
+			} catch (InternalError e) {
+				throw accessError(e);
+			}
+		}
+	}
+
+	public int read() throws IOException {
+		ByteBuffer buffer = nextBuffer();
+		if (buffer == null) {
+			return -1;
+		}
+		try {
+			return buffer.get() & 0xff;
+		} catch (InternalError e) {
+			throw accessError(e);
+		}
+	}
+
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = nextBuffer();
+		if (buffer == null) {
+			return -1;
+		}
+		int read = Math.min(len, buffer.remaining());
+		try {
+			buffer.get(b, off, read);
+		} catch (InternalError e) {
+			throw accessError(e);
+		}
+		return read;
+	}
+
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		long skipped = 0;
+		if (window != null) {
+			skipped = Math.min(n, window.remaining());
+			window.position(window.position() + (int)skipped);
+		}
+		if (skipped < n) {
+			long s = Math.max(0, Math.min(n - skipped, channel.size() - position));
+			position += s;
+			skipped += s;
+		}
+		return skipped;
+	}
+
+	public int available() throws IOException {
+		long available = (window == null ? 0 : window.remaining()) + Math.max(0, channel.size() - position);
+		return (int)Math.min(Integer.MAX_VALUE, available);
+	}
+
+	public void close() throws IOException {
+		window = null;
+		source.close();
+	}
+
+	private IOException accessError(InternalError e) {
+		IOException ex = new IOException("Error reading mapped file : the file has probably been truncated during the read (" + e.getMessage() + ")");
+		ex.initCause(e);
+		return ex;
+	}
+}
@@ -0,0 +1,175 @@
+package com.myJava.file;
+
+import java.io.File;
+import java.io.Serializable;
+
+import com.myJava.file.metadata.FileMetaDataAccessor;
+
+/**
+ * Immutable view of the state of a file at a given time : type, size, last modification date and (if the accessor
+ * provides them in the same call) permissions, owner and group.
+ * <BR>It is read once (see FileSystemManager.getSnapshot) and avoids asking the same questions to the file system several times
+ * for a given file.
+ * <BR>The "type" and "mode" attributes describe the file itself (symbolic links are not followed) ; the other attributes
+ * follow symbolic links, as the corresponding methods of the <code>File</code> class do.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class FileSnapshot implements Serializable {
+	private static final long serialVersionUID = -3960151394385125063L;
+
+	public static final int UNDEF_MODE = -1;
+	public static final long UNDEF_DEVICE = -1;
+
+	private File file;
+	private short type;
+	private boolean exists;
+	private boolean directory;
+	private boolean regularFile;
+	private long length;
+	private long lastModified;
+	private int mode;
+	private String owner;
+	private String group;
+	private long device;
+
+	/**
+	 * Snapshot without permissions / owner / group
+	 */
+	public FileSnapshot(File file, short type, boolean exists, boolean directory, boolean regularFile, long length, long lastModified) {
+		this(file, type, exists, directory, regularFile, length, lastModified, UNDEF_MODE, null, null, UNDEF_DEVICE);
+	}
+
+	public FileSnapshot(
+			File file,
+			short type,
+			boolean exists,
+			boolean directory,
+			boolean regularFile,
+			long length,
+			long lastModified,
+			int mode,
+			String owner,
+			String group,
+			long device
+	) {
+		this.file = file;
+		this.type = type;
+		this.exists = exists;
+		this.directory = directory;
+		this.regularFile = regularFile;
+		this.length = length;
+		this.lastModified = lastModified;
+		this.mode = mode;
+		this.owner = owner;
+		this.group = group;
+		this.device = device;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Type of the file (symbolic links are not followed)
+	 * <BR>See types listed in FileMetaDataAccessor
+	 */
+	public short getType() {
+		return type;
+	}
+
+	public boolean isLink() {
+		return type == FileMetaDataAccessor.TYPE_LINK;
+	}
+
+	/**
+	 * Same as File.exists() : returns false for dangling links
+	 */
+	public boolean exists() {
+		return exists;
+	}
+
+	/**
+	 * Same as File.isDirectory()
+	 */
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Same as File.isFile()
+	 */
+	public boolean isFile() {
+		return regularFile;
+	}
+
+	/**
+	 * Same as File.length()
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Same as File.lastModified()
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Tells whether the permissions, owner and group have been read
+	 */
+	public boolean hasPermissions() {
+		return mode != UNDEF_MODE;
+	}
+
+	/**
+	 * Full mode of the file, file type included (symbolic links are not followed)
+	 */
+	public int getMode() {
+		return mode;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * Device that contains the file, or UNDEF_DEVICE if unknown
+	 */
+	public long getDevice() {
+		return device;
+	}
+
+	public String toString() {
+		return file + " (type=" + type + ", length=" + length + ", lastModified=" + lastModified + (hasPermissions() ? ", mode=" + Integer.toOctalString(mode) + ", owner=" + owner + ", group=" + group : "") + ")";
+	}
+}
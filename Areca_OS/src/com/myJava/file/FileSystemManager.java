@@ -11,12 +11,9 @@ import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.file.driver.DefaultFileSystemDriver;
 import com.myJava.file.driver.DriverAlreadySetException;
 import com.myJava.file.driver.FileCacheableInformations;
@@ -61,41 +58,25 @@ This file is part of Areca.
  */
 public class FileSystemManager {
 	protected static FileSystemManager instance = new FileSystemManager();
-	protected static int MAX_CACHED_MOUNTPOINTS = FrameworkConfiguration
-			.getInstance().getMaxCachedMountPoints();
-
-	/**
-	 * Drivers indexes par point de montage
-	 */
-	protected Map drivers = new HashMap();
 
 	/**
 	 * Drivers indexes par point de montage. <BR>
-	 * Contrairement a la map "drivers", cette map ne contient que les drivers
-	 * qui ont ete explicitement enregistres par la methode "registerDriver". <BR>
-	 * Elle sert a reinitialiser la map "drivers" suite a l'appel a la methode
-	 * "unregisterDriver"
+	 * Cette table est immuable : elle est remplacee a chaque enregistrement
+	 * (ou suppression) de driver, ce qui permet de rechercher les drivers sans
+	 * synchronisation.
 	 */
-	protected Map driversReference = new HashMap();
+	protected volatile MountPointTable drivers = MountPointTable.EMPTY;
 
 	/**
 	 * Driver par defaut.
 	 */
-	protected FileSystemDriver defaultDriver = new DefaultFileSystemDriver();
+	protected volatile FileSystemDriver defaultDriver = new DefaultFileSystemDriver();
 
 	/**
 	 * Racines du FileSystem
 	 */
 	protected Set roots = new HashSet();
 
-	/**
-	 * Optimisation : ce flag est a "true" si aucun driver specifique n'a ete
-	 * enregistre. <BR>
-	 * On evite ainsi des recherches dans la Map des drivers : le driver par
-	 * defaut est systematiquement retourne.
-	 */
-	protected boolean hasOnlyDefaultDriver = true;
-
 	public static FileSystemManager getInstance() {
 		return instance;
 	}
@@ -153,8 +134,7 @@ public class FileSystemManager {
 		Logger.defaultLogger().info(
 				"Registring a new file system driver : Mount Point = "
 						+ mountPoint + ", Driver = " + driver);
-		registerDriverWithoutCheck(mountPoint, driver);
-		this.driversReference.put(mountPoint, driver);
+		this.drivers = this.drivers.register(mountPoint, driver);
 	}
 
 	/**
@@ -172,16 +152,7 @@ public class FileSystemManager {
 			Logger.defaultLogger().error(e);
 		}
 
-		// Suppression du driver de la map de reference
-		this.driversReference.remove(mountPoint);
-
-		// Reinitialisation de la map de drivers
-		this.initDriverCache();
-	}
-
-	private void initDriverCache() {
-		this.drivers.clear();
-		this.drivers.putAll(this.driversReference);
+		this.drivers = this.drivers.unregister(mountPoint);
 	}
 
 	/**
@@ -190,35 +161,39 @@ public class FileSystemManager {
 	 * methode retourne null si aucun driver n'a ete enregistre pour ce point de
 	 * montage.
 	 */
-	public synchronized FileSystemDriver getDriverAtMountPoint(File mountPoint) {
-		return (FileSystemDriver) this.drivers.get(mountPoint);
+	public FileSystemDriver getDriverAtMountPoint(File mountPoint) {
+		return this.drivers.get(mountPoint);
 	}
 
-	public synchronized void flush(File file) throws IOException {
+	public void flush(File file) throws IOException {
 		FileSystemDriver driver = getDriver(file);
 		driver.flush();
 	}
 	
-	public synchronized void clearCachedData(File file) throws IOException {
+	public void clearCachedData(File file) throws IOException {
 		FileSystemDriver driver = getDriver(file);
 		driver.clearCachedData(file);
 	}
 
 	/**
 	 * Retourne le driver approprie pour le fichier specifie. <BR>
-	 * Si aucun driver n'est trouve, le driver par defaut est retourne.
+	 * Si aucun driver n'est trouve, le driver par defaut est retourne. <BR>
+	 * Cette methode n'est pas synchronisee : elle s'appuie sur l'instance
+	 * courante (immuable) de la table des points de montage.
 	 */
-	public synchronized FileSystemDriver getDriver(File file) {
+	public FileSystemDriver getDriver(File file) {
+		MountPointTable table = this.drivers;
+
 		// Si aucun driver n'a ete enregistre, on retourne le driver par defaut
-		if (this.hasOnlyDefaultDriver) {
+		if (table.isEmpty()) {
 			return this.defaultDriver;
 		}
 
 		// Sinon, on recherche le Driver
-		return lookupDriver(file, true);
+		return table.lookup(file, this.defaultDriver);
 	}
 
-	public synchronized FileSystemDriver getDefaultDriver() {
+	public FileSystemDriver getDefaultDriver() {
 		return defaultDriver;
 	}
 
@@ -230,43 +205,6 @@ public class FileSystemManager {
 		this.defaultDriver = defaultDriver;
 	}
 
-	/**
-	 * Enregistre le driver sans verifier qu'aucun driver n'a ete prealablement
-	 * specifie (a utiliser avec precautions !)
-	 */
-	private Object registerDriverWithoutCheck(File mountPoint,
-			FileSystemDriver driver) {
-		this.hasOnlyDefaultDriver = false;
-		if (this.drivers.size() >= MAX_CACHED_MOUNTPOINTS) {
-			// Max size reached -> destroy all
-			this.initDriverCache();
-		}
-		return this.drivers.put(mountPoint, driver);
-	}
-
-	private FileSystemDriver lookupDriver(File file, boolean firstCall) {
-		// Sinon, on recherche le Driver
-		Object driver = this.drivers.get(file);
-		if (driver == null) {
-			if (this.isRoot(file)) {
-				return this.defaultDriver;
-			} else {
-				// Recherche du driver par le repertoire parent
-				File parent = file.getParentFile();
-				FileSystemDriver returned = this.lookupDriver(parent, false);
-
-				if (!firstCall) {
-					this.registerDriverWithoutCheck(file, returned);
-				}
-
-				// On retourne le driver
-				return returned;
-			}
-		} else {
-			return (FileSystemDriver) driver;
-		}
-	}
-
 	public boolean isRoot(File file) {
 		return this.roots.contains(file) || file.getParentFile() == null;
 	}
@@ -495,6 +433,20 @@ public class FileSystemManager {
 				onlyBasicAttributes);
 	}
 
+	public static FileMetaData getMetaData(FileSnapshot snapshot,
+			boolean onlyBasicAttributes) throws IOException {
+		return getInstance().getDriver(snapshot.getFile()).getMetaData(snapshot,
+				onlyBasicAttributes);
+	}
+
+	public static FileSnapshot getSnapshot(File file) throws IOException {
+		return getInstance().getDriver(file).getSnapshot(file);
+	}
+
+	public static long getDataLength(File file) throws IOException {
+		return getInstance().getDriver(file).getDataLength(file);
+	}
+
 	public static void applyMetaData(FileMetaData p, File f) throws IOException {
 		getInstance().getDriver(f).applyMetaData(p, f);
 	}
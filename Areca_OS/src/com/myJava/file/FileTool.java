@@ -17,6 +17,8 @@ import java.util.Comparator;
 
 import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.file.copypolicy.CopyPolicy;
+import com.myJava.file.driver.DefaultFileSystemDriver;
+import com.myJava.file.driver.FileSystemDriver;
 import com.myJava.system.OSTool;
 import com.myJava.util.Util;
 import com.myJava.util.log.Logger;
@@ -155,6 +157,14 @@ public class FileTool {
 		}
 
 		File tf = new File(targetDirectory, targetShortFileName);
+		if (listener == null) {
+			// Local files are copied channel to channel
+			FileSystemDriver sourceDriver = FileSystemManager.getInstance().getDriver(sourceFile);
+			if (sourceDriver.getClass().equals(DefaultFileSystemDriver.class) && sourceDriver.equals(FileSystemManager.getInstance().getDriver(tf))) {
+				((DefaultFileSystemDriver)sourceDriver).copyFile(sourceFile, tf, monitor);
+				return;
+			}
+		}
 		OutputStream outStream = FileSystemManager.getFileOutputStream(tf, false, listener);
 
 		this.copyFile(sourceFile, outStream, true, monitor);
@@ -487,13 +497,18 @@ public class FileTool {
 			is = FileSystemManager.getFileInputStream(target);
 
 			MessageDigest dg = MessageDigest.getInstance(HASH_ALGORITHM);
-			byte[] buff = new byte[BUFFER_SIZE];
-			int len;
-			while ((len = is.read(buff)) != -1) {
-				if (monitor != null) {
-					monitor.checkTaskState();
+			if (is instanceof ChannelInputStream) {
+				// The channel's buffers are digested directly
+				((ChannelInputStream)is).digest(dg, monitor);
+			} else {
+				byte[] buff = new byte[BUFFER_SIZE];
+				int len;
+				while ((len = is.read(buff)) != -1) {
+					if (monitor != null) {
+						monitor.checkTaskState();
+					}
+					dg.update(buff, 0, len);
 				}
-				dg.update(buff, 0, len);
 			}
 			return dg.digest();
 		} finally {
@@ -0,0 +1,271 @@
+package com.myJava.file;
+
+import java.io.File;
+
+import com.myJava.file.driver.FileSystemDriver;
+
+/**
+ * Immutable table of the FileSystemDrivers registered by the FileSystemManager, indexed by mount point.
+ * <BR>The mount points are stored in a trie : each node is a path segment (the path is split on the file separator).
+ * <BR>Resolving a file walks the trie along the segments of the file's path and returns the driver of the deepest
+ * mount point found. This lookup does not need any lock and does not allocate any object.
+ * <BR>The table is never modified : "register" and "unregister" return a new table which shares all unchanged nodes
+ * with the current one (copy-on-write).
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class MountPointTable {
+	public static final MountPointTable EMPTY = new MountPointTable(new Node("", null, Node.NO_CHILDREN), 0);
+
+	private static final char SEPARATOR = File.separatorChar;
+
+	/**
+	 * Mount points are compared the same way as File.equals does (case insensitive on Windows)
+	 */
+	private static final boolean IGNORE_CASE = new File("a").equals(new File("A"));
+
+	private final Node root;
+	private final int size;
+
+	private MountPointTable(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the driver of the deepest mount point containing the file (or the file itself),
+	 * or the default driver if no mount point contains it.
+	 */
+	public FileSystemDriver lookup(File file, FileSystemDriver defaultDriver) {
+		String path = file.getPath();
+		int len = path.length();
+		Node node = root;
+		FileSystemDriver found = root.driver;
+		int start = 0;
+		while (start < len) {
+			int end = path.indexOf(SEPARATOR, start);
+			if (end == -1) {
+				end = len;
+			}
+			node = node.getChild(path, start, end);
+			if (node == null) {
+				break;
+			} else if (node.driver != null) {
+				found = node.driver;
+			}
+			start = end + 1;
+		}
+		return found == null ? defaultDriver : found;
+	}
+
+	/**
+	 * Return the driver registered for this exact mount point, or null if there is none.
+	 * <BR>There is no lookup in the parent directories.
+	 */
+	public FileSystemDriver get(File mountPoint) {
+		Node node = find(mountPoint.getPath());
+		return node == null ? null : node.driver;
+	}
+
+	/**
+	 * Return a new table in which the driver is registered at this mount point (replacing the former one, if any)
+	 */
+	public MountPointTable register(File mountPoint, FileSystemDriver driver) {
+		if (driver == null) {
+			throw new IllegalArgumentException("Driver can't be null.");
+		}
+		String path = mountPoint.getPath();
+		Node existing = find(path);
+		int newSize = (existing != null && existing.driver != null) ? size : size + 1;
+		return new MountPointTable(put(root, path, 0, driver), newSize);
+	}
+
+	/**
+	 * Return a new table in which no driver is registered at this mount point
+	 */
+	public MountPointTable unregister(File mountPoint) {
+		String path = mountPoint.getPath();
+		Node node = find(path);
+		if (node == null || node.driver == null) {
+			return this;
+		}
+		Node newRoot = put(root, path, 0, null);
+		return new MountPointTable(newRoot == null ? EMPTY.root : newRoot, size - 1);
+	}
+
+	private Node find(String path) {
+		int len = path.length();
+		Node node = root;
+		int start = 0;
+		while (node != null && start < len) {
+			int end = path.indexOf(SEPARATOR, start);
+			if (end == -1) {
+				end = len;
+			}
+			node = node.getChild(path, start, end);
+			start = end + 1;
+		}
+		return node;
+	}
+
+	/**
+	 * Copy the nodes along the path and set the driver of the last one.
+	 * <BR>Nodes which have no driver and no child anymore are removed (null is returned).
+	 */
+	private static Node put(Node node, String path, int start, FileSystemDriver driver) {
+		if (start >= path.length()) {
+			return node.withDriver(driver);
+		}
+
+		int end = path.indexOf(SEPARATOR, start);
+		if (end == -1) {
+			end = path.length();
+		}
+		Node child = node.getChild(path, start, end);
+		if (child == null) {
+			if (driver == null) {
+				return node;
+			}
+			child = new Node(path.substring(start, end), null, Node.NO_CHILDREN);
+		}
+		return node.withChild(child, put(child, path, end + 1, driver));
+	}
+
+	static int hash(String s, int start, int end) {
+		int h = 0;
+		for (int i=start; i<end; i++) {
+			char c = s.charAt(i);
+			if (IGNORE_CASE) {
+				c = Character.toLowerCase(Character.toUpperCase(c));
+			}
+			h = 31*h + c;
+		}
+		return h;
+	}
+
+	/**
+	 * Trie node. The children are sorted by hash code to allow binary searches.
+	 */
+	private static class Node {
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private final String segment;
+		private final int hash;
+		private final FileSystemDriver driver;
+		private final Node[] children;
+
+		private Node(String segment, FileSystemDriver driver, Node[] children) {
+			this.segment = segment;
+			this.hash = hash(segment, 0, segment.length());
+			this.driver = driver;
+			this.children = children;
+		}
+
+		private Node getChild(String path, int start, int end) {
+			int idx = indexOf(path, start, end);
+			return idx < 0 ? null : children[idx];
+		}
+
+		/**
+		 * Return the index of the child matching the segment, or -(insertion point) - 1
+		 */
+		private int indexOf(String path, int start, int end) {
+			int h = hash(path, start, end);
+			int len = end - start;
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int midHash = children[mid].hash;
+				if (midHash < h) {
+					low = mid + 1;
+				} else if (midHash > h) {
+					high = mid - 1;
+				} else {
+					// Same hash : check the neighbours
+					int first = mid;
+					while (first > 0 && children[first - 1].hash == h) {
+						first--;
+					}
+					for (int i=first; i<children.length && children[i].hash == h; i++) {
+						String s = children[i].segment;
+						if (s.length() == len && s.regionMatches(IGNORE_CASE, 0, path, start, len)) {
+							return i;
+						}
+					}
+					return -first - 1;
+				}
+			}
+			return -low - 1;
+		}
+
+		private Node withDriver(FileSystemDriver newDriver) {
+			if (newDriver == null && children.length == 0) {
+				return null;
+			}
+			return new Node(segment, newDriver, children);
+		}
+
+		/**
+		 * Return a copy of this node in which "oldChild" is replaced by "newChild" (or removed if "newChild" is null)
+		 */
+		private Node withChild(Node oldChild, Node newChild) {
+			int idx = indexOf(oldChild.segment, 0, oldChild.segment.length());
+			Node[] newChildren;
+			if (idx >= 0) {
+				if (newChild == null) {
+					newChildren = new Node[children.length - 1];
+					System.arraycopy(children, 0, newChildren, 0, idx);
+					System.arraycopy(children, idx + 1, newChildren, idx, children.length - idx - 1);
+				} else {
+					newChildren = (Node[])children.clone();
+					newChildren[idx] = newChild;
+				}
+			} else if (newChild == null) {
+				return this;
+			} else {
+				int ins = -idx - 1;
+				newChildren = new Node[children.length + 1];
+				System.arraycopy(children, 0, newChildren, 0, ins);
+				newChildren[ins] = newChild;
+				System.arraycopy(children, ins, newChildren, ins + 1, children.length - ins);
+			}
+
+			if (driver == null && newChildren.length == 0) {
+				return null;
+			}
+			return new Node(segment, driver, newChildren);
+		}
+	}
+}
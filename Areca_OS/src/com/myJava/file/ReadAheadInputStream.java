@@ -0,0 +1,229 @@
+package com.myJava.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.myJava.util.log.Logger;
+
+/**
+ * InputStream which reads its underlying stream in advance, in a background thread.
+ * <BR>The data are stored in a bounded ring buffer : the background thread waits when the buffer is full and the reader waits when it is empty.
+ * The underlying stream's decoding (decompression, decryption ...) is thus done in parallel with the processing of the data.
+ * <BR>The background thread is started on the first read.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ReadAheadInputStream extends InputStream {
+	private static final int MAX_CHUNK = 64 * 1024;
+
+	private InputStream in;
+	private String name;
+	private byte[] buffer;
+	private int head = 0; // Position of the next byte to read
+	private int count = 0; // Number of bytes available in the buffer
+	private boolean eof = false;
+	private boolean closed = false;
+	private boolean producerWaiting = false;
+	private boolean consumerWaiting = false;
+	private Exception error;
+	private Object lock = this;
+	private Thread producerThread;
+	private byte[] singleByte = new byte[1];
+
+	public ReadAheadInputStream(InputStream in, int bufferSize, String name) {
+		this.in = in;
+		this.name = name;
+		this.buffer = new byte[Math.max(bufferSize, 1)];
+	}
+
+	private void start() {
+		if (producerThread == null) {
+			producerThread = new Thread(new Producer());
+			producerThread.setDaemon(true);
+			producerThread.setName("Read-ahead : " + name);
+			producerThread.start();
+		}
+	}
+
+	/**
+	 * Wait until data are available ; return false if the end of the stream has been reached
+	 */
+	private boolean waitForData() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed : " + name);
+		}
+		start();
+		while (count == 0 && ! eof && error == null) {
+			consumerWaiting = true;
+			try {
+				lock.wait();
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while reading " + name);
+			} finally {
+				consumerWaiting = false;
+			}
+		}
+		if (count == 0 && error != null) {
+			if (error instanceof IOException) {
+				throw (IOException)error;
+			} else {
+				throw new IOException(error);
+			}
+		}
+		return count != 0;
+	}
+
+	public int read() throws IOException {
+		int ret = read(singleByte, 0, 1);
+		if (ret == -1) {
+			return -1;
+		} else {
+			return singleByte[0] & 0xff;
+		}
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		synchronized (lock) {
+			if (! waitForData()) {
+				return -1;
+			}
+			int read = Math.min(len, count);
+			int first = Math.min(read, buffer.length - head);
+			System.arraycopy(buffer, head, b, off, first);
+			if (first < read) {
+				System.arraycopy(buffer, 0, b, off + first, read - first);
+			}
+			consume(read);
+			return read;
+		}
+	}
+
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		synchronized (lock) {
+			if (! waitForData()) {
+				return 0;
+			}
+			int skipped = (int)Math.min(n, count);
+			consume(skipped);
+			return skipped;
+		}
+	}
+
+	private void consume(int length) {
+		head = (head + length) % buffer.length;
+		count -= length;
+		
+		// Only wake up the background thread once half of the buffer is free, to avoid a context switch per read
+		if (producerWaiting && count <= buffer.length / 2) {
+			lock.notifyAll();
+		}
+	}
+
+	public int available() throws IOException {
+		synchronized (lock) {
+			return count;
+		}
+	}
+
+	/**
+	 * Stop the background thread and close the underlying stream
+	 */
+	public void close() throws IOException {
+		Thread th;
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+			th = producerThread;
+		}
+		try {
+			if (th != null) {
+				try {
+					th.join();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted while closing " + name);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private class Producer implements Runnable {
+		public void run() {
+			try {
+				while (true) {
+					int tail;
+					int length;
+					synchronized (lock) {
+						while (count == buffer.length && ! closed) {
+							producerWaiting = true;
+							try {
+								lock.wait();
+							} finally {
+								producerWaiting = false;
+							}
+						}
+						if (closed) {
+							return;
+						}
+						// Only the free area of the buffer is written : no lock is needed during the read
+						tail = (head + count) % buffer.length;
+						int free = buffer.length - count;
+						length = Math.min(MAX_CHUNK, Math.min(free, buffer.length - tail));
+					}
+
+					int read = in.read(buffer, tail, length);
+
+					synchronized (lock) {
+						if (read == -1) {
+							eof = true;
+							lock.notifyAll();
+							return;
+						}
+						count += read;
+						if (consumerWaiting) {
+							lock.notifyAll();
+						}
+					}
+				}
+			} catch (Exception e) {
+				synchronized (lock) {
+					if (! closed) {
+						Logger.defaultLogger().error("Error while reading " + name, e);
+					}
+					error = e;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.myJava.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.myJava.file.bandwidth.BandwidthLimiter;
+
+/**
+ * InputStream which limits its throughput.
+ * <BR>The limits are defined by a BandwidthLimiter, whose token buckets can be shared by several streams.
+ * The reads are split in chunks which are paced individually.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ThrottledInputStream extends InputStream {
+	private BandwidthLimiter limiter;
+	private InputStream in;
+
+	public ThrottledInputStream(InputStream in, BandwidthLimiter limiter) {
+		this.limiter = limiter;
+		this.in = in;
+	}
+
+	/**
+	 * Wrap the stream if a limiter is set
+	 */
+	public static InputStream wrap(InputStream in, BandwidthLimiter limiter) {
+		return limiter == null ? in : new ThrottledInputStream(in, limiter);
+	}
+
+	public int read() throws IOException {
+		int ret = in.read();
+		if (ret != -1) {
+			limiter.acquire(1);
+		}
+		return ret;
+	}
+
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	/**
+	 * The tokens are consumed after the read, for the number of bytes actually read
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = in.read(b, off, Math.min(len, limiter.getChunkSize()));
+		if (read > 0) {
+			limiter.acquire(read);
+		}
+		return read;
+	}
+
+	public long skip(long n) throws IOException {
+		return in.skip(n);
+	}
+
+	public int available() throws IOException {
+		return in.available();
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
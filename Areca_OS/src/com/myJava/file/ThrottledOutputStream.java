@@ -1,11 +1,16 @@
 package com.myJava.file;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import com.myJava.file.bandwidth.BandwidthLimiter;
+import com.myJava.file.bandwidth.BandwidthSchedule;
+import com.myJava.file.bandwidth.TokenBucket;
+
 /**
- * 
+ * OutputStream which limits its throughput.
+ * <BR>The limits are defined by a BandwidthLimiter, whose token buckets can be shared by several streams.
+ * The writes are split in chunks which are paced individually.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -33,19 +38,32 @@ This file is part of Areca.
 
  */
 public class ThrottledOutputStream extends OutputStream {
+	private BandwidthLimiter limiter;
+	private OutputStream out;
 
 	/**
 	 * Expected throughput - in bytes per second
 	 */
-	private long throughput;
-	private OutputStream out;
-	private long timer = 0;
-
 	public ThrottledOutputStream(OutputStream out, long throughput) {
-		this.throughput = throughput;
+		this(out, new BandwidthLimiter(new TokenBucket("stream", BandwidthSchedule.constant(throughput), 100)));
+	}
+
+	public ThrottledOutputStream(OutputStream out, BandwidthLimiter limiter) {
+		this.limiter = limiter;
 		this.out = out;
 	}
 
+	/**
+	 * Wrap the stream if a limiter is set
+	 */
+	public static OutputStream wrap(OutputStream out, BandwidthLimiter limiter) {
+		return limiter == null ? out : new ThrottledOutputStream(out, limiter);
+	}
+
+	public BandwidthLimiter getLimiter() {
+		return limiter;
+	}
+
 	public void close() throws IOException {
 		out.close();
 	}
@@ -59,65 +77,17 @@ public class ThrottledOutputStream extends OutputStream {
 	}
 
 	public void write(int b) throws IOException {
-		startTimer();
+		limiter.acquire(1);
 		out.write(b);
-		stopTimer(1);
 	}
 
 	public void write(byte[] b, int off, int len) throws IOException {
-		startTimer();
-		out.write(b, off, len);
-		stopTimer(len);
-	}
-	
-	private void startTimer() {
-		timer = System.currentTimeMillis();
-	}
-	
-	private void stopTimer(int nrOfBytes) {
-		long millis = timer + ((1000 * nrOfBytes)/throughput) - System.currentTimeMillis();
-        if (millis > 0) {
-            try {
-                Thread.sleep(millis);
-            } catch (InterruptedException ignored) {
-            }
-        }
-	}
-	
-	public static void main(String[] args) {
-		String content = "";
-		for (int i=0; i<10*1024; i++) {
-			content += "0123456789";
-		}
-		byte[] data = content.getBytes();
-		System.out.println("Writing " + data.length + " bytes.");
-		
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		long start = System.currentTimeMillis();
-		ThrottledOutputStream out = new ThrottledOutputStream(baos, 50*1024);
-		try {
-			out.write(data);
-			out.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		long stop = System.currentTimeMillis();
-		
-		System.out.println("Elapsed : " + (stop-start) + " ms");
-		byte[] read = baos.toByteArray();
-		
-		boolean ok = true;
-		for (int i=0; i<read.length; i++) {
-			if (read[i] != data[i]) {
-				ok = false;
-				break;
-			}
-		}
-		if (ok) {
-			System.out.println("Content successfully checked.");
-		} else {
-			System.out.println("Content not consistent.");
+		while (len > 0) {
+			int chunk = Math.min(len, limiter.getChunkSize());
+			limiter.acquire(chunk);
+			out.write(b, off, chunk);
+			off += chunk;
+			len -= chunk;
 		}
 	}
-}
\ No newline at end of file
+}
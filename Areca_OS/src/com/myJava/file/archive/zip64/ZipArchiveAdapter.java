@@ -5,12 +5,14 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 
+import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.file.archive.AbstractArchiveAdapter;
 import com.myJava.file.archive.ArchiveAdapter;
 import com.myJava.file.multivolumes.VolumeInputStream;
 import com.myJava.file.multivolumes.VolumeStrategy;
 
 /**
+ * <BR>The archives are compressed by several threads unless "zip.compression.workers" is set to 0 (see ZipOutputStream.setCompressionWorkers).
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -71,6 +73,7 @@ implements ArchiveAdapter {
         } else {
         	((ZipOutputStream)zout).setLevel(9);
         }
+        initCompressionWorkers();
     }
 
     public ZipArchiveAdapter(VolumeStrategy strategy, long volumeSize, boolean useZip64, int level) {
@@ -81,6 +84,19 @@ implements ArchiveAdapter {
         } else {
         	((ZipOutputStream)zout).setLevel(9);
         }
+        initCompressionWorkers();
+    }
+
+    private void initCompressionWorkers() {
+        int workers = FrameworkConfiguration.getInstance().getZipCompressionWorkers();
+        if (workers < 0) {
+        	// Default : one thread per processor - no dedicated thread on single processor systems
+        	workers = Runtime.getRuntime().availableProcessors();
+        	if (workers == 1) {
+        		workers = 0;
+        	}
+        }
+        ((ZipOutputStream)zout).setCompressionWorkers(workers, FrameworkConfiguration.getInstance().getZipCompressionChunkSize());
     }
 
     public void addEntry(String entryName, long size) throws IOException {       
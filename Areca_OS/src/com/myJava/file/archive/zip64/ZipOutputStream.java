@@ -12,6 +12,7 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
@@ -32,6 +33,7 @@ import com.myJava.util.log.Logger;
  * <BR>- Splitting management
  * <BR>- STORE method was removed
  * <BR>- Use EXT blocks to store data
+ * <BR>- Parallel compression (see setCompressionWorkers)
  * @author Olivier Petrucci 
  * <BR>
  * <BR>CAUTION :
@@ -76,6 +78,30 @@ implements ZipConstants {
 
 	private Charset charset = Charset.forName(DEFAULT_CHARSET);
 
+	// Parallel compression
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+	private static final int RECORD_LOC = 0;
+	private static final int RECORD_DATA = 1;
+	private static final int RECORD_EXT = 2;
+	private static final boolean SYNC_FLUSH_SUPPORTED = isSyncFlushSupported();
+
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private int compressionWorkers = 0;
+	private int chunkSize;
+	private Object lock = new Object();
+	private LinkedList records = new LinkedList(); 	// Records waiting to be written, in archive order
+	private LinkedList toCompress = new LinkedList(); 	// Chunks waiting for a compression thread
+	private LinkedList freeChunks = new LinkedList();
+	private int pendingChunks = 0;
+	private int maxPendingChunks;
+	private Thread[] threads;
+	private boolean stopped = false;
+	private Throwable error;
+	private Record currentChunk;
+	private long entryIn;
+	private long entryOut;
+	private long closedEntries = 0;
+
 	private void ensureOpen() throws IOException {
 		if (closed) {
 			throw new IOException("Stream closed");
@@ -144,6 +170,38 @@ implements ZipConstants {
 
 	public void setLevel(int level) {
 		def.setLevel(level);
+		this.level = level;
+	}
+
+	/**
+	 * Enables the parallel compression : the data are split into chunks of "chunkSize" bytes which are compressed
+	 * by "workers" threads. The last 32 kbytes of each chunk are used as dictionary for the next one, and each chunk
+	 * is terminated by a sync flush, so the compressed chunks of an entry form a single standard deflate stream.
+	 * <BR>The archive records (local headers, compressed data, data descriptors) are written in order by a dedicated thread,
+	 * so compressing an entry doesn't block the thread that writes the next ones.
+	 * <BR>At most 2 * "workers" chunks are pending at any time.
+	 * <BR>0 = the data are compressed by the calling thread.
+	 * <BR>Must be called before the first entry is written.
+	 */
+	public void setCompressionWorkers(int workers, int chunkSize) {
+		if (opened) {
+			throw new IllegalStateException("The compression mode can't be changed once entries have been written.");
+		}
+		if (workers > 0 && ! SYNC_FLUSH_SUPPORTED) {
+			Logger.defaultLogger().warn("Parallel zip compression is not supported by this JVM. Data will be compressed by the calling thread.");
+			workers = 0;
+		}
+		this.compressionWorkers = Math.max(workers, 0);
+		this.chunkSize = Math.max(chunkSize, DICTIONARY_SIZE);
+		this.maxPendingChunks = 2 * this.compressionWorkers;
+	}
+
+	public int getCompressionWorkers() {
+		return compressionWorkers;
+	}
+
+	private boolean isParallel() {
+		return compressionWorkers > 0;
 	}
 
 	public Charset getCharset() {
@@ -157,7 +215,7 @@ implements ZipConstants {
 	}
 
 	public void putNextEntry(ZipEntry e) throws IOException {
-		if ((!useZip64) && this.entries.size() >= ZIP32_MAX_ENTRIES) {
+		if ((!useZip64) && (isParallel() ? closedEntries : this.entries.size()) >= ZIP32_MAX_ENTRIES) {
 			throw new IOException("Too many files in archive. Zip32 archive format does not allow to store more than " + ZIP32_MAX_ENTRIES + " files.");
 		}
 
@@ -182,16 +240,41 @@ implements ZipConstants {
 		} else {
 			e.version = ZIPVERSION;
 		}
-		e.offset = volumeStrategy == null ? totalWritten : ((VolumeOutputStream)out).getWrittenInCurrentVolume();
-		e.volumeNumber = volumeStrategy == null ? 0 : volumeStrategy.getCurrentVolumeNumber();
-		writeLOC(e);
+		
+		if (isParallel()) {
+			// The offset will be set by the writer thread
+			startThreads();
+			enqueue(new Record(RECORD_LOC, e), false);
+			entryIn = 0;
+		} else {
+			e.offset = volumeStrategy == null ? totalWritten : ((VolumeOutputStream)out).getWrittenInCurrentVolume();
+			e.volumeNumber = volumeStrategy == null ? 0 : volumeStrategy.getCurrentVolumeNumber();
+			writeLOC(e);
+		}
 		entry = e;
 	}
 
 	public void closeEntry() throws IOException {
 		ensureOpen();
 		ZipEntry e = entry;
-		if (e != null) {
+		if (e != null && isParallel()) {
+			if (currentChunk == null) {
+				currentChunk = obtainChunk();
+			}
+			submitChunk(true);
+
+			e.setSize(entryIn);
+			e.crc = crc.getValue();
+			if ((!useZip64) && e.getSize() > ZIP32_ENTRY_SIZE_LIMIT) {
+				throw new IOException(e.name + " is too voluminous (" + (long)(e.getSize() / 1024) + " kbytes). Zip32 archives can't store files bigger than " + (long)(ZIP32_ENTRY_SIZE_LIMIT / 1024) + " kbytes.");
+			}
+			
+			// Sizes and crc are written by the writer thread once the data have been compressed
+			enqueue(new Record(RECORD_EXT, e), false);
+			crc.reset();
+			entry = null;
+			closedEntries++;
+		} else if (e != null) {
 			def.finish();
 			while (!def.finished()) {
 				deflate();
@@ -217,6 +300,11 @@ implements ZipConstants {
 
 	public synchronized void write(byte[] b, int off, int len)
 	throws IOException {
+		if (isParallel()) {
+			writeParallel(b, off, len);
+			return;
+		}
+		
 		if ((!useZip64) && (len+totalWritten) > ZIP32_OVERALL_SIZE_LIMIT) {
 			this.disableSizeCheck = true;
 			throw new IOException(ZIP32_OVERALL_SIZE_MESSAGE);
@@ -245,6 +333,12 @@ implements ZipConstants {
 			if (entry != null) {
 				closeEntry();
 			}
+			
+			if (isParallel()) {
+				// Wait until all records have been written : the central directory is written by the calling thread.
+				waitForRecords();
+				stopThreads();
+			}
 
 			entries.lock();
 
@@ -287,6 +381,7 @@ implements ZipConstants {
 				}
 			} catch (Throwable e) {
 				// Force underlying stream closing.
+				stopThreads();
 				out.close();
 				if (e instanceof IOException) {
 					throw (IOException)e;
@@ -526,4 +621,321 @@ implements ZipConstants {
 		super.out.write(b, off, len);
 		totalWritten += len;
 	}
+
+	// /////////////////////////////////////////////////////////////////////////////////////////////////////////
+	// Parallel compression
+	// /////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static boolean isSyncFlushSupported() {
+		try {
+			Deflater.class.getMethod("deflate", new Class[] {byte[].class, Integer.TYPE, Integer.TYPE, Integer.TYPE});
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private void writeParallel(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return;
+		}
+
+		if (entry == null) {
+			throw new ZipException("no current ZIP entry");
+		}
+		checkError();
+
+		crc.update(b, off, len);
+		entryIn += len;
+		while (len > 0) {
+			if (currentChunk == null) {
+				currentChunk = obtainChunk();
+			}
+			Record chunk = currentChunk;
+			int n = Math.min(len, chunk.input.length - chunk.dictionaryLength - chunk.length);
+			System.arraycopy(b, off, chunk.input, chunk.dictionaryLength + chunk.length, n);
+			chunk.length += n;
+			off += n;
+			len -= n;
+
+			if (chunk.dictionaryLength + chunk.length == chunk.input.length) {
+				submitChunk(false);
+			}
+		}
+	}
+
+	private void submitChunk(boolean last) throws IOException {
+		Record chunk = currentChunk;
+		chunk.last = last;
+		currentChunk = null;
+		if (! last) {
+			// The end of this chunk is used as dictionary for the next one
+			Record next = obtainChunk();
+			int dictionaryLength = Math.min(DICTIONARY_SIZE, chunk.length);
+			System.arraycopy(chunk.input, chunk.dictionaryLength + chunk.length - dictionaryLength, next.input, 0, dictionaryLength);
+			next.dictionaryLength = dictionaryLength;
+			currentChunk = next;
+		}
+		enqueue(chunk, true);
+	}
+
+	private Record obtainChunk() {
+		Record chunk = null;
+		synchronized (lock) {
+			if (! freeChunks.isEmpty()) {
+				chunk = (Record)freeChunks.removeFirst();
+			}
+		}
+
+		if (chunk == null) {
+			chunk = new Record(RECORD_DATA, null);
+			chunk.input = new byte[DICTIONARY_SIZE + chunkSize];
+			chunk.output = new byte[chunkSize / 2 + 1024];
+		} else {
+			chunk.dictionaryLength = 0;
+			chunk.length = 0;
+			chunk.last = false;
+			chunk.outputLength = 0;
+			chunk.compressed = false;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Add a record at the end of the archive. Blocks if too many chunks are pending.
+	 */
+	private void enqueue(Record record, boolean chunk) throws IOException {
+		synchronized (lock) {
+			if (chunk) {
+				while (pendingChunks >= maxPendingChunks && error == null) {
+					waitOnLock();
+				}
+			}
+			checkError();
+
+			records.add(record);
+			if (chunk) {
+				pendingChunks++;
+				toCompress.add(record);
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void waitForRecords() throws IOException {
+		synchronized (lock) {
+			while (! records.isEmpty() && error == null) {
+				waitOnLock();
+			}
+			checkError();
+		}
+	}
+
+	private void waitOnLock() throws IOException {
+		try {
+			lock.wait();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for the zip compression threads.");
+		}
+	}
+
+	private void checkError() throws IOException {
+		Throwable e;
+		synchronized (lock) {
+			e = error;
+		}
+		if (e != null) {
+			IOException ex = new IOException(e.getMessage());
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	private void fail(Throwable e) {
+		Logger.defaultLogger().error("Error during zip compression.", e);
+		synchronized (lock) {
+			if (error == null) {
+				error = e;
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private void startThreads() {
+		if (threads == null) {
+			threads = new Thread[compressionWorkers + 1];
+			for (int i=0; i<compressionWorkers; i++) {
+				threads[i] = new Thread(new Compressor(), "Zip compression #" + i);
+			}
+			threads[compressionWorkers] = new Thread(new Writer(), "Zip writer");
+			for (int i=0; i<threads.length; i++) {
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+		}
+	}
+
+	private void stopThreads() throws IOException {
+		if (threads == null) {
+			return;
+		}
+		synchronized (lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+		try {
+			for (int i=0; i<threads.length; i++) {
+				threads[i].join();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for the zip compression threads.");
+		}
+		threads = null;
+	}
+
+	/**
+	 * Writes a record - called by the writer thread only
+	 */
+	private void writeRecord(Record record) throws IOException {
+		ZipEntry e = record.entry;
+		if (record.type == RECORD_LOC) {
+			e.offset = volumeStrategy == null ? totalWritten : ((VolumeOutputStream)out).getWrittenInCurrentVolume();
+			e.volumeNumber = volumeStrategy == null ? 0 : volumeStrategy.getCurrentVolumeNumber();
+			writeLOC(e);
+			entryOut = 0;
+		} else if (record.type == RECORD_DATA) {
+			if ((!useZip64) && (totalWritten + entryOut + record.outputLength) > ZIP32_OVERALL_SIZE_LIMIT) {
+				this.disableSizeCheck = true;
+				throw new IOException(ZIP32_OVERALL_SIZE_MESSAGE);
+			}
+			out.write(record.output, 0, record.outputLength);
+			entryOut += record.outputLength;
+		} else {
+			e.csize = entryOut;
+			writeEXT(e);
+			totalWritten += e.csize;
+			entries.add(e);
+		}
+	}
+
+	/**
+	 * Compresses a chunk. Non final chunks are terminated by a sync flush, so that the compressed chunks
+	 * can be concatenated.
+	 */
+	private static void compress(Record chunk, Deflater deflater) {
+		deflater.reset();
+		if (chunk.dictionaryLength != 0) {
+			deflater.setDictionary(chunk.input, 0, chunk.dictionaryLength);
+		}
+		deflater.setInput(chunk.input, chunk.dictionaryLength, chunk.length);
+		if (chunk.last) {
+			deflater.finish();
+		}
+
+		while (true) {
+			if (chunk.output.length - chunk.outputLength < 64) {
+				byte[] tmp = new byte[chunk.output.length * 2];
+				System.arraycopy(chunk.output, 0, tmp, 0, chunk.outputLength);
+				chunk.output = tmp;
+			}
+			int available = chunk.output.length - chunk.outputLength;
+			int n = deflater.deflate(chunk.output, chunk.outputLength, available, chunk.last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+			chunk.outputLength += n;
+			if (chunk.last ? deflater.finished() : n < available) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Archive record : local header, chunk of data or data descriptor
+	 */
+	private static class Record {
+		private int type;
+		private ZipEntry entry;
+
+		// Chunks of data
+		private byte[] input;
+		private int dictionaryLength;
+		private int length;
+		private boolean last;
+		private byte[] output;
+		private int outputLength;
+		private boolean compressed;
+
+		private Record(int type, ZipEntry entry) {
+			this.type = type;
+			this.entry = entry;
+		}
+
+		private boolean isReady() {
+			return type != RECORD_DATA || compressed;
+		}
+	}
+
+	private class Compressor implements Runnable {
+		public void run() {
+			Deflater deflater = new Deflater(level, true);
+			try {
+				while (true) {
+					Record chunk;
+					synchronized (lock) {
+						while (toCompress.isEmpty() && ! stopped && error == null) {
+							lock.wait();
+						}
+						if (stopped || error != null) {
+							return;
+						}
+						chunk = (Record)toCompress.removeFirst();
+					}
+
+					compress(chunk, deflater);
+
+					synchronized (lock) {
+						chunk.compressed = true;
+						lock.notifyAll();
+					}
+				}
+			} catch (Throwable e) {
+				fail(e);
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	private class Writer implements Runnable {
+		public void run() {
+			try {
+				while (true) {
+					Record record;
+					synchronized (lock) {
+						while (! stopped && error == null && (records.isEmpty() || ! ((Record)records.getFirst()).isReady())) {
+							lock.wait();
+						}
+						if (stopped || error != null) {
+							return;
+						}
+						record = (Record)records.getFirst();
+					}
+
+					writeRecord(record);
+
+					synchronized (lock) {
+						records.removeFirst();
+						if (record.type == RECORD_DATA) {
+							pendingChunks--;
+							freeChunks.add(record);
+						}
+						lock.notifyAll();
+					}
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
 }
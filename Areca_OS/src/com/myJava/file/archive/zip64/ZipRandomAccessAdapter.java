@@ -0,0 +1,91 @@
+package com.myJava.file.archive.zip64;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import com.myJava.file.archive.AbstractArchiveAdapter;
+import com.myJava.file.archive.ArchiveAdapter;
+
+/**
+ * Read-only ArchiveAdapter based on the ZipRandomAccessReader.
+ * <BR>The entries are read from the central directory of the archive : the data of an entry is only read
+ * if its InputStream is requested. Skipped entries are neither read nor decompressed.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ZipRandomAccessAdapter
+extends AbstractArchiveAdapter
+implements ArchiveAdapter {
+
+    private ZipRandomAccessReader reader;
+    private ZipEntry entry;
+
+    public ZipRandomAccessAdapter(ZipRandomAccessReader reader) {
+        super(ACCESS_READ, 0);
+        this.reader = reader;
+    }
+
+    public String getNextEntry() throws IOException {
+        closeEntry();
+        entry = reader.getNextEntry();
+        if (entry == null) {
+            return null;
+        } else {
+            return entry.getName();
+        }
+    }
+
+    public InputStream getArchiveInputStream() {
+        if (zin == null && entry != null) {
+            zin = reader.getInputStream(entry);
+        }
+        return zin;
+    }
+
+    public void closeEntry() throws IOException {
+        if (zin != null) {
+            zin.close();
+            zin = null;
+        }
+        entry = null;
+    }
+
+    public void close() throws IOException {
+        try {
+            closeEntry();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void setCharset(Charset charset) {
+        reader.setCharset(charset);
+    }
+
+    public void setArchiveComment(String comment) {
+    }
+}
@@ -0,0 +1,855 @@
+package com.myJava.file.archive.zip64;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.FileSystemManager;
+import com.myJava.file.driver.FileSystemDriver;
+import com.myJava.util.log.Logger;
+
+/**
+ * Random access reader for the zip archives (single or multi volumes, zip32 or zip64) written by the ZipOutputStream.
+ * <BR>Unlike the ZipInputStream, which decompresses the whole archive sequentially, this reader locates the central directory
+ * (END / zip64 END records) at the end of the archive and iterates on the central directory entries.
+ * The data of an entry is only read (and decompressed) if its InputStream is requested : the reader seeks directly to
+ * the entry's local header (in the right volume for multi-volume archives).
+ * <BR>
+ * <BR>The central directory can be cached in an "index file" (name, sizes, crc, volume and offset of each entry).
+ * This file is written the first time the central directory is read, and used instead of the central directory afterwards,
+ * as long as it matches the archive (size of the archive, location and size of the central directory, charset).
+ * <BR>Failures on the index file are not blocking : the central directory is read instead.
+ * <BR>
+ * <BR>The entries are returned in the order of the archive, which allows callers to read them with a single forward pass
+ * on the archive's data.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class ZipRandomAccessReader
+implements ZipConstants {
+
+	private static final int ZIP_BUFFER_SIZE = FrameworkConfiguration.getInstance().getZipBufferSize();
+	private static final boolean ZIP_ENABLE_ENTRY_CHECK = FrameworkConfiguration.getInstance().isZipEntryCheckEnabled();
+
+	private static final int INDEX_MAGIC = 0x5A495058; // "ZIPX"
+	private static final int INDEX_VERSION = 1;
+	private static final String INDEX_TMP_SUFFIX = ".tmp";
+
+	private static final int ZIP64ENDHDR = 56;		// zip64 END header size
+	private static final int ZIP64LOCHDR = 20;		// zip64 END locator size
+	private static final int MAX_END_LENGTH = ENDHDR + 0xFFFF; // END header + comment
+	private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+	private static final int DEFLATED = ZipEntry.DEFLATED;
+
+	/**
+	 * Single volume archive
+	 */
+	private File archive;
+
+	/**
+	 * Multi volume archive
+	 */
+	private ZipVolumeStrategy strategy;
+
+	/**
+	 * Files of the volumes (key = Integer)
+	 */
+	private Map volumes = new HashMap();
+	private File lastVolume;
+
+	private File indexFile;
+	private Charset charset = Charset.forName(DEFAULT_CHARSET);
+
+	// Central directory, as described in the END record
+	private long archiveLength;
+	private int cenVolume;
+	private long cenOffset;
+	private long cenSize;
+	private boolean zip64;
+
+	// Entries iteration
+	private boolean started = false;
+	private boolean finished = false;
+	private long readEntries = 0;
+	private DataInputStream index;
+	private InputStream cen;
+	private long cenRead;
+	private byte[] tmpbuf = new byte[CENHDR];
+	private byte[] b = new byte[512];
+
+	// Index being written
+	private File indexTmpFile;
+	private DataOutputStream indexOut;
+
+	// Data
+	private VolumeCursor cursor;
+	private boolean closed = false;
+
+	/**
+	 * Single volume archive
+	 */
+	public ZipRandomAccessReader(File archive, File indexFile) throws IOException {
+		this.archive = archive;
+		this.lastVolume = archive;
+		this.indexFile = indexFile;
+		readEND();
+	}
+
+	/**
+	 * Multi volume archive
+	 */
+	public ZipRandomAccessReader(ZipVolumeStrategy strategy, File indexFile) throws IOException {
+		this.strategy = strategy;
+		this.lastVolume = strategy.getFinalArchive();
+		this.indexFile = indexFile;
+		readEND();
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Sets the charset used to decode the entry names.
+	 * <BR>Must be called before the first call to "getNextEntry"
+	 */
+	public void setCharset(Charset charset) {
+		if (charset != null) {
+			this.charset = charset;
+		}
+	}
+
+	public boolean isZip64() {
+		return zip64;
+	}
+
+	/**
+	 * Returns the next entry of the central directory, or null if all entries have been read.
+	 */
+	public ZipEntry getNextEntry() throws IOException {
+		ensureOpen();
+		if (finished) {
+			return null;
+		}
+		if (! started) {
+			started = true;
+			if (! openIndex()) {
+				openCEN(0);
+			}
+		}
+
+		ZipEntry entry = null;
+		if (index != null) {
+			try {
+				entry = readIndexEntry();
+			} catch (IOException e) {
+				Logger.defaultLogger().warn("Error reading zip index " + FileSystemManager.getAbsolutePath(indexFile) + " (" + e.getMessage() + "). The archive's central directory will be used instead.");
+				closeIndex();
+				openCEN(readEntries);
+				entry = readCENEntry();
+			}
+		} else {
+			entry = readCENEntry();
+		}
+
+		if (entry == null) {
+			finished = true;
+			commitIndex();
+		} else {
+			readEntries++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns an InputStream on the uncompressed data of the entry.
+	 * <BR>The archive is not read until the first read on the returned stream.
+	 * <BR>Only one stream can be read at a time : the stream must be closed before the next one is read.
+	 * Closing it does not close the archive.
+	 */
+	public InputStream getInputStream(ZipEntry entry) {
+		return new EntryInputStream(entry, false);
+	}
+
+	/**
+	 * Returns an InputStream on the uncompressed data of the entry, which uses its own stream on the archive.
+	 * <BR>Unlike "getInputStream", several streams can be read at the same time, by different threads.
+	 */
+	public InputStream openInputStream(ZipEntry entry) {
+		return new EntryInputStream(entry, true);
+	}
+
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			if (indexOut != null && ! finished) {
+				// Read the rest of the central directory to complete the index
+				try {
+					while (readCENEntry() != null) {
+					}
+					commitIndex();
+				} catch (IOException e) {
+					Logger.defaultLogger().warn("Unable to complete zip index " + FileSystemManager.getAbsolutePath(indexFile) + " : " + e.getMessage());
+					discardIndex();
+				}
+			}
+		} finally {
+			try {
+				closeIndex();
+				if (cen != null) {
+					cen.close();
+					cen = null;
+				}
+			} finally {
+				discardIndex();
+				if (cursor != null) {
+					cursor.close();
+					cursor = null;
+				}
+			}
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Reader closed");
+		}
+	}
+
+	/**
+	 * Locates the END record in the last volume and reads the location of the central directory.
+	 */
+	private void readEND() throws IOException {
+		archiveLength = getDataLength(lastVolume);
+		int len = (int)Math.min(archiveLength, MAX_END_LENGTH + ZIP64LOCHDR);
+		if (len < ENDHDR) {
+			throw new ZipException("Invalid zip archive : " + getAbsolutePath(lastVolume));
+		}
+		byte[] tail = new byte[len];
+		InputStream in = openFile(lastVolume);
+		try {
+			skipFully(in, archiveLength - len);
+			readFully(in, tail, 0, len);
+		} finally {
+			in.close();
+		}
+
+		// Search the END signature (backward, because of the archive comment)
+		int endPos = -1;
+		for (int i=len - ENDHDR; i>=0; i--) {
+			if (get32(tail, i) == ENDSIG && i + ENDHDR + get16(tail, i + ENDCOM) == len) {
+				endPos = i;
+				break;
+			}
+		}
+		if (endPos == -1) {
+			throw new ZipException("END header not found in " + getAbsolutePath(lastVolume));
+		}
+
+		if (endPos >= ZIP64LOCHDR && get32(tail, endPos - ZIP64LOCHDR) == ZIP64ENDLOCSIG) {
+			// Zip64 : read the zip64 END record
+			int loc = endPos - ZIP64LOCHDR;
+			int z64Volume = (int)get32(tail, loc + 4);
+			long z64Offset = get64(tail, loc + 8);
+
+			byte[] z64 = new byte[ZIP64ENDHDR];
+			VolumeCursor z64in = new VolumeCursor(z64Volume, z64Offset);
+			try {
+				readFully(z64in, z64, 0, ZIP64ENDHDR);
+			} finally {
+				z64in.close();
+			}
+			if (get32(z64, 0) != ZIP64ENDSIG) {
+				throw new ZipException("zip64 END header not found in " + getAbsolutePath(lastVolume));
+			}
+			zip64 = true;
+			cenVolume = (int)get32(z64, 20);
+			cenSize = get64(z64, 40);
+			cenOffset = get64(z64, 48);
+		} else {
+			if (strategy == null && archiveLength > MAX_UINT32) {
+				// Offsets can't be stored in zip32 archives larger than 4GB : the archive can only be read sequentially
+				throw new ZipException("Unable to read the central directory of a zip32 archive larger than 4GB : " + getAbsolutePath(lastVolume));
+			}
+			zip64 = false;
+			cenVolume = get16(tail, endPos + 6);
+			cenSize = get32(tail, endPos + ENDSIZ);
+			cenOffset = get32(tail, endPos + ENDOFF);
+		}
+	}
+
+	/**
+	 * Opens the index file if it exists and matches the archive
+	 */
+	private boolean openIndex() {
+		if (indexFile == null || ! FileSystemManager.exists(indexFile)) {
+			return false;
+		}
+
+		try {
+			index = new DataInputStream(new BufferedInputStream(new GZIPInputStream(FileSystemManager.getFileInputStream(indexFile)), ZIP_BUFFER_SIZE));
+			if (
+					index.readInt() == INDEX_MAGIC
+					&& index.readInt() == INDEX_VERSION
+					&& index.readLong() == archiveLength
+					&& index.readInt() == cenVolume
+					&& index.readLong() == cenOffset
+					&& index.readLong() == cenSize
+					&& index.readUTF().equals(charset.name())
+			) {
+				return true;
+			} else {
+				Logger.defaultLogger().info("Outdated zip index : " + FileSystemManager.getAbsolutePath(indexFile) + ". It will be rebuilt.");
+			}
+		} catch (IOException e) {
+			Logger.defaultLogger().warn("Error reading zip index " + FileSystemManager.getAbsolutePath(indexFile) + " (" + e.getMessage() + "). It will be rebuilt.");
+		}
+		closeIndex();
+		return false;
+	}
+
+	private void closeIndex() {
+		if (index != null) {
+			try {
+				index.close();
+			} catch (IOException e) {
+				Logger.defaultLogger().error(e);
+			}
+			index = null;
+		}
+	}
+
+	private ZipEntry readIndexEntry() throws IOException {
+		if (! index.readBoolean()) {
+			return null;
+		}
+		int len = index.readInt();
+		byte[] nb = new byte[len];
+		index.readFully(nb);
+		ZipEntry e = new ZipEntry(new String(nb, CHARSET_UTF8));
+		e.version = index.readShort();
+		e.flag = index.readShort();
+		e.method = index.readShort();
+		e.time = index.readLong();
+		e.crc = index.readLong();
+		e.csize = index.readLong();
+		e.setSize(index.readLong());
+		e.volumeNumber = index.readInt();
+		e.offset = index.readLong();
+		e.isZip64 = zip64;
+		return e;
+	}
+
+	/**
+	 * Opens the central directory and skips the first "skip" entries.
+	 * <BR>The index file is (re)written while the central directory is read.
+	 */
+	private void openCEN(long skip) throws IOException {
+		cen = new BufferedInputStream(new VolumeCursor(cenVolume, cenOffset), ZIP_BUFFER_SIZE);
+		cenRead = 0;
+		openIndexOut();
+		for (long i=0; i<skip; i++) {
+			if (readCENEntry() == null) {
+				throw new ZipException("Unexpected end of central directory");
+			}
+		}
+	}
+
+	private ZipEntry readCENEntry() throws IOException {
+		if (cenRead >= cenSize) {
+			return null;
+		}
+		readFully(cen, tmpbuf, 0, CENHDR);
+		if (get32(tmpbuf, 0) != CENSIG) {
+			throw new ZipException("invalid CEN header (bad signature)");
+		}
+		int nlen = get16(tmpbuf, CENNAM);
+		int elen = get16(tmpbuf, CENEXT);
+		int clen = get16(tmpbuf, CENCOM);
+		if (nlen == 0) {
+			throw new ZipException("missing entry name");
+		}
+		if (nlen > b.length) {
+			b = new byte[Math.max(nlen, b.length * 2)];
+		}
+		readFully(cen, b, 0, nlen);
+		ZipEntry e = new ZipEntry(ZipStringEncoder.decode(b, 0, nlen, charset));
+		e.version = get16(tmpbuf, CENVER);
+		e.flag = get16(tmpbuf, CENFLG);
+		e.method = get16(tmpbuf, CENHOW);
+		e.time = get32(tmpbuf, CENTIM);
+		e.crc = get32(tmpbuf, CENCRC);
+		e.csize = get32(tmpbuf, CENSIZ);
+		e.setSize(get32(tmpbuf, CENLEN));
+		e.volumeNumber = get16(tmpbuf, CENDSK);
+		e.offset = get32(tmpbuf, CENOFF);
+		e.isZip64 = zip64;
+
+		if (elen > 0) {
+			byte[] extra = new byte[elen];
+			readFully(cen, extra, 0, elen);
+			readZip64ExtraField(e, extra);
+		}
+		skipFully(cen, clen);
+		cenRead += CENHDR + nlen + elen + clen;
+
+		if (indexOut != null) {
+			writeIndexEntry(e);
+		}
+		return e;
+	}
+
+	/**
+	 * Reads the zip64 extended information : only the values which are set to 0xFFFF / 0xFFFFFFFF in the CEN header are stored in this field.
+	 */
+	private void readZip64ExtraField(ZipEntry e, byte[] extra) throws ZipException {
+		int off = 0;
+		while (off + 4 <= extra.length) {
+			int tag = get16(extra, off);
+			int sz = get16(extra, off + 2);
+			off += 4;
+			if (off + sz > extra.length) {
+				throw new ZipException("invalid extra field length");
+			}
+			if (tag == ZIP64XTRAFIELD) {
+				int p = off;
+				if (e.getSize() == MAX_UINT32 && p + 8 <= off + sz) {
+					e.setSize(get64(extra, p));
+					p += 8;
+				}
+				if (e.csize == MAX_UINT32 && p + 8 <= off + sz) {
+					e.csize = get64(extra, p);
+					p += 8;
+				}
+				if (e.offset == MAX_UINT32 && p + 8 <= off + sz) {
+					e.offset = get64(extra, p);
+					p += 8;
+				}
+				if (e.volumeNumber == 0xFFFF && p + 4 <= off + sz) {
+					e.volumeNumber = (int)get32(extra, p);
+				}
+				e.isZip64 = true;
+			}
+			off += sz;
+		}
+	}
+
+	private void openIndexOut() {
+		discardIndex();
+		if (indexFile == null || ! FileSystemManager.exists(FileSystemManager.getParentFile(indexFile))) {
+			return;
+		}
+
+		indexTmpFile = new File(FileSystemManager.getParentFile(indexFile), FileSystemManager.getName(indexFile) + INDEX_TMP_SUFFIX);
+		try {
+			indexOut = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(FileSystemManager.getFileOutputStream(indexTmpFile)), ZIP_BUFFER_SIZE));
+			indexOut.writeInt(INDEX_MAGIC);
+			indexOut.writeInt(INDEX_VERSION);
+			indexOut.writeLong(archiveLength);
+			indexOut.writeInt(cenVolume);
+			indexOut.writeLong(cenOffset);
+			indexOut.writeLong(cenSize);
+			indexOut.writeUTF(charset.name());
+		} catch (IOException e) {
+			Logger.defaultLogger().warn("Unable to create zip index " + FileSystemManager.getAbsolutePath(indexFile) + " : " + e.getMessage());
+			discardIndex();
+		}
+	}
+
+	private void writeIndexEntry(ZipEntry e) {
+		try {
+			byte[] nb = e.getName().getBytes(CHARSET_UTF8);
+			indexOut.writeBoolean(true);
+			indexOut.writeInt(nb.length);
+			indexOut.write(nb);
+			indexOut.writeShort(e.version);
+			indexOut.writeShort(e.flag);
+			indexOut.writeShort(e.method);
+			indexOut.writeLong(e.time);
+			indexOut.writeLong(e.crc);
+			indexOut.writeLong(e.csize);
+			indexOut.writeLong(e.getSize());
+			indexOut.writeInt(e.volumeNumber);
+			indexOut.writeLong(e.offset);
+		} catch (IOException ex) {
+			Logger.defaultLogger().warn("Unable to write zip index " + FileSystemManager.getAbsolutePath(indexFile) + " : " + ex.getMessage());
+			discardIndex();
+		}
+	}
+
+	/**
+	 * Closes the index being written and replaces the former index file
+	 */
+	private void commitIndex() {
+		if (indexOut == null) {
+			return;
+		}
+		try {
+			indexOut.writeBoolean(false);
+			indexOut.close();
+			indexOut = null;
+			if (FileSystemManager.exists(indexFile)) {
+				FileSystemManager.delete(indexFile);
+			}
+			if (! FileSystemManager.renameTo(indexTmpFile, indexFile)) {
+				throw new IOException("Unable to rename " + FileSystemManager.getAbsolutePath(indexTmpFile));
+			}
+			indexTmpFile = null;
+		} catch (IOException e) {
+			Logger.defaultLogger().warn("Unable to write zip index " + FileSystemManager.getAbsolutePath(indexFile) + " : " + e.getMessage());
+			discardIndex();
+		}
+	}
+
+	private void discardIndex() {
+		if (indexOut != null) {
+			try {
+				indexOut.close();
+			} catch (IOException ignored) {
+			}
+			indexOut = null;
+		}
+		if (indexTmpFile != null) {
+			FileSystemManager.delete(indexTmpFile);
+			indexTmpFile = null;
+		}
+	}
+
+	/**
+	 * Moves the data cursor to the requested location.
+	 * <BR>The current stream is reused if the location is ahead of it in the same volume.
+	 */
+	private InputStream seek(int volume, long offset) throws IOException {
+		if (cursor != null && cursor.volume == volume && cursor.position <= offset) {
+			cursor.skipTo(offset);
+		} else {
+			if (cursor != null) {
+				cursor.close();
+			}
+			cursor = null;
+			cursor = new VolumeCursor(volume, offset);
+		}
+		return cursor;
+	}
+
+	/**
+	 * Seeks to the local header of the entry, checks it and skips it.
+	 */
+	private InputStream openEntryData(ZipEntry e, boolean dedicated) throws IOException {
+		ensureOpen();
+		if (e.method != DEFLATED) {
+			throw new ZipException("invalid compression method");
+		}
+		InputStream in = dedicated ? new VolumeCursor(e.volumeNumber, e.offset) : seek(e.volumeNumber, e.offset);
+		try {
+			readLOC(in, e);
+		} catch (IOException ex) {
+			if (dedicated) {
+				in.close();
+			}
+			throw ex;
+		}
+		return in;
+	}
+
+	private void readLOC(InputStream in, ZipEntry e) throws IOException {
+		byte[] loc = new byte[LOCHDR];
+		readFully(in, loc, 0, LOCHDR);
+		if (get32(loc, 0) != LOCSIG) {
+			throw new ZipException("invalid LOC header (bad signature) for entry " + e.getName());
+		}
+		skipFully(in, get16(loc, LOCNAM) + get16(loc, LOCEXT));
+	}
+
+	private synchronized File getVolume(int volume) {
+		if (strategy == null) {
+			if (volume != 0) {
+				throw new IllegalArgumentException("Invalid volume number for a single volume archive : " + volume);
+			}
+			return archive;
+		} else {
+			Integer key = Integer.valueOf(volume);
+			File f = (File)volumes.get(key);
+			if (f == null) {
+				f = strategy.getReadableVolume(volume);
+				volumes.put(key, f);
+			}
+			return f;
+		}
+	}
+
+	private InputStream openFile(File f) throws IOException {
+		FileSystemDriver driver = strategy == null ? null : strategy.getDriver();
+		return driver == null ? FileSystemManager.getFileInputStream(f) : driver.getFileInputStream(f);
+	}
+
+	private long getDataLength(File f) throws IOException {
+		FileSystemDriver driver = strategy == null ? null : strategy.getDriver();
+		return driver == null ? FileSystemManager.getDataLength(f) : driver.getDataLength(f);
+	}
+
+	private String getAbsolutePath(File f) {
+		FileSystemDriver driver = strategy == null ? null : strategy.getDriver();
+		return driver == null ? FileSystemManager.getAbsolutePath(f) : driver.getAbsolutePath(f);
+	}
+
+	private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = in.read(b, off, len);
+			if (n == -1) {
+				throw new EOFException();
+			}
+			off += n;
+			len -= n;
+		}
+	}
+
+	private static void skipFully(InputStream in, long len) throws IOException {
+		while (len > 0) {
+			long n = in.skip(len);
+			if (n <= 0) {
+				if (in.read() == -1) {
+					throw new EOFException();
+				}
+				n = 1;
+			}
+			len -= n;
+		}
+	}
+
+	private static final int get16(byte b[], int off) {
+		return (b[off] & 0xff) | ((b[off+1] & 0xff) << 8);
+	}
+
+	private static final long get32(byte b[], int off) {
+		return get16(b, off) | ((long)get16(b, off+2) << 16);
+	}
+
+	private static final long get64(byte b[], int off) {
+		return get32(b, off) | ((long)get32(b, off+4) << 32);
+	}
+
+	/**
+	 * Stream on the archive's volumes, starting at a given location. The next volumes are opened when the end of
+	 * the current one is reached.
+	 */
+	private class VolumeCursor extends InputStream {
+		private int volume;
+		private long position;
+		private File file;
+		private InputStream in;
+
+		private VolumeCursor(int volume, long offset) throws IOException {
+			open(volume);
+			skipTo(offset);
+		}
+
+		private void open(int volume) throws IOException {
+			this.volume = volume;
+			this.position = 0;
+			this.file = getVolume(volume);
+			this.in = new BufferedInputStream(openFile(file), ZIP_BUFFER_SIZE);
+		}
+
+		/**
+		 * Opens the next volume ; returns false if the current volume is the last one
+		 */
+		private boolean next() throws IOException {
+			if (file.equals(lastVolume)) {
+				return false;
+			}
+			in.close();
+			open(volume + 1);
+			return true;
+		}
+
+		private void skipTo(long offset) throws IOException {
+			long len = offset - position;
+			while (len > 0) {
+				long n = in.skip(len);
+				if (n <= 0) {
+					if (in.read() == -1) {
+						throw new EOFException("Unexpected end of volume " + getAbsolutePath(file));
+					}
+					n = 1;
+				}
+				len -= n;
+				position += n;
+			}
+		}
+
+		public int read() throws IOException {
+			int r;
+			while ((r = in.read()) == -1) {
+				if (! next()) {
+					return -1;
+				}
+			}
+			position++;
+			return r;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int r;
+			while ((r = in.read(b, off, len)) == -1) {
+				if (! next()) {
+					return -1;
+				}
+			}
+			position += r;
+			return r;
+		}
+
+		public long skip(long n) throws IOException {
+			long r = in.skip(n);
+			if (r > 0) {
+				position += r;
+			}
+			return r;
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Decompresses the data of an entry.
+	 * <BR>The local header is read on the first read. The compressed data are read from the shared cursor,
+	 * which is not closed with this stream, or from a dedicated cursor.
+	 */
+	private class EntryInputStream extends InflaterInputStream {
+		private ZipEntry entry;
+		private boolean dedicated;
+		private long remaining;
+		private boolean opened = false;
+		private boolean eof = false;
+		private boolean closed = false;
+		private CRC32 crc = new CRC32();
+
+		private EntryInputStream(ZipEntry entry, boolean dedicated) {
+			super(new NullInputStream(), new Inflater(true), ZIP_BUFFER_SIZE);
+			this.entry = entry;
+			this.dedicated = dedicated;
+			this.remaining = entry.csize;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+			if (eof) {
+				return -1;
+			}
+			if (! opened) {
+				in = openEntryData(entry, dedicated);
+				opened = true;
+			}
+			int n = super.read(b, off, len);
+			if (n == -1) {
+				eof = true;
+				checkEntry();
+			} else if (ZIP_ENABLE_ENTRY_CHECK) {
+				crc.update(b, off, n);
+			}
+			return n;
+		}
+
+		public int available() throws IOException {
+			return eof ? 0 : 1;
+		}
+
+		/**
+		 * Reads up to "csize" bytes. If more data is needed (sizes of archives written by former versions may be wrong),
+		 * the following bytes are read.
+		 */
+		protected void fill() throws IOException {
+			int n = remaining > 0 ? (int)Math.min(remaining, buf.length) : buf.length;
+			len = in.read(buf, 0, n);
+			if (len == -1) {
+				throw new EOFException("Unexpected end of ZLIB input stream");
+			}
+			remaining -= len;
+			inf.setInput(buf, 0, len);
+		}
+
+		private void checkEntry() throws ZipException {
+			if (ZIP_ENABLE_ENTRY_CHECK && entry.crc != crc.getValue()) {
+				throw new ZipException(
+						"invalid entry CRC (expected 0x" + Long.toHexString(entry.crc) +
+						" but got 0x" + Long.toHexString(crc.getValue()) + ")");
+			}
+			if (ZIP_ENABLE_ENTRY_CHECK && entry.getSize() != inf.getBytesWritten()) {
+				long mod = ((long)Integer.MAX_VALUE) - ((long)Integer.MIN_VALUE) + 1;
+				long mv = (inf.getBytesWritten() - entry.getSize())%mod;
+				if (mv != 0) {  // Backward compatibility
+					throw new ZipException(
+							"invalid entry size (expected " + entry.getSize() + " but got " +
+							inf.getBytesWritten() + " bytes)");
+				}
+			}
+		}
+
+		public void close() throws IOException {
+			if (! closed) {
+				closed = true;
+				inf.end();
+				if (dedicated) {
+					in.close();
+				}
+			}
+		}
+	}
+
+	private static class NullInputStream extends InputStream {
+		public int read() throws IOException {
+			return -1;
+		}
+	}
+}
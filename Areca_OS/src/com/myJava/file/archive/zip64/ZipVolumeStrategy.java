@@ -9,6 +9,8 @@ import com.myJava.file.CompressionArguments;
 import com.myJava.file.EventOutputStream;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.OutputStreamListener;
+import com.myJava.file.ThrottledOutputStream;
+import com.myJava.file.bandwidth.BandwidthLimiter;
 import com.myJava.file.driver.FileSystemDriver;
 import com.myJava.file.multivolumes.VolumeStrategy;
 
@@ -50,6 +52,7 @@ public class ZipVolumeStrategy implements VolumeStrategy {
     protected FileSystemDriver driver;
     protected boolean cached = false;
     protected OutputStreamListener listener;
+    protected BandwidthLimiter limiter;
     protected boolean closed = false;
 
     public ZipVolumeStrategy(File file, int nbDigits) {
@@ -78,6 +81,17 @@ public class ZipVolumeStrategy implements VolumeStrategy {
 		this.listener = listener;
 	}
 
+	public BandwidthLimiter getLimiter() {
+		return limiter;
+	}
+
+	/**
+	 * Limits the throughput of the volumes written by the strategy
+	 */
+	public void setLimiter(BandwidthLimiter limiter) {
+		this.limiter = limiter;
+	}
+
 	public FileSystemDriver getDriver() {
         return driver;
     }
@@ -90,6 +104,7 @@ public class ZipVolumeStrategy implements VolumeStrategy {
         } else {
             ret = cached ? driver.getCachedFileOutputStream(f) : driver.getFileOutputStream(f);        
         }
+        ret = ThrottledOutputStream.wrap(ret, limiter);
         if (listener == null) {
         	return ret;
         } else {
@@ -157,6 +172,19 @@ public class ZipVolumeStrategy implements VolumeStrategy {
         return getVolume(0);
     }
 
+    /**
+     * Returns the file containing the volume passed as argument once the archive has been closed
+     * (the last volume has been renamed to the final archive)
+     */
+    public File getReadableVolume(int vol) {
+        File f = getVolume(vol);
+        if (exists(f)) {
+            return f;
+        } else {
+            return getFinalArchive();
+        }
+    }
+
     public void close() throws IOException {
     	if (closed) {
     		return;
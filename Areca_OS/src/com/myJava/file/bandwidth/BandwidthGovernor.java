@@ -0,0 +1,159 @@
+package com.myJava.file.bandwidth;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.util.log.Logger;
+
+/**
+ * Registry of the token buckets shared by the streams.
+ * <BR>The buckets are identified by their name, so that all the streams of a given scope use the same bucket :
+ * <BR>- global buckets, shared by all targets (archive writes and source reads),
+ * <BR>- target buckets, shared by all the streams of a target,
+ * <BR>- remote host buckets, shared by all the transfers to/from a FTP/SFTP server.
+ * <BR>The limits are defined by BandwidthSchedules. A bucket is updated when its definition changes.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class BandwidthGovernor {
+	public static final String GLOBAL_OUTPUT = "global.output";
+	public static final String GLOBAL_INPUT = "global.input";
+	public static final String TARGET_OUTPUT_PREFIX = "target.output:";
+	public static final String TARGET_INPUT_PREFIX = "target.input:";
+	public static final String HOST_OUTPUT_PREFIX = "host.output:";
+	public static final String HOST_INPUT_PREFIX = "host.input:";
+
+	private static BandwidthGovernor INSTANCE = new BandwidthGovernor();
+
+	private Map buckets = new HashMap();
+	private Set invalidDefinitions = new HashSet();
+
+	public static BandwidthGovernor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Return the bucket registered under the name passed as argument.
+	 * <BR>The bucket is created (or its schedule updated) according to the definition.
+	 * <BR>Return null if the definition is empty or invalid (no limit).
+	 */
+	public synchronized TokenBucket getBucket(String name, String definition) {
+		if (definition == null || definition.trim().length() == 0) {
+			buckets.remove(name);
+			return null;
+		}
+		definition = definition.trim();
+
+		TokenBucket bucket = (TokenBucket)buckets.get(name);
+		if (bucket != null && bucket.getSchedule().getDefinition().equals(definition)) {
+			return bucket;
+		}
+
+		BandwidthSchedule schedule;
+		try {
+			schedule = BandwidthSchedule.parse(definition);
+		} catch (IllegalArgumentException e) {
+			if (invalidDefinitions.add(definition)) {
+				Logger.defaultLogger().warn("Invalid bandwidth limit for " + name + " : " + e.getMessage() + ". No limit will be applied.");
+			}
+			return null;
+		}
+
+		if (bucket == null) {
+			bucket = new TokenBucket(name, schedule, FrameworkConfiguration.getInstance().getBandwidthBurst());
+			buckets.put(name, bucket);
+			Logger.defaultLogger().info("Bandwidth limit : " + bucket);
+		} else {
+			bucket.setSchedule(schedule);
+			Logger.defaultLogger().info("Bandwidth limit updated : " + bucket);
+		}
+		return bucket;
+	}
+
+	/**
+	 * Limiter for the archives written by the target passed as argument
+	 */
+	public BandwidthLimiter getArchiveOutputLimiter(String target, String definition) {
+		return buildLimiter(
+				new String[] {GLOBAL_OUTPUT, TARGET_OUTPUT_PREFIX + target},
+				new String[] {FrameworkConfiguration.getInstance().getGlobalOutputBandwidth(), definition}
+		);
+	}
+
+	/**
+	 * Limiter for the source files read by the target passed as argument
+	 */
+	public BandwidthLimiter getSourceInputLimiter(String target, String definition) {
+		return buildLimiter(
+				new String[] {GLOBAL_INPUT, TARGET_INPUT_PREFIX + target},
+				new String[] {FrameworkConfiguration.getInstance().getGlobalInputBandwidth(), definition}
+		);
+	}
+
+	/**
+	 * Limiter for the data sent to the remote host passed as argument
+	 */
+	public BandwidthLimiter getRemoteOutputLimiter(String host) {
+		return buildLimiter(
+				new String[] {HOST_OUTPUT_PREFIX + host},
+				new String[] {FrameworkConfiguration.getInstance().getRemoteOutputBandwidth(host)}
+		);
+	}
+
+	/**
+	 * Limiter for the data read from the remote host passed as argument
+	 */
+	public BandwidthLimiter getRemoteInputLimiter(String host) {
+		return buildLimiter(
+				new String[] {HOST_INPUT_PREFIX + host},
+				new String[] {FrameworkConfiguration.getInstance().getRemoteInputBandwidth(host)}
+		);
+	}
+
+	/**
+	 * Return a limiter on the buckets passed as argument, or null if none of them is limited
+	 */
+	public BandwidthLimiter buildLimiter(String[] names, String[] definitions) {
+		List list = new ArrayList();
+		for (int i=0; i<names.length; i++) {
+			TokenBucket bucket = getBucket(names[i], definitions[i]);
+			if (bucket != null) {
+				list.add(bucket);
+			}
+		}
+
+		if (list.isEmpty()) {
+			return null;
+		} else {
+			return new BandwidthLimiter((TokenBucket[])list.toArray(new TokenBucket[list.size()]));
+		}
+	}
+}
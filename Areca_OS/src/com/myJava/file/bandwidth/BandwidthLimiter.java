@@ -0,0 +1,101 @@
+package com.myJava.file.bandwidth;
+
+/**
+ * Set of token buckets which all apply to a stream (for instance : global limit + target limit).
+ * <BR>The tokens are reserved in all the buckets at once, and the caller waits for the slowest one.
+ * <BR>The streams split their reads and writes in chunks (see "getChunkSize") so that large buffers are paced smoothly
+ * instead of being sent in bursts.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class BandwidthLimiter {
+	/**
+	 * Duration (ms) of the data handled by a chunk
+	 */
+	private static final long PACING = 50;
+	private static final int MIN_CHUNK = 512;
+	private static final int MAX_CHUNK = 64 * 1024;
+
+	private TokenBucket[] buckets;
+
+	public BandwidthLimiter(TokenBucket[] buckets) {
+		this.buckets = buckets;
+	}
+
+	public BandwidthLimiter(TokenBucket bucket) {
+		this(new TokenBucket[] {bucket});
+	}
+
+	public TokenBucket[] getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * Maximum number of bytes which should be read or written at once
+	 */
+	public int getChunkSize() {
+		long ret = MAX_CHUNK;
+		for (int i=0; i<buckets.length; i++) {
+			long rate = buckets[i].getRate();
+			if (rate != 0) {
+				ret = Math.min(ret, Math.max(MIN_CHUNK, rate * PACING / 1000));
+			}
+		}
+		return (int)ret;
+	}
+
+	/**
+	 * Wait until the number of bytes passed as argument can be read or written
+	 */
+	public void acquire(long nrOfBytes) {
+		long wait = 0;
+		for (int i=0; i<buckets.length; i++) {
+			wait = Math.max(wait, buckets[i].reserve(nrOfBytes));
+		}
+		sleep(wait);
+	}
+
+	static void sleep(long ns) {
+		if (ns > 0) {
+			try {
+				Thread.sleep(ns / 1000000, (int)(ns % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		for (int i=0; i<buckets.length; i++) {
+			if (i != 0) {
+				sb.append(", ");
+			}
+			sb.append(buckets[i]);
+		}
+		return sb.toString();
+	}
+}
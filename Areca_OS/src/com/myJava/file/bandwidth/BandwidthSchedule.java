@@ -0,0 +1,168 @@
+package com.myJava.file.bandwidth;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Maximum throughput depending on the time of day.
+ * <BR>Syntax : a list of rules separated by ";". Each rule is either :
+ * <BR>- "HH:mm-HH:mm=rate" : rate applied during the time range (the range can span midnight : "22:00-06:00=2048")
+ * <BR>- "rate" : rate applied outside the time ranges
+ * <BR>The rates are expressed in KB per second ; 0 means "unlimited". The first matching range is used.
+ * <BR>Example : "08:00-12:00=128;13:30-18:00=128;1024"
+ * <BR>Without default rate, the throughput is unlimited outside the time ranges.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class BandwidthSchedule {
+	private String definition;
+	private List ranges = new ArrayList();
+	private long defaultRate = 0;
+
+	private BandwidthSchedule(String definition) {
+		this.definition = definition;
+	}
+
+	/**
+	 * Builds a schedule with a constant rate (bytes per second ; 0 = unlimited)
+	 */
+	public static BandwidthSchedule constant(long rate) {
+		BandwidthSchedule ret = new BandwidthSchedule("" + (rate / 1024));
+		ret.defaultRate = Math.max(0, rate);
+		return ret;
+	}
+
+	/**
+	 * Parse the definition passed as argument.
+	 * <BR>Returns null if the definition is empty.
+	 * @throws IllegalArgumentException if the definition is invalid.
+	 */
+	public static BandwidthSchedule parse(String definition) {
+		if (definition == null || definition.trim().length() == 0) {
+			return null;
+		}
+
+		BandwidthSchedule ret = new BandwidthSchedule(definition.trim());
+		StringTokenizer stt = new StringTokenizer(definition, ";");
+		while (stt.hasMoreTokens()) {
+			String rule = stt.nextToken().trim();
+			if (rule.length() == 0) {
+				continue;
+			}
+			int eq = rule.indexOf('=');
+			if (eq == -1) {
+				ret.defaultRate = parseRate(rule, definition);
+			} else {
+				String range = rule.substring(0, eq).trim();
+				int sep = range.indexOf('-');
+				if (sep == -1) {
+					throw new IllegalArgumentException("Invalid time range : " + range + " in " + definition);
+				}
+				TimeRange tr = new TimeRange();
+				tr.from = parseTime(range.substring(0, sep).trim(), definition);
+				tr.to = parseTime(range.substring(sep + 1).trim(), definition);
+				tr.rate = parseRate(rule.substring(eq + 1), definition);
+				ret.ranges.add(tr);
+			}
+		}
+		return ret;
+	}
+
+	private static long parseRate(String rate, String definition) {
+		try {
+			long kb = Long.parseLong(rate.trim());
+			if (kb < 0) {
+				throw new IllegalArgumentException("Invalid rate : " + rate + " in " + definition);
+			}
+			return kb * 1024;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid rate : " + rate + " in " + definition);
+		}
+	}
+
+	/**
+	 * Returns the number of minutes since midnight
+	 */
+	private static int parseTime(String time, String definition) {
+		int sep = time.indexOf(':');
+		try {
+			int h = Integer.parseInt(sep == -1 ? time : time.substring(0, sep));
+			int m = sep == -1 ? 0 : Integer.parseInt(time.substring(sep + 1));
+			if (h < 0 || h > 24 || m < 0 || m > 59 || (h == 24 && m != 0)) {
+				throw new IllegalArgumentException("Invalid time : " + time + " in " + definition);
+			}
+			return h * 60 + m;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid time : " + time + " in " + definition);
+		}
+	}
+
+	public String getDefinition() {
+		return definition;
+	}
+
+	/**
+	 * Returns the rate (bytes per second ; 0 = unlimited) at the time passed as argument
+	 */
+	public long getRate(long time) {
+		if (ranges.isEmpty()) {
+			return defaultRate;
+		}
+
+		Calendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(time);
+		int minutes = cal.get(Calendar.HOUR_OF_DAY) * 60 + cal.get(Calendar.MINUTE);
+		for (int i=0; i<ranges.size(); i++) {
+			TimeRange tr = (TimeRange)ranges.get(i);
+			if (tr.contains(minutes)) {
+				return tr.rate;
+			}
+		}
+		return defaultRate;
+	}
+
+	public String toString() {
+		return definition;
+	}
+
+	private static class TimeRange {
+		private int from;
+		private int to;
+		private long rate;
+
+		public boolean contains(int minutes) {
+			if (from <= to) {
+				return minutes >= from && minutes < to;
+			} else {
+				// The range spans midnight
+				return minutes >= from || minutes < to;
+			}
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package com.myJava.file.bandwidth;
+
+/**
+ * Token bucket which limits the throughput of all the streams that share it.
+ * <BR>The bucket is refilled at the rate defined by its schedule, and holds at most "burst" milliseconds of tokens.
+ * <BR>A caller reserves the tokens it needs (the bucket can become negative) and sleeps until the debt is paid :
+ * the callers are thus served in the order of their reservations, and the lock is never held while sleeping.
+ * <BR>The rate is read from the schedule at most once per second.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class TokenBucket {
+	private static final long RATE_CHECK_NS = 1000L * 1000L * 1000L;
+
+	private String name;
+	private BandwidthSchedule schedule;
+	private long burst; // ms
+	private long rate = 0; // bytes per second (0 = unlimited)
+	private double tokens = 0;
+	private long lastRefill;
+	private long nextRateCheck;
+
+	// Statistics
+	private long bytes = 0;
+	private long waitTime = 0; // ns
+
+	public TokenBucket(String name, BandwidthSchedule schedule, long burst) {
+		this.name = name;
+		this.burst = Math.max(1, burst);
+		setSchedule(schedule);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized BandwidthSchedule getSchedule() {
+		return schedule;
+	}
+
+	public synchronized void setSchedule(BandwidthSchedule schedule) {
+		this.schedule = schedule;
+		this.nextRateCheck = System.nanoTime();
+	}
+
+	/**
+	 * Current rate (bytes per second ; 0 = unlimited)
+	 */
+	public synchronized long getRate() {
+		updateRate(System.nanoTime());
+		return rate;
+	}
+
+	private void updateRate(long now) {
+		if (now - nextRateCheck >= 0) {
+			nextRateCheck = now + RATE_CHECK_NS;
+			long newRate = schedule == null ? 0 : schedule.getRate(System.currentTimeMillis());
+			if (newRate != rate) {
+				rate = newRate;
+				tokens = 0;
+				lastRefill = now;
+			}
+		}
+	}
+
+	/**
+	 * Reserve the number of bytes passed as argument and return the time (ns) the caller must wait before using them
+	 */
+	public synchronized long reserve(long nrOfBytes) {
+		long now = System.nanoTime();
+		updateRate(now);
+		bytes += nrOfBytes;
+		if (rate == 0) {
+			return 0;
+		}
+
+		double capacity = ((double)rate) * burst / 1000.;
+		tokens = Math.min(capacity, tokens + ((double)(now - lastRefill)) * rate / 1000000000.);
+		lastRefill = now;
+		tokens -= nrOfBytes;
+		if (tokens >= 0) {
+			return 0;
+		} else {
+			long wait = (long)(-tokens * 1000000000. / rate);
+			waitTime += wait;
+			return wait;
+		}
+	}
+
+	/**
+	 * Reserve the number of bytes passed as argument and wait until they can be used
+	 */
+	public void acquire(long nrOfBytes) {
+		BandwidthLimiter.sleep(reserve(nrOfBytes));
+	}
+
+	/**
+	 * Number of bytes that went through the bucket
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Cumulated time (ms) the callers had to wait
+	 */
+	public synchronized long getWaitTime() {
+		return waitTime / 1000000;
+	}
+
+	public String toString() {
+		return name + " (" + schedule + ")";
+	}
+}
@@ -0,0 +1,271 @@
+package com.myJava.file.delta;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.delta.sequence.ByteProcessor;
+import com.myJava.file.delta.sequence.ByteProcessorException;
+import com.myJava.file.delta.sequence.HashSequence;
+import com.myJava.file.delta.sequence.HashSequenceEntry;
+import com.myJava.file.delta.sequence.HashSequenceIndex;
+import com.myJava.file.delta.tools.LinkedList;
+import com.myJava.file.delta.tools.RollingHash;
+import com.myJava.util.taskmonitor.TaskCancelledException;
+import com.myJava.util.taskmonitor.TaskMonitor;
+
+/**
+ * Block-oriented implementation of the DeltaReader.
+ * <BR>The data are read by blocks in a byte array and the rolling hash is computed over this array.
+ * <BR>New bytes are sent to the DeltaProcessors by ranges and the task state is checked once per buffer.
+ * <BR>The generated calls (and thus the delta layers) are strictly identical to those generated by the DeltaReader.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class BlockDeltaReader implements Constants {
+	private static final int BUFFER_SIZE = FrameworkConfiguration.getInstance().getDeltaLinkedListBufferSize();
+
+	private int blockSize;
+	private HashSequence seq;
+	private InputStream in;
+	private String hashAlgorithm = HASH_ALG;
+	private DeltaProcessor[] processors;
+	private ByteProcessor bproc;
+
+	private byte[] buffer;
+	private int pendingFrom = -1;
+	private int pendingTo = -1;
+
+	public BlockDeltaReader(int blockSize, InputStream in, DeltaProcessor[] processors, ByteProcessor bproc) {
+		this.blockSize = blockSize;
+		this.in = in;
+		this.processors = processors;
+		this.bproc = bproc;
+	}
+
+	public BlockDeltaReader(HashSequence seq, InputStream in, DeltaProcessor[] processors, ByteProcessor bproc) {
+		if (seq == null) {
+			throw new IllegalArgumentException("The hash sequence can't be null.");
+		}
+		this.seq = seq;
+		this.blockSize = seq.getBlockSize();
+		this.in = in;
+		this.processors = processors;
+		this.bproc = bproc;
+	}
+
+	private long computeSig(long totalRead) {
+		return totalRead%blockSize;
+	}
+
+	public void read(TaskMonitor monitor) throws IOException, DeltaException, DeltaProcessorException, ByteProcessorException, TaskCancelledException {
+		// The buffer must be able to hold the current block and at least one block of new data
+		buffer = new byte[blockSize + Math.max(blockSize, BUFFER_SIZE)];
+		if (seq == null) {
+			readNoSeq(monitor);
+		} else {
+			readSeq(monitor);
+		}
+	}
+
+	private void readNoSeq(TaskMonitor monitor) throws IOException, DeltaException, DeltaProcessorException, ByteProcessorException, TaskCancelledException {
+		for (int x=0; x<processors.length; x++) {
+			processors[x].begin();
+		}
+
+		bproc.open();
+
+		// Without sequence, all bytes are new bytes
+		while (true) {
+			monitor.checkTaskState();
+
+			int read = in.read(buffer, 0, buffer.length);
+			if (read == -1) {
+				break;
+			} else if (read != 0) {
+				bproc.processBytes(buffer, 0, read);
+				for (int x=0; x<processors.length; x++) {
+					processors[x].newBytes(buffer, 0, read);
+				}
+			}
+		}
+
+		for (int x=0; x<processors.length; x++) {
+			processors[x].end();
+		}
+		bproc.close();
+	}
+
+	private void readSeq(TaskMonitor monitor) throws IOException, DeltaException, DeltaProcessorException, ByteProcessorException, TaskCancelledException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(hashAlgorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new DeltaException(e);
+		}
+		LinkedList currentBlock = new LinkedList(blockSize);
+		HashSequenceIndex index = seq.getInternalData();
+		RollingHash quickHash = seq.getRollingHash();
+
+		int position = 0; // Position of the next byte to process in the buffer
+		int end = 0; // End of the data contained in the buffer
+		boolean eof = false;
+		long totalRead = 0;
+		int currentQuickHash = 0;
+		long lastBlockIndex = -1;
+		long significant = blockSize;
+
+		for (int x=0; x<processors.length; x++) {
+			processors[x].begin();
+		}
+
+		bproc.open();
+
+		while (true) {
+			if (position == end) {
+				if (eof) {
+					break;
+				}
+				monitor.checkTaskState();
+				flushNewBytes();
+
+				if (buffer.length - end < blockSize) {
+					// Keep the current block and make room for the new data
+					int keep = Math.min(blockSize, end);
+					System.arraycopy(buffer, end - keep, buffer, 0, keep);
+					position = keep;
+					end = keep;
+				}
+
+				int read = in.read(buffer, end, buffer.length - end);
+				if (read == -1) {
+					if (totalRead == 0) {
+						break;
+					} else {
+						// Complete the last block with default bytes
+						eof = true;
+						significant = computeSig(totalRead);
+						for (int i=0; i<blockSize - 1; i++) {
+							buffer[end++] = HashSequenceEntry.DEFAULT_BYTE;
+						}
+					}
+				} else {
+					bproc.processBytes(buffer, end, read);
+					end += read;
+				}
+				continue;
+			}
+
+			byte bRead = buffer[position];
+			totalRead++;
+
+			// Compute hash
+			if (totalRead > blockSize) {
+				currentQuickHash = quickHash.update(currentQuickHash, bRead, buffer[position - blockSize]);
+			} else {
+				currentQuickHash = quickHash.hash(currentQuickHash, bRead);
+			}
+
+			// Look for
+			if (totalRead >= blockSize) {
+				int blockStart = position - blockSize + 1;
+				boolean found = false;
+				
+				// Only compute the full hash if a candidate located after the last block found exists
+				int first = index.lookup(currentQuickHash, lastBlockIndex);
+				if (first != -1) {
+					digest.update(buffer, blockStart, blockSize);
+					int entry = index.find(first, digest.digest(), 0);
+					if (entry != -1 && index.getBlockSize(entry) == significant) {
+						// Found !
+						HashSequenceEntry candidate = index.getEntry(entry);
+						flushNewBytes();
+						if (candidate.getIndex() > lastBlockIndex + 1) {
+							// Block lost !
+							for (int x=0; x<processors.length; x++) {
+								processors[x].bytesLost((lastBlockIndex + 1) * blockSize, candidate.getIndex() * blockSize - 1);
+							}
+						}
+						lastBlockIndex = candidate.getIndex();
+						currentBlock.set(buffer, blockStart);
+						for (int x=0; x<processors.length; x++) {
+							processors[x].blockFound(candidate, currentBlock);
+						}
+
+						// go ahead (and reset all)
+						currentQuickHash = 0;
+						totalRead = 0;
+						found = true;
+						DeltaReader.SUCCESS_COUNTER++;
+					} else {
+						DeltaReader.FAILURE_COUNTER++;
+					}
+				}
+
+				if (! found) {
+					// The first byte of the block is a new byte
+					if (pendingFrom == -1) {
+						pendingFrom = blockStart;
+					}
+					pendingTo = blockStart + 1;
+				} else if (eof) {
+					// The last block has been found
+					break;
+				}
+			}
+
+			position++;
+		}
+		flushNewBytes();
+
+		if (lastBlockIndex < seq.getSize() - 1) {
+			// Block lost !
+			for (int x=0; x<processors.length; x++) {
+				processors[x].bytesLost((lastBlockIndex + 1) * blockSize, seq.getSize() * blockSize - 1);
+			}
+		}
+
+		for (int x=0; x<processors.length; x++) {
+			processors[x].end();
+		}
+		bproc.close();
+	}
+
+	/**
+	 * Send the pending new bytes to the processors
+	 */
+	private void flushNewBytes() throws DeltaProcessorException {
+		if (pendingFrom != -1) {
+			for (int x=0; x<processors.length; x++) {
+				processors[x].newBytes(buffer, pendingFrom, pendingTo - pendingFrom);
+			}
+			pendingFrom = -1;
+			pendingTo = -1;
+		}
+	}
+}
@@ -55,6 +55,9 @@ public class DefaultDeltaProcessor implements DeltaProcessor {
     }
 
     public void newBytes(byte[] data, int offset, int len) throws DeltaProcessorException {
+        for (int i=offset; i<offset+len; i++) {
+            newByte(data[i]);
+        }
     }
 
     public void newByte(byte data) {
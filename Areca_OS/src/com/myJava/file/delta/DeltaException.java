@@ -44,4 +44,11 @@ public class DeltaException extends IOException {
     public DeltaException(String message) {
         super(message);
     }
+
+    /**
+     * @param cause
+     */
+    public DeltaException(Throwable cause) {
+        super(cause);
+    }
 }
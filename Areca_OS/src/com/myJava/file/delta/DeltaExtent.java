@@ -0,0 +1,84 @@
+package com.myJava.file.delta;
+
+import com.myJava.object.ToStringHelper;
+
+/**
+ * Contiguous run of data, as resolved by the DeltaExtentResolver.
+ * <BR>"length" bytes located at "offset" in the stream of the layer #"layer" must be written at "position" in the recovered file.
+ * <BR>A layer index of -1 denotes data located below the first layer (base stream).
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DeltaExtent {
+	private int layer;
+	private long offset;
+	private long length;
+	private long position;
+
+	public DeltaExtent(int layer, long offset, long length, long position) {
+		this.layer = layer;
+		this.offset = offset;
+		this.length = length;
+		this.position = position;
+	}
+
+	public int getLayer() {
+		return layer;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Extend this extent if the data passed as argument immediately follow it, both in the layer and in the recovered file.
+	 */
+	boolean append(int layer, long offset, long length, long position) {
+		if (this.layer == layer && this.offset + this.length == offset && this.position + this.length == position) {
+			this.length += length;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	public String toString() {
+		StringBuffer sb = ToStringHelper.init(this);
+		ToStringHelper.append("Layer", layer, sb);
+		ToStringHelper.append("Offset", offset, sb);
+		ToStringHelper.append("Length", length, sb);
+		ToStringHelper.append("Position", position, sb);
+		return ToStringHelper.close(sb);
+	}
+}
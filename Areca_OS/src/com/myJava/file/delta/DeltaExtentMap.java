@@ -0,0 +1,156 @@
+package com.myJava.file.delta;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.myJava.file.delta.bucket.Bucket;
+import com.myJava.file.delta.bucket.ReadPreviousBucket;
+import com.myJava.file.delta.tools.IOHelper;
+
+/**
+ * Map of the buckets of a delta layer.
+ * <BR>Each extent describes a range of the layer's content : either "new bytes" stored in the layer's stream (the map
+ * contains their offset in the stream) or data read from the previous layer (the map contains their position in the previous layer).
+ * <BR>The map is built once by reading the bucket headers of the layer; the extent containing a given position is then located by binary search.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DeltaExtentMap implements Constants {
+	private static final int INITIAL_CAPACITY = 64;
+	
+	// Sizes of the bucket headers (signature + bucket data)
+	private static final int NEW_BYTES_HEADER_SIZE = 8 + 4;
+	private static final int READ_PREVIOUS_HEADER_SIZE = 8 + 16;
+
+	private int size = 0;
+	private long[] froms = new long[INITIAL_CAPACITY];
+	private long[] lengths = new long[INITIAL_CAPACITY];
+	private long[] sources = new long[INITIAL_CAPACITY];
+	private boolean[] newBytes = new boolean[INITIAL_CAPACITY];
+
+	/**
+	 * Read the bucket headers of the layer and build its extent map.
+	 * <BR>The stream is read until its end, but the content of the "new bytes" buckets is skipped.
+	 */
+	public static DeltaExtentMap build(InputStream in) throws IOException {
+		DeltaExtentMap map = new DeltaExtentMap();
+		DeltaLayer layer = new DeltaLayer(in, null);
+		long streamPosition = 0;
+
+		layer.readNextBucket();
+		while (layer.getCurrentBucket() != null) {
+			Bucket bucket = layer.getCurrentBucket();
+			if (bucket.getSignature() == SIG_NEW) {
+				streamPosition += NEW_BYTES_HEADER_SIZE;
+				map.add(bucket.getFrom(), bucket.getLength(), true, streamPosition);
+				if (IOHelper.skipFully(in, bucket.getLength()) != bucket.getLength() && bucket.getLength() != 0) {
+					throw new DeltaException("Unexpected end of layer : " + bucket.getLength() + " bytes expected at position " + streamPosition);
+				}
+				streamPosition += bucket.getLength();
+			} else {
+				streamPosition += READ_PREVIOUS_HEADER_SIZE;
+				map.add(bucket.getFrom(), bucket.getLength(), false, ((ReadPreviousBucket)bucket).getReadFrom());
+			}
+			layer.readNextBucket();
+		}
+		return map;
+	}
+
+	public void add(long from, long length, boolean isNewBytes, long source) {
+		if (length <= 0) {
+			return;
+		}
+		if (size == froms.length) {
+			int capacity = size * 2;
+			froms = grow(froms, capacity);
+			lengths = grow(lengths, capacity);
+			sources = grow(sources, capacity);
+			boolean[] tmp = new boolean[capacity];
+			System.arraycopy(newBytes, 0, tmp, 0, size);
+			newBytes = tmp;
+		}
+		froms[size] = from;
+		lengths[size] = length;
+		sources[size] = source;
+		newBytes[size] = isNewBytes;
+		size++;
+	}
+
+	private long[] grow(long[] data, int capacity) {
+		long[] ret = new long[capacity];
+		System.arraycopy(data, 0, ret, 0, size);
+		return ret;
+	}
+
+	/**
+	 * Return the extent which contains the position passed as argument, or -1 if the position is out of the layer's bounds
+	 */
+	public int find(long position) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (froms[mid] > position) {
+				high = mid - 1;
+			} else if (froms[mid] + lengths[mid] <= position) {
+				low = mid + 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Length of the layer's content
+	 */
+	public long getLength() {
+		return size == 0 ? 0 : froms[size - 1] + lengths[size - 1];
+	}
+
+	public long getFrom(int extent) {
+		return froms[extent];
+	}
+
+	public long getLength(int extent) {
+		return lengths[extent];
+	}
+
+	/**
+	 * Offset of the data in the layer's stream for "new bytes" extents, position in the previous layer otherwise
+	 */
+	public long getSource(int extent) {
+		return sources[extent];
+	}
+
+	public boolean isNewBytes(int extent) {
+		return newBytes[extent];
+	}
+}
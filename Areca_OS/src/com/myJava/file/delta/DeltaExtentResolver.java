@@ -0,0 +1,96 @@
+package com.myJava.file.delta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves ranges of a file stored as a chain of delta layers into runs of (layer, offset) data.
+ * <BR>It relies on the DeltaExtentMaps of the layers, so the bucket headers don't have to be read again for each range.
+ * The maps are passed in the same order as the layers of the DeltaInputStream (first layer first).
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DeltaExtentResolver {
+	private DeltaExtentMap[] maps;
+
+	public DeltaExtentResolver(DeltaExtentMap[] maps) {
+		this.maps = maps;
+	}
+
+	/**
+	 * Length of the recovered file
+	 */
+	public long getLength() {
+		return maps.length == 0 ? 0 : maps[maps.length - 1].getLength();
+	}
+
+	/**
+	 * Return the DeltaExtents which contain the data located between "from" and "to" (included) in the recovered file.
+	 * <BR>The extents are sorted by position. Data located after the end of the file are ignored.
+	 */
+	public List resolve(long from, long to) {
+		List extents = new ArrayList();
+		if (maps.length != 0) {
+			resolve(maps.length - 1, from, to, from, extents);
+		}
+		return extents;
+	}
+
+	private void resolve(int layer, long from, long to, long position, List extents) {
+		if (layer < 0) {
+			addExtent(-1, from, to - from + 1, position, extents);
+			return;
+		}
+
+		DeltaExtentMap map = maps[layer];
+		int extent = map.find(from);
+		while (extent != -1 && extent < map.size() && from <= to) {
+			long toSkip = from - map.getFrom(extent);
+			long length = Math.min(map.getLength(extent) - toSkip, to - from + 1);
+			long source = map.getSource(extent) + toSkip;
+
+			if (map.isNewBytes(extent)) {
+				addExtent(layer, source, length, position, extents);
+			} else {
+				resolve(layer - 1, source, source + length - 1, position, extents);
+			}
+
+			from += length;
+			position += length;
+			extent++;
+		}
+	}
+
+	private void addExtent(int layer, long offset, long length, long position, List extents) {
+		if (! extents.isEmpty()) {
+			DeltaExtent last = (DeltaExtent)extents.get(extents.size() - 1);
+			if (last.append(layer, offset, length, position)) {
+				return;
+			}
+		}
+		extents.add(new DeltaExtent(layer, offset, length, position));
+	}
+}
@@ -42,9 +42,16 @@ This file is part of Areca.
 public class DeltaInputStream 
 extends InputStream
 implements Constants, LayerHandler {    
+    private static final int MAX_SKIP_CHUNK = 1024 * 1024 * 1024;
+
     private List layers = new ArrayList();
     private long position = 0;
 
+    // Work data, reused by all reads to avoid allocations
+    private DeltaReadInstructionBuffer instructionsToProcess = new DeltaReadInstructionBuffer();
+    private DeltaReadInstructionBuffer nextInstructions = new DeltaReadInstructionBuffer();
+    private byte[] singleByte = new byte[1];
+
     public void addInputStream(InputStream stream, String name) {	
         layers.add(new DeltaLayer(stream, name));
     }
@@ -58,12 +65,11 @@ implements Constants, LayerHandler {
     }
 
     public int read() throws IOException {
-        byte[] b = new byte[1];
-        int ret = read(b);
+        int ret = read(singleByte, 0, 1);
         if (ret == -1) {
             return -1;
         } else {
-            return b[0]& 0xff;
+            return singleByte[0]& 0xff;
         }
     }
 
@@ -71,24 +77,49 @@ implements Constants, LayerHandler {
         return read(b, 0, b.length);
     }
 
+    /**
+     * Return the number of bytes described by the current bucket of the last layer, and which have not been read yet.
+     */
     public int available() throws IOException {
-        throw new UnsupportedOperationException();
+        if (layers.isEmpty()) {
+            return 0;
+        }
+        Bucket bucket = ((DeltaLayer)layers.get(layers.size() - 1)).getCurrentBucket();
+        if (bucket == null) {
+            return 0;
+        } else {
+            return (int)Math.max(0, Math.min(Integer.MAX_VALUE, bucket.getFrom() + bucket.getLength() - position));
+        }
     }
 
+    /**
+     * Skip "n" bytes.
+     * <BR>The bucket headers are processed as for a read, but the bytes of the "new bytes" buckets are skipped instead of being copied.
+     */
     public long skip(long n) throws IOException {
-        throw new UnsupportedOperationException();
+        long skipped = 0;
+        while (skipped < n) {
+            int ret = process(null, 0, (int)Math.min(n - skipped, MAX_SKIP_CHUNK));
+            if (ret == -1) {
+                break;
+            }
+            skipped += ret;
+        }
+        return skipped;
     }
 
     public int read(byte[] buffer, int off, int len) throws IOException {
+        return process(buffer, off, len);
+    }
+
+    /**
+     * Read (or skip if the buffer is null) "len" bytes.
+     */
+    private int process(byte[] buffer, int off, int len) throws IOException {
         int read = 0;
 
-        List instructionsToProcess = new ArrayList();
-        List tmp = new ArrayList();
-        DeltaReadInstruction init = new DeltaReadInstruction(); // Initial Instruction : initiates the process
-        init.setReadFrom(position);
-        init.setReadTo(position + len - 1);
-        init.setWriteOffset(off);
-        instructionsToProcess.add(init);
+        instructionsToProcess.clear();
+        instructionsToProcess.add(position, position + len - 1, off); // Initial Instruction : initiates the process
 
         for (int i=layers.size() - 1; i>=0; i--) {          // Iterate on all layers
             DeltaLayer layer = (DeltaLayer)layers.get(i);
@@ -97,7 +128,7 @@ implements Constants, LayerHandler {
             }
 
             for (int b = 0; b<instructionsToProcess.size(); b++) {
-                DeltaReadInstruction instruction = (DeltaReadInstruction)instructionsToProcess.get(b); // Get the next instruction to process
+                DeltaReadInstruction instruction = instructionsToProcess.get(b); // Get the next instruction to process
                 long from = instruction.getReadFrom();
                 long to = instruction.getReadTo();
                 int writeOffset = instruction.getWriteOffset();
@@ -107,7 +138,7 @@ implements Constants, LayerHandler {
                 }
                 
                 // Skip all buckets until we find an appropriate one
-                while (! (layer.getCurrentBucket().getFrom() <= from && layer.getCurrentBucket().getTo() >= from )) {
+                while (layer.getCurrentBucket() != null && (! (layer.getCurrentBucket().getFrom() <= from && layer.getCurrentBucket().getTo() >= from ))) {
                     Bucket bucket = layer.getCurrentBucket();
                     if (bucket.getSignature() == SIG_NEW) {
                         // If it is a "new bytes" bucket, skip the remaining bytes
@@ -129,10 +160,17 @@ implements Constants, LayerHandler {
                         NewBytesBucket current = (NewBytesBucket)bucket;
                         toSkip -= current.getReadOffset();
                         IOHelper.skipFully(layer.getStream(), toSkip);
-                        int readBytes = IOHelper.readFully(layer.getStream(), buffer, writeOffset, toWrite);                   // Read the data from the bucket's stream
-                        if (readBytes != toWrite) {
-                            Logger.defaultLogger().error("Error processing instruction : " + instruction.toString() + ". Bucket is : " + current.toString());
-                            throw new DeltaException("Incoherent read length : expected " + toWrite + ", got " + readBytes + " for diff-layer #" + i);
+                        if (toWrite != 0) { // Nothing to read if the position is located at the end of the bucket
+                            long readBytes;
+                            if (buffer == null) {
+                                readBytes = IOHelper.skipFully(layer.getStream(), toWrite);
+                            } else {
+                                readBytes = IOHelper.readFully(layer.getStream(), buffer, writeOffset, toWrite);                   // Read the data from the bucket's stream
+                            }
+                            if (readBytes != toWrite) {
+                                Logger.defaultLogger().error("Error processing instruction : " + instruction.toString() + ". Bucket is : " + current.toString());
+                                throw new DeltaException("Incoherent read length : expected " + toWrite + ", got " + readBytes + " for diff-layer #" + i);
+                            }
                         }
                         read += toWrite;
                         current.setReadOffset(current.getReadOffset() + toWrite + toSkip);
@@ -140,14 +178,9 @@ implements Constants, LayerHandler {
                         // Read the data from underlying layer
                         ReadPreviousBucket current = (ReadPreviousBucket)bucket;
 
-                        // Build and add a new bucket to the next list of buckets to process
-                        DeltaReadInstruction newInstruction = new DeltaReadInstruction();
-                        newInstruction.setReadFrom(current.getReadFrom() + toSkip);
-                        newInstruction.setReadTo(newInstruction.getReadFrom() + toWrite - 1);
-                        newInstruction.setWriteOffset(writeOffset);
-
-                        // Add bucket for the next layer
-                        tmp.add(newInstruction);
+                        // Add a new instruction for the next layer
+                        long readFrom = current.getReadFrom() + toSkip;
+                        nextInstructions.add(readFrom, readFrom + toWrite - 1, writeOffset);
                     }
                     from += toWrite;
                     writeOffset += toWrite;
@@ -160,8 +193,11 @@ implements Constants, LayerHandler {
                 }
             }
 
-            instructionsToProcess = tmp; // go to the next list of instructions to process
-            tmp = new ArrayList();
+            // go to the next list of instructions to process
+            DeltaReadInstructionBuffer tmp = instructionsToProcess;
+            instructionsToProcess = nextInstructions;
+            nextInstructions = tmp;
+            nextInstructions.clear();
         }
 
         position += read;
@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.ReadAheadInputStream;
 import com.myJava.file.delta.bucket.Bucket;
 import com.myJava.file.delta.bucket.NewBytesBucket;
 import com.myJava.file.delta.bucket.ReadPreviousBucket;
@@ -16,6 +18,8 @@ import com.myJava.util.taskmonitor.TaskMonitor;
 
 /**
  * To refactor : should be mutualized with the DeltaInputStream
+ * <BR>Each layer is read through a ReadAheadInputStream (unless the read-ahead size is set to 0) so that the layers are read and decoded
+ * in parallel by background threads. The merge itself (and thus the generated layer) is unchanged.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -52,7 +56,14 @@ implements Constants, LayerHandler {
     private LayerWriterDeltaProcessor proc;
     
     private static int BUFFER_SIZE = 1024 * 1024;
+    // The read-ahead is useless if the layers can't be decoded in parallel
+    private static int READ_AHEAD_SIZE = Runtime.getRuntime().availableProcessors() > 1 ? FrameworkConfiguration.getInstance().getDeltaMergeReadAheadSize() : 0;
     private byte[] buff = new byte[BUFFER_SIZE];
+    private int readAheadSize = READ_AHEAD_SIZE;
+
+    // Work data, reused by all merge steps
+    private DeltaReadInstructionBuffer instructionsToProcess = new DeltaReadInstructionBuffer();
+    private DeltaReadInstructionBuffer nextInstructions = new DeltaReadInstructionBuffer();
 
     public void setMainInputStream(InputStream in) {
         this.in = in;
@@ -66,7 +77,17 @@ implements Constants, LayerHandler {
         this.proc = proc;
     }
 
+    /**
+     * Set the size of the read-ahead buffer of the layers which will be added (0 = no read-ahead)
+     */
+    public void setReadAheadSize(int readAheadSize) {
+        this.readAheadSize = readAheadSize;
+    }
+
     public void addInputStream(InputStream stream, String name) {
+        if (readAheadSize > 0) {
+            stream = new ReadAheadInputStream(stream, readAheadSize, name);
+        }
         layers.add(new DeltaLayer(stream, name));
     }
 
@@ -93,13 +114,8 @@ implements Constants, LayerHandler {
         int read = 0;
         int highWaterMark = 0;
 
-        List instructionsToProcess = new ArrayList();
-        List tmp = new ArrayList();
-        DeltaReadInstruction init = new DeltaReadInstruction(); // Initial Instruction : initiates the process
-        init.setReadFrom(position);
-        init.setReadTo(position + BUFFER_SIZE - 1);
-        init.setWriteOffset(0);
-        instructionsToProcess.add(init);
+        instructionsToProcess.clear();
+        instructionsToProcess.add(position, position + BUFFER_SIZE - 1, 0); // Initial Instruction : initiates the process
 
         for (int i=layers.size() - 1; i>=0; i--) {          // Iterate on all layers
         	DeltaLayer layer = (DeltaLayer)layers.get(i);
@@ -113,7 +129,7 @@ implements Constants, LayerHandler {
                 	monitor.checkTaskState();
                 }
                 
-                DeltaReadInstruction instruction = (DeltaReadInstruction)instructionsToProcess.get(b); // Get the next instruction to process
+                DeltaReadInstruction instruction = instructionsToProcess.get(b); // Get the next instruction to process
                 long from = instruction.getReadFrom();
                 long to = instruction.getReadTo();
                 int writeOffset = instruction.getWriteOffset();
@@ -158,14 +174,9 @@ implements Constants, LayerHandler {
                         // Read the data from underlying layer
                         ReadPreviousBucket current = (ReadPreviousBucket)bucket;
 
-                        // Build and add a new bucket to the next list of buckets to process
-                        DeltaReadInstruction newInstruction = new DeltaReadInstruction();
-                        newInstruction.setReadFrom(current.getReadFrom() + toSkip);
-                        newInstruction.setReadTo(newInstruction.getReadFrom() + toWrite - 1);
-                        newInstruction.setWriteOffset(writeOffset);
-
-                        // Add bucket for the next layer
-                        tmp.add(newInstruction);
+                        // Add a new instruction for the next layer
+                        long readFrom = current.getReadFrom() + toSkip;
+                        nextInstructions.add(readFrom, readFrom + toWrite - 1, writeOffset);
                     }
                     from += toWrite;
                     writeOffset += toWrite;
@@ -178,14 +189,17 @@ implements Constants, LayerHandler {
                 }
             }
 
-            instructionsToProcess = tmp; // go to the next list of instructions to process
-            tmp = new ArrayList();
+            // go to the next list of instructions to process
+            DeltaReadInstructionBuffer tmp = instructionsToProcess;
+            instructionsToProcess = nextInstructions;
+            nextInstructions = tmp;
+            nextInstructions.clear();
         }
 
         // Process the base stream, if not null
         if (in != null) {
             for (int b = 0; b<instructionsToProcess.size(); b++) {
-                DeltaReadInstruction instruction = (DeltaReadInstruction)instructionsToProcess.get(b);
+                DeltaReadInstruction instruction = instructionsToProcess.get(b);
                 long from = instruction.getReadFrom();
                 long to = instruction.getReadTo();
                 int writeOffset = instruction.getWriteOffset();
@@ -212,7 +226,7 @@ implements Constants, LayerHandler {
         // Once we've read all available data, we call the diffProcessor to build the diff file
         int lastOffset = 0;
         for (int b = 0; b<instructionsToProcess.size(); b++) {
-            DeltaReadInstruction instruction = (DeltaReadInstruction)instructionsToProcess.get(b);
+            DeltaReadInstruction instruction = instructionsToProcess.get(b);
             // Build a previous "new bytes" bucket
             proc.newBytes(buff, lastOffset, instruction.getWriteOffset() - lastOffset);
             
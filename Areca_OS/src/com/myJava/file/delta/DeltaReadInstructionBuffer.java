@@ -0,0 +1,67 @@
+package com.myJava.file.delta;
+
+/**
+ * Reusable list of DeltaReadInstructions.
+ * <BR>The instructions are pooled : "clear()" doesn't release them, so that they can be reused
+ * by the next calls to "add()" without any allocation.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class DeltaReadInstructionBuffer {
+	private DeltaReadInstruction[] instructions = new DeltaReadInstruction[16];
+	private int size = 0;
+
+	public DeltaReadInstruction add(long readFrom, long readTo, int writeOffset) {
+		if (size == instructions.length) {
+			DeltaReadInstruction[] tmp = new DeltaReadInstruction[size * 2];
+			System.arraycopy(instructions, 0, tmp, 0, size);
+			instructions = tmp;
+		}
+		DeltaReadInstruction instruction = instructions[size];
+		if (instruction == null) {
+			instruction = new DeltaReadInstruction();
+			instructions[size] = instruction;
+		}
+		size++;
+
+		instruction.setReadFrom(readFrom);
+		instruction.setReadTo(readTo);
+		instruction.setWriteOffset(writeOffset);
+		return instruction;
+	}
+
+	public DeltaReadInstruction get(int index) {
+		return instructions[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+}
@@ -3,15 +3,13 @@ package com.myJava.file.delta;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
-import java.util.List;
 
 import com.myJava.file.delta.sequence.ByteProcessor;
 import com.myJava.file.delta.sequence.ByteProcessorException;
 import com.myJava.file.delta.sequence.HashSequence;
 import com.myJava.file.delta.sequence.HashSequenceEntry;
-import com.myJava.file.delta.tools.HashTool;
 import com.myJava.file.delta.tools.LinkedList;
+import com.myJava.file.delta.tools.RollingHash;
 import com.myJava.util.taskmonitor.TaskCancelledException;
 import com.myJava.util.taskmonitor.TaskMonitor;
 
@@ -136,6 +134,7 @@ public class DeltaReader implements Constants {
 
 	public void readSeq(TaskMonitor monitor) throws IOException, DeltaException, DeltaProcessorException, ByteProcessorException, TaskCancelledException {
 		LinkedList currentBlock = new LinkedList(blockSize);
+		RollingHash quickHash = seq.getRollingHash();
 		long totalRead = 0;
 		long position = 0;
 		int currentQuickHash = 0;
@@ -173,9 +172,9 @@ public class DeltaReader implements Constants {
 			totalRead++;
 			// Compute hash
 			if (totalRead > blockSize) {
-				currentQuickHash = HashTool.update(currentQuickHash, bRead, (byte)currentBlock.getFirst());
+				currentQuickHash = quickHash.update(currentQuickHash, bRead, (byte)currentBlock.getFirst());
 			} else {
-				currentQuickHash = HashTool.hash(currentQuickHash, bRead);
+				currentQuickHash = quickHash.hash(currentQuickHash, bRead);
 			}
 			currentBlock.add(bRead);
 
@@ -184,42 +183,30 @@ public class DeltaReader implements Constants {
 			if (totalRead >= blockSize) {
 				if (seq.contains(currentQuickHash)) {
 					byte[] fh = currentBlock.computeHash(hashAlgorithm);
-					List entries = seq.get(currentQuickHash, fh);
-					if (entries != null) {
-						Iterator iter = entries.iterator();
-						HashSequenceEntry candidate = null;
-						while (iter.hasNext()) {
-							HashSequenceEntry entry = (HashSequenceEntry)iter.next();
-							if (entry.getIndex() > lastBlockIndex && (candidate == null || entry.getIndex() < candidate.getIndex())) {
-								candidate = entry;
-							}
-						}
-						if (candidate != null && candidate.getSize() == significant) {
-							// Found !
-							if (candidate.getIndex() <= lastBlockIndex) {
-								throw new DeltaException("Incompatible indexes : current = " + candidate.getIndex() + ", last = " + lastBlockIndex);
-							} else if (candidate.getIndex() > lastBlockIndex + 1) {
-								// Block lost !
-								for (int x=0; x<processors.length; x++) {
-									processors[x].bytesLost((lastBlockIndex + 1) * blockSize, candidate.getIndex() * blockSize - 1);
-								}
-							}
-							lastBlockIndex = candidate.getIndex();
+					HashSequenceEntry candidate = seq.get(currentQuickHash, fh, lastBlockIndex);
+					if (candidate != null && candidate.getSize() == significant) {
+						// Found !
+						if (candidate.getIndex() <= lastBlockIndex) {
+							throw new DeltaException("Incompatible indexes : current = " + candidate.getIndex() + ", last = " + lastBlockIndex);
+						} else if (candidate.getIndex() > lastBlockIndex + 1) {
+							// Block lost !
 							for (int x=0; x<processors.length; x++) {
-								processors[x].blockFound(candidate, currentBlock);
+								processors[x].bytesLost((lastBlockIndex + 1) * blockSize, candidate.getIndex() * blockSize - 1);
 							}
-
-							// go ahead (and reset all)
-							currentQuickHash = 0;
-							totalRead = 0;
-							found = true;
-							SUCCESS_COUNTER++;
-						} else {
-							//Logger.defaultLogger().fine("Full hash computed but no entry found.");
-							FAILURE_COUNTER++;
 						}
+						lastBlockIndex = candidate.getIndex();
+						for (int x=0; x<processors.length; x++) {
+							processors[x].blockFound(candidate, currentBlock);
+						}
+
+						// go ahead (and reset all)
+						currentQuickHash = 0;
+						totalRead = 0;
+						found = true;
+						SUCCESS_COUNTER++;
 					} else {
-						//Logger.defaultLogger().info("No entries found.");
+						//Logger.defaultLogger().fine("Full hash computed but no entry found.");
+						FAILURE_COUNTER++;
 					}
 				}
 
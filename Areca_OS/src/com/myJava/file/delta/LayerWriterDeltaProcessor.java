@@ -111,12 +111,19 @@ implements DeltaProcessor, Constants {
     }
 
     public void newBytes(byte[] data, int offset, int len) throws DeltaProcessorException {
-    	if (len == 0) {
-            flushReadBlocks();
-    	}
-    	
-        for (int i=offset; i<offset+len; i++) {
-            newByte(data[i]);
+        flushReadBlocks();
+
+        // Same result as successive calls to "newByte", without the per-byte overhead
+        int i = offset;
+        int stop = offset + len;
+        while (i < stop) {
+            if (bufferIndex == buffer.length) {
+                flushNewBytes();
+            }
+            int l = Math.min(stop - i, buffer.length - bufferIndex);
+            System.arraycopy(data, i, buffer, bufferIndex, l);
+            bufferIndex += l;
+            i += l;
         }
     }
     
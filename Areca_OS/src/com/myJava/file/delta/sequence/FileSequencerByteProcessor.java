@@ -1,8 +1,12 @@
 package com.myJava.file.delta.sequence;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import com.myJava.file.delta.Constants;
 import com.myJava.file.delta.tools.HashTool;
 import com.myJava.file.delta.tools.LinkedList;
+import com.myJava.file.delta.tools.RollingHash;
 
 /**
  * <BR>
@@ -36,17 +40,24 @@ implements ByteProcessor, Constants {
 
     private String hashAlgorithm = HASH_ALG;
     private int blockSize;
+    private RollingHash quickHash;
 
     private long position = 0;
     private int currentQuickHash = 0;
     private HashSequence ret;
     private LinkedList block;
+    private MessageDigest digest;
     private boolean closed = false;
     
     private long totalReadMod = 0;
 
     public FileSequencerByteProcessor(int blockSize) {
+        this(blockSize, HashTool.DEFAULT_ALGORITHM);
+    }
+
+    public FileSequencerByteProcessor(int blockSize, short quickHashAlgorithm) {
         this.blockSize = blockSize;
+        this.quickHash = HashTool.getRollingHash(quickHashAlgorithm, blockSize);
     }
 
     public void close() throws ByteProcessorException {
@@ -58,35 +69,60 @@ implements ByteProcessor, Constants {
         if (totalReadMod != 0) {
             int d;
             for (d = 0; d<blockSize; d++) {
-                currentQuickHash = HashTool.hash(currentQuickHash, HashSequenceEntry.DEFAULT_BYTE);
+                currentQuickHash = quickHash.hash(currentQuickHash, HashSequenceEntry.DEFAULT_BYTE);
                 block.add(HashSequenceEntry.DEFAULT_BYTE);
 
                 totalReadMod++;
                 if (totalReadMod == blockSize) {
                 	totalReadMod = 0;
-                    ret.add(currentQuickHash, block.computeHash(hashAlgorithm), position++, blockSize - d - 1);
+                    ret.add(currentQuickHash, block.computeHash(digest), position++, blockSize - d - 1);
                     break;
                 }
             }
         }
     }
 
-    public void open() {
-        ret = new HashSequence(blockSize);
+    public void open() throws ByteProcessorException {
+        ret = new HashSequence(blockSize, quickHash.getAlgorithm());
         block = new LinkedList(blockSize);
+        try {
+			digest = MessageDigest.getInstance(hashAlgorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new ByteProcessorException(e);
+		}
     }
 
     public void processByte(byte read) {
         totalReadMod++;
 
-        currentQuickHash = HashTool.hash(currentQuickHash, read);
+        currentQuickHash = quickHash.hash(currentQuickHash, read);
         block.add(read);
         if (totalReadMod == blockSize) {
-            ret.add(currentQuickHash, block.computeHash(hashAlgorithm), position++, blockSize);
+            ret.add(currentQuickHash, block.computeHash(digest), position++, blockSize);
             currentQuickHash = 0;
             totalReadMod = 0;
         }
     }
+    
+    public void processBytes(byte[] data, int offset, int len) {
+    	int i = offset;
+    	int stop = offset + len;
+    	while (i < stop) {
+    		if (totalReadMod == 0 && stop - i >= blockSize) {
+    			// The whole block is available : hash it in place.
+    			// The linked list doesn't need to be fed because it is entirely overwritten before the next hash computation.
+    			int hash = 0;
+    			for (int j=i; j<i + blockSize; j++) {
+    				hash = quickHash.hash(hash, data[j]);
+    			}
+    			digest.update(data, i, blockSize);
+    			ret.add(hash, digest.digest(), position++, blockSize);
+    			i += blockSize;
+    		} else {
+    			processByte(data[i++]);
+    		}
+    	}
+    }
 
     public HashSequence getSequence() {
         return ret;
@@ -1,10 +1,7 @@
 package com.myJava.file.delta.sequence;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
-import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.file.delta.tools.HashTool;
+import com.myJava.file.delta.tools.RollingHash;
 import com.myJava.object.ToStringHelper;
 
 
@@ -36,95 +33,74 @@ This file is part of Areca.
 
  */
 public class HashSequence {
-    private static final int SIZE = FrameworkConfiguration.getInstance().getDeltaHashMapSize();
-    
     private int blockSize; // For information purpose;
-    private int size = 0;
-    private List retList = new ArrayList();
-    private SimilarEntrySet[] entries = new SimilarEntrySet[SIZE];
+    private short algorithm; // Quick hash algorithm
+    private HashSequenceIndex entries;
 
     public HashSequence(int blockSize) {
+        this(blockSize, HashTool.ALG_SUM);
+    }
+
+    public HashSequence(int blockSize, short algorithm) {
+        this(blockSize, algorithm, new HashSequenceIndex());
+    }
+
+    public HashSequence(int blockSize, short algorithm, HashSequenceIndex entries) {
         this.blockSize = blockSize;
+        this.algorithm = algorithm;
+        this.entries = entries;
     }
 
     public void add(int quickHash, byte[] fullHash, long bucketPosition, int bucketSize) {
-        int index = computeIndex(quickHash);
-        if (entries[index] == null) {
-            entries[index] = new SimilarEntrySet();
-        }
-        size++;
-        entries[index].add(new HashSequenceEntry(quickHash, fullHash, bucketPosition, bucketSize));
+        entries.add(quickHash, fullHash, bucketPosition, bucketSize);
     }
     
-    public SimilarEntrySet[] getInternalData() {
+    public HashSequenceIndex getInternalData() {
         return entries;
     }
     
     public boolean contains(int quickHash) {
-        int index = computeIndex(quickHash);
-        if (entries[index] == null) {
-            return false;
-        } else {
-            Iterator iter = entries[index].iterator();
-            while (iter.hasNext()) {
-                HashSequenceEntry entry = (HashSequenceEntry)iter.next();
-                if (entry.getQuickHash() == quickHash) {
-                    return true;
-                }
-            }
-            return false;
-        }
+        return entries.contains(quickHash);
     }
 
     public int getBlockSize() {
         return blockSize;
     }
 
-    private int computeIndex(int quickHash) {
-        return Math.abs(quickHash)%SIZE;
+    public short getAlgorithm() {
+        return algorithm;
     }
     
     /**
-     * CAUTION : The return list is recycled before each call to this method.
+     * Return a rolling hash which is compatible with the quick hashes of this sequence
      */
-    public List get(int quickHash, byte[] fullHash) {
-        retList.clear();
-        int index = computeIndex(quickHash);
-        if (entries[index] != null) {
-        	//Logger.defaultLogger().fine(entries[index].size() + " entries at index " + index + " for quick hash " + quickHash);
-            Iterator iter = entries[index].iterator();
-            while (iter.hasNext()) {
-                HashSequenceEntry entry = (HashSequenceEntry)iter.next();
-                if (entry.getQuickHash() == quickHash) {
-                    if (fullHash.length == entry.getFullHash().length) {
-                        boolean eq = true;
-                        for (int i=0; i<fullHash.length; i++) {
-                            if (fullHash[i] != entry.getFullHash()[i]) {
-                                eq = false;
-                                break;
-                            }
-                        }
-                        
-                        if (eq) {
-                            retList.add(entry);
-                        }
-                    }
-                }
+    public RollingHash getRollingHash() {
+        return HashTool.getRollingHash(algorithm, blockSize);
+    }
+    
+    /**
+     * Return the entry with the lowest index greater than "afterIndex" whose quick hash and full hash
+     * match the values passed as argument, or null if no such entry exists.
+     */
+    public HashSequenceEntry get(int quickHash, byte[] fullHash, long afterIndex) {
+        int first = entries.lookup(quickHash, afterIndex);
+        if (first != -1) {
+            int entry = entries.find(first, fullHash, 0);
+            if (entry != -1) {
+                return entries.getEntry(entry);
             }
         }
-        return retList;
+        return null;
     }
 
     public int getSize() {
-        return size;
+        return entries.size();
     }
 
     public String toString() {
         StringBuffer sb = ToStringHelper.init(this);
-        for (int i=0; i<SIZE; i++) {
-            if (this.entries[i] != null) {
-                ToStringHelper.append("\nBucket" + i, entries[i], sb);
-            }
+        for (int i=0; i<entries.size(); i++) {
+            ToStringHelper.append("\nEntry" + i, entries.getEntry(i), sb);
         }
         return ToStringHelper.close(sb);
     }
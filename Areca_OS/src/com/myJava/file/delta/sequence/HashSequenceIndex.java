@@ -0,0 +1,272 @@
+package com.myJava.file.delta.sequence;
+
+import com.myJava.file.delta.Constants;
+
+/**
+ * Primitive index of the entries of a HashSequence.
+ * <BR>The entries are stored in parallel arrays (quick hash, block index, block size) and their full hashes in a flat byte array.
+ * <BR>An open-addressing table maps each quick hash to the chain of entries sharing it. These chains are sorted by block index,
+ * which allows to locate the first candidate located after a given block index in one probe.
+ * <BR>The arrays grow with the number of blocks.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class HashSequenceIndex implements Constants {
+	private static final int INITIAL_CAPACITY = 64;
+
+	// Entries
+	private int size = 0;
+	private int[] quickHashes;
+	private long[] indexes;
+	private int[] sizes;
+	private int[] next; // Next entry with the same quick hash (-1 if none)
+	private byte[] fullHashes;
+
+	// Only meaningful for the first entry of each chain
+	private int[] tails; // Last entry of the chain
+	private int[] cursors; // Last entry returned by "lookup" for this chain
+
+	// Open-addressing table : first entry of the chain of each distinct quick hash (-1 if the slot is empty)
+	private int nbKeys = 0;
+	private int[] heads;
+	private int mask;
+
+	public HashSequenceIndex() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create an index which can contain "capacity" entries without being resized
+	 */
+	public HashSequenceIndex(int capacity) {
+		capacity = Math.max(capacity, 1);
+		quickHashes = new int[capacity];
+		indexes = new long[capacity];
+		sizes = new int[capacity];
+		next = new int[capacity];
+		tails = new int[capacity];
+		cursors = new int[capacity];
+		fullHashes = new byte[capacity * HASH_ALG_KLENGTH];
+		
+		int tableSize = 2;
+		while (tableSize * 3 < capacity * 4) {
+			tableSize *= 2;
+		}
+		initTable(tableSize);
+	}
+
+	private void initTable(int capacity) {
+		heads = new int[capacity];
+		for (int i=0; i<capacity; i++) {
+			heads[i] = -1;
+		}
+		mask = capacity - 1;
+	}
+
+	private static int mix(int quickHash) {
+		int h = quickHash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Return the slot of the quick hash, or the empty slot where it should be inserted
+	 */
+	private int locate(int quickHash) {
+		int slot = mix(quickHash) & mask;
+		while (heads[slot] != -1 && quickHashes[heads[slot]] != quickHash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	public void add(int quickHash, byte[] fullHash, long blockIndex, int blockSize) {
+		if (fullHash.length != HASH_ALG_KLENGTH) {
+			throw new IllegalArgumentException("Invalid hash length : " + fullHash.length);
+		}
+		add(quickHash, fullHash, 0, blockIndex, blockSize);
+	}
+
+	/**
+	 * Add an entry whose full hash is located at "offset" in the "fullHash" array
+	 */
+	public void add(int quickHash, byte[] fullHash, int offset, long blockIndex, int blockSize) {
+		ensureCapacity(size + 1);
+		int entry = size++;
+		quickHashes[entry] = quickHash;
+		indexes[entry] = blockIndex;
+		sizes[entry] = blockSize;
+		next[entry] = -1;
+		System.arraycopy(fullHash, offset, fullHashes, entry * HASH_ALG_KLENGTH, HASH_ALG_KLENGTH);
+
+		int slot = locate(quickHash);
+		int head = heads[slot];
+		if (head == -1) {
+			heads[slot] = entry;
+			tails[entry] = entry;
+			cursors[entry] = entry;
+			nbKeys++;
+			if (nbKeys * 4 > heads.length * 3) {
+				rehash(heads.length * 2);
+			}
+		} else if (indexes[tails[head]] <= blockIndex) {
+			// Standard case : the blocks are added in ascending order
+			next[tails[head]] = entry;
+			tails[head] = entry;
+		} else if (indexes[head] > blockIndex) {
+			// New first entry for this chain
+			next[entry] = head;
+			tails[entry] = tails[head];
+			cursors[entry] = entry;
+			heads[slot] = entry;
+		} else {
+			int previous = head;
+			while (indexes[next[previous]] <= blockIndex) {
+				previous = next[previous];
+			}
+			next[entry] = next[previous];
+			next[previous] = entry;
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > quickHashes.length) {
+			int newCapacity = Math.max(capacity, quickHashes.length * 2);
+			quickHashes = grow(quickHashes, newCapacity);
+			sizes = grow(sizes, newCapacity);
+			next = grow(next, newCapacity);
+			tails = grow(tails, newCapacity);
+			cursors = grow(cursors, newCapacity);
+
+			long[] idx = new long[newCapacity];
+			System.arraycopy(indexes, 0, idx, 0, size);
+			indexes = idx;
+
+			byte[] fh = new byte[newCapacity * HASH_ALG_KLENGTH];
+			System.arraycopy(fullHashes, 0, fh, 0, size * HASH_ALG_KLENGTH);
+			fullHashes = fh;
+		}
+	}
+
+	private int[] grow(int[] data, int capacity) {
+		int[] ret = new int[capacity];
+		System.arraycopy(data, 0, ret, 0, size);
+		return ret;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldHeads = heads;
+		initTable(capacity);
+		for (int i=0; i<oldHeads.length; i++) {
+			if (oldHeads[i] != -1) {
+				heads[locate(quickHashes[oldHeads[i]])] = oldHeads[i];
+			}
+		}
+	}
+
+	/**
+	 * Return the first entry (lowest block index) whose quick hash is the one passed as argument and whose block index
+	 * is greater than "afterIndex", or -1 if there is no such entry.
+	 * <BR>Lookups are faster if "afterIndex" increases between successive calls (which is the case during a delta read).
+	 */
+	public int lookup(int quickHash, long afterIndex) {
+		int head = heads[locate(quickHash)];
+		if (head == -1 || indexes[tails[head]] <= afterIndex) {
+			return -1;
+		}
+
+		// Chains are sorted : start from the last returned entry if possible
+		int entry = head;
+		if (indexes[cursors[head]] <= afterIndex) {
+			entry = cursors[head];
+		}
+		while (indexes[entry] <= afterIndex) {
+			entry = next[entry];
+		}
+		cursors[head] = entry;
+		return entry;
+	}
+
+	/**
+	 * Return the first entry of the chain, starting from "entry" (included), whose full hash matches the data
+	 * passed as argument, or -1 if there is no such entry.
+	 */
+	public int find(int entry, byte[] fullHash, int offset) {
+		while (entry != -1) {
+			if (matches(entry, fullHash, offset)) {
+				return entry;
+			}
+			entry = next[entry];
+		}
+		return -1;
+	}
+
+	private boolean matches(int entry, byte[] fullHash, int offset) {
+		int base = entry * HASH_ALG_KLENGTH;
+		for (int i=0; i<HASH_ALG_KLENGTH; i++) {
+			if (fullHashes[base + i] != fullHash[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean contains(int quickHash) {
+		return heads[locate(quickHash)] != -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getQuickHash(int entry) {
+		return quickHashes[entry];
+	}
+
+	public long getBlockIndex(int entry) {
+		return indexes[entry];
+	}
+
+	public int getBlockSize(int entry) {
+		return sizes[entry];
+	}
+
+	public byte[] getFullHash(int entry) {
+		byte[] ret = new byte[HASH_ALG_KLENGTH];
+		System.arraycopy(fullHashes, entry * HASH_ALG_KLENGTH, ret, 0, HASH_ALG_KLENGTH);
+		return ret;
+	}
+
+	public HashSequenceEntry getEntry(int entry) {
+		return new HashSequenceEntry(quickHashes[entry], getFullHash(entry), indexes[entry], sizes[entry]);
+	}
+
+	/**
+	 * Approximate memory footprint of the index, in bytes
+	 */
+	public long getMemorySize() {
+		return 24L * quickHashes.length + 8L * indexes.length + fullHashes.length + 4L * heads.length;
+	}
+}
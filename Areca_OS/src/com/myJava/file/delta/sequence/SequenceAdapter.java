@@ -1,15 +1,19 @@
 package com.myJava.file.delta.sequence;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import com.myJava.file.delta.Constants;
+import com.myJava.file.delta.tools.HashTool;
 import com.myJava.file.delta.tools.IOHelper;
 import com.myJava.util.log.Logger;
 
@@ -49,7 +53,23 @@ This file is part of Areca.
 
  */
 public class SequenceAdapter implements Constants {
-    private static final short VERSION = 1;
+	/**
+	 * Version 1 : [VERSION : 2 bytes][BLOCK SIZE : 8 bytes][ENTRIES] - quick hashes computed with HashTool.ALG_SUM
+	 * <BR>Version 2 : [VERSION : 2 bytes][BLOCK SIZE : 8 bytes][QUICK HASH ALGORITHM : 2 bytes][ENTRIES]
+	 * <BR>with ENTRY = [QUICK HASH : 4 bytes][INDEX : 8 bytes][SIZE : 4 bytes][FULL HASH]
+	 * <BR>
+	 * <BR>Version 3 : [VERSION : 2 bytes][BLOCK SIZE : 8 bytes][QUICK HASH ALGORITHM : 2 bytes][NB ENTRIES : var][LAST BLOCK SIZE : var][ENTRIES]
+	 * <BR>with ENTRY = [INDEX - PREVIOUS INDEX : var][QUICK HASH : 4 bytes][FULL HASH]
+	 * <BR>The entries are sorted by index ; all blocks but the last one have the sequence's block size.
+	 * <BR>"var" values are written with IOHelper.writeVarLong.
+	 */
+    private static final short VERSION = 3;
+    
+    /**
+     * Last version that stores the size of each entry
+     */
+    private static final short VERSION_WITH_SIZES = 2;
+    private static final int BUFFER_SIZE = 8192;
 
     private static SequenceAdapter INSTANCE = new SequenceAdapter();
     
@@ -58,24 +78,75 @@ public class SequenceAdapter implements Constants {
     }
     
     public void serialize(OutputStream out, HashSequence sequence) throws IOException {
-        IOHelper.writeShort(VERSION, out);
-        IOHelper.writeLong(sequence.getBlockSize(), out);
-        SimilarEntrySet[] sets = sequence.getInternalData();
-        for (int i=0; i<sets.length; i++) {
-        	if (sets[i] != null) {
-	            Iterator iter = sets[i].iterator();
-	            while(iter.hasNext()) {
-	                HashSequenceEntry entry = (HashSequenceEntry)iter.next();
-	                IOHelper.writeInt(entry.getQuickHash(), out);
-	                IOHelper.writeLong(entry.getIndex(), out);
-	                IOHelper.writeInt(entry.getSize(), out);
-	                out.write(entry.getFullHash());
-	            }
+        HashSequenceIndex entries = sequence.getInternalData();
+        int[] order = sortByIndex(entries);
+        
+        // Check that only the last block has a specific size (otherwise, the sizes must be written)
+        boolean compact = true;
+        for (int i=0; i<order.length - 1; i++) {
+        	if (entries.getBlockSize(order[i]) != sequence.getBlockSize() || entries.getBlockIndex(order[i]) == entries.getBlockIndex(order[i + 1])) {
+        		compact = false;
+        		break;
         	}
         }
+        
+        if (compact) {
+	        OutputStream bout = new BufferedOutputStream(out, BUFFER_SIZE);
+	        IOHelper.writeShort(VERSION, bout);
+	        IOHelper.writeLong(sequence.getBlockSize(), bout);
+	        IOHelper.writeShort(sequence.getAlgorithm(), bout);
+	        IOHelper.writeVarLong(order.length, bout);
+	        IOHelper.writeVarLong(order.length == 0 ? 0 : entries.getBlockSize(order[order.length - 1]), bout);
+	        long previous = -1;
+	        for (int i=0; i<order.length; i++) {
+	        	long index = entries.getBlockIndex(order[i]);
+	        	IOHelper.writeVarLong(index - previous, bout);
+	            IOHelper.writeInt(entries.getQuickHash(order[i]), bout);
+	            bout.write(entries.getFullHash(order[i]));
+	            previous = index;
+	        }
+	        bout.flush();
+        } else {
+	        IOHelper.writeShort(VERSION_WITH_SIZES, out);
+	        IOHelper.writeLong(sequence.getBlockSize(), out);
+	        IOHelper.writeShort(sequence.getAlgorithm(), out);
+	        for (int i=0; i<order.length; i++) {
+	            IOHelper.writeInt(entries.getQuickHash(order[i]), out);
+	            IOHelper.writeLong(entries.getBlockIndex(order[i]), out);
+	            IOHelper.writeInt(entries.getBlockSize(order[i]), out);
+	            out.write(entries.getFullHash(order[i]));
+	        }
+        }
+    }
+    
+    /**
+     * Return the positions of the entries, sorted by block index
+     */
+    private int[] sortByIndex(HashSequenceIndex entries) {
+    	int[] order = new int[entries.size()];
+    	boolean sorted = true;
+    	for (int i=0; i<order.length; i++) {
+    		order[i] = i;
+    		if (i != 0 && entries.getBlockIndex(i) < entries.getBlockIndex(i - 1)) {
+    			sorted = false;
+    		}
+    	}
+    	
+    	if (! sorted) {
+    		long[] keys = new long[order.length];
+    		for (int i=0; i<order.length; i++) {
+    			keys[i] = entries.getBlockIndex(i) * order.length + i; // Stable sort
+    		}
+    		Arrays.sort(keys);
+    		for (int i=0; i<order.length; i++) {
+    			order[i] = (int)(keys[i] % order.length);
+    		}
+    	}
+    	return order;
     }
     
     public HashSequence deserialize(InputStream in) throws IOException {
+    	in = new BufferedInputStream(in, BUFFER_SIZE);
         byte[] sig = new byte[2 + 8];
         byte[] entryData = new byte[4 + 8 + 4];
         int nb = IOHelper.readFully(in, sig);
@@ -83,8 +154,20 @@ public class SequenceAdapter implements Constants {
         if (nb == -1) {
             return null;
         } else {
+            int version = IOHelper.get16(sig, 0);
             int blockSize = (int)IOHelper.get64(sig, 2);
-            HashSequence seq = new HashSequence(blockSize);
+            short algorithm = HashTool.ALG_SUM;
+            if (version >= 2) {
+            	byte[] alg = new byte[2];
+            	IOHelper.readFully(in, alg);
+            	algorithm = (short)IOHelper.get16(alg, 0);
+            }
+            
+            if (version > VERSION_WITH_SIZES) {
+            	return deserializeCompact(in, blockSize, algorithm);
+            }
+            
+            HashSequence seq = new HashSequence(blockSize, algorithm);
             while (IOHelper.readFully(in, entryData) != -1) {
                 byte[] fullHash = new byte[HASH_ALG_KLENGTH];
                 IOHelper.readFully(in, fullHash);
@@ -102,6 +185,34 @@ public class SequenceAdapter implements Constants {
         }
     }
     
+    /**
+     * Read a version 3 sequence : the entries are directly loaded in a presized index
+     */
+    private HashSequence deserializeCompact(InputStream in, int blockSize, short algorithm) throws IOException {
+    	long nbEntries = IOHelper.readVarLong(in);
+    	if (nbEntries > Integer.MAX_VALUE) {
+    		throw new IOException("Invalid number of entries : " + nbEntries);
+    	}
+    	int lastBlockSize = (int)IOHelper.readVarLong(in);
+    	HashSequenceIndex entries = new HashSequenceIndex((int)nbEntries);
+    	byte[] entryData = new byte[4 + HASH_ALG_KLENGTH];
+    	long index = -1;
+    	for (int i=0; i<nbEntries; i++) {
+    		index += IOHelper.readVarLong(in);
+    		if (IOHelper.readFully(in, entryData) != entryData.length) {
+    			throw new EOFException("Unexpected end of sequence : " + i + " entries read out of " + nbEntries);
+    		}
+    		entries.add(
+    				(int)IOHelper.get32(entryData, 0), // quick hash
+    				entryData, 
+    				4,  // full hash
+    				index, 
+    				i == nbEntries - 1 ? lastBlockSize : blockSize
+    		);
+    	}
+    	return new HashSequence(blockSize, algorithm, entries);
+    }
+    
     public HashSequence deserialize(byte[] data) {
     	HashSequence ret = null;
     	try {
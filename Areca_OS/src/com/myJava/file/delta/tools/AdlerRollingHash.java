@@ -0,0 +1,62 @@
+package com.myJava.file.delta.tools;
+
+/**
+ * Adler-32 style rolling hash (as used by rsync) : two 16 bits sums, the first one of the bytes and the second one
+ * of the successive values of the first one.
+ * <BR>Unlike the historical modular sum, the second sum depends on the position of the bytes in the block, which dramatically
+ * reduces the number of collisions on structured data (text, runs of identical bytes ...)
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class AdlerRollingHash implements RollingHash {
+	/**
+	 * Offset added to each byte so that runs of zeros also modify the hash
+	 */
+	private static final int OFFSET = 31;
+	
+	private int blockSize;
+
+	public AdlerRollingHash(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	public short getAlgorithm() {
+		return HashTool.ALG_ADLER;
+	}
+
+	public int hash(int currentHash, byte value) {
+		int s1 = (currentHash + (value & 0xff) + OFFSET) & 0xffff;
+		int s2 = ((currentHash >>> 16) + s1) & 0xffff;
+		return s1 | (s2 << 16);
+	}
+
+	public int update(int currentHash, byte newValue, byte oldValue) {
+		int old = (oldValue & 0xff) + OFFSET;
+		int s1 = (currentHash - old + (newValue & 0xff) + OFFSET) & 0xffff;
+		int s2 = ((currentHash >>> 16) - blockSize * old + s1) & 0xffff;
+		return s1 | (s2 << 16);
+	}
+}
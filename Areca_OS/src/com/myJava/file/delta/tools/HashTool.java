@@ -34,6 +34,37 @@ public class HashTool {
     private static final int MODULUS = FrameworkConfiguration.getInstance().getDeltaQuickHashModulus();
     private static final int MULTIPLIER = FrameworkConfiguration.getInstance().getDeltaQuickHashMultiplier();
     
+    /**
+     * Quick hash algorithms (these identifiers are stored in the hash sequences)
+     */
+    public static final short ALG_SUM = 0;
+    public static final short ALG_ADLER = 1;
+    
+    /**
+     * Algorithm used for the new hash sequences
+     */
+    public static final short DEFAULT_ALGORITHM = getAlgorithm(FrameworkConfiguration.getInstance().getDeltaQuickHashAlgorithm());
+    
+    public static short getAlgorithm(String name) {
+    	if (name.equalsIgnoreCase("sum")) {
+    		return ALG_SUM;
+    	} else if (name.equalsIgnoreCase("adler")) {
+    		return ALG_ADLER;
+    	} else {
+    		throw new IllegalArgumentException("Unsupported quick hash algorithm : " + name);
+    	}
+    }
+    
+    public static RollingHash getRollingHash(short algorithm, int blockSize) {
+    	if (algorithm == ALG_SUM) {
+    		return new SumRollingHash();
+    	} else if (algorithm == ALG_ADLER) {
+    		return new AdlerRollingHash(blockSize);
+    	} else {
+    		throw new IllegalArgumentException("Unsupported quick hash algorithm : " + algorithm);
+    	}
+    }
+    
     public static int hash(int currentHash, byte value) {
         return (currentHash + MULTIPLIER * Math.abs(value)) % MODULUS;
     }
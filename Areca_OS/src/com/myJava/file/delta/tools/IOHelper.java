@@ -1,5 +1,6 @@
 package com.myJava.file.delta.tools;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -32,6 +33,8 @@ This file is part of Areca.
 
  */
 public class IOHelper {
+	// Scratch buffer used by "skipFully" : its content is never read, so it can be shared
+	private static final byte[] SKIP_BUFFER = new byte[8192];
     
     public static final int get16(byte b[], int off) {
         return (b[off] & 0xff) | ((b[off+1] & 0xff) << 8);
@@ -68,6 +71,35 @@ public class IOHelper {
         out.write((int)((v >>> 56) & 0xff));        
     }
     
+    /**
+     * Write a positive value on as few bytes as possible (7 bits per byte, the highest bit being set if other bytes follow)
+     */
+    public static void writeVarLong(long v, OutputStream out) throws IOException {
+    	if (v < 0) {
+    		throw new IllegalArgumentException("Negative values are not supported : " + v);
+    	}
+    	while (v >= 0x80) {
+    		out.write((int)((v & 0x7f) | 0x80));
+    		v >>>= 7;
+    	}
+    	out.write((int)v);
+    }
+    
+    public static long readVarLong(InputStream in) throws IOException {
+    	long v = 0;
+    	for (int shift = 0; shift < 64; shift += 7) {
+    		int b = in.read();
+    		if (b == -1) {
+    			throw new EOFException("Unexpected end of stream.");
+    		}
+    		v |= (long)(b & 0x7f) << shift;
+    		if ((b & 0x80) == 0) {
+    			return v;
+    		}
+    	}
+    	throw new IOException("Invalid variable length value.");
+    }
+    
     public static int readFully(InputStream in, byte[] data) throws IOException {
     	return readFully(in, data, 0, data.length);
     }
@@ -90,9 +122,13 @@ public class IOHelper {
     		return 0;
     	}
 
-    	int nb = 0;
-    	while(nb < length && in.read() != -1) {
-    		nb++;
+    	long nb = 0;
+    	int r = 0;
+    	while(nb < length && r != -1) {
+    		r = in.read(SKIP_BUFFER, 0, (int)Math.min(SKIP_BUFFER.length, length - nb));
+    		if (r != -1) {
+    			nb += r;
+    		}
     	}
     	if (nb == 0) { // no more data to read
     		return -1;
@@ -61,6 +61,17 @@ public class LinkedList {
     	}
     }
     
+    /**
+     * Loads the list with the maxSize bytes located at the given offset.
+     * <BR>The resulting state is the same as if these bytes had been added one by one.
+     */
+    public void set(byte[] data, int offset) {
+    	System.arraycopy(data, offset, buffer, 0, maxSize);
+    	currentIndex = 0;
+    	firstIndex = 0;
+    	eof = true;
+    }
+    
     public int getFirst() {
     	return buffer[firstIndex];
     }
@@ -75,22 +86,27 @@ public class LinkedList {
     }
 
     public byte[] computeHash(String algorithm) {
-        MessageDigest digest;
         try {
-            digest = MessageDigest.getInstance(algorithm);
-            if (eof) {
-                digest.update(buffer, firstIndex, maxSize - firstIndex);
-                digest.update(buffer, 0, firstIndex);
-            } else {
-                digest.update(buffer, 0, currentIndex);
-            }
-
-            return digest.digest();
+            return computeHash(MessageDigest.getInstance(algorithm));
         } catch (NoSuchAlgorithmException e) {
             Logger.defaultLogger().error(e);
             return null;
         }
     }
+    
+    /**
+     * Computes the hash with the digest passed as argument (which is reset after use)
+     */
+    public byte[] computeHash(MessageDigest digest) {
+        if (eof) {
+            digest.update(buffer, firstIndex, maxSize - firstIndex);
+            digest.update(buffer, 0, firstIndex);
+        } else {
+            digest.update(buffer, 0, currentIndex);
+        }
+
+        return digest.digest();
+    }
 
     public String toString() {
     	int s;
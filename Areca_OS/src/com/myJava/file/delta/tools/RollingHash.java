@@ -0,0 +1,47 @@
+package com.myJava.file.delta.tools;
+
+/**
+ * Rolling hash used to compute the "quick hash" of the blocks.
+ * <BR>The hash of a block can be computed byte by byte ("hash") or derived from the hash of the previous block ("update").
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public interface RollingHash {
+	/**
+	 * Identifier of the algorithm, which is stored in the hash sequences
+	 */
+	public short getAlgorithm();
+	
+	/**
+	 * Add a byte to the current hash
+	 */
+	public int hash(int currentHash, byte value);
+	
+	/**
+	 * Shift the block : add "newValue" and remove "oldValue" (which is located "blockSize" bytes before "newValue")
+	 */
+	public int update(int currentHash, byte newValue, byte oldValue);
+}
@@ -0,0 +1,44 @@
+package com.myJava.file.delta.tools;
+
+/**
+ * Historical quick hash : modular sum of the absolute values of the bytes.
+ * <BR>It is only kept to be able to read the hash sequences that were generated with it.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class SumRollingHash implements RollingHash {
+	public short getAlgorithm() {
+		return HashTool.ALG_SUM;
+	}
+
+	public int hash(int currentHash, byte value) {
+		return HashTool.hash(currentHash, value);
+	}
+
+	public int update(int currentHash, byte newValue, byte oldValue) {
+		return HashTool.update(currentHash, newValue, oldValue);
+	}
+}
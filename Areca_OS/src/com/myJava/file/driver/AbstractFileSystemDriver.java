@@ -1,10 +1,13 @@
 package com.myJava.file.driver;
 
 import java.io.File;
+import java.io.IOException;
 
 import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.file.FileNameUtil;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.InvalidPathException;
+import com.myJava.file.metadata.FileMetaData;
 import com.myJava.system.OSTool;
 
 /**
@@ -60,6 +63,27 @@ implements FileSystemDriver {
         }
     }
 
+    /**
+     * Default implementation : the attributes are read one by one
+     */
+    public FileSnapshot getSnapshot(File file) throws IOException {
+    	return new FileSnapshot(file, getType(file), exists(file), isDirectory(file), isFile(file), length(file), lastModified(file));
+    }
+    
+    /**
+     * Default implementation : the data are stored as is
+     */
+    public long getDataLength(File file) throws IOException {
+    	return length(file);
+    }
+    
+    /**
+     * Default implementation : the snapshot is ignored
+     */
+    public FileMetaData getMetaData(FileSnapshot snapshot, boolean onlyBasicAttributes) throws IOException {
+    	return getMetaData(snapshot.getFile(), onlyBasicAttributes);
+    }
+
     public static String normalizeIfNeeded(String path) {
         if (File.separatorChar == '\\') {
             return FileNameUtil.normalizePath(path);
@@ -205,6 +205,10 @@ implements LinkableFileSystemDriver {
 		return predecessor.length(file);
 	}
 
+	public long getDataLength(File file) throws IOException {
+		return predecessor.getDataLength(file);
+	}
+
 	public boolean isHidden(File file) {
 		return predecessor.isHidden(file);
 	}
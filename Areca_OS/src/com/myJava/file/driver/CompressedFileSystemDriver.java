@@ -52,6 +52,7 @@ This file is part of Areca.
  */
 public class CompressedFileSystemDriver 
 extends AbstractLinkableFileSystemDriver {
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private CompressionArguments compression = new CompressionArguments();
     private File root;
@@ -161,6 +162,24 @@ extends AbstractLinkableFileSystemDriver {
         return length;
     }
     
+    /**
+     * The size of the uncompressed data is not stored before the data : they are read (and uncompressed) to compute it
+     */
+    public long getDataLength(File file) throws IOException {
+        InputStream in = getFileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long length = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                length += read;
+            }
+            return length;
+        } finally {
+            in.close();
+        }
+    }
+    
     public String[] list(File file, FilenameFilter filter) {
         File[] files = this.listFiles(file, filter);
         if (files != null) {
@@ -9,14 +9,19 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.file.AsyncOutputStream;
+import com.myJava.file.ChannelInputStream;
 import com.myJava.file.EventOutputStream;
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.OutputStreamListener;
 import com.myJava.file.metadata.FileMetaData;
+import com.myJava.file.metadata.FileMetaDataAccessor;
 import com.myJava.file.metadata.FileMetaDataAccessorHelper;
+import com.myJava.file.metadata.FileSnapshotAccessor;
 import com.myJava.object.HashHelper;
 import com.myJava.object.ToStringHelper;
 import com.myJava.system.OSTool;
@@ -55,7 +60,14 @@ This file is part of Areca.
 public class DefaultFileSystemDriver extends AbstractFileSystemDriver {
 	protected static boolean USE_BUFFER = FrameworkConfiguration.getInstance().useFileSystemBuffer();
 	protected static int BUFFER_SIZE = FrameworkConfiguration.getInstance().getFileSystemBufferSize();
-	protected static boolean ASYNC_OUTPUT = false;
+	protected static boolean ASYNC_OUTPUT = FrameworkConfiguration.getInstance().useFileSystemAsyncOutput();
+	protected static long CHANNEL_THRESHOLD = FrameworkConfiguration.getInstance().getFileSystemChannelThreshold();
+	protected static int CHANNEL_WINDOW_SIZE = FrameworkConfiguration.getInstance().getFileSystemChannelWindowSize();
+	
+	/**
+	 * Mapped files can't be deleted on Windows until their mapping has been garbage collected
+	 */
+	protected static boolean CHANNEL_MMAP = FrameworkConfiguration.getInstance().useFileSystemChannelMapping() && ! OSTool.isSystemWindows();
 	
 	public boolean canRead(File file) {
 		return file.canRead();
@@ -318,13 +330,59 @@ public class DefaultFileSystemDriver extends AbstractFileSystemDriver {
 	}
 
 	public InputStream getFileInputStream(File file) throws IOException {
-		if (USE_BUFFER) {
+		if (CHANNEL_THRESHOLD > 0 && file.length() >= CHANNEL_THRESHOLD) {
+			return getChannelInputStream(file);
+		} else if (USE_BUFFER) {
 			return new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
 		} else {
 			return new FileInputStream(file);
 		}
 	}
 
+	/**
+	 * Return a FileChannel on the file, opened for reading
+	 */
+	public FileChannel getFileChannel(File file) throws IOException {
+		return new FileInputStream(file).getChannel();
+	}
+	
+	/**
+	 * Return a stream which reads the file through its FileChannel (memory-mapped windows or direct buffer)
+	 */
+	public ChannelInputStream getChannelInputStream(File file) throws IOException {
+		return new ChannelInputStream(new FileInputStream(file), CHANNEL_MMAP, CHANNEL_MMAP ? CHANNEL_WINDOW_SIZE : BUFFER_SIZE);
+	}
+	
+	/**
+	 * Copy the source file to the destination file, channel to channel (the data are not copied in the JVM's memory)
+	 */
+	public void copyFile(File source, File destination, TaskMonitor monitor) throws IOException, TaskCancelledException {
+		checkFilePath(destination);
+		FileChannel in = getFileChannel(source);
+		try {
+			FileChannel out = new FileOutputStream(destination).getChannel();
+			try {
+				long position = 0;
+				long size = in.size();
+				while (position < size) {
+					if (monitor != null) {
+						monitor.checkTaskState();
+					}
+					long transferred = in.transferTo(position, Math.min(CHANNEL_WINDOW_SIZE, size - position), out);
+					if (transferred <= 0) {
+						// The source file has been truncated during the copy
+						throw new IOException("Copy of " + source.getAbsolutePath() + " stopped at " + position + "/" + size);
+					}
+					position += transferred;
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
 	public OutputStream getCachedFileOutputStream(File file) throws IOException {
 		checkFilePath(file);
 		return getFileOutputStream(file);
@@ -360,6 +418,27 @@ public class DefaultFileSystemDriver extends AbstractFileSystemDriver {
 		return FileMetaDataAccessorHelper.getFileSystemAccessor().getMetaData(f, onlyBasicAttributes);
 	}
 
+	public FileMetaData getMetaData(FileSnapshot snapshot, boolean onlyBasicAttributes) throws IOException {
+		FileMetaDataAccessor accessor = FileMetaDataAccessorHelper.getFileSystemAccessor();
+		if (accessor instanceof FileSnapshotAccessor) {
+			return ((FileSnapshotAccessor)accessor).getMetaData(snapshot, onlyBasicAttributes);
+		} else {
+			return accessor.getMetaData(snapshot.getFile(), onlyBasicAttributes);
+		}
+	}
+
+	/**
+	 * The snapshot is read in one call if the metadata accessor supports it.
+	 */
+	public FileSnapshot getSnapshot(File file) throws IOException {
+		FileMetaDataAccessor accessor = FileMetaDataAccessorHelper.getFileSystemAccessor();
+		if (accessor instanceof FileSnapshotAccessor) {
+			return ((FileSnapshotAccessor)accessor).getSnapshot(file);
+		} else {
+			return super.getSnapshot(file);
+		}
+	}
+
 	public void applyMetaData(FileMetaData p, File f) throws IOException {
 		FileMetaDataAccessorHelper.getFileSystemAccessor().setMetaData(f, p);
 	}
@@ -1,10 +1,13 @@
 package com.myJava.file.driver;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -19,6 +22,11 @@ import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 
+import com.myJava.configuration.FrameworkConfiguration;
+import com.myJava.encryption.ChunkedCipherFormat;
+import com.myJava.encryption.ChunkedCipherInputStream;
+import com.myJava.encryption.ChunkedCipherOutputStream;
+import com.myJava.encryption.CipherWorkerPool;
 import com.myJava.encryption.EncryptionUtil;
 import com.myJava.file.OutputStreamListener;
 import com.myJava.file.driver.namehash.NameHashFileSystemDriver;
@@ -32,6 +40,10 @@ import com.myJava.util.taskmonitor.TaskMonitor;
 
 /**
  * Linkable driver that adds encryption features
+ * <BR>The encrypted / decrypted file names are cached (see PathSegmentCache) and the ciphers used to process the names
+ * are confined to each thread, so that concurrent threads can use the driver without contention.
+ * <BR>The files can be written in the chunked format (see ChunkedCipherFormat) or as a single cipher stream.
+ * The format of each file is detected when it is read, so both formats are always readable.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -73,6 +85,43 @@ extends AbstractLinkableFileSystemDriver {
 	protected Cipher fileNameDecryptionCipher;
 	protected boolean encryptNames;
 	protected String nameWrappingMode;
+	
+	/**
+	 * Encrypted files, indexed by plain parent directory and plain name
+	 */
+	protected PathSegmentCache encryptedNames;
+	
+	/**
+	 * Decrypted files, indexed by encrypted parent directory and encrypted name
+	 */
+	protected PathSegmentCache decryptedNames;
+	
+	/**
+	 * Chunked format - null if it is not supported by the key's algorithm
+	 */
+	protected ChunkedCipherFormat chunkedFormat;
+	
+	/**
+	 * Write the files in the chunked format
+	 */
+	protected boolean writeChunked;
+	
+	/**
+	 * Pool used to encrypt / decrypt the chunks
+	 */
+	protected CipherWorkerPool cipherPool;
+	
+	private ThreadLocal encryptionCiphers = new ThreadLocal() {
+		protected Object initialValue() {
+			return buildNewCipher(Cipher.ENCRYPT_MODE);
+		}
+	};
+	
+	private ThreadLocal decryptionCiphers = new ThreadLocal() {
+		protected Object initialValue() {
+			return buildNewCipher(Cipher.DECRYPT_MODE);
+		}
+	};
 
 	public EncryptedFileSystemDriver(
 			File directoryRoot, 
@@ -95,6 +144,20 @@ extends AbstractLinkableFileSystemDriver {
 		fileNameEncryptionCipher = buildNewCipher(Cipher.ENCRYPT_MODE);
 		fileNameDecryptionCipher = buildNewCipher(Cipher.DECRYPT_MODE);
 		
+		// Init name caches
+		int cacheSize = FrameworkConfiguration.getInstance().getEncryptionNameCacheSize();
+		encryptedNames = new PathSegmentCache(cacheSize);
+		decryptedNames = new PathSegmentCache(cacheSize);
+		
+		// Init chunked format
+		if (ChunkedCipherFormat.isSupported(key)) {
+			chunkedFormat = new ChunkedCipherFormat(key, FrameworkConfiguration.getInstance().getEncryptionChunkSize());
+			writeChunked = FrameworkConfiguration.getInstance().isEncryptionChunked();
+			cipherPool = CipherWorkerPool.getDefault();
+		} else if (FrameworkConfiguration.getInstance().isEncryptionChunked()) {
+			Logger.defaultLogger().warn("The chunked encryption format is not supported for the " + key.getAlgorithm() + " algorithm. Files will be encrypted as a single stream.");
+		}
+		
 		if (! checkNameEncryptionScheme()) {
 			throw new IllegalStateException("Illegal name wrapping mode : [" + nameWrappingMode + "]");
 		}
@@ -217,6 +280,87 @@ extends AbstractLinkableFileSystemDriver {
 	public long length(File file) {
 		return this.predecessor.length(this.encryptFileName(file));
 	}
+	
+	/**
+	 * Returns the size of the data stored in the file (and not the size of the encrypted file), so that the callers
+	 * can skip to a given location (the end of the file for instance)
+	 */
+	public long getDataLength(File file) throws IOException {
+		File target = this.encryptFileName(file);
+		long length = this.predecessor.length(target);
+		if (length == 0 || ! this.predecessor.isFile(target)) {
+			return length;
+		}
+		InputStream in = predecessor.getFileInputStream(target);
+		try {
+			return readPlainLength(in, length);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads the size of the data stored in a file of "length" bytes :
+	 * <BR>- chunked format : computed from the chunk size read in the header,
+	 * <BR>- single cipher stream without IV (ECB mode) : the padding is read in the last block (the file is skipped up to its last block),
+	 * <BR>- other single cipher streams : the file is decrypted up to its end.
+	 * <BR>An IOException is thrown if the size can't be determined.
+	 */
+	private long readPlainLength(InputStream in, long length) throws IOException {
+		byte[] header = new byte[ChunkedCipherFormat.HEADER_LENGTH];
+		int read = readHeader(in, header);
+		if (chunkedFormat != null) {
+			int chunkSize = chunkedFormat.readHeader(header, read);
+			if (chunkSize != -1) {
+				return ChunkedCipherFormat.getPlainLength(length, chunkSize);
+			}
+		}
+		
+		Cipher cipher = buildNewCipher(Cipher.DECRYPT_MODE);
+		int blockSize = cipher.getBlockSize();
+		try {
+			if (iv == null && blockSize != 0) {
+				if (length < blockSize || length % blockSize != 0) {
+					throw new IOException("Invalid encrypted file : " + length + " bytes is not a multiple of the block size (" + blockSize + ")");
+				}
+				byte[] last = new byte[blockSize];
+				if (length <= read) {
+					System.arraycopy(header, (int)length - blockSize, last, 0, blockSize);
+				} else {
+					long toSkip = length - blockSize - read;
+					while (toSkip > 0) {
+						long n = in.skip(toSkip);
+						if (n <= 0) {
+							if (in.read() == -1) {
+								throw new EOFException("Unexpected end of encrypted file : " + (length - toSkip) + " bytes read instead of " + length);
+							}
+							n = 1;
+						}
+						toSkip -= n;
+					}
+					if (readHeader(in, last) != blockSize) {
+						throw new EOFException("Unexpected end of encrypted file : last block could not be read");
+					}
+				}
+				return length - blockSize + cipher.doFinal(last).length;
+			} else {
+				long plainLength = 0;
+				byte[] buffer = new byte[8192];
+				System.arraycopy(header, 0, buffer, 0, read);
+				int n = read;
+				while (n != -1) {
+					byte[] out = cipher.update(buffer, 0, n);
+					if (out != null) {
+						plainLength += out.length;
+					}
+					n = in.read(buffer);
+				}
+				return plainLength + cipher.doFinal().length;
+			}
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Unable to read the size of the encrypted data : " + e.getMessage());
+		}
+	}
 
 	public boolean isEncryptNames() {
 		return this.encryptNames;
@@ -309,22 +453,22 @@ extends AbstractLinkableFileSystemDriver {
 	
 	public InputStream getCachedFileInputStream(File file) throws IOException {
 		File target = this.encryptFileName(file);
-		return new CipherInputStream(predecessor.getCachedFileInputStream(target), buildNewCipher(Cipher.DECRYPT_MODE));
+		return buildInputStream(predecessor.getCachedFileInputStream(target));
 	}
 
 	public InputStream getFileInputStream(File file) throws IOException {
 		File target = this.encryptFileName(file);
-		return new CipherInputStream(predecessor.getFileInputStream(target), buildNewCipher(Cipher.DECRYPT_MODE));
+		return buildInputStream(predecessor.getFileInputStream(target));
 	}
 
 	public OutputStream getCachedFileOutputStream(File file) throws IOException {
 		File target = this.encryptFileName(file);
-		return new CipherOutputStream(predecessor.getCachedFileOutputStream(target), buildNewCipher(Cipher.ENCRYPT_MODE));
+		return buildOutputStream(predecessor.getCachedFileOutputStream(target));
 	}    
 
 	public OutputStream getFileOutputStream(File file) throws IOException {
 		File target = this.encryptFileName(file);
-		return new CipherOutputStream(predecessor.getFileOutputStream(target), buildNewCipher(Cipher.ENCRYPT_MODE));
+		return buildOutputStream(predecessor.getFileOutputStream(target));
 	}    
 
 	public OutputStream getFileOutputStream(File file, boolean append) throws IOException {
@@ -337,7 +481,60 @@ extends AbstractLinkableFileSystemDriver {
 		}
 
 		File target = this.encryptFileName(file);
-		return new CipherOutputStream(predecessor.getFileOutputStream(target, append, listener), buildNewCipher(Cipher.ENCRYPT_MODE)); 
+		return buildOutputStream(predecessor.getFileOutputStream(target, append, listener)); 
+	}
+
+	/**
+	 * Detects the format of the file (chunked or single cipher stream) and wraps the stream accordingly
+	 */
+	protected InputStream buildInputStream(InputStream in) throws IOException {
+		if (chunkedFormat == null) {
+			return new CipherInputStream(in, buildNewCipher(Cipher.DECRYPT_MODE));
+		}
+		
+		PushbackInputStream pin = new PushbackInputStream(in, ChunkedCipherFormat.HEADER_LENGTH);
+		try {
+			byte[] header = new byte[ChunkedCipherFormat.HEADER_LENGTH];
+			int read = readHeader(pin, header);
+			int chunkSize = chunkedFormat.readHeader(header, read);
+			if (chunkSize != -1) {
+				return new ChunkedCipherInputStream(pin, chunkedFormat, chunkSize, cipherPool);
+			} else {
+				pin.unread(header, 0, read);
+				return new CipherInputStream(pin, buildNewCipher(Cipher.DECRYPT_MODE));
+			}
+		} catch (IOException e) {
+			pin.close();
+			throw e;
+		}
+	}
+	
+	protected OutputStream buildOutputStream(OutputStream out) throws IOException {
+		if (writeChunked) {
+			try {
+				return new ChunkedCipherOutputStream(out, chunkedFormat, cipherPool);
+			} catch (IOException e) {
+				out.close();
+				throw e;
+			}
+		} else {
+			return new CipherOutputStream(out, buildNewCipher(Cipher.ENCRYPT_MODE));
+		}
+	}
+	
+	/**
+	 * Fills the array (as far as possible) and returns the number of bytes read
+	 */
+	private static int readHeader(InputStream in, byte[] header) throws IOException {
+		int read = 0;
+		while (read < header.length) {
+			int n = in.read(header, read, header.length - read);
+			if (n == -1) {
+				break;
+			}
+			read += n;
+		}
+		return read;
 	}
 
 	private Cipher buildNewCipher(int mode) {
@@ -371,7 +568,14 @@ extends AbstractLinkableFileSystemDriver {
 			if (orig.equals(this.directoryRoot)) {
 				return orig;
 			} else {
-				return new File(this.encryptFileName(orig.getParentFile()), this.encryptFileName(orig.getName()));
+				File parent = orig.getParentFile();
+				String name = orig.getName();
+				File ret = encryptedNames.get(parent, name);
+				if (ret == null) {
+					ret = new File(this.encryptFileName(parent), this.encryptFileName(name));
+					encryptedNames.put(parent, name, ret);
+				}
+				return ret;
 			}
 		} else {
 			return file;
@@ -384,7 +588,14 @@ extends AbstractLinkableFileSystemDriver {
 			if (orig.equals(this.directoryRoot)) {
 				return orig;
 			} else {
-				return new File(this.decryptFileName(orig.getParentFile()), this.decryptFileName(orig.getName()));
+				File parent = orig.getParentFile();
+				String name = orig.getName();
+				File ret = decryptedNames.get(parent, name);
+				if (ret == null) {
+					ret = new File(this.decryptFileName(parent), this.decryptFileName(name));
+					decryptedNames.put(parent, name, ret);
+				}
+				return ret;
 			}
 		} else {
 			return file;
@@ -404,7 +615,7 @@ extends AbstractLinkableFileSystemDriver {
 					 return "";
 				 }
 
-				 byte[] bytes = this.fileNameEncryptionCipher.doFinal(shortName.getBytes());
+				 byte[] bytes = ((Cipher)encryptionCiphers.get()).doFinal(shortName.getBytes());
 				 StringBuffer sb = new StringBuffer();
 				 for (int i=0; i<bytes.length; i++) {
 					 String str = Integer.toHexString((int)bytes[i] + 128);
@@ -446,7 +657,7 @@ extends AbstractLinkableFileSystemDriver {
 					 values[i] = (byte)(iValue - 128);
 				 }
 
-				 byte[] decrypted = this.fileNameDecryptionCipher.doFinal(values);
+				 byte[] decrypted = ((Cipher)decryptionCiphers.get()).doFinal(values);
 				 return new String(decrypted);
 			 } catch (NumberFormatException e) {
 				 Logger.defaultLogger().error(e);
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.OutputStreamListener;
 import com.myJava.file.metadata.FileMetaData;
 import com.myJava.util.taskmonitor.TaskCancelledException;
@@ -114,6 +115,24 @@ public interface FileSystemDriver {
      */
     public FileMetaData getMetaData(File f, boolean onlyBasicAttributes) throws IOException;
     
+    /**
+     * Returns the file's attributes
+     * <BR>The attributes that are held by the snapshot may not be read again.
+     */
+    public FileMetaData getMetaData(FileSnapshot snapshot, boolean onlyBasicAttributes) throws IOException;
+    
+    /**
+     * Read the type, size, last modification date (and permissions / owner / group if they can be read in the same call) of the file
+     */
+    public FileSnapshot getSnapshot(File file) throws IOException;
+    
+    /**
+     * Return the size of the data which can be read from the file's InputStream
+     * <BR>It may differ from "length" for the drivers which transform the data (encryption, compression) and may require
+     * the file to be read : it must only be used when the exact size of the data is needed (random access to the file's content).
+     */
+    public long getDataLength(File file) throws IOException;
+    
     /**
      * Create a Symbolic link
      */
@@ -0,0 +1,163 @@
+package com.myJava.file.driver;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.myJava.object.EqualsHelper;
+
+/**
+ * Bounded cache of translated path segments, used by the EncryptedFileSystemDriver to avoid ciphering the
+ * same file names again and again.
+ * <BR>Entries are keyed by parent directory and short name ; the cached value is the full translated file.
+ * <BR>The cache is split in several independent stripes (each one with its own lock and its own LRU order) so that
+ * concurrent threads don't contend on a single lock.
+ * <BR>A size of 0 disables the cache.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class PathSegmentCache {
+	private static final int STRIPES = 16;
+
+	private Stripe[] stripes;
+	private int maxSize;
+
+	public PathSegmentCache(int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+		if (this.maxSize != 0) {
+			int stripeSize = Math.max(1, this.maxSize / STRIPES);
+			stripes = new Stripe[STRIPES];
+			for (int i=0; i<STRIPES; i++) {
+				stripes[i] = new Stripe(stripeSize);
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return maxSize != 0;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Return the translated file, or null if it is not in the cache
+	 */
+	public File get(File directory, String name) {
+		if (stripes == null) {
+			return null;
+		}
+		Key key = new Key(directory, name);
+		Stripe stripe = stripes[key.stripe()];
+		synchronized (stripe) {
+			return (File)stripe.get(key);
+		}
+	}
+
+	public void put(File directory, String name, File translated) {
+		if (stripes != null) {
+			Key key = new Key(directory, name);
+			Stripe stripe = stripes[key.stripe()];
+			synchronized (stripe) {
+				stripe.put(key, translated);
+			}
+		}
+	}
+
+	public void clear() {
+		if (stripes != null) {
+			for (int i=0; i<stripes.length; i++) {
+				synchronized (stripes[i]) {
+					stripes[i].clear();
+				}
+			}
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		if (stripes != null) {
+			for (int i=0; i<stripes.length; i++) {
+				synchronized (stripes[i]) {
+					size += stripes[i].size();
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * LRU map
+	 */
+	private static class Stripe extends LinkedHashMap {
+		private static final long serialVersionUID = 6349287510164829023L;
+		private int maxSize;
+
+		public Stripe(int maxSize) {
+			super(Math.min(maxSize, 1024), 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	private static class Key {
+		private File directory;
+		private String name;
+		private int hash;
+
+		public Key(File directory, String name) {
+			this.directory = directory;
+			this.name = name;
+			this.hash = (directory == null ? 0 : directory.hashCode()) * 31 + name.hashCode();
+		}
+
+		public int stripe() {
+			int h = hash ^ (hash >>> 16);
+			return (h & 0x7fffffff) % STRIPES;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			} else if (o instanceof Key) {
+				Key other = (Key)o;
+				return hash == other.hash
+				&& name.equals(other.name)
+				&& EqualsHelper.equals(directory, other.directory);
+			} else {
+				return false;
+			}
+		}
+	}
+}
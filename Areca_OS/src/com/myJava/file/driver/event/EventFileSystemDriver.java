@@ -413,6 +413,14 @@ implements LinkableFileSystemDriver {
         return res;
     }
 
+    public long getDataLength(File file) throws IOException {
+        FileSystemDriverEvent event = buildEvent("getDataLength", file);
+        throwStartEvent(event);
+        long res = predecessor.getDataLength(file);
+        throwStopEvent(event);
+        return res;
+    }
+
     public String[] list(File file, FilenameFilter filter) {
         FileSystemDriverEvent event = buildEvent("list", file);
         event.setArgument(filter);
@@ -182,6 +182,10 @@ extends AbstractLinkableFileSystemDriver {
 		return this.predecessor.length(this.encodeFileName(file));
 	}
 
+	public long getDataLength(File file) throws IOException {
+		return this.predecessor.getDataLength(this.encodeFileName(file));
+	}
+
 	public void deleteOnExit(File f) {
 		predecessor.deleteOnExit(this.encodeFileName(f));
 		predecessor.deleteOnExit(this.getDecodingFile(f));        
@@ -483,8 +487,11 @@ extends AbstractLinkableFileSystemDriver {
 
 	/**
 	 * Creates the companion file, which stores the real name of the file/directory.
+	 * <BR>The encoded name is checked again while holding the driver's lock : another thread may have used the same hash
+	 * for a different file since it was computed.
 	 */
-	protected void createDecodingFile(File encoded, String decodedName) throws IOException {
+	protected synchronized void createDecodingFile(File encoded, String decodedName) throws IOException {
+		validateEncodedName(predecessor.getParentFile(encoded), decodedName, predecessor.getName(encoded));
 		OutputStreamWriter writer = null;
 		try {
 			File decoding = this.getDecodingFile(encoded);
@@ -60,6 +60,7 @@ public abstract class AbstractProxy {
     public abstract AbstractProxy cloneProxy();
     public abstract FictiveFile getRemoteFileInfos(String remoteFile) throws RemoteConnectionException;
     public abstract OutputStream getFileOutputStream(String file, boolean append) throws RemoteConnectionException;
+    public abstract String getRemoteServer();
 
     public synchronized void flush() {
         clearCache();
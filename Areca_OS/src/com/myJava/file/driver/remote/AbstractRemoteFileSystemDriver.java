@@ -10,8 +10,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import com.myJava.configuration.FrameworkConfiguration;
 import com.myJava.file.EventOutputStream;
@@ -19,6 +21,9 @@ import com.myJava.file.FileNameUtil;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.FileTool;
 import com.myJava.file.OutputStreamListener;
+import com.myJava.file.ThrottledInputStream;
+import com.myJava.file.ThrottledOutputStream;
+import com.myJava.file.bandwidth.BandwidthGovernor;
 import com.myJava.file.driver.AbstractFileSystemDriver;
 import com.myJava.file.driver.FileCacheableInformations;
 import com.myJava.file.driver.FileSystemDriverUtils;
@@ -62,6 +67,7 @@ extends AbstractFileSystemDriver {
 	
     protected static boolean USE_BUFFER = FrameworkConfiguration.getInstance().useFileSystemBuffer();
     protected static int BUFFER_SIZE = FrameworkConfiguration.getInstance().getFileSystemBufferSize();
+    protected static int STREAMING_BUFFER_SIZE = FrameworkConfiguration.getInstance().getRemoteStreamingBufferSize();
 
     // Contains the local files, which will be sent on call to "flush"
     protected Map localInputFiles = new HashMap();
@@ -69,6 +75,15 @@ extends AbstractFileSystemDriver {
     protected int maxProxies;
     protected ArrayList alternateProxies = new ArrayList();
     
+    // Size of the buffer used by StreamingOutputStreams (0 = the data are always spooled in local files)
+    protected int streamingBufferSize = STREAMING_BUFFER_SIZE;
+    
+    // Number of StreamingOutputStreams currently open (each one keeps a proxy until it is closed)
+    protected int streamedUploads = 0;
+    
+    // Files whose streamed upload has failed : they will be spooled in local files on the next attempt
+    protected Set failedUploads = new HashSet();
+    
     protected abstract String translateToLocal(String remoteFile);
     protected abstract String translateToRemote(File localFile);
 
@@ -207,9 +222,15 @@ extends AbstractFileSystemDriver {
         }
     }
     
-    public synchronized OutputStream getCachedFileOutputStream(File file) throws IOException {
+    /**
+     * The remote stream is opened without holding the driver's lock (see buildStreamingOutputStream)
+     */
+    public OutputStream getCachedFileOutputStream(File file) throws IOException {
         removeLocalInputFile(file);
-        OutputStream raw = new LocalOutputStream(file, this);
+        OutputStream raw = buildStreamingOutputStream(file);
+        if (raw == null) {
+            raw = buildLocalOutputStream(file);
+        }
         
         if (USE_BUFFER) {
             return new BufferedOutputStream(raw, BUFFER_SIZE);
@@ -218,6 +239,101 @@ extends AbstractFileSystemDriver {
         }
     }
     
+    /**
+     * Build a StreamingOutputStream if possible, or return null if the data must be spooled in a local file :
+     * <BR>- streaming disabled,
+     * <BR>- previous streamed upload of the file failed (retry),
+     * <BR>- too many streamed uploads in progress (at least two proxies are kept for the other operations),
+     * <BR>- the remote stream can't be opened.
+     * <BR>The proxy is reserved while holding the driver's lock, but the remote stream is opened outside of it, so that
+     * a slow connection doesn't block the other threads.
+     */
+    protected OutputStream buildStreamingOutputStream(File file) {
+        String owner = this.buildNewOwnerId("streamingUpload");
+        AbstractProxy proxy = this.reserveStreamingProxy(file, owner);
+        if (proxy == null) {
+            return null;
+        }
+        
+        try {
+            // The remote stream releases the proxy when it is closed
+            OutputStream remote = throttle(proxy.getFileOutputStream(this.translateToRemote(file)));
+            return new StreamingOutputStream(file, this, remote, streamingBufferSize);
+        } catch (Exception e) {
+            Logger.defaultLogger().warn("Unable to open a remote stream on " + file + " : the data will be written in a local file and sent afterwards.", e);
+            releaseProxy(proxy, owner);
+            streamingProxyFailed(file);
+            return null;
+        }
+    }
+    
+    /**
+     * Reserve a proxy for a streamed upload (null if the data must be spooled in a local file)
+     */
+    private synchronized AbstractProxy reserveStreamingProxy(File file, String owner) {
+        if (streamingBufferSize <= 0 || failedUploads.contains(file) || streamedUploads >= maxProxies - 1) {
+            return null;
+        }
+        
+        AbstractProxy proxy = this.getAvailableProxy(owner);
+        if (proxy != null) {
+            streamedUploads++;
+        }
+        return proxy;
+    }
+    
+    /**
+     * Cancel the reservation made by "reserveStreamingProxy" : the remote stream couldn't be opened
+     */
+    private synchronized void streamingProxyFailed(File file) {
+        streamedUploads--;
+        failedUploads.add(file);
+    }
+    
+    private synchronized OutputStream buildLocalOutputStream(File file) throws IOException {
+        return new LocalOutputStream(file, this);
+    }
+    
+    /**
+     * Apply the bandwidth limit of the remote server to a stream opened by a proxy
+     */
+    protected OutputStream throttle(OutputStream raw) {
+        return ThrottledOutputStream.wrap(raw, BandwidthGovernor.getInstance().getRemoteOutputLimiter(proxy.getRemoteServer()));
+    }
+    
+    /**
+     * Apply the bandwidth limit of the remote server to a stream opened by a proxy
+     */
+    protected InputStream throttle(InputStream raw) {
+        return ThrottledInputStream.wrap(raw, BandwidthGovernor.getInstance().getRemoteInputLimiter(proxy.getRemoteServer()));
+    }
+    
+    /**
+     * Called when a StreamingOutputStream is closed
+     */
+    protected synchronized void uploadCompleted(File file, boolean success) {
+        streamedUploads--;
+        if (! success) {
+            Logger.defaultLogger().warn("Streamed upload of " + file + " failed : the file will be written in a local file on the next attempt.");
+            failedUploads.add(file);
+        }
+    }
+    
+    /**
+     * Called when a spooled file has been sent
+     */
+    protected synchronized void spoolCompleted(File file) {
+        failedUploads.remove(file);
+    }
+    
+    public int getStreamingBufferSize() {
+        return streamingBufferSize;
+    }
+
+    public void setStreamingBufferSize(int streamingBufferSize) {
+        this.streamingBufferSize = streamingBufferSize;
+    }
+
     public short getAccessEfficiency() {
         return ACCESS_EFFICIENCY_POOR;
     }
@@ -517,7 +633,7 @@ extends AbstractFileSystemDriver {
         AbstractProxy proxy = this.getAvailableProxy(owner);
 
         try {
-            OutputStream raw = proxy.getFileOutputStream(this.translateToRemote(file), append);
+            OutputStream raw = throttle(proxy.getFileOutputStream(this.translateToRemote(file), append));
 
             if (USE_BUFFER) {
                 return new BufferedOutputStream(raw, BUFFER_SIZE);
@@ -539,7 +655,7 @@ extends AbstractFileSystemDriver {
         AbstractProxy proxy = this.getAvailableProxy(owner);
 
         try {
-            InputStream raw = proxy.getFileInputStream(this.translateToRemote(file));
+            InputStream raw = throttle(proxy.getFileInputStream(this.translateToRemote(file)));
 
             if (USE_BUFFER) {
                 return new BufferedInputStream(raw, BUFFER_SIZE);
@@ -72,10 +72,11 @@ public class LocalOutputStream extends OutputStream {
             try {
                 FileTool.getInstance().copy(
                         FileSystemManager.getFileInputStream(localFile),
-                        proxy.getFileOutputStream(remoteFile),
+                        driver.throttle(proxy.getFileOutputStream(remoteFile)),
                         true,
                         true
                 );
+                driver.spoolCompleted(file);
             } finally {
             	try {
             		FileTool.getInstance().delete(localFile);
@@ -0,0 +1,223 @@
+package com.myJava.file.driver.remote;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.myJava.util.log.Logger;
+
+/**
+ * OutputStream that sends the data to the remote server as they are written, without local temporary file.
+ * <BR>The data are copied in a bounded memory buffer, and a background thread writes them in the remote stream.
+ * If the buffer is full, the writer waits until the upload thread has sent some data.
+ * <BR>If the upload fails, the error is raised on the next write (or on close) and the file is registered by the driver : the
+ * next attempt to write this file will use a LocalOutputStream (the data are spooled in a local file and sent on close).
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class StreamingOutputStream extends OutputStream implements Runnable {
+    private File file;
+    private AbstractRemoteFileSystemDriver driver;
+    private OutputStream out;
+    private Thread thread;
+    
+    private byte[] buffer;
+    private int head = 0;
+    private int count = 0;
+    private boolean eof = false;
+    private boolean closed = false;
+    private boolean producerWaiting = false;
+    private boolean consumerWaiting = false;
+    private Throwable error;
+    private byte[] singleByte = new byte[1];
+
+    /**
+     * @param out Remote stream (must release its proxy when closed)
+     */
+    public StreamingOutputStream(File file, AbstractRemoteFileSystemDriver driver, OutputStream out, int bufferSize) {
+        this.file = file;
+        this.driver = driver;
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 1)];
+
+        thread = new Thread(this);
+        thread.setDaemon(true);
+        thread.setName("Upload : " + file.getName());
+        thread.start();
+    }
+
+    public void write(int b) throws IOException {
+        singleByte[0] = (byte)b;
+        write(singleByte, 0, 1);
+    }
+    
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+    
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n;
+            synchronized (this) {
+                checkState();
+                while (count == buffer.length && error == null) {
+                    producerWaiting = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new IOException("Interrupted while writing " + file);
+                    } finally {
+                        producerWaiting = false;
+                    }
+                }
+                checkError();
+                
+                int tail = (head + count) % buffer.length;
+                n = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+                System.arraycopy(b, off, buffer, tail, n);
+                count += n;
+                if (consumerWaiting) {
+                    notifyAll();
+                }
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Waits until all buffered data have been sent, then flushes the remote stream.
+     */
+    public synchronized void flush() throws IOException {
+        checkState();
+        waitForUpload();
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            eof = true;
+            notifyAll();
+        }
+
+        boolean success = false;
+        try {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while closing " + file);
+            }
+            checkError();
+            out.close();
+            success = true;
+        } finally {
+            if (! success) {
+                try {
+                    // Release the proxy
+                    out.close();
+                } catch (Exception ignored) {
+                }
+            }
+            driver.uploadCompleted(file, success);
+        }
+    }
+
+    private void waitForUpload() throws IOException {
+        while (count != 0 && error == null) {
+            producerWaiting = true;
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while writing " + file);
+            } finally {
+                producerWaiting = false;
+            }
+        }
+        checkError();
+    }
+    
+    private void checkState() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed : " + file);
+        }
+        checkError();
+    }
+    
+    private void checkError() throws IOException {
+        if (error != null) {
+            IOException ex = new IOException("Error while sending " + file + " to the remote server : " + error.getMessage());
+            ex.initCause(error);
+            throw ex;
+        }
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                int start;
+                int len;
+                synchronized (this) {
+                    while (count == 0 && ! eof) {
+                        consumerWaiting = true;
+                        try {
+                            wait();
+                        } finally {
+                            consumerWaiting = false;
+                        }
+                    }
+                    if (count == 0) {
+                        return;
+                    }
+                    start = head;
+                    len = Math.min(count, buffer.length - head);
+                }
+                
+                // The writer doesn't overwrite this part of the buffer as long as "count" hasn't been updated
+                out.write(buffer, start, len);
+
+                synchronized (this) {
+                    head = (head + len) % buffer.length;
+                    count -= len;
+
+                    // Only wake up the writer once half of the buffer is free (or the buffer is empty, for flush)
+                    if (producerWaiting && (count <= buffer.length / 2)) {
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            Logger.defaultLogger().error("Error while sending " + file + " to the remote server.", e);
+            synchronized (this) {
+                error = e;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.Stack;
 
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.file.metadata.FileMetaDataAccessor;
 import com.myJava.util.log.Logger;
@@ -21,6 +22,8 @@ import com.myJava.util.taskmonitor.TaskMonitor;
  * Subdirectories are processed recursively.
  * <BR>The iterator can iterate following the path's components lexicographic order if the "sorted" attribute is set to "true".
  * <BR>It also ensures that all parents of a file returned by the "next" method have been previously returned.
+ * <BR>If the "captureSnapshots" attribute is set to "true", the attributes of each element are read once (see FileSnapshot) when
+ * its directory is listed. They are used by the iterator and its filter, and are available to the caller through "getCurrentSnapshot".
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -60,11 +63,14 @@ public class FileSystemIterator implements Iterator, Serializable {
 	protected TaskMonitor monitor;
 	protected boolean logProgress;
 	protected boolean warnDanglingLinks = true;
+	protected boolean captureSnapshots = false;
 
 	protected FileSystemLevel currentLevel;
 	protected Stack fileSystemLevels;
 	protected Stack priorFiles;
 	protected File nextCachedFile;
+	protected FileSnapshot nextCachedSnapshot;
+	protected FileSnapshot currentSnapshot;
 	protected ArrayList sourceFiles;
 	protected int sourceIndex;
 	protected FileSystemIterator currentFileSystemSubIterator;
@@ -150,6 +156,14 @@ public class FileSystemIterator implements Iterator, Serializable {
 		this.warnDanglingLinks = warnDanglingLinks;
 	}
 
+	public boolean isCaptureSnapshots() {
+		return captureSnapshots;
+	}
+
+	public void setCaptureSnapshots(boolean captureSnapshots) {
+		this.captureSnapshots = captureSnapshots;
+	}
+
 	private void checkInitialized() {
 		if (! initialized) {
 			initialized = true;
@@ -205,10 +219,27 @@ public class FileSystemIterator implements Iterator, Serializable {
 	public File nextFile() {
 		checkInitialized();
 		File next = this.nextCachedFile;
+		this.currentSnapshot = this.nextCachedSnapshot;
 		fetchNext();
 		return next;
 	}
 
+	/**
+	 * Returns the snapshot of the file that has been returned by the last call to "nextFile".
+	 * <BR>Returns null if the snapshot has not been read (if "captureSnapshots" is disabled for instance).
+	 */
+	public FileSnapshot getCurrentSnapshot() {
+		return currentSnapshot;
+	}
+
+	/**
+	 * Returns the next element : a FileSnapshot if it has been read, a File otherwise
+	 */
+	private Object nextElement() {
+		File next = nextFile();
+		return currentSnapshot == null ? (Object)next : currentSnapshot;
+	}
+
 	public boolean hasNext() {
 		checkInitialized();
 		return (this.nextCachedFile != null);
@@ -222,16 +253,16 @@ public class FileSystemIterator implements Iterator, Serializable {
 		this.currentLevel = level;
 	}
 
-	private boolean acceptIteration(File directory) {
-		boolean result = filter == null ? true : filter.acceptIteration(directory);
+	private boolean acceptIteration(File directory, FileSnapshot snapshot) {
+		boolean result = filter == null ? true : (snapshot == null ? filter.acceptIteration(directory) : filter.acceptIteration(snapshot));
 		if (! result) {
 			this.filtered++;
 		}
 		return result;
 	}
 
-	private boolean acceptElement(File directory) {
-		boolean result = filter == null ? true : filter.acceptElement(directory);
+	private boolean acceptElement(File directory, FileSnapshot snapshot) {
+		boolean result = filter == null ? true : (snapshot == null ? filter.acceptElement(directory) : filter.acceptElement(snapshot));
 		if (! result) {
 			this.filtered++;
 		}
@@ -240,13 +271,13 @@ public class FileSystemIterator implements Iterator, Serializable {
 
 	/**
 	 * Returns the next element
-	 * It can be either a file or a directory
+	 * It can be either a file or a directory, returned as a File or as a FileSnapshot
 	 */
-	private File nextFileOrDirectory() {
+	private Object nextFileOrDirectory() {
 		if (currentFileSystemSubIterator != null) {
 			if (currentFileSystemSubIterator.hasNext()) {
 				// Delegate to the current subIterator
-				return (File)currentFileSystemSubIterator.next();
+				return currentFileSystemSubIterator.nextElement();
 			} else {
 				// Close the current subIterator
 				this.directories += this.currentFileSystemSubIterator.directories;
@@ -265,6 +296,7 @@ public class FileSystemIterator implements Iterator, Serializable {
 			this.currentFileSystemSubIterator = new FileSystemIterator(root, nextSource, followSymLinks, followSubdirectories, forceAllDirectories, sorted);
 			this.currentFileSystemSubIterator.setFilter(this.filter);
 			this.currentFileSystemSubIterator.setWarnDanglingLinks(this.warnDanglingLinks);
+			this.currentFileSystemSubIterator.setCaptureSnapshots(this.captureSnapshots);
 			if (monitor != null) {
 				this.currentFileSystemSubIterator.setMonitor(this.monitor.getCurrentActiveSubTask());
 			}
@@ -275,28 +307,29 @@ public class FileSystemIterator implements Iterator, Serializable {
 			while (true) {
 				if (! this.priorFiles.isEmpty()) {
 					// Return priority files or directories
-					return (File)priorFiles.pop();
+					return priorFiles.pop();
 				} else if (currentLevel != null && currentLevel.hasMoreElements()) {
 					// Get the next element
 					File f = currentLevel.nextElement();
+					FileSnapshot snapshot = captureSnapshots ? readSnapshot(f) : null;
 
 					// Check whether it is a symbolic link or not
-					boolean isDirectory = FileSystemManager.isDirectory(f);
+					boolean isDirectory = snapshot == null ? FileSystemManager.isDirectory(f) : snapshot.isDirectory();
 					boolean isFile = ! isDirectory;
-					int isSymbolicLink = -1; // -1 = unset, 0 = false, 1 = true
+					int isSymbolicLink = snapshot == null ? -1 : (snapshot.isLink() ? 1 : 0); // -1 = unset, 0 = false, 1 = true
 					boolean registeredAsDirectory = false;
 
 					// Register directory
 					if (isDirectory && (followSymLinks || (isSymbolicLink = isSymbolicLink(f, isSymbolicLink)) == 0)) {
 						// check if we can iterate on this directory
-						if (followSubdirectories && this.acceptIteration(f)) {
+						if (followSubdirectories && this.acceptIteration(f, snapshot)) {
 							this.fileSystemLevels.push(this.currentLevel);
 							// Progress information
 							if (monitor != null) {
 								monitor.getCurrentActiveSubTask().addNewSubTask(currentLevel.getCompletionIncrement(), FileSystemManager.getAbsolutePath(f));
 							}
 
-							this.setCurrentLevel(new FileSystemLevel(f, this.currentLevel, sorted));
+							this.setCurrentLevel(snapshot == null ? new FileSystemLevel(f, this.currentLevel, sorted) : new FileSystemLevel(snapshot, this.currentLevel, sorted));
 							if (logProgress) {
 								Logger.defaultLogger().fine("Processing " + FileSystemManager.getAbsolutePath(f));
 							}
@@ -310,17 +343,17 @@ public class FileSystemIterator implements Iterator, Serializable {
 					}
 
 					// this check is needed because dangling symbolic links may return "false" here ...
-					if (FileSystemManager.exists(f)) {
+					if (snapshot == null ? FileSystemManager.exists(f) : snapshot.exists()) {
 						// Check the file
-						if (this.acceptElement(f)) {
+						if (this.acceptElement(f, snapshot)) {
 							if (isFile) {
 								this.files++;
 
 								// Return the file (or push it into the priority stack, with its parents)
-								pushFileAndParents(f);
+								pushFileAndParents(snapshot == null ? (Object)f : snapshot);
 							} else if ((! followSymLinks) && (isSymbolicLink = isSymbolicLink(f, isSymbolicLink)) == 1) {
 								// Symbolic link to a directory ... if the "follow symlinks" option is disabled, this case must be handled as a standard file.
-								pushFileAndParents(f);
+								pushFileAndParents(snapshot == null ? (Object)f : snapshot);
 							} else if (forceAllDirectories) {
 								this.directories++;
 
@@ -360,6 +393,16 @@ public class FileSystemIterator implements Iterator, Serializable {
 		}
 	}
 
+	private static FileSnapshot readSnapshot(File f) {
+		try {
+			return FileSystemManager.getSnapshot(f);
+		} catch (IOException e) {
+			// The attributes will be read one by one
+			Logger.defaultLogger().warn("Unable to read the attributes of " + FileSystemManager.getAbsolutePath(f) + " : " + e.getMessage());
+			return null;
+		}
+	}
+
 	private static int isSymbolicLink(File f, int currentValue) {
 		if (currentValue != -1) {
 			return currentValue;
@@ -384,7 +427,10 @@ public class FileSystemIterator implements Iterator, Serializable {
 		}
 	}
 
-	private void pushFileAndParents(File file) {
+	/**
+	 * The file is either a File or a FileSnapshot
+	 */
+	private void pushFileAndParents(Object file) {
 		// push the file
 		if (file != null) {
 			this.priorFiles.push(file);
@@ -398,7 +444,7 @@ public class FileSystemIterator implements Iterator, Serializable {
 				&& (! level.isHasBeenReturned())
 		) {
 			if (push) {
-				this.priorFiles.push(level.getRoot());
+				this.priorFiles.push(level.getSnapshot() == null ? (Object)level.getRoot() : level.getSnapshot());
 				this.directories++;
 			}
 			level.setHasBeenReturned(true);
@@ -413,7 +459,14 @@ public class FileSystemIterator implements Iterator, Serializable {
 	}
 
 	private void fetchNext() {
-		this.nextCachedFile = nextFileOrDirectory();
+		Object next = nextFileOrDirectory();
+		if (next instanceof FileSnapshot) {
+			this.nextCachedSnapshot = (FileSnapshot)next;
+			this.nextCachedFile = this.nextCachedSnapshot.getFile();
+		} else {
+			this.nextCachedSnapshot = null;
+			this.nextCachedFile = (File)next;
+		}
 	}
 }
 
@@ -2,6 +2,8 @@ package com.myJava.file.iterator;
 
 import java.io.File;
 
+import com.myJava.file.FileSnapshot;
+
 /**
  * 
  * <BR>
@@ -40,4 +42,14 @@ public interface FileSystemIteratorFilter {
 	 * Tell whether the iterator will return the element to the caller
 	 */
 	public boolean acceptElement(File element);
+	
+	/**
+	 * Same as acceptIteration(File), for a directory whose snapshot has already been read
+	 */
+	public boolean acceptIteration(FileSnapshot directory);
+	
+	/**
+	 * Same as acceptElement(File), for an element whose snapshot has already been read
+	 */
+	public boolean acceptElement(FileSnapshot element);
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.Arrays;
 
+import com.myJava.file.FileSnapshot;
 import com.myJava.file.FileSystemManager;
 import com.myJava.object.ToStringHelper;
 
@@ -42,11 +43,20 @@ public class FileSystemLevel implements Serializable {
     private boolean hasBeenReturned = false;
     private FileSystemLevel parent;
     private File root;
+    private FileSnapshot snapshot;						// Snapshot of the root (may be null)
     private double completionIncrement = 0;
     private boolean directoryRoot;						// The root can be a file or a directory
     
 	public FileSystemLevel(File root, FileSystemLevel parent, boolean sorted) {
-		this.directoryRoot = FileSystemManager.isDirectory(root);
+		this(root, null, FileSystemManager.isDirectory(root), parent, sorted);
+	}
+	
+	public FileSystemLevel(FileSnapshot root, FileSystemLevel parent, boolean sorted) {
+		this(root.getFile(), root, root.isDirectory(), parent, sorted);
+	}
+    
+	private FileSystemLevel(File root, FileSnapshot snapshot, boolean directoryRoot, FileSystemLevel parent, boolean sorted) {
+		this.directoryRoot = directoryRoot;
 		if (directoryRoot) {
 			File[] files = FileSystemManager.listFiles(root);
 
@@ -64,6 +74,7 @@ public class FileSystemLevel implements Serializable {
 		this.index = 0;
         this.parent = parent;
         this.root = root;
+        this.snapshot = snapshot;
         this.completionIncrement = 0.99 / (getSize() == 0 ? 1 : getSize());
 	}
 
@@ -92,6 +103,10 @@ public class FileSystemLevel implements Serializable {
 		return root;
 	}
     
+    public FileSnapshot getSnapshot() {
+		return snapshot;
+	}
+    
 	public boolean isDirectoryRoot() {
 		return directoryRoot;
 	}
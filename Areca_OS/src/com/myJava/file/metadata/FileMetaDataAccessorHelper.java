@@ -35,6 +35,11 @@ This file is part of Areca.
  */
 public class FileMetaDataAccessorHelper {
 
+	/**
+	 * In-process accessor, which is preferred to the default one on Posix systems (loaded by name because it requires Java 7)
+	 */
+	private static final String NIO_ACCESSOR = "com.myJava.file.metadata.posix.nio.NIOMetaDataAccessor";
+	
 	private static FileMetaDataAccessor INSTANCE;
 	
 	static {
@@ -67,7 +72,10 @@ public class FileMetaDataAccessorHelper {
 				if (OSTool.isSystemWindows()) {
 					INSTANCE = new WindowsMetaDataAccessor();
 				} else {
-					INSTANCE = new DefaultMetaDataAccessor();			
+					INSTANCE = loadNIOAccessor();
+					if (INSTANCE == null) {
+						INSTANCE = new DefaultMetaDataAccessor();
+					}
 				}
 				
 				// Test the default accessor
@@ -90,4 +98,17 @@ public class FileMetaDataAccessorHelper {
 	public static FileMetaDataAccessor getFileSystemAccessor() {
 		return INSTANCE;
 	}
+	
+	/**
+	 * Load and test the in-process accessor - return null if it can't be used (Java 6 or lower, unsupported file attributes ...)
+	 */
+	private static FileMetaDataAccessor loadNIOAccessor() {
+		try {
+			FileMetaDataAccessor accessor = (FileMetaDataAccessor)Class.forName(NIO_ACCESSOR).newInstance();
+			return accessor.test() ? accessor : null;
+		} catch (Throwable e) {
+			Logger.defaultLogger().info("[" + NIO_ACCESSOR + "] can't be used on this system : " + e.getClass().getName() + " - " + e.getMessage());
+			return null;
+		}
+	}
 }
@@ -0,0 +1,48 @@
+package com.myJava.file.metadata;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.myJava.file.FileSnapshot;
+
+/**
+ * Accessor which is able to read all the attributes of a FileSnapshot (permissions, owner and group included) in one call,
+ * and to build the file's metadata from such a snapshot.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public interface FileSnapshotAccessor extends FileMetaDataAccessor {
+	/**
+	 * Read the file's snapshot.
+	 * <BR>A snapshot is returned (with "exists() == false") if the file does not exist.
+	 */
+	public FileSnapshot getSnapshot(File f) throws IOException;
+	
+	/**
+	 * Same as getMetaData(File, boolean), but the attributes that are held by the snapshot are not read again.
+	 */
+	public FileMetaData getMetaData(FileSnapshot snapshot, boolean onlyBasicAttributes) throws IOException;
+}
@@ -48,6 +48,7 @@ public class DefaultMetaDataAccessor implements FileMetaDataAccessor {
 
 	private static final String DESCRIPTION = "Default meta data accessor for Posix systems. It uses the \"ls\", \"chmod\" and \"chown\" system commands to handle file attributes (owner, group and permissions).\nExtended attributes, ACL and special bits are not handled by this accessor.";
 	private static final FileMetaDataSerializer SERIALIZER = new PosixMetaDataSerializer();
+	private static final int PERMISSION_MASK = 07777;
 	
 	public FileMetaData getMetaData(File f, boolean onlyBasicAttributes) throws IOException {
         PosixMetaDataImpl p = new PosixMetaDataImpl();
@@ -150,12 +151,13 @@ public class DefaultMetaDataAccessor implements FileMetaDataAccessor {
 	            OSTool.execute(new String[] {"chown", target.getOwner() + ":" + target.getGroup(), FileSystemManager.getAbsolutePath(f)});
 	        }
 	        
-	        // Mode
+	        // Mode (the file type bits set by other accessors are ignored)
+	        int mode = target.getMode() & PERMISSION_MASK;
 	        if (
 	        		target.getMode() != PosixMetaDataImpl.UNDEF_MODE
-	        		&& current.getMode() != target.getMode()
+	        		&& current.getMode() != mode
 	        ) {
-	        	OSTool.execute(new String[] {"chmod", "" + target.getModeBase10(), FileSystemManager.getAbsolutePath(f)});
+	        	OSTool.execute(new String[] {"chmod", Integer.toOctalString(mode), FileSystemManager.getAbsolutePath(f)});
 	        }
         }
         
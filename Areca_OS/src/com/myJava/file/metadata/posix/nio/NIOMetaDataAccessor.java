@@ -0,0 +1,421 @@
+package com.myJava.file.metadata.posix.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.myJava.file.FileSnapshot;
+import com.myJava.file.metadata.FileMetaData;
+import com.myJava.file.metadata.FileMetaDataSerializer;
+import com.myJava.file.metadata.FileSnapshotAccessor;
+import com.myJava.file.metadata.posix.ExtendedAttribute;
+import com.myJava.file.metadata.posix.ExtendedAttributeList;
+import com.myJava.file.metadata.posix.PosixMetaDataImpl;
+import com.myJava.file.metadata.posix.PosixMetaDataSerializer;
+import com.myJava.system.OSTool;
+import com.myJava.util.log.Logger;
+
+/**
+ * Metadata accessor that uses the file attribute API of the Java platform (java.nio.file - Java 7 or higher) instead of
+ * forking system commands or invoking native code.
+ * <BR>It handles basic attributes (owner, group, permissions, sticky bit, set uid, set gid) and the extended attributes of the "user" namespace.
+ * <BR>ACLs are not handled (the Java platform only supports NFSv4 ACLs, not Posix ACLs).
+ * <BR>The modes are read as a whole (file type included), as by com.myJava.file.metadata.posix.jni.JNIMetaDataAccessor.
+ * <BR>User and group names are cached.
+ * <BR>
+ * @author Olivier PETRUCCI
+ * <BR>
+ *
+ */
+
+ /*
+ Copyright 2005-2011, Olivier PETRUCCI.
+
+This file is part of Areca.
+
+    Areca is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    Areca is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Areca; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+
+ */
+public class NIOMetaDataAccessor implements FileSnapshotAccessor {
+	private static final String DESCRIPTION = "In-process meta data accessor for Posix systems. It uses the file attribute API of the Java platform (Java 7 or higher) to handle file informations (owner, group, permissions, special bits and extended attributes of the \"user\" namespace).\nACLs are not handled by this accessor.";
+	private static final FileMetaDataSerializer SERIALIZER = new PosixMetaDataSerializer();
+	private static final LinkOption[] NOFOLLOW = new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+	private static final LinkOption[] FOLLOW = new LinkOption[0];
+	private static final String ATTRIBUTES = "unix:mode,uid,gid,dev,lastModifiedTime";
+	private static final String SNAPSHOT_ATTRIBUTES = "unix:mode,uid,gid,dev,size,lastModifiedTime";
+	private static final String USER_NAMESPACE = "user.";
+
+	// Mode masks (see "stat")
+	private static final int MASK_PERMISSION = 07777;
+	private static final int MASK_TYPE = 0170000;
+	private static final int MODE_LINK = 0120000;
+	private static final int MODE_SOCKET = 0140000;
+	private static final int MODE_CHARSPECFILE = 0020000;
+	private static final int MODE_BLOCKSPECIALFILE = 0060000;
+	private static final int MODE_FILE = 0100000;
+	private static final int MODE_DIRECTORY = 0040000;
+	private static final int MODE_PIPE = 0010000;
+
+	private Map userNames = new HashMap(); // uid -> name
+	private Map groupNames = new HashMap(); // gid -> name
+	private Map users = new HashMap(); // name -> UserPrincipal
+	private Map groups = new HashMap(); // name -> GroupPrincipal
+	private Map xattrSupport = new HashMap(); // device -> Boolean
+	private boolean aclWarningIssued = false;
+	private static long lastModifiedPrecision = 0; // Precision of File.lastModified() in ms (0 = not checked yet)
+
+	public NIOMetaDataAccessor() {
+	}
+
+	public FileMetaData getMetaData(File f, boolean onlyBasicAttributes) throws IOException {
+		Path path = f.toPath();
+		Map attrs = Files.readAttributes(path, ATTRIBUTES, NOFOLLOW);
+		int mode = ((Integer)attrs.get("mode")).intValue();
+
+		PosixMetaDataImpl p = new PosixMetaDataImpl();
+		p.setMode(mode);
+		p.setOwner(getUserName(path, ((Integer)attrs.get("uid")).intValue()));
+		p.setGroup(getGroupName(path, ((Integer)attrs.get("gid")).intValue()));
+		p.setLastmodified(((FileTime)attrs.get("lastModifiedTime")).toMillis());
+
+		if (! onlyBasicAttributes) {
+			readExtendedAttributes(path, mode, attrs.get("dev"), p);
+		}
+
+		return p;
+	}
+
+	/**
+	 * The permissions, owner, group and last modification date are taken from the snapshot.
+	 * <BR>Symbolic links are read again because the snapshot's last modification date is the target's one.
+	 */
+	public FileMetaData getMetaData(FileSnapshot snapshot, boolean onlyBasicAttributes) throws IOException {
+		if (! snapshot.hasPermissions() || ! snapshot.exists() || snapshot.isLink()) {
+			return getMetaData(snapshot.getFile(), onlyBasicAttributes);
+		}
+
+		PosixMetaDataImpl p = new PosixMetaDataImpl();
+		p.setMode(snapshot.getMode());
+		p.setOwner(snapshot.getOwner());
+		p.setGroup(snapshot.getGroup());
+		p.setLastmodified(snapshot.getLastModified());
+
+		if (! onlyBasicAttributes) {
+			readExtendedAttributes(snapshot.getFile().toPath(), snapshot.getMode(), Long.valueOf(snapshot.getDevice()), p);
+		}
+
+		return p;
+	}
+
+	/**
+	 * Type, size, modification date, permissions, owner and group are read in one call.
+	 * <BR>The target of symbolic links is read in a second call.
+	 */
+	public FileSnapshot getSnapshot(File f) throws IOException {
+		Path path = f.toPath();
+		Map attrs;
+		try {
+			attrs = Files.readAttributes(path, SNAPSHOT_ATTRIBUTES, NOFOLLOW);
+		} catch (NoSuchFileException e) {
+			return new FileSnapshot(f, TYPE_FILE, false, false, false, 0, 0);
+		}
+		int mode = ((Integer)attrs.get("mode")).intValue();
+		short type = getType(f, mode);
+		String owner = getUserName(path, ((Integer)attrs.get("uid")).intValue());
+		String group = getGroupName(path, ((Integer)attrs.get("gid")).intValue());
+		long device = ((Long)attrs.get("dev")).longValue();
+
+		if (type == TYPE_LINK) {
+			// Size, date and type of the target (as read by the "File" class)
+			BasicFileAttributes target;
+			try {
+				target = Files.readAttributes(path, BasicFileAttributes.class, FOLLOW);
+			} catch (IOException e) {
+				// Dangling link (or link loop)
+				return new FileSnapshot(f, type, false, false, false, 0, 0, mode, owner, group, device);
+			}
+			return new FileSnapshot(f, type, true, target.isDirectory(), target.isRegularFile(), target.size(), getLastModified(f, target.lastModifiedTime()), mode, owner, group, device);
+		} else {
+			return new FileSnapshot(
+					f, 
+					type, 
+					true, 
+					type == TYPE_DIRECTORY, 
+					type == TYPE_FILE, 
+					((Long)attrs.get("size")).longValue(), 
+					getLastModified(f, (FileTime)attrs.get("lastModifiedTime")), 
+					mode, 
+					owner, 
+					group, 
+					device
+			);
+		}
+	}
+
+	/**
+	 * Returns the modification date with the same precision as File.lastModified(), which is used by the other accessors :
+	 * File.lastModified() only has a precision of one second on some platforms (Linux, before Java 10), and the dates
+	 * read by the snapshots are used in the archive traces to detect modified files.
+	 * <BR>The precision is checked on the first date which has milliseconds.
+	 */
+	private static long getLastModified(File f, FileTime time) {
+		long date = time.toMillis();
+		if (date % 1000 != 0) {
+			if (lastModifiedPrecision == 0) {
+				long reference = f.lastModified();
+				if (reference == date) {
+					lastModifiedPrecision = 1;
+				} else if (reference == date - date % 1000) {
+					lastModifiedPrecision = 1000;
+				} else {
+					// The file has been modified : check on the next date
+					return reference;
+				}
+			}
+			date -= date % lastModifiedPrecision;
+		}
+		return date;
+	}
+
+	public FileMetaDataSerializer getMetaDataSerializer() {
+		return SERIALIZER;
+	}
+
+	public FileMetaData buildEmptyMetaData() {
+		return new PosixMetaDataImpl();
+	}
+
+	/**
+	 * The current attributes of the file are read first : only the attributes that differ are set.
+	 */
+	public void setMetaData(File f, FileMetaData abstractAttr) throws IOException {
+		PosixMetaDataImpl attrs = (PosixMetaDataImpl)abstractAttr;
+		String file = f.getAbsolutePath();
+		Path path = f.toPath();
+		Map current = Files.readAttributes(path, ATTRIBUTES, NOFOLLOW);
+		int currentMode = ((Integer)current.get("mode")).intValue();
+		boolean link = (currentMode & MASK_TYPE) == MODE_LINK;
+		boolean ownerChanged = false;
+
+		// Owner / Group
+		if (attrs.getOwner() != null && attrs.getGroup() != null) {
+			try {
+				PosixFileAttributeView view = (PosixFileAttributeView)Files.getFileAttributeView(path, PosixFileAttributeView.class, NOFOLLOW);
+				if (! attrs.getOwner().equals(getUserName(path, ((Integer)current.get("uid")).intValue()))) {
+					ownerChanged = true;
+					view.setOwner(lookupUser(path, attrs.getOwner()));
+				}
+				if (! attrs.getGroup().equals(getGroupName(path, ((Integer)current.get("gid")).intValue()))) {
+					ownerChanged = true;
+					view.setGroup(lookupGroup(path, attrs.getGroup()));
+				}
+			} catch (IOException e) {
+				Logger.defaultLogger().warn("Unable to set owner/group for " + file + " : " + e.getMessage());
+			}
+		}
+
+		// Last modification date and mode
+		// They are not set on symlinks (not supported)
+		if (! link) {
+			// The mode is set after the owner because "chown" clears the set uid / set gid bits
+			if (attrs.getMode() != PosixMetaDataImpl.UNDEF_MODE && (ownerChanged || (attrs.getMode() & MASK_PERMISSION) != (currentMode & MASK_PERMISSION))) {
+				try {
+					Files.setAttribute(path, "unix:mode", Integer.valueOf(attrs.getMode() & MASK_PERMISSION), FOLLOW);
+				} catch (IOException e) {
+					Logger.defaultLogger().warn("Unable to set mode for " + file + " : " + e.getMessage());
+				}
+			}
+
+			if (attrs.getLastmodified() != PosixMetaDataImpl.UNDEF_DATE) {
+				boolean result = f.setLastModified(attrs.getLastmodified());
+				if (! result) {
+					Logger.defaultLogger().warn("Unable to set last modification date for " + file);
+				}
+			}
+
+			// Extended attributes
+			if (attrs.getXattrList() != null && ! attrs.getXattrList().isEmpty()) {
+				UserDefinedFileAttributeView view = (UserDefinedFileAttributeView)Files.getFileAttributeView(path, UserDefinedFileAttributeView.class, NOFOLLOW);
+				Iterator xattrs = attrs.getXattrList().iterator();
+				while (xattrs.hasNext()) {
+					ExtendedAttribute xattr = (ExtendedAttribute)xattrs.next();
+					if (xattr.getName().startsWith(USER_NAMESPACE)) {
+						try {
+							view.write(xattr.getName().substring(USER_NAMESPACE.length()), ByteBuffer.wrap(xattr.getData()));
+						} catch (IOException e) {
+							Logger.defaultLogger().warn("Unable to set extended attribute " + xattr.getName() + " / " + xattr.getAsString() + " for " + file + " : " + e.getMessage());
+						}
+					} else {
+						Logger.defaultLogger().warn("Unable to set extended attribute " + xattr.getName() + " for " + file + " : only the \"user\" namespace is supported by this accessor.");
+					}
+				}
+			}
+		}
+
+		// ACL
+		if ((attrs.getAccessAcl() != null && ! attrs.getAccessAcl().isEmpty()) || (attrs.getDefaultAcl() != null && ! attrs.getDefaultAcl().isEmpty())) {
+			if (! aclWarningIssued) {
+				aclWarningIssued = true;
+				Logger.defaultLogger().warn("ACLs are not supported by " + this.getClass().getName() + " : they won't be restored (" + file + ").");
+			}
+		}
+	}
+
+	public short getType(File f) throws IOException {
+		return getType(f, ((Integer)Files.getAttribute(f.toPath(), "unix:mode", NOFOLLOW)).intValue());
+	}
+
+	private static short getType(File f, int mode) throws IOException {
+		int type = mode & MASK_TYPE;
+
+		if (type == MODE_LINK) {
+			return TYPE_LINK;
+		} else if (type == MODE_BLOCKSPECIALFILE) {
+			return TYPE_BLOCK_SPEC_FILE;
+		} else if (type == MODE_CHARSPECFILE) {
+			return TYPE_CHAR_SPEC_FILE;
+		} else if (type == MODE_DIRECTORY) {
+			return TYPE_DIRECTORY;
+		} else if (type == MODE_FILE) {
+			return TYPE_FILE;
+		} else if (type == MODE_PIPE) {
+			return TYPE_PIPE;
+		} else if (type == MODE_SOCKET) {
+			return TYPE_SOCKET;
+		} else {
+			throw new IOException("Type not recognized for file " + f.getAbsolutePath() + " : " + mode);
+		}
+	}
+
+	public boolean typeSupported(short type) {
+		return true;
+	}
+
+	public boolean ACLSupported() {
+		return false;
+	}
+
+	public boolean extendedAttributesSupported() {
+		return true;
+	}
+
+	public boolean test() {
+		try {
+			if (! FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+				Logger.defaultLogger().warn(this.getClass().getName() + " cannot be used on this system : the \"unix\" file attribute view is not supported.");
+				return false;
+			}
+			getMetaData(new File(OSTool.getUserDir()), false);
+			return true;
+		} catch (Throwable e) {
+			Logger.defaultLogger().warn(this.getClass().getName() + " cannot be used on this system. Got the following error : \"" + e.getClass().getName() + " : " + e.getMessage() + "\"");
+			return false;
+		}
+	}
+
+	public String getDescription() {
+		return DESCRIPTION;
+	}
+
+	private synchronized String getUserName(Path path, int uid) throws IOException {
+		Integer k = Integer.valueOf(uid);
+		String name = (String)userNames.get(k);
+		if (name == null) {
+			name = Files.getOwner(path, NOFOLLOW).getName();
+			userNames.put(k, name);
+		}
+		return name;
+	}
+
+	private synchronized String getGroupName(Path path, int gid) throws IOException {
+		Integer k = Integer.valueOf(gid);
+		String name = (String)groupNames.get(k);
+		if (name == null) {
+			name = ((GroupPrincipal)Files.getAttribute(path, "posix:group", NOFOLLOW)).getName();
+			groupNames.put(k, name);
+		}
+		return name;
+	}
+
+	private synchronized UserPrincipal lookupUser(Path path, String name) throws IOException {
+		UserPrincipal user = (UserPrincipal)users.get(name);
+		if (user == null) {
+			user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(name);
+			users.put(name, user);
+		}
+		return user;
+	}
+
+	private synchronized GroupPrincipal lookupGroup(Path path, String name) throws IOException {
+		GroupPrincipal group = (GroupPrincipal)groups.get(name);
+		if (group == null) {
+			group = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByGroupName(name);
+			groups.put(name, group);
+		}
+		return group;
+	}
+
+	/**
+	 * Read the extended attributes of the "user" namespace, if the file store supports them.
+	 * <BR>They are only read on files and directories : the Java platform opens the file to list its attributes, which
+	 * would block on named pipes (and they are not read on symbolic links).
+	 */
+	private void readExtendedAttributes(Path path, int mode, Object device, PosixMetaDataImpl p) throws IOException {
+		int type = mode & MASK_TYPE;
+		if ((type == MODE_FILE || type == MODE_DIRECTORY) && isExtendedAttributesSupported(path, device)) {
+			UserDefinedFileAttributeView view = (UserDefinedFileAttributeView)Files.getFileAttributeView(path, UserDefinedFileAttributeView.class, NOFOLLOW);
+			ExtendedAttributeList list = new ExtendedAttributeList();
+			Iterator iter = view.list().iterator();
+			while (iter.hasNext()) {
+				String name = (String)iter.next();
+				ByteBuffer buffer = ByteBuffer.allocate(view.size(name));
+				view.read(name, buffer);
+				buffer.flip();
+				byte[] data = new byte[buffer.remaining()];
+				buffer.get(data);
+				list.addAttribute(USER_NAMESPACE + name, data);
+			}
+			if (! list.isEmpty()) {
+				p.setXattrList(list);
+			}
+		}
+	}
+
+	/**
+	 * Tells whether the file store (identified by its device) supports extended attributes
+	 */
+	private synchronized boolean isExtendedAttributesSupported(Path path, Object device) throws IOException {
+		Boolean supported = (Boolean)xattrSupport.get(device);
+		if (supported == null) {
+			supported = Files.getFileStore(path).supportsFileAttributeView(UserDefinedFileAttributeView.class) ? Boolean.TRUE : Boolean.FALSE;
+			xattrSupport.put(device, supported);
+		}
+		return supported.booleanValue();
+	}
+}
@@ -1,8 +1,10 @@
 package com.myJava.util.log;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -13,6 +15,13 @@ import com.myJava.file.FileTool;
 import com.myJava.system.OSTool;
 
 /**
+ * Log processor which writes the messages in a log file (one file per day, unless "uniqueFile" is set)
+ * <BR>The log file is kept open. The messages are stored in a bounded ring buffer and written by a dedicated thread,
+ * which flushes the file once "log.flush.size" characters have been written, "log.flush.delay" milliseconds after the
+ * first unflushed message, or as soon as an error or a warning is logged.
+ * <BR>When the buffer is full, the thread which logs the message waits for the writer thread ("block" policy) or
+ * the message is dropped and counted ("drop" policy).
+ * <BR>A buffer size of 0 disables the writer thread : the messages are written and flushed by the thread which logs them.
  * <BR>
  * @author Olivier PETRUCCI
  * <BR>
@@ -44,6 +53,10 @@ implements LogProcessor {
     
     private static SimpleDateFormat DF = new SimpleDateFormat("yy-MM-dd");
     private static int DEFAULT_LOG_HISTORY = FrameworkConfiguration.getInstance().getDefaultLogHistory();
+    private static int BUFFER_SIZE = FrameworkConfiguration.getInstance().getLogBufferSize();
+    private static boolean DROP_WHEN_FULL = "drop".equalsIgnoreCase(FrameworkConfiguration.getInstance().getLogBufferPolicy());
+    private static long FLUSH_DELAY = FrameworkConfiguration.getInstance().getLogFlushDelay();
+    private static int FLUSH_SIZE = Math.max(1024, FrameworkConfiguration.getInstance().getLogFlushSize());
     
     /**
      *  Booleen indiquant si on utilise un fichier unique ou si on utilise un fichier par jour
@@ -59,6 +72,33 @@ implements LogProcessor {
      * Process de nettoyage eventuel de la log.
      */
     protected LogCleaner cleaner;
+
+    /**
+     * Log file which is currently open, and its writer
+     * <BR>Accessed while holding the processor's lock (which is also used by the LogCleaner)
+     */
+    private String openFile;
+    private Writer writer;
+
+    /**
+     * Number of characters written since the last flush, and date of the last flush
+     */
+    private int unflushed = 0;
+    private long lastFlush = 0;
+
+    /**
+     * Ring buffer : messages waiting to be written by the writer thread (null if there is no writer thread)
+     * <BR>The buffer is also used as lock for the fields below.
+     */
+    private String[] buffer;
+    private int head = 0;
+    private int count = 0;
+    private int dropped = 0;
+    private boolean flushRequested = false;
+    private boolean stopped = false;
+
+    private Thread writerThread;
+    private Thread shutdownHook;
     
     private FileLogProcessor() {
         this.enableLogHistory(DEFAULT_LOG_HISTORY);
@@ -77,6 +117,25 @@ implements LogProcessor {
                 e.printStackTrace();
             }
         }
+
+        if (BUFFER_SIZE > 0) {
+            this.buffer = new String[BUFFER_SIZE];
+
+            writerThread = new Thread(new LogWriter());
+            writerThread.setDaemon(true);
+            writerThread.setName("Log writer");
+            writerThread.start();
+
+            // The buffered messages are written when the JVM stops
+            shutdownHook = new Thread(new Runnable() {
+                public void run() {
+                    stopWriter();
+                }
+            });
+            shutdownHook.setDaemon(false);
+            shutdownHook.setName("Log writer - Shutdown Thread");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
     }
     
     public FileLogProcessor(File file) {
@@ -102,7 +161,11 @@ implements LogProcessor {
      */
     public String getCurrentLogFile() {
         if (! this.uniqueFile) {
-            return this.fileName + "." + DF.format(new Date()) + ".log";
+            String date;
+            synchronized (DF) {
+                date = DF.format(new Date());
+            }
+            return this.fileName + "." + date + ".log";
         } else {
             return this.fileName + ".log";
         }
@@ -119,25 +182,157 @@ implements LogProcessor {
             }
     	}
         
-        // Ecriture de la log.
+        String text = OSTool.getLineSeparator() + logCt;
+        if (e != null) {
+            StringWriter sw = new StringWriter();
+            sw.write(" - ");
+            e.printStackTrace(new PrintWriter(sw, true));
+            text += sw.toString();
+        }
+
+        if (enqueue(text, level <= 3)) {
+            return;
+        }
+
+        // Ecriture de la log (pas de thread d'ecriture, ou thread arrete)
         try {
-            String tgFile = getCurrentLogFile();
+            boolean close = isStopped();
             synchronized(this) { 
-                Writer fw = FileSystemManager.getWriter(tgFile, true);
-                fw.write(OSTool.getLineSeparator() + logCt);
-                fw.flush();
-                if (e != null) {
-                    fw.write(" - ");
-                    e.printStackTrace(new PrintWriter(fw, true));
+                write(getCurrentLogFile(), text);
+                if (close) {
+                    closeWriter();
+                } else {
+                    flushWriter();
                 }
-                fw.close();
             }
         } catch (Exception exc) {
             System.out.println(" ");
             exc.printStackTrace();
+            synchronized(this) {
+                closeWriter();
+            }
         }
     }
     
+    /**
+     * Adds the message to the ring buffer.
+     * <BR>Returns false if the message must be written by the calling thread (no writer thread, writer thread stopped,
+     * buffer full and calling thread = writer thread, or calling thread interrupted while waiting)
+     * @param urgent The log file must be flushed once the message has been written
+     */
+    private boolean enqueue(String text, boolean urgent) {
+        if (buffer == null) {
+            return false;
+        }
+        synchronized (buffer) {
+            while (count == buffer.length && ! stopped) {
+                if (DROP_WHEN_FULL) {
+                    dropped++;
+                    return true;
+                }
+                if (Thread.currentThread() == writerThread) {
+                    // Message logged while writing (driver warning ...) : only the writer thread can free some space
+                    return false;
+                }
+                try {
+                    buffer.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (stopped) {
+                return false;
+            }
+
+            buffer[(head + count) % buffer.length] = text;
+            count++;
+            if (urgent) {
+                flushRequested = true;
+            }
+            if (count == 1 || urgent) {
+                buffer.notifyAll();
+            }
+            return true;
+        }
+    }
+
+    private boolean isStopped() {
+        if (buffer == null) {
+            return false;
+        }
+        synchronized (buffer) {
+            return stopped;
+        }
+    }
+
+    /**
+     * Stops the writer thread once the buffered messages have been written, and closes the log file.
+     * <BR>The messages logged afterwards are written by the calling thread.
+     */
+    private void stopWriter() {
+        if (buffer != null) {
+            synchronized (buffer) {
+                stopped = true;
+                buffer.notifyAll();
+            }
+            if (writerThread != null && writerThread != Thread.currentThread()) {
+                try {
+                    writerThread.join();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+        synchronized (this) {
+            closeWriter();
+        }
+    }
+
+    /**
+     * Writes the text in the log file, which is opened if needed
+     * <BR>The caller must hold the processor's lock.
+     */
+    private void write(String file, String text) throws IOException {
+        if (writer == null || ! file.equals(openFile)) {
+            closeWriter();
+            writer = new BufferedWriter(FileSystemManager.getWriter(file, true), FLUSH_SIZE);
+            openFile = file;
+            lastFlush = System.currentTimeMillis();
+        }
+        writer.write(text);
+        unflushed += text.length();
+    }
+
+    private void flushWriter() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        unflushed = 0;
+        lastFlush = System.currentTimeMillis();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            writer = null;
+            openFile = null;
+        }
+        unflushed = 0;
+    }
+
+    /**
+     * Closes the log file if it is currently open (called before the file is deleted by the LogCleaner)
+     * <BR>It will be reopened by the next write.
+     */
+    synchronized void releaseFile(File file) {
+        if (openFile != null && FileSystemManager.getAbsolutePath(file).equals(FileSystemManager.getAbsolutePath(new File(openFile)))) {
+            closeWriter();
+        }
+    }
     
     /**
      * Retourne le nom de base du fichier (sans la date, si on fonctionne en 
@@ -167,6 +362,7 @@ implements LogProcessor {
         if (fileName != null) {
             File f = new File(fileName);
             synchronized (this) {
+                closeWriter();
                 return (FileSystemManager.delete(f));	
 			}
         } else {
@@ -180,5 +376,93 @@ implements LogProcessor {
 
 	public void unmount() {
 		this.cleaner.stopTask();
+		stopWriter();
+		if (shutdownHook != null) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException ignored) {
+				// Shutdown in progress
+			}
+		}
+	}
+
+	/**
+	 * Writer thread : writes the buffered messages by batches
+	 */
+	private class LogWriter implements Runnable {
+		public void run() {
+			String[] batch = new String[buffer.length];
+			boolean dirty = false;
+			long flushDate = 0;
+			while (true) {
+				int n;
+				int lost;
+				boolean flush;
+				boolean stop;
+				synchronized (buffer) {
+					// Wait for messages - or for the flush delay if unflushed messages have been written
+					while (count == 0 && ! stopped && ! flushRequested) {
+						long delay = 0;
+						if (dirty) {
+							delay = flushDate + FLUSH_DELAY - System.currentTimeMillis();
+							if (delay <= 0) {
+								break;
+							}
+						}
+						try {
+							buffer.wait(delay);
+						} catch (InterruptedException e) {
+							e.printStackTrace();
+						}
+					}
+
+					n = count;
+					for (int i=0; i<n; i++) {
+						int index = (head + i) % buffer.length;
+						batch[i] = buffer[index];
+						buffer[index] = null;
+					}
+					head = (head + n) % buffer.length;
+					count = 0;
+					lost = dropped;
+					dropped = 0;
+					flush = flushRequested;
+					flushRequested = false;
+					stop = stopped;
+					buffer.notifyAll();
+				}
+
+				synchronized (FileLogProcessor.this) {
+					try {
+						String file = getCurrentLogFile();
+						if (lost != 0) {
+							write(file, OSTool.getLineSeparator() + "[" + lost + " log message(s) dropped : log buffer full]");
+						}
+						for (int i=0; i<n; i++) {
+							write(file, batch[i]);
+							batch[i] = null;
+						}
+						if (stop) {
+							closeWriter();
+							return;
+						} else if (flush || unflushed >= FLUSH_SIZE || System.currentTimeMillis() - lastFlush >= FLUSH_DELAY) {
+							flushWriter();
+						}
+					} catch (Exception exc) {
+						System.out.println(" ");
+						exc.printStackTrace();
+						closeWriter();
+						for (int i=0; i<n; i++) {
+							batch[i] = null;
+						}
+						if (stop) {
+							return;
+						}
+					}
+					dirty = (unflushed != 0);
+					flushDate = lastFlush;
+				}
+			}
+		}
 	}
 }
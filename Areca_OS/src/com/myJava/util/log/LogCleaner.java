@@ -79,6 +79,7 @@ public class LogCleaner extends ScheduledTask {
                 for (int i=0; i<files.length; i++) {
                     if (this.checkFileToBeDeleted(FileSystemManager.getAbsolutePath(files[i]))) {
                         synchronized(this.lgcLogger) {
+                            this.lgcLogger.releaseFile(files[i]);
                             FileSystemManager.delete(files[i]);
                         }
                     }